@@ -0,0 +1,125 @@
+package com.themkers.inventario.config;
+
+import com.hazelcast.config.SerializationConfig;
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+import com.hazelcast.nio.serialization.Data;
+
+import com.themkers.inventario.service.dto.CachedPage;
+import com.themkers.inventario.service.dto.ProductoDTO;
+import com.themkers.inventario.service.dto.StockDTO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the Hazelcast serialization of the cached DTOs and query pages by {@link CacheSerializers} with Java
+ * serialization, the format used without them: the throughput of serializing and deserializing a value, and, printed at the start of each
+ * fork, the size of the serialized values.
+ * <p>
+ * Run with the {@code jmh} Maven profile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheSerializersBenchmark {
+
+    @Param({"java", "compact"})
+    private String format;
+
+    private InternalSerializationService serializationService;
+
+    private ProductoDTO producto;
+
+    private StockDTO stock;
+
+    private Data productoData;
+
+    private Data stockData;
+
+    private CachedPage<StockDTO> page;
+
+    private Data pageData;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SerializationConfig config = new SerializationConfig();
+        if ("compact".equals(format)) {
+            CacheSerializers.register(config);
+        }
+        serializationService = new DefaultSerializationServiceBuilder().setConfig(config).build();
+        producto = new ProductoDTO(123456L, "Tornillo hexagonal M8 x 40 acero inoxidable", new BigDecimal("12.75"));
+        producto.setVersion(4L);
+        stock = new StockDTO(654321L, 250L, producto.getId(), producto.getNombre());
+        stock.setVersion(17L);
+        List<StockDTO> stocks = new ArrayList<>();
+        for (long i = 0; i < 20; i++) {
+            StockDTO pageStock = new StockDTO(stock.getId() + i, stock.getCantidad() + i, producto.getId(), producto.getNombre());
+            pageStock.setVersion(i);
+            stocks.add(pageStock);
+        }
+        page = new CachedPage<>(stocks, PageRequest.of(2, 20, Sort.by(Sort.Order.asc("cantidad"), Sort.Order.asc("id"))), 1000);
+        productoData = serializationService.toData(producto);
+        stockData = serializationService.toData(stock);
+        pageData = serializationService.toData(page);
+        System.out.printf("%n%s serialization: ProductoDTO %d bytes, StockDTO %d bytes, page of 20 StockDTOs %d bytes%n",
+            format, productoData.totalSize(), stockData.totalSize(), pageData.totalSize());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        serializationService.dispose();
+    }
+
+    @Benchmark
+    public Data serializeProducto() {
+        return serializationService.toData(producto);
+    }
+
+    @Benchmark
+    public Object deserializeProducto() {
+        return serializationService.toObject(productoData);
+    }
+
+    @Benchmark
+    public Data serializeStock() {
+        return serializationService.toData(stock);
+    }
+
+    @Benchmark
+    public Object deserializeStock() {
+        return serializationService.toObject(stockData);
+    }
+
+    @Benchmark
+    public Data serializePage() {
+        return serializationService.toData(page);
+    }
+
+    @Benchmark
+    public Object deserializePage() {
+        return serializationService.toObject(pageData);
+    }
+}
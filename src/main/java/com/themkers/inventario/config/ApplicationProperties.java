@@ -2,6 +2,13 @@ package com.themkers.inventario.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * Properties specific to Inventariomicroservicio.
  * <p>
@@ -10,4 +17,762 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
  */
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
 public class ApplicationProperties {
+
+    private final HotStock hotStock = new HotStock();
+
+    private final BulkImport bulkImport = new BulkImport();
+
+    private final EntityCache entityCache = new EntityCache();
+
+    private final NearCache nearCache = new NearCache();
+
+    private final Export export = new Export();
+
+    private final SnapshotExport snapshotExport = new SnapshotExport();
+
+    private final ReadReplicas readReplicas = new ReadReplicas();
+
+    private final Changes changes = new Changes();
+
+    private final StockStream stockStream = new StockStream();
+
+    private final Outbox outbox = new Outbox();
+
+    private final Autocomplete autocomplete = new Autocomplete();
+
+    private final CacheWarmUp cacheWarmUp = new CacheWarmUp();
+
+    private final CacheRegion queryCache = new CacheRegion(60, 1000);
+
+    private final StockValuation stockValuation = new StockValuation();
+
+    public HotStock getHotStock() {
+        return hotStock;
+    }
+
+    public BulkImport getBulkImport() {
+        return bulkImport;
+    }
+
+    public EntityCache getEntityCache() {
+        return entityCache;
+    }
+
+    public NearCache getNearCache() {
+        return nearCache;
+    }
+
+    public Export getExport() {
+        return export;
+    }
+
+    public SnapshotExport getSnapshotExport() {
+        return snapshotExport;
+    }
+
+    public ReadReplicas getReadReplicas() {
+        return readReplicas;
+    }
+
+    public Changes getChanges() {
+        return changes;
+    }
+
+    public StockStream getStockStream() {
+        return stockStream;
+    }
+
+    public Outbox getOutbox() {
+        return outbox;
+    }
+
+    public Autocomplete getAutocomplete() {
+        return autocomplete;
+    }
+
+    public CacheWarmUp getCacheWarmUp() {
+        return cacheWarmUp;
+    }
+
+    /**
+     * @return the settings of the Hazelcast maps caching the results of criteria queries.
+     */
+    public CacheRegion getQueryCache() {
+        return queryCache;
+    }
+
+    public StockValuation getStockValuation() {
+        return stockValuation;
+    }
+
+    /**
+     * In-memory counters for stocks which receive too many adjustments to be written one by one.
+     */
+    public static class HotStock {
+
+        private boolean enabled = false;
+
+        private Set<Long> stockIds = new HashSet<>();
+
+        private long flushIntervalMs = 1000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Set<Long> getStockIds() {
+            return stockIds;
+        }
+
+        public void setStockIds(Set<Long> stockIds) {
+            this.stockIds = stockIds;
+        }
+
+        public long getFlushIntervalMs() {
+            return flushIntervalMs;
+        }
+
+        public void setFlushIntervalMs(long flushIntervalMs) {
+            this.flushIntervalMs = flushIntervalMs;
+        }
+    }
+
+    /**
+     * Streaming bulk imports of productos and stocks.
+     */
+    public static class BulkImport {
+
+        private int chunkSize = 500;
+
+        private int maxReportedErrors = 1000;
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public int getMaxReportedErrors() {
+            return maxReportedErrors;
+        }
+
+        public void setMaxReportedErrors(int maxReportedErrors) {
+            this.maxReportedErrors = maxReportedErrors;
+        }
+    }
+
+    /**
+     * Streaming exports of productos and stocks.
+     */
+    public static class Export {
+
+        private int fetchSize = 1000;
+
+        public int getFetchSize() {
+            return fetchSize;
+        }
+
+        public void setFetchSize(int fetchSize) {
+            this.fetchSize = fetchSize;
+        }
+    }
+
+    /**
+     * Management-triggered snapshot exports of the producto and stock tables to local files.
+     */
+    public static class SnapshotExport {
+
+        private String directory = "snapshots";
+
+        private int threads = 4;
+
+        private long chunkSize = 100000;
+
+        private int fetchSize = 1000;
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+
+        /**
+         * @return the number of ids in the range read by each chunk.
+         */
+        public long getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(long chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public int getFetchSize() {
+            return fetchSize;
+        }
+
+        public void setFetchSize(int fetchSize) {
+            this.fetchSize = fetchSize;
+        }
+    }
+
+    /**
+     * Database replicas serving the read-only transactions.
+     */
+    public static class ReadReplicas {
+
+        private boolean enabled = false;
+
+        private double maxLagSeconds = 10;
+
+        private long checkIntervalMs = 5000;
+
+        private long checkTimeoutMs = 1000;
+
+        private List<Replica> replicas = new ArrayList<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * @return the replication lag above which a replica stops receiving read-only transactions.
+         */
+        public double getMaxLagSeconds() {
+            return maxLagSeconds;
+        }
+
+        public void setMaxLagSeconds(double maxLagSeconds) {
+            this.maxLagSeconds = maxLagSeconds;
+        }
+
+        public long getCheckIntervalMs() {
+            return checkIntervalMs;
+        }
+
+        public void setCheckIntervalMs(long checkIntervalMs) {
+            this.checkIntervalMs = checkIntervalMs;
+        }
+
+        /**
+         * @return the time a replica has to answer its lag check, after which it stops receiving read-only transactions.
+         */
+        public long getCheckTimeoutMs() {
+            return checkTimeoutMs;
+        }
+
+        public void setCheckTimeoutMs(long checkTimeoutMs) {
+            this.checkTimeoutMs = checkTimeoutMs;
+        }
+
+        public List<Replica> getReplicas() {
+            return replicas;
+        }
+
+        public void setReplicas(List<Replica> replicas) {
+            this.replicas = replicas;
+        }
+
+        /**
+         * A replica, whose connection pool is configured like the primary one, except for these settings.
+         */
+        public static class Replica {
+
+            private String name;
+
+            private String url;
+
+            private String username;
+
+            private String password;
+
+            private Integer maximumPoolSize;
+
+            private String lagQuery;
+
+            public String getName() {
+                return name;
+            }
+
+            public void setName(String name) {
+                this.name = name;
+            }
+
+            public String getUrl() {
+                return url;
+            }
+
+            public void setUrl(String url) {
+                this.url = url;
+            }
+
+            public String getUsername() {
+                return username;
+            }
+
+            public void setUsername(String username) {
+                this.username = username;
+            }
+
+            public String getPassword() {
+                return password;
+            }
+
+            public void setPassword(String password) {
+                this.password = password;
+            }
+
+            public Integer getMaximumPoolSize() {
+                return maximumPoolSize;
+            }
+
+            public void setMaximumPoolSize(Integer maximumPoolSize) {
+                this.maximumPoolSize = maximumPoolSize;
+            }
+
+            /**
+             * @return the query returning the replication lag of the replica in seconds, by default the one of
+             * PostgreSQL streaming replication, or none on other databases.
+             */
+            public String getLagQuery() {
+                return lagQuery;
+            }
+
+            public void setLagQuery(String lagQuery) {
+                this.lagQuery = lagQuery;
+            }
+        }
+    }
+
+    /**
+     * Incremental synchronization of productos and stocks, from their last modified dates and tombstones.
+     */
+    public static class Changes {
+
+        private long settleTimeMs = 5000;
+
+        private int tombstoneRetentionDays = 30;
+
+        private long purgeIntervalMs = 3600000;
+
+        /**
+         * @return the delay after which changes are returned: transactions still running when their changes are
+         * dated must have committed by then, or their changes would be missed.
+         */
+        public long getSettleTimeMs() {
+            return settleTimeMs;
+        }
+
+        public void setSettleTimeMs(long settleTimeMs) {
+            this.settleTimeMs = settleTimeMs;
+        }
+
+        /**
+         * @return the number of days tombstones are kept: older tokens are rejected, their clients must
+         * synchronize from scratch.
+         */
+        public int getTombstoneRetentionDays() {
+            return tombstoneRetentionDays;
+        }
+
+        public void setTombstoneRetentionDays(int tombstoneRetentionDays) {
+            this.tombstoneRetentionDays = tombstoneRetentionDays;
+        }
+
+        public long getPurgeIntervalMs() {
+            return purgeIntervalMs;
+        }
+
+        public void setPurgeIntervalMs(long purgeIntervalMs) {
+            this.purgeIntervalMs = purgeIntervalMs;
+        }
+    }
+
+    /**
+     * Server-sent event streams of the committed stock changes.
+     */
+    public static class StockStream {
+
+        private long coalesceWindowMs = 250;
+
+        private int bufferSize = 256;
+
+        private int deliveryThreads = 4;
+
+        private long keepAliveIntervalMs = 15000;
+
+        private long timeoutMs = 1800000;
+
+        /**
+         * @return the period over which the changes of a same stock are coalesced into the last one.
+         */
+        public long getCoalesceWindowMs() {
+            return coalesceWindowMs;
+        }
+
+        public void setCoalesceWindowMs(long coalesceWindowMs) {
+            this.coalesceWindowMs = coalesceWindowMs;
+        }
+
+        /**
+         * @return the number of changes buffered per subscriber, the oldest ones being dropped when it's full.
+         */
+        public int getBufferSize() {
+            return bufferSize;
+        }
+
+        public void setBufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+        }
+
+        public int getDeliveryThreads() {
+            return deliveryThreads;
+        }
+
+        public void setDeliveryThreads(int deliveryThreads) {
+            this.deliveryThreads = deliveryThreads;
+        }
+
+        public long getKeepAliveIntervalMs() {
+            return keepAliveIntervalMs;
+        }
+
+        public void setKeepAliveIntervalMs(long keepAliveIntervalMs) {
+            this.keepAliveIntervalMs = keepAliveIntervalMs;
+        }
+
+        /**
+         * @return the duration after which streams are closed, for their clients to reconnect.
+         */
+        public long getTimeoutMs() {
+            return timeoutMs;
+        }
+
+        public void setTimeoutMs(long timeoutMs) {
+            this.timeoutMs = timeoutMs;
+        }
+    }
+
+    /**
+     * Relay of the outbox events to the other services.
+     */
+    public static class Outbox {
+
+        private long relayIntervalMs = 1000;
+
+        private int batchSize = 100;
+
+        private int maxBatchesPerRun = 10;
+
+        public long getRelayIntervalMs() {
+            return relayIntervalMs;
+        }
+
+        public void setRelayIntervalMs(long relayIntervalMs) {
+            this.relayIntervalMs = relayIntervalMs;
+        }
+
+        /**
+         * @return the number of events published, and deleted, per transaction.
+         */
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        /**
+         * @return the number of batches relayed before yielding the scheduler thread to the other tasks.
+         */
+        public int getMaxBatchesPerRun() {
+            return maxBatchesPerRun;
+        }
+
+        public void setMaxBatchesPerRun(int maxBatchesPerRun) {
+            this.maxBatchesPerRun = maxBatchesPerRun;
+        }
+    }
+
+    /**
+     * Folding of the changes of the valuation of the stocks into its total.
+     */
+    public static class StockValuation {
+
+        private long foldIntervalMs = 10000;
+
+        private int foldBatchSize = 1000;
+
+        public long getFoldIntervalMs() {
+            return foldIntervalMs;
+        }
+
+        public void setFoldIntervalMs(long foldIntervalMs) {
+            this.foldIntervalMs = foldIntervalMs;
+        }
+
+        /**
+         * @return the number of deltas folded per transaction.
+         */
+        public int getFoldBatchSize() {
+            return foldBatchSize;
+        }
+
+        public void setFoldBatchSize(int foldBatchSize) {
+            this.foldBatchSize = foldBatchSize;
+        }
+    }
+
+    /**
+     * In-memory autocompletion index of the producto nombres.
+     */
+    public static class Autocomplete {
+
+        private int maxPendingChanges = 1000;
+
+        /**
+         * @return the number of changes kept beside the index, and scanned by each query, before it is rebuilt.
+         */
+        public int getMaxPendingChanges() {
+            return maxPendingChanges;
+        }
+
+        public void setMaxPendingChanges(int maxPendingChanges) {
+            this.maxPendingChanges = maxPendingChanges;
+        }
+    }
+
+    /**
+     * Loading of the productos into the {@code productos-by-id} cache at startup, before the member reports itself up.
+     */
+    public static class CacheWarmUp {
+
+        private boolean enabled = true;
+
+        private Mode mode = Mode.ALL;
+
+        private int topN = 10000;
+
+        private int threads = 4;
+
+        private long chunkSize = 1000;
+
+        private long deadlineSeconds = 300;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Mode getMode() {
+            return mode;
+        }
+
+        public void setMode(Mode mode) {
+            this.mode = mode;
+        }
+
+        /**
+         * @return the number of productos loaded in the {@link Mode#RECENT} mode.
+         */
+        public int getTopN() {
+            return topN;
+        }
+
+        public void setTopN(int topN) {
+            this.topN = topN;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+
+        /**
+         * @return the number of ids in the range, or in the list, loaded by each chunk.
+         */
+        public long getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(long chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        /**
+         * @return the time after which the member reports itself up even though the warm-up isn't complete.
+         */
+        public long getDeadlineSeconds() {
+            return deadlineSeconds;
+        }
+
+        public void setDeadlineSeconds(long deadlineSeconds) {
+            this.deadlineSeconds = deadlineSeconds;
+        }
+
+        public enum Mode {
+            /**
+             * All the productos, by ranges of ids.
+             */
+            ALL,
+            /**
+             * The {@code top-n} productos last read from the shared cache, by the other members.
+             */
+            RECENT
+        }
+    }
+
+    /**
+     * Hibernate second-level cache regions of the domain entities, stored in Hazelcast maps.
+     */
+    public static class EntityCache {
+
+        private final CacheRegion producto = new CacheRegion(3600, 10000);
+
+        private final CacheRegion stock = new CacheRegion(300, 10000);
+
+        public CacheRegion getProducto() {
+            return producto;
+        }
+
+        public CacheRegion getStock() {
+            return stock;
+        }
+    }
+
+    /**
+     * Local copies of the entries of Spring caches, kept on each member in front of their Hazelcast maps.
+     */
+    public static class NearCache {
+
+        private Map<String, CacheSpec> caches = new HashMap<>();
+
+        public Map<String, CacheSpec> getCaches() {
+            return caches;
+        }
+
+        public void setCaches(Map<String, CacheSpec> caches) {
+            this.caches = caches;
+        }
+
+        public static class CacheSpec {
+
+            private long maxEntries = 10000;
+
+            private int timeToLiveSeconds = 60;
+
+            private int refreshAheadSeconds = 0;
+
+            private boolean generational;
+
+            public long getMaxEntries() {
+                return maxEntries;
+            }
+
+            public void setMaxEntries(long maxEntries) {
+                this.maxEntries = maxEntries;
+            }
+
+            public int getTimeToLiveSeconds() {
+                return timeToLiveSeconds;
+            }
+
+            public void setTimeToLiveSeconds(int timeToLiveSeconds) {
+                this.timeToLiveSeconds = timeToLiveSeconds;
+            }
+
+            /**
+             * @return the time before the expiry of a Hazelcast entry from which reading it reloads it in the
+             * background, or {@code 0} to let entries expire. It must exceed the time to live of the local copies,
+             * for the entries to be read from Hazelcast within that time.
+             */
+            public int getRefreshAheadSeconds() {
+                return refreshAheadSeconds;
+            }
+
+            public void setRefreshAheadSeconds(int refreshAheadSeconds) {
+                this.refreshAheadSeconds = refreshAheadSeconds;
+            }
+
+            /**
+             * @return whether clearing the cache moves it to a new generation of keys, instead of clearing the
+             * Hazelcast map and the local copies of all the members.
+             */
+            public boolean isGenerational() {
+                return generational;
+            }
+
+            public void setGenerational(boolean generational) {
+                this.generational = generational;
+            }
+        }
+    }
+
+    /**
+     * A Hazelcast map holding cached entries.
+     */
+    public static class CacheRegion {
+
+        private int timeToLiveSeconds;
+
+        private int maxEntriesPerNode;
+
+        private int backupCount = 1;
+
+        public CacheRegion(int timeToLiveSeconds, int maxEntriesPerNode) {
+            this.timeToLiveSeconds = timeToLiveSeconds;
+            this.maxEntriesPerNode = maxEntriesPerNode;
+        }
+
+        public int getTimeToLiveSeconds() {
+            return timeToLiveSeconds;
+        }
+
+        public void setTimeToLiveSeconds(int timeToLiveSeconds) {
+            this.timeToLiveSeconds = timeToLiveSeconds;
+        }
+
+        public int getMaxEntriesPerNode() {
+            return maxEntriesPerNode;
+        }
+
+        public void setMaxEntriesPerNode(int maxEntriesPerNode) {
+            this.maxEntriesPerNode = maxEntriesPerNode;
+        }
+
+        public int getBackupCount() {
+            return backupCount;
+        }
+
+        public void setBackupCount(int backupCount) {
+            this.backupCount = backupCount;
+        }
+    }
 }
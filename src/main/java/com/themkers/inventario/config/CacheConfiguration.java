@@ -6,14 +6,23 @@ import io.github.jhipster.config.JHipsterProperties;
 import com.hazelcast.config.*;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.Hazelcast;
+import com.hazelcast.hibernate.CacheEnvironment;
+
+import com.themkers.inventario.domain.Producto;
+import com.themkers.inventario.domain.Stock;
+import com.themkers.inventario.service.ProductoQueryService;
+import com.themkers.inventario.service.ProductoService;
+import com.themkers.inventario.service.StockQueryService;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
 import org.springframework.boot.autoconfigure.web.ServerProperties;
 
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.interceptor.KeyGenerator;
 import org.springframework.cloud.client.ServiceInstance;
 import org.springframework.cloud.client.discovery.DiscoveryClient;
 import org.springframework.cloud.client.serviceregistry.Registration;
@@ -35,12 +44,16 @@ public class CacheConfiguration {
 
     private final DiscoveryClient discoveryClient;
 
+    private final ApplicationProperties applicationProperties;
+
     private Registration registration;
 
-    public CacheConfiguration(Environment env, ServerProperties serverProperties, DiscoveryClient discoveryClient) {
+    public CacheConfiguration(Environment env, ServerProperties serverProperties, DiscoveryClient discoveryClient,
+                              ApplicationProperties applicationProperties) {
         this.env = env;
         this.serverProperties = serverProperties;
         this.discoveryClient = discoveryClient;
+        this.applicationProperties = applicationProperties;
     }
 
     @Autowired(required = false)
@@ -54,10 +67,30 @@ public class CacheConfiguration {
         Hazelcast.shutdownAll();
     }
 
+    /**
+     * Hazelcast caches, with local copies of the near caches. Methods caching with {@code @Cacheable(sync = true)} load
+     * each missing value once: the concurrent calls on a member wait for the first one, which holds the lock of the
+     * key in Hazelcast while loading, so that the calls of the other members wait for it too.
+     */
     @Bean
     public CacheManager cacheManager(HazelcastInstance hazelcastInstance) {
         log.debug("Starting HazelcastCacheManager");
-        return new com.hazelcast.spring.cache.HazelcastCacheManager(hazelcastInstance);
+        CacheManager hazelcastCacheManager = new com.hazelcast.spring.cache.HazelcastCacheManager(hazelcastInstance);
+        return new TwoTierCacheManager(hazelcastCacheManager, hazelcastInstance, applicationProperties.getNearCache().getCaches());
+    }
+
+    @Bean(CriteriaQueryKeyGenerator.NAME)
+    public KeyGenerator criteriaQueryKeyGenerator() {
+        return new CriteriaQueryKeyGenerator();
+    }
+
+    /**
+     * Use this Hazelcast member for the Hibernate second-level cache.
+     * Depending on the instance makes sure it is started, with the domain map configs, before the region factory looks it up.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer hibernateSecondLevelCacheCustomizer(HazelcastInstance hazelcastInstance) {
+        return hibernateProperties -> hibernateProperties.put(CacheEnvironment.HAZELCAST_INSTANCE_NAME, hazelcastInstance.getName());
     }
 
     @Bean
@@ -102,6 +135,17 @@ public class CacheConfiguration {
             }
         }
         config.getMapConfigs().put("default", initializeDefaultMapConfig(jHipsterProperties));
+        config.getMapConfigs().put("com.themkers.inventario.domain.*", initializeDomainMapConfig(jHipsterProperties));
+        config.getMapConfigs().put(Producto.class.getName(),
+            initializeDomainMapConfig(applicationProperties.getEntityCache().getProducto()));
+        config.getMapConfigs().put(Stock.class.getName(),
+            initializeDomainMapConfig(applicationProperties.getEntityCache().getStock()));
+        config.getMapConfigs().put(ProductoService.PRODUCTOS_BY_ID_CACHE, initializeDomainMapConfig(jHipsterProperties));
+        config.getMapConfigs().put(StockQueryService.STOCK_QUERIES_CACHE,
+            initializeDomainMapConfig(applicationProperties.getQueryCache()));
+        config.getMapConfigs().put(ProductoQueryService.PRODUCTO_QUERIES_CACHE,
+            initializeDomainMapConfig(applicationProperties.getQueryCache()));
+        CacheSerializers.register(config.getSerializationConfig());
 
         // Full reference is available at: https://docs.hazelcast.org/docs/management-center/3.9/manual/html/Deploying_and_Starting.html
         config.setManagementCenterConfig(initializeDefaultManagementCenterConfig(jHipsterProperties));
@@ -152,4 +196,17 @@ public class CacheConfiguration {
         return mapConfig;
     }
 
+    private MapConfig initializeDomainMapConfig(ApplicationProperties.CacheRegion region) {
+        MapConfig mapConfig = new MapConfig();
+        mapConfig.setTimeToLiveSeconds(region.getTimeToLiveSeconds());
+        mapConfig.setBackupCount(region.getBackupCount());
+        /*
+        Entries are evicted from the least recently used ones when a member holds
+        more than max-entries-per-node entries of the region.
+        */
+        mapConfig.setEvictionPolicy(EvictionPolicy.LRU);
+        mapConfig.setMaxSizeConfig(new MaxSizeConfig(region.getMaxEntriesPerNode(), MaxSizeConfig.MaxSizePolicy.PER_NODE));
+        return mapConfig;
+    }
+
 }
@@ -0,0 +1,277 @@
+package com.themkers.inventario.config;
+
+import com.hazelcast.config.SerializationConfig;
+import com.hazelcast.config.SerializerConfig;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.StreamSerializer;
+
+import com.themkers.inventario.service.dto.CachedPage;
+import com.themkers.inventario.service.dto.ProductoChangeDTO;
+import com.themkers.inventario.service.dto.ProductoDTO;
+import com.themkers.inventario.service.dto.StockDTO;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hazelcast serializers of the values stored in the caches and published on the topics, writing their fields only,
+ * instead of the class descriptors and reflection of Java serialization.
+ * <p>
+ * The type ids are part of the format exchanged between the members: they must not be changed or reused, and the
+ * fields of a type may only be appended, with a new type id, while members of the previous version are running.
+ */
+public final class CacheSerializers {
+
+    static final int PRODUCTO_DTO_TYPE_ID = 1001;
+
+    static final int STOCK_DTO_TYPE_ID = 1002;
+
+    static final int PRODUCTO_CHANGE_DTO_TYPE_ID = 1003;
+
+    static final int INVALIDATION_TYPE_ID = 1004;
+
+    static final int GENERATION_TYPE_ID = 1005;
+
+    static final int CACHED_PAGE_TYPE_ID = 1006;
+
+    private CacheSerializers() {
+    }
+
+    /**
+     * Register the serializers.
+     *
+     * @param serializationConfig the serialization configuration of the Hazelcast member.
+     */
+    public static void register(SerializationConfig serializationConfig) {
+        serializationConfig.addSerializerConfig(new SerializerConfig()
+            .setTypeClass(ProductoDTO.class).setImplementation(new ProductoDTOSerializer()));
+        serializationConfig.addSerializerConfig(new SerializerConfig()
+            .setTypeClass(StockDTO.class).setImplementation(new StockDTOSerializer()));
+        serializationConfig.addSerializerConfig(new SerializerConfig()
+            .setTypeClass(ProductoChangeDTO.class).setImplementation(new ProductoChangeDTOSerializer()));
+        serializationConfig.addSerializerConfig(new SerializerConfig()
+            .setTypeClass(TwoTierCacheManager.Invalidation.class).setImplementation(new InvalidationSerializer()));
+        serializationConfig.addSerializerConfig(new SerializerConfig()
+            .setTypeClass(TwoTierCacheManager.Generation.class).setImplementation(new GenerationSerializer()));
+        serializationConfig.addSerializerConfig(new SerializerConfig()
+            .setTypeClass(CachedPage.class).setImplementation(new CachedPageSerializer()));
+    }
+
+    static final class ProductoDTOSerializer implements StreamSerializer<ProductoDTO> {
+
+        @Override
+        public int getTypeId() {
+            return PRODUCTO_DTO_TYPE_ID;
+        }
+
+        @Override
+        public void write(ObjectDataOutput out, ProductoDTO producto) throws IOException {
+            writeLong(out, producto.getId());
+            out.writeUTF(producto.getNombre());
+            writeBigDecimal(out, producto.getPrecio());
+            writeLong(out, producto.getVersion());
+        }
+
+        @Override
+        public ProductoDTO read(ObjectDataInput in) throws IOException {
+            ProductoDTO producto = new ProductoDTO(readLong(in), in.readUTF(), readBigDecimal(in));
+            producto.setVersion(readLong(in));
+            return producto;
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+
+    static final class StockDTOSerializer implements StreamSerializer<StockDTO> {
+
+        @Override
+        public int getTypeId() {
+            return STOCK_DTO_TYPE_ID;
+        }
+
+        @Override
+        public void write(ObjectDataOutput out, StockDTO stock) throws IOException {
+            writeLong(out, stock.getId());
+            writeLong(out, stock.getCantidad());
+            writeLong(out, stock.getProductoId());
+            out.writeUTF(stock.getProductoNombre());
+            writeLong(out, stock.getVersion());
+        }
+
+        @Override
+        public StockDTO read(ObjectDataInput in) throws IOException {
+            StockDTO stock = new StockDTO(readLong(in), readLong(in), readLong(in), in.readUTF());
+            stock.setVersion(readLong(in));
+            return stock;
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+
+    static final class ProductoChangeDTOSerializer implements StreamSerializer<ProductoChangeDTO> {
+
+        @Override
+        public int getTypeId() {
+            return PRODUCTO_CHANGE_DTO_TYPE_ID;
+        }
+
+        @Override
+        public void write(ObjectDataOutput out, ProductoChangeDTO change) throws IOException {
+            writeLong(out, change.getProductoId());
+            out.writeUTF(change.getNombre());
+            out.writeBoolean(change.isDeleted());
+        }
+
+        @Override
+        public ProductoChangeDTO read(ObjectDataInput in) throws IOException {
+            return new ProductoChangeDTO(readLong(in), in.readUTF(), in.readBoolean());
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+
+    static final class InvalidationSerializer implements StreamSerializer<TwoTierCacheManager.Invalidation> {
+
+        @Override
+        public int getTypeId() {
+            return INVALIDATION_TYPE_ID;
+        }
+
+        @Override
+        public void write(ObjectDataOutput out, TwoTierCacheManager.Invalidation invalidation) throws IOException {
+            out.writeUTF(invalidation.getCacheName());
+            // The keys are ids, serialized by Hazelcast without class descriptor
+            out.writeObject(invalidation.getKey());
+        }
+
+        @Override
+        public TwoTierCacheManager.Invalidation read(ObjectDataInput in) throws IOException {
+            return new TwoTierCacheManager.Invalidation(in.readUTF(), in.readObject());
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+
+    static final class GenerationSerializer implements StreamSerializer<TwoTierCacheManager.Generation> {
+
+        @Override
+        public int getTypeId() {
+            return GENERATION_TYPE_ID;
+        }
+
+        @Override
+        public void write(ObjectDataOutput out, TwoTierCacheManager.Generation generation) throws IOException {
+            out.writeUTF(generation.getCacheName());
+            out.writeLong(generation.getGeneration());
+        }
+
+        @Override
+        public TwoTierCacheManager.Generation read(ObjectDataInput in) throws IOException {
+            return new TwoTierCacheManager.Generation(in.readUTF(), in.readLong());
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+
+    static final class CachedPageSerializer implements StreamSerializer<CachedPage<?>> {
+
+        @Override
+        public int getTypeId() {
+            return CACHED_PAGE_TYPE_ID;
+        }
+
+        @Override
+        public void write(ObjectDataOutput out, CachedPage<?> page) throws IOException {
+            out.writeInt(page.getNumberOfElements());
+            for (Object element : page.getContent()) {
+                // The DTOs, written by their own serializers
+                out.writeObject(element);
+            }
+            out.writeLong(page.getTotalElements());
+            Pageable pageable = page.getPageable();
+            out.writeBoolean(pageable.isPaged());
+            if (pageable.isPaged()) {
+                out.writeInt(pageable.getPageNumber());
+                out.writeInt(pageable.getPageSize());
+                List<Sort.Order> orders = pageable.getSort().toList();
+                out.writeInt(orders.size());
+                for (Sort.Order order : orders) {
+                    out.writeUTF(order.getProperty());
+                    out.writeBoolean(order.isAscending());
+                    out.writeBoolean(order.isIgnoreCase());
+                    out.writeUTF(order.getNullHandling().name());
+                }
+            }
+        }
+
+        @Override
+        public CachedPage<?> read(ObjectDataInput in) throws IOException {
+            int size = in.readInt();
+            List<Object> content = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                content.add(in.readObject());
+            }
+            long total = in.readLong();
+            Pageable pageable = Pageable.unpaged();
+            if (in.readBoolean()) {
+                int number = in.readInt();
+                int pageSize = in.readInt();
+                int sortSize = in.readInt();
+                List<Sort.Order> orders = new ArrayList<>(sortSize);
+                for (int i = 0; i < sortSize; i++) {
+                    String property = in.readUTF();
+                    Sort.Order order = new Sort.Order(in.readBoolean() ? Sort.Direction.ASC : Sort.Direction.DESC, property);
+                    order = in.readBoolean() ? order.ignoreCase() : order;
+                    orders.add(order.with(Sort.NullHandling.valueOf(in.readUTF())));
+                }
+                pageable = PageRequest.of(number, pageSize, Sort.by(orders));
+            }
+            return new CachedPage<>(content, pageable, total);
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+
+    private static void writeLong(ObjectDataOutput out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readLong(ObjectDataInput in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    private static void writeBigDecimal(ObjectDataOutput out, BigDecimal value) throws IOException {
+        out.writeByteArray(value != null ? value.unscaledValue().toByteArray() : null);
+        if (value != null) {
+            out.writeInt(value.scale());
+        }
+    }
+
+    private static BigDecimal readBigDecimal(ObjectDataInput in) throws IOException {
+        byte[] unscaled = in.readByteArray();
+        return unscaled != null ? new BigDecimal(new BigInteger(unscaled), in.readInt()) : null;
+    }
+}
@@ -0,0 +1,41 @@
+package com.themkers.inventario.config;
+
+import com.themkers.inventario.service.ProductoCacheWarmUpService;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.stereotype.Component;
+
+/**
+ * Health indicator reporting the member out of service until its caches are warmed up, or the deadline of the warm-up
+ * has passed, so that Eureka only sends it traffic once it doesn't need to read everything from the database.
+ * The details report the progress of the warm-up.
+ */
+@Component
+public class CacheWarmUpHealthIndicator extends AbstractHealthIndicator {
+
+    private final ProductoCacheWarmUpService warmUpService;
+
+    public CacheWarmUpHealthIndicator(ProductoCacheWarmUpService warmUpService) {
+        super("Cache warm-up health check failed");
+        this.warmUpService = warmUpService;
+    }
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        if (warmUpService.isReady()) {
+            builder.up();
+        } else {
+            builder.outOfService();
+        }
+        builder.withDetail("status", warmUpService.getStatus())
+            .withDetail("chunks", warmUpService.getTotalChunks())
+            .withDetail("completedChunks", warmUpService.getCompletedChunks())
+            .withDetail("productos", warmUpService.getLoadedProductos());
+        if (warmUpService.getStartedAt() != null) {
+            builder.withDetail("startedAt", warmUpService.getStartedAt());
+        }
+        if (warmUpService.getFinishedAt() != null) {
+            builder.withDetail("finishedAt", warmUpService.getFinishedAt());
+        }
+    }
+}
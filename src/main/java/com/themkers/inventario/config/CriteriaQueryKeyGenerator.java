@@ -0,0 +1,101 @@
+package com.themkers.inventario.config;
+
+import io.github.jhipster.service.Criteria;
+import io.github.jhipster.service.filter.Filter;
+
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.data.domain.Pageable;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.stream.Collectors;
+
+/**
+ * Generate the cache keys of criteria queries, so that equivalent criteria share their cached results.
+ * <p>
+ * Keys are strings made of the method name and of the normalized parameters: {@code in} filter values are sorted
+ * and deduplicated, decimal values lose their trailing zeros, empty criteria are the same as no criteria, and
+ * pageables are reduced to their page number, size and sort.
+ */
+public class CriteriaQueryKeyGenerator implements KeyGenerator {
+
+    public static final String NAME = "criteriaQueryKeyGenerator";
+
+    @Override
+    public Object generate(Object target, Method method, Object... params) {
+        StringJoiner key = new StringJoiner("|", method.getName() + "|", "");
+        for (Object param : params) {
+            key.add(normalize(param));
+        }
+        return key.toString();
+    }
+
+    private String normalize(Object param) {
+        if (param instanceof Pageable) {
+            Pageable pageable = (Pageable) param;
+            return pageable.isPaged()
+                ? "page=" + pageable.getPageNumber() + ",size=" + pageable.getPageSize() + ",sort=" + pageable.getSort()
+                : "unpaged,sort=" + pageable.getSort();
+        }
+        if (param instanceof Criteria) {
+            return normalize((Criteria) param);
+        }
+        return String.valueOf(param);
+    }
+
+    private String normalize(Criteria criteria) {
+        BeanWrapper criteriaWrapper = PropertyAccessorFactory.forBeanPropertyAccess(criteria);
+        StringJoiner key = new StringJoiner(",", criteria.getClass().getSimpleName() + "{", "}");
+        for (PropertyDescriptor property : criteriaWrapper.getPropertyDescriptors()) {
+            Object value = criteriaWrapper.isReadableProperty(property.getName()) ? criteriaWrapper.getPropertyValue(property.getName()) : null;
+            if (value instanceof Filter) {
+                String filter = normalize((Filter<?>) value);
+                if (!filter.isEmpty()) {
+                    key.add(property.getName() + "=" + filter);
+                }
+            }
+        }
+        return key.toString();
+    }
+
+    private String normalize(Filter<?> filter) {
+        BeanWrapper filterWrapper = PropertyAccessorFactory.forBeanPropertyAccess(filter);
+        StringJoiner key = new StringJoiner(",");
+        for (PropertyDescriptor property : filterWrapper.getPropertyDescriptors()) {
+            if (property.getReadMethod() == null || property.getWriteMethod() == null) {
+                continue;
+            }
+            Object value = filterWrapper.getPropertyValue(property.getName());
+            if (value instanceof List) {
+                value = normalize((List<?>) value);
+            }
+            if (value != null) {
+                key.add(property.getName() + ":" + normalizeValue(value));
+            }
+        }
+        return key.toString();
+    }
+
+    private List<Object> normalize(List<?> values) {
+        List<Object> normalized = new ArrayList<>(values.stream()
+            .map(this::normalizeValue)
+            .collect(Collectors.toCollection(LinkedHashSet::new)));
+        normalized.sort(Comparator.comparing(String::valueOf));
+        return normalized;
+    }
+
+    private Object normalizeValue(Object value) {
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).stripTrailingZeros().toPlainString();
+        }
+        return value;
+    }
+}
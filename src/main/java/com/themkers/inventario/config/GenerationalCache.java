@@ -0,0 +1,171 @@
+package com.themkers.inventario.config;
+
+import com.hazelcast.core.IMap;
+import com.hazelcast.map.AbstractEntryProcessor;
+import org.springframework.cache.Cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * A {@link Cache} cleared by moving to a new generation of keys, instead of removing its entries.
+ * <p>
+ * The entries are stored under their key prefixed by the current generation of the cache. Clearing the cache
+ * increments its generation in a Hazelcast map, with a single call to the owner of the entry, and announces it
+ * through the generation listener, so that the other members move to it too. The entries of the previous
+ * generations are not read anymore, and go away with their time to live, or are evicted by newer ones.
+ * <p>
+ * A value loaded after a miss is only stored if the cache is still at the generation of the miss: a load which
+ * started before a clear may have read the data the clear was for, and must not be stored in the new generation.
+ * The generation of the misses is kept per thread, as the {@code @Cacheable} interceptor stores a loaded value on
+ * the thread which missed it.
+ * <p>
+ * The keys of the cache are compared by their string form.
+ */
+public class GenerationalCache implements Cache {
+
+    private final Cache delegate;
+
+    private final IMap<String, Long> generations;
+
+    private final BiConsumer<String, Long> generationListener;
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final ThreadLocal<Map<String, Long>> missGenerations = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * @param delegate the cache holding the entries.
+     * @param generations the Hazelcast map holding the current generation of each cache, by cache name.
+     * @param generationListener called with the cache name and the new generation after each clear.
+     */
+    public GenerationalCache(Cache delegate, IMap<String, Long> generations, BiConsumer<String, Long> generationListener) {
+        this.delegate = delegate;
+        this.generations = generations;
+        this.generationListener = generationListener;
+        Long current = generations.get(delegate.getName());
+        advanceTo(current == null ? 0 : current);
+    }
+
+    /**
+     * Move to a generation, unless the cache already moved past it.
+     *
+     * @param newGeneration the generation.
+     */
+    public void advanceTo(long newGeneration) {
+        generation.accumulateAndGet(newGeneration, Math::max);
+    }
+
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        long current = generation.get();
+        ValueWrapper value = delegate.get(generationKey(current, key));
+        recordLookup(key, current, value != null);
+        return value;
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        long current = generation.get();
+        T value = delegate.get(generationKey(current, key), type);
+        recordLookup(key, current, value != null);
+        return value;
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        return delegate.get(generationKey(key), valueLoader);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        Long current = storeGeneration(key);
+        if (current != null) {
+            delegate.put(generationKey(current, key), value);
+        }
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        Long current = storeGeneration(key);
+        return current == null ? null : delegate.putIfAbsent(generationKey(current, key), value);
+    }
+
+    @Override
+    public void evict(Object key) {
+        delegate.evict(generationKey(key));
+    }
+
+    @Override
+    public void clear() {
+        long next = (Long) generations.executeOnKey(getName(), new NextGeneration());
+        advanceTo(next);
+        generationListener.accept(getName(), next);
+    }
+
+    private void recordLookup(Object key, long lookupGeneration, boolean hit) {
+        Map<String, Long> misses = missGenerations.get();
+        if (hit) {
+            misses.remove(String.valueOf(key));
+        } else {
+            misses.put(String.valueOf(key), lookupGeneration);
+        }
+    }
+
+    /**
+     * Get the generation a value should be stored in: the current one, unless the value was loaded after a miss
+     * in a previous generation.
+     *
+     * @param key the key of the value.
+     * @return the generation, or {@code null} if the value must not be stored.
+     */
+    private Long storeGeneration(Object key) {
+        Map<String, Long> misses = missGenerations.get();
+        Long missGeneration = misses.remove(String.valueOf(key));
+        if (misses.isEmpty()) {
+            missGenerations.remove();
+        }
+        long current = generation.get();
+        return missGeneration == null || missGeneration == current ? current : null;
+    }
+
+    private String generationKey(Object key) {
+        return generationKey(generation.get(), key);
+    }
+
+    private static String generationKey(long generation, Object key) {
+        return generation + ":" + key;
+    }
+
+    /**
+     * Increment the generation of a cache, on the member owning it.
+     */
+    private static final class NextGeneration extends AbstractEntryProcessor<String, Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Object process(Map.Entry<String, Long> entry) {
+            long next = (entry.getValue() == null ? 0 : entry.getValue()) + 1;
+            entry.setValue(next);
+            return next;
+        }
+    }
+}
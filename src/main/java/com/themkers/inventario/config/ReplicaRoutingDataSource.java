@@ -0,0 +1,258 @@
+package com.themkers.inventario.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * A {@link DataSource} sending the read-only transactions to replicas of the primary database.
+ * <p>
+ * Read-only transactions are spread over the replicas in turn, and everything else, including the read-only
+ * transactions joining a read-write one, goes to the primary. The lag of each replica is checked every
+ * {@code application.read-replicas.check-interval-ms}: replicas lagging by more than
+ * {@code application.read-replicas.max-lag-seconds}, or failing the check, are skipped until they catch up, and when
+ * none is left the read-only transactions go to the primary too.
+ * <p>
+ * The checks run on their own threads rather than on the shared task scheduler, and a replica not answering within
+ * {@code application.read-replicas.check-timeout-ms} is skipped, so that an unreachable replica doesn't hold a
+ * scheduler thread for the whole connection timeout of its pool.
+ * <p>
+ * Spring only flags the transaction as read-only after its connection is requested, so this data source must be
+ * used behind a {@link LazyConnectionDataSourceProxy}, which defers the choice to the first statement.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    public static final String PRIMARY = "primary";
+
+    private static final String POSTGRESQL_LAG_QUERY = "select case when pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() " +
+        "then 0 else coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()), 0) end";
+
+    private final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private final DataSource primary;
+
+    private final List<Replica> replicas;
+
+    private final double maxLagSeconds;
+
+    private final long checkIntervalMs;
+
+    private final long checkTimeoutMs;
+
+    private final ScheduledExecutorService checkScheduler;
+
+    private final ExecutorService probeExecutor;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final Map<String, Counter> connectionCounters = new HashMap<>();
+
+    private final Counter fallbackCounter;
+
+    /**
+     * @param primary the primary database.
+     * @param replicas the replicas of the primary database.
+     * @param maxLagSeconds the replication lag above which a replica stops receiving read-only transactions.
+     * @param checkIntervalMs the delay between two checks of the replicas.
+     * @param checkTimeoutMs the time a replica has to answer its check before being skipped.
+     * @param meterRegistry the registry of the routing metrics.
+     */
+    public ReplicaRoutingDataSource(DataSource primary, List<Replica> replicas, double maxLagSeconds, long checkIntervalMs,
+                                    long checkTimeoutMs, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = new ArrayList<>(replicas);
+        this.maxLagSeconds = maxLagSeconds;
+        this.checkIntervalMs = checkIntervalMs;
+        this.checkTimeoutMs = checkTimeoutMs;
+        CustomizableThreadFactory checkThreadFactory = new CustomizableThreadFactory("replica-check-");
+        checkThreadFactory.setDaemon(true);
+        this.checkScheduler = Executors.newSingleThreadScheduledExecutor(checkThreadFactory);
+        CustomizableThreadFactory probeThreadFactory = new CustomizableThreadFactory("replica-probe-");
+        probeThreadFactory.setDaemon(true);
+        this.probeExecutor = Executors.newCachedThreadPool(probeThreadFactory);
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        connectionCounters.put(PRIMARY, connectionCounter(meterRegistry, PRIMARY));
+        for (Replica replica : replicas) {
+            targets.put(replica.name, replica.dataSource);
+            connectionCounters.put(replica.name, connectionCounter(meterRegistry, replica.name));
+            Gauge.builder("datasource.replica.lag", replica, r -> r.lagSeconds)
+                .description("Replication lag of the replica, as of its last check")
+                .baseUnit("seconds")
+                .tag("pool", replica.name)
+                .register(meterRegistry);
+            Gauge.builder("datasource.replica.available", replica, r -> r.available ? 1 : 0)
+                .description("Whether the replica receives read-only transactions")
+                .tag("pool", replica.name)
+                .register(meterRegistry);
+        }
+        this.fallbackCounter = Counter.builder("datasource.routing.fallbacks")
+            .description("Read-only transactions sent to the primary because no replica was available")
+            .register(meterRegistry);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+    }
+
+    private static Counter connectionCounter(MeterRegistry meterRegistry, String pool) {
+        return Counter.builder("datasource.routing.connections")
+            .description("Connections routed to each pool")
+            .tag("pool", pool)
+            .register(meterRegistry);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        checkReplicas();
+        checkScheduler.scheduleWithFixedDelay(this::checkReplicas, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String pool = PRIMARY;
+        if (TransactionSynchronizationManager.isActualTransactionActive() &&
+            TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            List<Replica> available = replicas.stream().filter(replica -> replica.available).collect(Collectors.toList());
+            if (available.isEmpty()) {
+                fallbackCounter.increment();
+            } else {
+                pool = available.get(Math.floorMod(next.getAndIncrement(), available.size())).name;
+            }
+        }
+        connectionCounters.get(pool).increment();
+        return pool;
+    }
+
+    /**
+     * Check the lag of each replica, and take the ones lagging too much, or not answering in time, out of the rotation.
+     */
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            if (replica.probe == null || replica.probe.isDone()) {
+                replica.probe = probeExecutor.submit(() -> queryLag(replica));
+            }
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(checkTimeoutMs);
+        for (Replica replica : replicas) {
+            boolean wasAvailable = replica.available;
+            try {
+                replica.lagSeconds = replica.probe.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                replica.available = replica.lagSeconds <= maxLagSeconds;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException | TimeoutException e) {
+                // A probe still waiting for a connection is left to finish, and not started again until then
+                log.debug("Lag check of replica {} failed", replica.name, e);
+                replica.lagSeconds = Double.NaN;
+                replica.available = false;
+            }
+            if (wasAvailable != replica.available) {
+                log.warn("Replica {} {} read-only transactions (lag: {}s)", replica.name,
+                    replica.available ? "now receives" : "no longer receives", replica.lagSeconds);
+            }
+        }
+    }
+
+    private double queryLag(Replica replica) throws SQLException {
+        try (Connection connection = replica.dataSource.getConnection()) {
+            String lagQuery = replica.lagQuery;
+            if (lagQuery == null && "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName())) {
+                lagQuery = POSTGRESQL_LAG_QUERY;
+            }
+            int timeoutSeconds = (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(checkTimeoutMs));
+            if (lagQuery == null) {
+                return connection.isValid(timeoutSeconds) ? 0 : Double.NaN;
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(timeoutSeconds);
+                try (ResultSet result = statement.executeQuery(lagQuery)) {
+                    result.next();
+                    return result.getDouble(1);
+                }
+            } finally {
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the names of the replicas currently receiving read-only transactions.
+     */
+    public List<String> getAvailableReplicas() {
+        return replicas.stream().filter(replica -> replica.available).map(replica -> replica.name).collect(Collectors.toList());
+    }
+
+    @Override
+    public void close() throws IOException {
+        checkScheduler.shutdownNow();
+        probeExecutor.shutdownNow();
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof Closeable) {
+                ((Closeable) replica.dataSource).close();
+            }
+        }
+        if (primary instanceof Closeable) {
+            ((Closeable) primary).close();
+        }
+    }
+
+    /**
+     * A replica of the primary database.
+     */
+    public static final class Replica {
+
+        private final String name;
+
+        private final DataSource dataSource;
+
+        private final String lagQuery;
+
+        private volatile double lagSeconds = Double.NaN;
+
+        private volatile boolean available;
+
+        private volatile Future<Double> probe;
+
+        /**
+         * @param name the name of the replica, used in the metrics.
+         * @param dataSource the connection pool of the replica.
+         * @param lagQuery the query returning the replication lag in seconds, or {@code null} for the default one.
+         */
+        public Replica(String name, DataSource dataSource, String lagQuery) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.lagQuery = lagQuery;
+        }
+    }
+}
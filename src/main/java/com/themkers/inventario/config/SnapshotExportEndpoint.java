@@ -0,0 +1,44 @@
+package com.themkers.inventario.config;
+
+import com.themkers.inventario.service.SnapshotExportInProgressException;
+import com.themkers.inventario.service.SnapshotExportService;
+import com.themkers.inventario.service.dto.SnapshotExportJobDTO;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.stereotype.Component;
+
+/**
+ * Management endpoint starting snapshot exports, at {@code /management/snapshotexport}.
+ * <p>
+ * A {@code POST} starts an export and answers {@code 202 Accepted}, or {@code 409 Conflict} if one is already
+ * running; a {@code GET} returns the progress of the running export, or the outcome of the last one.
+ */
+@Component
+@WebEndpoint(id = "snapshotexport")
+public class SnapshotExportEndpoint {
+
+    private final SnapshotExportService snapshotExportService;
+
+    public SnapshotExportEndpoint(SnapshotExportService snapshotExportService) {
+        this.snapshotExportService = snapshotExportService;
+    }
+
+    @ReadOperation
+    public WebEndpointResponse<SnapshotExportJobDTO> status() {
+        return snapshotExportService.getLastJob()
+            .map(WebEndpointResponse::new)
+            .orElseGet(() -> new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND));
+    }
+
+    @WriteOperation
+    public WebEndpointResponse<SnapshotExportJobDTO> start() {
+        try {
+            snapshotExportService.start();
+            return new WebEndpointResponse<>(snapshotExportService.getLastJob().orElse(null), 202);
+        } catch (SnapshotExportInProgressException e) {
+            return new WebEndpointResponse<>(snapshotExportService.getLastJob().orElse(null), 409);
+        }
+    }
+}
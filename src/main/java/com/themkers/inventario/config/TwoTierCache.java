@@ -0,0 +1,339 @@
+package com.themkers.inventario.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.hazelcast.core.EntryView;
+import com.hazelcast.core.IMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * A {@link Cache} keeping a bounded local copy (L1) of the entries read from a shared cache (L2).
+ * <p>
+ * Puts populate both tiers, as done when a value is missing from the cache: entries must be evicted when they
+ * change. Evictions are announced to the other members through the invalidation listener, so that they evict their
+ * local copy. A local copy is only stored if no invalidation of the cache happened while it was read from the shared
+ * cache. As invalidation messages are not guaranteed to be delivered, the time to live of the local copies bounds
+ * their staleness.
+ * <p>
+ * Values missing from the cache are loaded once: concurrent {@link #get(Object, Callable)} calls for a key on a member
+ * wait for the load of the first one, which holds the lock of the key in Hazelcast, so that the other members wait
+ * for it too. Within a read-write transaction, values are loaded without the cache.
+ * <p>
+ * Entries of a Hazelcast map can also be reloaded in the background when read from the shared cache shortly before
+ * their expiry, so that popular entries don't expire at all. They are reloaded by the {@link #setRefreshLoader refresh
+ * loader} of the cache, on the threads of the refresh executor, so the loader must not depend on the transaction or
+ * the security context of the caller.
+ */
+public class TwoTierCache implements Cache {
+
+    private final Logger log = LoggerFactory.getLogger(TwoTierCache.class);
+
+    private final Cache sharedCache;
+
+    private final com.github.benmanes.caffeine.cache.Cache<Object, ValueWrapper> localCache;
+
+    private final BiConsumer<String, Object> invalidationListener;
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final LongAdder sharedHits = new LongAdder();
+
+    private final LongAdder sharedMisses = new LongAdder();
+
+    // The loads in progress on this member, by key
+    private final Map<Object, CompletableFuture<Object>> loads = new ConcurrentHashMap<>();
+
+    private final LongAdder coalescedLoads = new LongAdder();
+
+    private final Duration refreshAhead;
+
+    private final Executor refreshExecutor;
+
+    private volatile Function<Object, ?> refreshLoader;
+
+    private final Set<Object> refreshing = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder refreshes = new LongAdder();
+
+    /**
+     * @param sharedCache the shared cache.
+     * @param maxEntries the maximum number of local copies.
+     * @param timeToLive the time to live of the local copies.
+     * @param invalidationListener called with the cache name and the key, or {@code null} for all keys, after each eviction.
+     */
+    public TwoTierCache(Cache sharedCache, long maxEntries, Duration timeToLive, BiConsumer<String, Object> invalidationListener) {
+        this(sharedCache, maxEntries, timeToLive, invalidationListener, Duration.ZERO, null);
+    }
+
+    /**
+     * @param sharedCache the shared cache.
+     * @param maxEntries the maximum number of local copies.
+     * @param timeToLive the time to live of the local copies.
+     * @param invalidationListener called with the cache name and the key, or {@code null} for all keys, after each eviction.
+     * @param refreshAhead the time before the expiry of a Hazelcast entry from which it is reloaded when read, or zero.
+     * @param refreshExecutor the executor of the reloads.
+     */
+    public TwoTierCache(Cache sharedCache, long maxEntries, Duration timeToLive, BiConsumer<String, Object> invalidationListener,
+                        Duration refreshAhead, Executor refreshExecutor) {
+        this.sharedCache = sharedCache;
+        this.localCache = Caffeine.newBuilder()
+            .maximumSize(maxEntries)
+            .expireAfterWrite(timeToLive)
+            .recordStats()
+            .build();
+        this.invalidationListener = invalidationListener;
+        this.refreshAhead = sharedCache.getNativeCache() instanceof IMap ? refreshAhead : Duration.ZERO;
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    /**
+     * Set the loader of the entries refreshed ahead of their expiry. Without loader, entries are not refreshed.
+     *
+     * @param refreshLoader the function loading the value of a key, returning {@code null} to let the entry expire.
+     */
+    public void setRefreshLoader(Function<Object, ?> refreshLoader) {
+        this.refreshLoader = refreshLoader;
+    }
+
+    @Override
+    public String getName() {
+        return sharedCache.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return sharedCache.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        ValueWrapper value = localCache.getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        long invalidation = invalidations.get();
+        value = sharedCache.get(key);
+        if (value == null) {
+            sharedMisses.increment();
+            return null;
+        }
+        sharedHits.increment();
+        refreshAhead(key);
+        return storeLocally(key, new SimpleValueWrapper(value.get()), invalidation);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper value = get(key);
+        if (value == null) {
+            return null;
+        }
+        if (type != null && value.get() != null && !type.isInstance(value.get())) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value.get());
+        }
+        return (T) value.get();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+            && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            // Values read by a write transaction may not be committed, and its evictions are only applied after the commit
+            return load(key, valueLoader);
+        }
+        ValueWrapper value = localCache.getIfPresent(key);
+        if (value != null) {
+            return (T) value.get();
+        }
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        CompletableFuture<Object> inProgress = loads.putIfAbsent(key, load);
+        if (inProgress != null) {
+            coalescedLoads.increment();
+            return (T) await(inProgress);
+        }
+        try {
+            long invalidation = invalidations.get();
+            value = sharedCache.get(key);
+            Object loaded;
+            if (value != null) {
+                sharedHits.increment();
+                loaded = value.get();
+                refreshAhead(key);
+            } else {
+                sharedMisses.increment();
+                loaded = sharedCache.get(key, valueLoader);
+            }
+            storeLocally(key, new SimpleValueWrapper(loaded), invalidation);
+            load.complete(loaded);
+            return (T) loaded;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(key, load);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        long invalidation = invalidations.get();
+        sharedCache.put(key, value);
+        storeLocally(key, new SimpleValueWrapper(value), invalidation);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        long invalidation = invalidations.get();
+        ValueWrapper existing = sharedCache.putIfAbsent(key, value);
+        storeLocally(key, new SimpleValueWrapper(existing == null ? value : existing.get()), invalidation);
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        sharedCache.evict(key);
+        invalidate(key);
+    }
+
+    @Override
+    public void clear() {
+        sharedCache.clear();
+        invalidate(null);
+    }
+
+    /**
+     * Evict the local copy of an entry written by another member.
+     *
+     * @param key the key of the entry, or {@code null} for all entries.
+     */
+    public void evictLocal(Object key) {
+        // Count the invalidation before evicting, so that reads in progress don't store what they read
+        invalidations.incrementAndGet();
+        if (key == null) {
+            localCache.invalidateAll();
+        } else {
+            localCache.invalidate(key);
+        }
+    }
+
+    public CacheStats getLocalStats() {
+        return localCache.stats();
+    }
+
+    public long getLocalSize() {
+        return localCache.estimatedSize();
+    }
+
+    public long getSharedHitCount() {
+        return sharedHits.sum();
+    }
+
+    public long getSharedMissCount() {
+        return sharedMisses.sum();
+    }
+
+    /**
+     * @return the number of loads which waited for the load of the same key in progress on this member.
+     */
+    public long getCoalescedLoadCount() {
+        return coalescedLoads.sum();
+    }
+
+    /**
+     * @return the number of entries reloaded ahead of their expiry.
+     */
+    public long getRefreshCount() {
+        return refreshes.sum();
+    }
+
+    /**
+     * @return the ratio of the reads missing the local copies which were served by the shared cache.
+     */
+    public double getSharedHitRatio() {
+        long hits = sharedHits.sum();
+        long requests = hits + sharedMisses.sum();
+        return requests == 0 ? 1.0 : (double) hits / requests;
+    }
+
+    private void invalidate(Object key) {
+        evictLocal(key);
+        invalidationListener.accept(getName(), key);
+    }
+
+    private static <T> T load(Object key, Callable<T> valueLoader) {
+        try {
+            return valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw (Error) e.getCause();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void refreshAhead(Object key) {
+        Function<Object, ?> loader = refreshLoader;
+        if (refreshAhead.isZero() || loader == null) {
+            return;
+        }
+        IMap<Object, Object> map = (IMap<Object, Object>) sharedCache.getNativeCache();
+        EntryView<Object, Object> entry = map.getEntryView(key);
+        if (entry == null || entry.getExpirationTime() - System.currentTimeMillis() > refreshAhead.toMillis()
+            || !refreshing.add(key)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    Object loaded = loader.apply(key);
+                    // Only replaces the value read, so that a value evicted in the meantime is not stored again
+                    if (loaded != null && map.replace(key, entry.getValue(), loaded)) {
+                        refreshes.increment();
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("Could not refresh {} of cache {}: {}", key, getName(), e.getMessage());
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(key);
+        }
+    }
+
+    private ValueWrapper storeLocally(Object key, ValueWrapper value, long invalidation) {
+        // Storing and evicting a key are serialized, so an invalidation either removes the copy or prevents storing it
+        localCache.asMap().compute(key, (k, current) -> invalidations.get() == invalidation ? value : current);
+        return value;
+    }
+}
@@ -0,0 +1,245 @@
+package com.themkers.inventario.config;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.core.ITopic;
+import com.hazelcast.core.Message;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.transaction.AbstractTransactionSupportingCacheManager;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * A {@link CacheManager} putting a local {@link TwoTierCache} in front of the Hazelcast caches configured under
+ * {@code application.near-cache.caches}, the other caches being served by Hazelcast only.
+ * <p>
+ * Evictions from a two-tier cache are published on a Hazelcast topic, so that the other members evict their local
+ * copy. Puts and evictions happen after the commit of the current transaction, if any, except for the values
+ * loaded by {@link Cache#get(Object, java.util.concurrent.Callable)}, stored as soon as loaded.
+ * <p>
+ * Entries of the caches with a {@code refresh-ahead-seconds} are reloaded by a small pool of daemon threads, with the
+ * loader {@link #registerRefreshLoader registered} for the cache.
+ * <p>
+ * The {@code generational} caches are {@link GenerationalCache}s: clearing them moves all the members to a new
+ * generation of keys, announced on another topic, instead of clearing the Hazelcast map and the local copies.
+ */
+public class TwoTierCacheManager extends AbstractTransactionSupportingCacheManager implements MeterBinder {
+
+    public static final String INVALIDATION_TOPIC = "near-cache-invalidations";
+
+    public static final String GENERATION_TOPIC = "cache-generations";
+
+    public static final String GENERATIONS_MAP = "cache-generations";
+
+    private static final int REFRESH_THREADS = 2;
+
+    private final Logger log = LoggerFactory.getLogger(TwoTierCacheManager.class);
+
+    private final CacheManager sharedCacheManager;
+
+    private final ITopic<Invalidation> invalidationTopic;
+
+    private final ITopic<Generation> generationTopic;
+
+    private final Map<String, TwoTierCache> twoTierCaches = new LinkedHashMap<>();
+
+    private final Map<String, GenerationalCache> generationalCaches = new LinkedHashMap<>();
+
+    private final ExecutorService refreshExecutor;
+
+    public TwoTierCacheManager(CacheManager sharedCacheManager, HazelcastInstance hazelcastInstance,
+                               Map<String, ApplicationProperties.NearCache.CacheSpec> nearCaches) {
+        this.sharedCacheManager = sharedCacheManager;
+        this.invalidationTopic = hazelcastInstance.getTopic(INVALIDATION_TOPIC);
+        this.generationTopic = hazelcastInstance.getTopic(GENERATION_TOPIC);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("cache-refresh-");
+        threadFactory.setDaemon(true);
+        this.refreshExecutor = Executors.newFixedThreadPool(REFRESH_THREADS, threadFactory);
+        nearCaches.forEach((name, spec) -> twoTierCaches.put(name, new TwoTierCache(sharedCacheManager.getCache(name),
+            spec.getMaxEntries(), Duration.ofSeconds(spec.getTimeToLiveSeconds()), this::publishInvalidation,
+            Duration.ofSeconds(spec.getRefreshAheadSeconds()), refreshExecutor)));
+        IMap<String, Long> generations = hazelcastInstance.getMap(GENERATIONS_MAP);
+        nearCaches.forEach((name, spec) -> {
+            if (spec.isGenerational()) {
+                generationalCaches.put(name, new GenerationalCache(twoTierCaches.get(name), generations, this::publishGeneration));
+            }
+        });
+        this.invalidationTopic.addMessageListener(this::onInvalidation);
+        this.generationTopic.addMessageListener(this::onGeneration);
+        setTransactionAware(true);
+    }
+
+    @Override
+    protected Collection<? extends Cache> loadCaches() {
+        List<Cache> caches = new ArrayList<>();
+        twoTierCaches.forEach((name, cache) -> caches.add(generationalCaches.containsKey(name) ? generationalCaches.get(name) : cache));
+        return caches;
+    }
+
+    @Override
+    protected Cache getMissingCache(String name) {
+        return sharedCacheManager.getCache(name);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        twoTierCaches.forEach((name, cache) -> {
+            Gauge.builder("cache.tier.hit.ratio", cache, c -> c.getLocalStats().hitRate())
+                .tag("cache", name).tag("tier", "local")
+                .description("The ratio of the reads served by the local copies")
+                .register(registry);
+            Gauge.builder("cache.tier.hit.ratio", cache, TwoTierCache::getSharedHitRatio)
+                .tag("cache", name).tag("tier", "shared")
+                .description("The ratio of the reads missing the local copies which were served by Hazelcast")
+                .register(registry);
+            FunctionCounter.builder("cache.tier.gets", cache, c -> c.getLocalStats().hitCount())
+                .tag("cache", name).tag("tier", "local").tag("result", "hit")
+                .register(registry);
+            FunctionCounter.builder("cache.tier.gets", cache, c -> c.getLocalStats().missCount())
+                .tag("cache", name).tag("tier", "local").tag("result", "miss")
+                .register(registry);
+            FunctionCounter.builder("cache.tier.gets", cache, TwoTierCache::getSharedHitCount)
+                .tag("cache", name).tag("tier", "shared").tag("result", "hit")
+                .register(registry);
+            FunctionCounter.builder("cache.tier.gets", cache, TwoTierCache::getSharedMissCount)
+                .tag("cache", name).tag("tier", "shared").tag("result", "miss")
+                .register(registry);
+            FunctionCounter.builder("cache.loads.coalesced", cache, TwoTierCache::getCoalescedLoadCount)
+                .tag("cache", name)
+                .description("The loads which waited for the load of the same key in progress on the member")
+                .register(registry);
+            FunctionCounter.builder("cache.refreshes", cache, TwoTierCache::getRefreshCount)
+                .tag("cache", name)
+                .description("The entries reloaded ahead of their expiry")
+                .register(registry);
+            Gauge.builder("cache.tier.size", cache, TwoTierCache::getLocalSize)
+                .tag("cache", name).tag("tier", "local")
+                .description("The number of local copies")
+                .register(registry);
+        });
+    }
+
+    /**
+     * Register the loader of the entries of a two-tier cache refreshed ahead of their expiry.
+     *
+     * @param name the name of the cache.
+     * @param refreshLoader the function loading the value of a key, outside of any transaction and security context.
+     */
+    public void registerRefreshLoader(String name, Function<Object, ?> refreshLoader) {
+        TwoTierCache cache = twoTierCaches.get(name);
+        if (cache != null) {
+            cache.setRefreshLoader(refreshLoader);
+        }
+    }
+
+    /**
+     * Get the two-tier cache of a name, without the transaction-aware decoration.
+     *
+     * @param name the name of the cache.
+     * @return the two-tier cache, or {@code null} if this cache has no local tier.
+     */
+    public TwoTierCache getTwoTierCache(String name) {
+        return twoTierCaches.get(name);
+    }
+
+    private void publishInvalidation(String cacheName, Object key) {
+        invalidationTopic.publish(new Invalidation(cacheName, key));
+    }
+
+    private void publishGeneration(String cacheName, long generation) {
+        generationTopic.publish(new Generation(cacheName, generation));
+    }
+
+    private void onGeneration(Message<Generation> message) {
+        Generation generation = message.getMessageObject();
+        GenerationalCache cache = generationalCaches.get(generation.getCacheName());
+        if (cache != null) {
+            log.trace("Moving {} to generation {}", generation.getCacheName(), generation.getGeneration());
+            cache.advanceTo(generation.getGeneration());
+        }
+    }
+
+    private void onInvalidation(Message<Invalidation> message) {
+        if (message.getPublishingMember() != null && message.getPublishingMember().localMember()) {
+            return;
+        }
+        Invalidation invalidation = message.getMessageObject();
+        TwoTierCache cache = twoTierCaches.get(invalidation.getCacheName());
+        if (cache != null) {
+            log.trace("Evicting local copy of {} from {}", invalidation.getKey(), invalidation.getCacheName());
+            cache.evictLocal(invalidation.getKey());
+        }
+    }
+
+    /**
+     * An eviction from a two-tier cache, of an entry or of the whole cache.
+     */
+    public static final class Invalidation implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String cacheName;
+
+        private final Object key;
+
+        public Invalidation(String cacheName, Object key) {
+            this.cacheName = cacheName;
+            this.key = key;
+        }
+
+        public String getCacheName() {
+            return cacheName;
+        }
+
+        /**
+         * @return the key of the evicted entry, or {@code null} if the whole cache was cleared.
+         */
+        public Object getKey() {
+            return key;
+        }
+    }
+
+    /**
+     * The new generation of a generational cache.
+     */
+    public static final class Generation implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String cacheName;
+
+        private final long generation;
+
+        public Generation(String cacheName, long generation) {
+            this.cacheName = cacheName;
+            this.generation = generation;
+        }
+
+        public String getCacheName() {
+            return cacheName;
+        }
+
+        public long getGeneration() {
+            return generation;
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.themkers.inventario.domain;
 
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
 
 import java.io.Serializable;
@@ -12,7 +15,8 @@ import java.math.BigDecimal;
  */
 @Entity
 @Table(name = "producto")
-public class Producto implements Serializable {
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
+public class Producto extends AbstractAuditingEntity implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
@@ -27,6 +31,11 @@ public class Producto implements Serializable {
     @Column(name = "precio", precision = 21, scale = 2)
     private BigDecimal precio;
 
+    // Primitive, so that the references built from an id alone are detached entities rather than transient ones
+    @Version
+    @Column(name = "version", nullable = false)
+    private long version;
+
     // jhipster-needle-entity-add-field - JHipster will add fields here, do not remove
     public Long getId() {
         return id;
@@ -61,6 +70,14 @@ public class Producto implements Serializable {
     public void setPrecio(BigDecimal precio) {
         this.precio = precio;
     }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
     // jhipster-needle-entity-add-getters-setters - JHipster will add getters and setters here, do not remove
 
     @Override
@@ -2,6 +2,9 @@ package com.themkers.inventario.domain;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
 import javax.validation.constraints.*;
 
@@ -13,7 +16,8 @@ import java.util.Objects;
  */
 @Entity
 @Table(name = "stock")
-public class Stock implements Serializable {
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
+public class Stock extends AbstractAuditingEntity implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
@@ -31,6 +35,11 @@ public class Stock implements Serializable {
     @JsonIgnoreProperties("stocks")
     private Producto producto;
 
+    // Primitive, so that the references built from an id alone are detached entities rather than transient ones
+    @Version
+    @Column(name = "version", nullable = false)
+    private long version;
+
     // jhipster-needle-entity-add-field - JHipster will add fields here, do not remove
     public Long getId() {
         return id;
@@ -65,6 +74,14 @@ public class Stock implements Serializable {
     public void setProducto(Producto producto) {
         this.producto = producto;
     }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
     // jhipster-needle-entity-add-getters-setters - JHipster will add getters and setters here, do not remove
 
     @Override
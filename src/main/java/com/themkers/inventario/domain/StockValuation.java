@@ -0,0 +1,68 @@
+package com.themkers.inventario.domain;
+
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * The valuation of all the stocks, the sum of their quantities times the prices of their productos, as of the last
+ * {@link StockValuationDelta deltas} folded into it. It is a single row, of slot {@value #TOTAL_SLOT}.
+ */
+@Entity
+@Table(name = "stock_valuation")
+public class StockValuation implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int TOTAL_SLOT = 0;
+
+    @Id
+    @Column(name = "slot")
+    private Integer slot;
+
+    @NotNull
+    @Column(name = "total", precision = 38, scale = 2, nullable = false)
+    private BigDecimal total;
+
+    public Integer getSlot() {
+        return slot;
+    }
+
+    public void setSlot(Integer slot) {
+        this.slot = slot;
+    }
+
+    public BigDecimal getTotal() {
+        return total;
+    }
+
+    public void setTotal(BigDecimal total) {
+        this.total = total;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StockValuation)) {
+            return false;
+        }
+        return slot != null && slot.equals(((StockValuation) o).slot);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31;
+    }
+
+    @Override
+    public String toString() {
+        return "StockValuation{" +
+            "slot=" + getSlot() +
+            ", total=" + getTotal() +
+            "}";
+    }
+}
@@ -0,0 +1,71 @@
+package com.themkers.inventario.domain;
+
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * A change of the valuation of all the stocks, not yet folded into the {@link StockValuation}.
+ */
+@Entity
+@Table(name = "stock_valuation_delta")
+public class StockValuationDelta implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
+    @SequenceGenerator(name = "sequenceGenerator")
+    private Long id;
+
+    @NotNull
+    @Column(name = "amount", precision = 38, scale = 2, nullable = false)
+    private BigDecimal amount;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public StockValuationDelta amount(BigDecimal amount) {
+        this.amount = amount;
+        return this;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StockValuationDelta)) {
+            return false;
+        }
+        return id != null && id.equals(((StockValuationDelta) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31;
+    }
+
+    @Override
+    public String toString() {
+        return "StockValuationDelta{" +
+            "id=" + getId() +
+            ", amount=" + getAmount() +
+            "}";
+    }
+}
@@ -0,0 +1,8 @@
+package com.themkers.inventario.domain.enumeration;
+
+/**
+ * The OutboxEventType enumeration.
+ */
+public enum OutboxEventType {
+    SAVED, DELETED
+}
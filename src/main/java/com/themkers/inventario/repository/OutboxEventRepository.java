@@ -0,0 +1,30 @@
+package com.themkers.inventario.repository;
+
+import com.themkers.inventario.domain.OutboxEvent;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.util.List;
+
+/**
+ * Spring Data  repository for the OutboxEvent entity.
+ */
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Find and lock the next outbox events, in id order, skipping the events locked by other relays
+     * ({@code FOR UPDATE SKIP LOCKED}, on the databases supporting it).
+     *
+     * @param pageable the maximum number of events.
+     * @return the events.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2")) // LockOptions.SKIP_LOCKED
+    @Query("select e from OutboxEvent e order by e.id")
+    List<OutboxEvent> findNextForUpdate(Pageable pageable);
+}
@@ -2,13 +2,68 @@ package com.themkers.inventario.repository;
 
 import com.themkers.inventario.domain.Producto;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
 /**
  * Spring Data  repository for the Producto entity.
  */
 @SuppressWarnings("unused")
 @Repository
 public interface ProductoRepository extends JpaRepository<Producto, Long>, JpaSpecificationExecutor<Producto> {
+
+    int STREAM_FETCH_SIZE = 1000;
+
+    /**
+     * Find the productos modified after a keyset position, in (last modified date, id) order.
+     *
+     * @param date the last modified date of the position.
+     * @param id the id of the position.
+     * @param until the latest last modified date to return.
+     * @param pageable the maximum number of productos.
+     * @return the productos.
+     */
+    @Query("select p from Producto p where (p.lastModifiedDate > :date or (p.lastModifiedDate = :date and p.id > :id))" +
+        " and p.lastModifiedDate <= :until order by p.lastModifiedDate, p.id")
+    List<Producto> findModifiedAfter(@Param("date") Instant date, @Param("id") Long id, @Param("until") Instant until, Pageable pageable);
+
+    /**
+     * Read the id and nombre of all the productos from a forward-only cursor, {@value #STREAM_FETCH_SIZE} rows at a time.
+     * The stream must be closed, within the transaction it was opened in.
+     *
+     * @return the id and nombre of each producto.
+     */
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE))
+    @Query("select p.id, p.nombre from Producto p")
+    Stream<Object[]> streamIdAndNombre();
+
+    @Query("select min(p.id) from Producto p")
+    Optional<Long> findMinId();
+
+    @Query("select max(p.id) from Producto p")
+    Optional<Long> findMaxId();
+
+    List<Producto> findByIdBetween(Long from, Long to);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select p from Producto p where p.id = :id")
+    Optional<Producto> findByIdForUpdate(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("select p from Producto p where p.id = :id")
+    Optional<Producto> findByIdForShare(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("select p from Producto p where p.id in :ids order by p.id")
+    List<Producto> findByIdInForShare(@Param("ids") Collection<Long> ids);
 }
@@ -2,13 +2,99 @@ package com.themkers.inventario.repository;
 
 import com.themkers.inventario.domain.Stock;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 /**
  * Spring Data  repository for the Stock entity.
  */
 @SuppressWarnings("unused")
 @Repository
-public interface StockRepository extends JpaRepository<Stock, Long>, JpaSpecificationExecutor<Stock> {
+public interface StockRepository extends JpaRepository<Stock, Long>, JpaSpecificationExecutor<Stock>, StockRepositoryCustom {
+
+    // The producto is fetched in the same query, instead of one select per distinct producto.
+
+    @Override
+    @EntityGraph(attributePaths = "producto")
+    Page<Stock> findAll(Pageable pageable);
+
+    @Override
+    @EntityGraph(attributePaths = "producto")
+    List<Stock> findAll(Specification<Stock> spec);
+
+    @Override
+    @EntityGraph(attributePaths = "producto")
+    Page<Stock> findAll(Specification<Stock> spec, Pageable pageable);
+
+    @EntityGraph(attributePaths = "producto")
+    List<Stock> findByIdIn(Collection<Long> ids);
+
+    /**
+     * Find the stocks modified after a keyset position, in (last modified date, id) order.
+     *
+     * @param date the last modified date of the position.
+     * @param id the id of the position.
+     * @param until the latest last modified date to return.
+     * @param pageable the maximum number of stocks.
+     * @return the stocks.
+     */
+    @EntityGraph(attributePaths = "producto")
+    @Query("select s from Stock s where (s.lastModifiedDate > :date or (s.lastModifiedDate = :date and s.id > :id))" +
+        " and s.lastModifiedDate <= :until order by s.lastModifiedDate, s.id")
+    List<Stock> findModifiedAfter(@Param("date") Instant date, @Param("id") Long id, @Param("until") Instant until, Pageable pageable);
+
+    @Query("select s from Stock s left join fetch s.producto where s.id in :ids")
+    List<Stock> findWithProductoByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select s.cantidad from Stock s where s.id = :id")
+    Optional<Long> findCantidadById(@Param("id") Long id);
+
+    @Query("select s.producto.id from Stock s where s.id = :id")
+    Optional<Long> findProductoIdById(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from Stock s where s.id = :id")
+    Optional<Stock> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * Lock the stocks of a producto, in id order like the other writers locking several stocks.
+     *
+     * @param productoId the id of the producto.
+     * @return the stocks.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from Stock s where s.producto.id = :productoId order by s.id")
+    List<Stock> findByProductoIdForUpdate(@Param("productoId") Long productoId);
+
+    @Query("select distinct s.producto.id from Stock s where s.id in :ids")
+    List<Long> findProductoIdsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select s.producto.precio from Stock s where s.id = :id")
+    Optional<BigDecimal> findPrecioById(@Param("id") Long id);
+
+    /**
+     * Find the value of a stock: its quantity times the price of its producto.
+     *
+     * @param id the id of the stock.
+     * @return the value, empty if the stock doesn't exist or has no priced producto.
+     */
+    @Query("select s.cantidad * s.producto.precio from Stock s where s.id = :id")
+    Optional<BigDecimal> findValueById(@Param("id") Long id);
+
+    @Query("select coalesce(sum(s.cantidad * s.producto.precio), 0) from Stock s where s.id in :ids")
+    BigDecimal sumValueByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select coalesce(sum(s.cantidad), 0) from Stock s where s.producto.id = :productoId")
+    long sumCantidadByProductoId(@Param("productoId") Long productoId);
 }
@@ -0,0 +1,44 @@
+package com.themkers.inventario.repository;
+
+/**
+ * Custom operations of the {@link StockRepository}.
+ */
+public interface StockRepositoryCustom {
+
+    /**
+     * Atomically add a signed delta to the quantity of a stock, as long as the result is not negative.
+     * The version, last modified date and last modifier of the stock are updated as by any other update, the last
+     * modifier being the current auditor.
+     * <p>
+     * Only the adjusted stock is evicted from the second-level cache and detached from the persistence context,
+     * where a JPQL bulk update would invalidate the whole {@code Stock} region and clear the persistence context.
+     *
+     * @param id the id of the stock.
+     * @param delta the signed amount to add.
+     * @return the number of updated rows: {@code 0} if the stock doesn't exist or would go negative.
+     */
+    int adjustCantidad(Long id, long delta);
+
+    /**
+     * Atomically add a signed delta to the quantity of a stock, on behalf of a given modifier, as long as the result
+     * is not negative.
+     *
+     * @param id the id of the stock.
+     * @param delta the signed amount to add.
+     * @param modifiedBy the login recorded as the last modifier of the stock.
+     * @return the number of updated rows: {@code 0} if the stock doesn't exist or would go negative.
+     * @see #adjustCantidad(Long, long)
+     */
+    int adjustCantidad(Long id, long delta, String modifiedBy);
+
+    /**
+     * Update the last modified date and last modifier of the stocks of a producto, so that the changes of the stocks return them again,
+     * with the new nombre of their producto.
+     * <p>
+     * Only these stocks are evicted from the second-level cache and detached from the persistence context.
+     *
+     * @param productoId the id of the producto.
+     * @return the number of updated stocks.
+     */
+    int touchByProductoId(Long productoId);
+}
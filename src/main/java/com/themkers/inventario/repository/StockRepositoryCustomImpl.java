@@ -0,0 +1,116 @@
+package com.themkers.inventario.repository;
+
+import com.themkers.inventario.config.Constants;
+import com.themkers.inventario.domain.Stock;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.query.NativeQuery;
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Implementation of the {@link StockRepositoryCustom} operations.
+ */
+public class StockRepositoryCustomImpl implements StockRepositoryCustom {
+
+    /**
+     * The query space of the adjustments, matching no entity, so that Hibernate doesn't invalidate any cache region
+     * after them: the updated stocks are evicted by hand.
+     */
+    private static final String ADJUSTMENT_QUERY_SPACE = "stock_adjustment";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final AuditorAware<String> auditorAware;
+
+    public StockRepositoryCustomImpl(AuditorAware<String> auditorAware) {
+        this.auditorAware = auditorAware;
+    }
+
+    @Override
+    public int adjustCantidad(Long id, long delta) {
+        return adjustCantidad(id, delta, currentAuditor());
+    }
+
+    @Override
+    public int adjustCantidad(Long id, long delta, String modifiedBy) {
+        entityManager.flush();
+        int updated = entityManager.createNativeQuery("update stock set cantidad = cantidad + :delta, version = version + 1," +
+            " last_modified_date = :now, last_modified_by = :modifiedBy where id = :id and cantidad + :delta >= 0")
+            .unwrap(NativeQuery.class)
+            .addSynchronizedQuerySpace(ADJUSTMENT_QUERY_SPACE)
+            .setParameter("delta", delta)
+            .setParameter("now", Instant.now())
+            .setParameter("modifiedBy", modifiedBy)
+            .setParameter("id", id)
+            .executeUpdate();
+        if (updated > 0) {
+            evictUpdated(Collections.singletonList(id));
+        }
+        return updated;
+    }
+
+    @Override
+    public int touchByProductoId(Long productoId) {
+        // Locked in id order, like the other writers locking several stocks
+        List<Long> ids = ((List<?>) entityManager.createNativeQuery("select id from stock where producto_id = :productoId" +
+            " order by id for update")
+            .setParameter("productoId", productoId)
+            .getResultList()).stream()
+            .map(id -> ((Number) id).longValue())
+            .collect(Collectors.toList());
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        int updated = entityManager.createNativeQuery("update stock set last_modified_date = :now, last_modified_by = :modifiedBy" +
+            " where producto_id = :productoId")
+            .unwrap(NativeQuery.class)
+            .addSynchronizedQuerySpace(ADJUSTMENT_QUERY_SPACE)
+            .setParameter("now", Instant.now())
+            .setParameter("modifiedBy", currentAuditor())
+            .setParameter("productoId", productoId)
+            .executeUpdate();
+        evictUpdated(ids);
+        return updated;
+    }
+
+    private String currentAuditor() {
+        return auditorAware.getCurrentAuditor().orElse(Constants.SYSTEM_ACCOUNT);
+    }
+
+    private void evictUpdated(List<Long> ids) {
+        ids.forEach(this::detach);
+        ids.forEach(this::evict);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // A concurrent read may cache the previous state until the commit
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    ids.forEach(StockRepositoryCustomImpl.this::evict);
+                }
+            });
+        }
+    }
+
+    private void detach(Long id) {
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        Object managed = session.getPersistenceContext().getEntity(
+            session.generateEntityKey(id, session.getEntityPersister(Stock.class.getName(), null)));
+        if (managed != null) {
+            entityManager.detach(managed);
+        }
+    }
+
+    private void evict(Long id) {
+        entityManager.getEntityManagerFactory().getCache().evict(Stock.class, id);
+    }
+}
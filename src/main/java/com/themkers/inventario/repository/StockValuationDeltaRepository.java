@@ -0,0 +1,19 @@
+package com.themkers.inventario.repository;
+
+import com.themkers.inventario.domain.StockValuationDelta;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Spring Data  repository for the StockValuationDelta entity.
+ */
+@Repository
+public interface StockValuationDeltaRepository extends JpaRepository<StockValuationDelta, Long> {
+
+    @Query("select d from StockValuationDelta d order by d.id")
+    List<StockValuationDelta> findOldest(Pageable pageable);
+}
@@ -0,0 +1,32 @@
+package com.themkers.inventario.repository;
+
+import com.themkers.inventario.domain.StockValuation;
+
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import java.math.BigDecimal;
+import java.util.Optional;
+
+/**
+ * Spring Data  repository for the StockValuation entity.
+ */
+@Repository
+public interface StockValuationRepository extends JpaRepository<StockValuation, Integer> {
+
+    /**
+     * Get the valuation of all the stocks: the total plus the deltas not folded into it yet, read in a single
+     * statement so that a concurrent folding is seen either entirely or not at all.
+     *
+     * @return the valuation.
+     */
+    @Query(value = "select (select coalesce(sum(v.total), 0) from stock_valuation v)" +
+        " + (select coalesce(sum(d.amount), 0) from stock_valuation_delta d)", nativeQuery = true)
+    BigDecimal sumTotal();
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select v from StockValuation v where v.slot = :slot")
+    Optional<StockValuation> findBySlotForUpdate(@Param("slot") int slot);
+}
@@ -0,0 +1,38 @@
+package com.themkers.inventario.repository;
+
+import com.themkers.inventario.domain.Tombstone;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Spring Data  repository for the Tombstone entity.
+ */
+@Repository
+public interface TombstoneRepository extends JpaRepository<Tombstone, Long> {
+
+    /**
+     * Find the tombstones of an entity type after a keyset position, in (deleted date, id) order.
+     *
+     * @param entityType the entity type.
+     * @param date the deleted date of the position.
+     * @param id the id of the position.
+     * @param until the latest deleted date to return.
+     * @param pageable the maximum number of tombstones.
+     * @return the tombstones.
+     */
+    @Query("select t from Tombstone t where t.entityType = :entityType" +
+        " and (t.deletedDate > :date or (t.deletedDate = :date and t.id > :id)) and t.deletedDate <= :until" +
+        " order by t.deletedDate, t.id")
+    List<Tombstone> findDeletedAfter(@Param("entityType") String entityType, @Param("date") Instant date, @Param("id") Long id,
+                                     @Param("until") Instant until, Pageable pageable);
+
+    @Modifying
+    @Query("delete from Tombstone t where t.deletedDate < :date")
+    int deleteByDeletedDateBefore(@Param("date") Instant date);
+}
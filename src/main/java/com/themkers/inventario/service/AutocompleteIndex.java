@@ -0,0 +1,320 @@
+package com.themkers.inventario.service;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.LongPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * An immutable index of names, answering prefix queries on each of their words.
+ * <p>
+ * Names are stored in a few primitive arrays rather than in objects per entry: the original names and their
+ * normalized keys (lower-case, without accents) are concatenated in two {@code char} pools, and the start of each
+ * word of the keys is stored in an {@code int} array sorted by the rest of the key from that word. A query is then
+ * a binary search of the normalized prefix, followed by a scan of the matching words.
+ */
+final class AutocompleteIndex {
+
+    static final AutocompleteIndex EMPTY = new AutocompleteIndex(new long[0], new String[0]);
+
+    private final long[] ids;
+
+    private final char[] names;
+
+    // Start of the name of each entry in the names pool, followed by the end of the pool
+    private final int[] nameOffsets;
+
+    private final char[] keys;
+
+    // Start of the key of each entry in the keys pool, followed by the end of the pool
+    private final int[] keyOffsets;
+
+    // Start of each word in the keys pool, sorted by the key from there
+    private final int[] words;
+
+    // Entry of each word
+    private final int[] wordEntries;
+
+    /**
+     * Build an index.
+     *
+     * @param ids the ids of the entries.
+     * @param names the names of the entries, at the same positions as their ids.
+     */
+    AutocompleteIndex(long[] ids, String[] names) {
+        int size = ids.length;
+        this.ids = ids;
+        this.nameOffsets = new int[size + 1];
+        this.keyOffsets = new int[size + 1];
+        StringBuilder namePool = new StringBuilder();
+        StringBuilder keyPool = new StringBuilder();
+        int wordCount = 0;
+        for (int i = 0; i < size; i++) {
+            String key = normalize(names[i]);
+            nameOffsets[i] = namePool.length();
+            keyOffsets[i] = keyPool.length();
+            namePool.append(names[i]);
+            keyPool.append(key);
+            wordCount += countWords(key);
+        }
+        nameOffsets[size] = namePool.length();
+        keyOffsets[size] = keyPool.length();
+        this.names = namePool.toString().toCharArray();
+        this.keys = keyPool.toString().toCharArray();
+        int[] starts = new int[wordCount];
+        int[] entries = new int[wordCount];
+        int w = 0;
+        for (int i = 0; i < size; i++) {
+            for (int c = keyOffsets[i]; c < keyOffsets[i + 1]; c++) {
+                if (isWordStart(keys, keyOffsets[i], c)) {
+                    starts[w] = c;
+                    entries[w++] = i;
+                }
+            }
+        }
+        // Sorting boxed positions only while building: the index itself keeps the primitive arrays
+        Integer[] order = IntStream.range(0, wordCount).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, (a, b) -> compareWords(starts[a], entries[a], starts[b], entries[b]));
+        this.words = new int[wordCount];
+        this.wordEntries = new int[wordCount];
+        for (int i = 0; i < wordCount; i++) {
+            words[i] = starts[order[i]];
+            wordEntries[i] = entries[order[i]];
+        }
+    }
+
+    /**
+     * Normalize a name, or a prefix, to the form names are matched in: lower-case, without accents.
+     *
+     * @param text the name.
+     * @return the normalized name.
+     */
+    static String normalize(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                normalized.append(c);
+            }
+        }
+        return normalized.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Find the word of a normalized name with the first completion of a normalized prefix, in the order of {@link #search}.
+     *
+     * @param key the normalized name.
+     * @param prefix the normalized prefix.
+     * @return the position of the word, or {@code -1} if no word starts with the prefix.
+     */
+    static int matchWord(String key, String prefix) {
+        char[] chars = key.toCharArray();
+        int best = -1;
+        for (int c = 0; c < chars.length; c++) {
+            if (isWordStart(chars, 0, c) && key.startsWith(prefix, c)
+                && (best < 0 || key.substring(c).compareTo(key.substring(best)) < 0)) {
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return the number of entries.
+     */
+    int size() {
+        return ids.length;
+    }
+
+    /**
+     * @return the estimated size of the index in memory, in bytes: the size of its arrays.
+     */
+    long memoryBytes() {
+        return 8L * ids.length + 2L * (names.length + keys.length)
+            + 4L * (nameOffsets.length + keyOffsets.length + words.length + wordEntries.length);
+    }
+
+    private String name(int entry) {
+        return new String(names, nameOffsets[entry], nameOffsets[entry + 1] - nameOffsets[entry]);
+    }
+
+    /**
+     * Find the entries with a word starting with a prefix.
+     * <p>
+     * Entries are returned once, in the order of their key from their first matching word in that order: shorter
+     * completions of the prefix first, names starting with the prefix before the ones with a later word starting with it.
+     *
+     * @param prefix the normalized prefix, not empty.
+     * @param limit the maximum number of entries.
+     * @param excluded the ids of the entries to skip.
+     * @param matches receives the matching entries, and the rest of their key from the matching word.
+     */
+    void search(String prefix, int limit, LongPredicate excluded, List<Match> matches) {
+        int low = 0;
+        int high = words.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareToPrefix(words[mid], wordEntries[mid], prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        Set<Integer> found = new HashSet<>();
+        for (int w = low; w < words.length && found.size() < limit && startsWith(words[w], wordEntries[w], prefix); w++) {
+            int entry = wordEntries[w];
+            if (excluded.test(ids[entry]) || !found.add(entry)) {
+                continue;
+            }
+            matches.add(new Match(ids[entry], name(entry), new String(keys, words[w], keyOffsets[entry + 1] - words[w]),
+                words[w] == keyOffsets[entry]));
+        }
+    }
+
+    /**
+     * Call an action for each entry.
+     *
+     * @param action the action, receiving the id and name of each entry.
+     */
+    void forEach(EntryConsumer action) {
+        for (int i = 0; i < ids.length; i++) {
+            action.accept(ids[i], name(i));
+        }
+    }
+
+    private boolean startsWith(int word, int entry, String prefix) {
+        if (keyOffsets[entry + 1] - word < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (keys[word + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int compareToPrefix(int word, int entry, String prefix) {
+        int length = Math.min(keyOffsets[entry + 1] - word, prefix.length());
+        for (int i = 0; i < length; i++) {
+            int diff = keys[word + i] - prefix.charAt(i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return keyOffsets[entry + 1] - word < prefix.length() ? -1 : 0;
+    }
+
+    private int compareWords(int a, int entryA, int b, int entryB) {
+        int endA = keyOffsets[entryA + 1];
+        int endB = keyOffsets[entryB + 1];
+        int length = Math.min(endA - a, endB - b);
+        for (int i = 0; i < length; i++) {
+            int diff = keys[a + i] - keys[b + i];
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        int diff = Integer.compare(endA - a, endB - b);
+        if (diff != 0) {
+            return diff;
+        }
+        // Names starting with the word first, then by id
+        diff = Boolean.compare(a != keyOffsets[entryA], b != keyOffsets[entryB]);
+        return diff != 0 ? diff : Long.compare(ids[entryA], ids[entryB]);
+    }
+
+    private static int countWords(String key) {
+        char[] chars = key.toCharArray();
+        int count = 0;
+        for (int c = 0; c < chars.length; c++) {
+            if (isWordStart(chars, 0, c)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isWordStart(char[] chars, int from, int c) {
+        return Character.isLetterOrDigit(chars[c]) && (c == from || !Character.isLetterOrDigit(chars[c - 1]));
+    }
+
+    /**
+     * Collects the entries of a new index, in growing arrays.
+     */
+    static final class Builder {
+
+        private long[] ids = new long[1024];
+
+        private String[] names = new String[1024];
+
+        private int size;
+
+        Builder add(long id, String name) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                names = Arrays.copyOf(names, size * 2);
+            }
+            ids[size] = id;
+            names[size++] = name;
+            return this;
+        }
+
+        AutocompleteIndex build() {
+            return new AutocompleteIndex(Arrays.copyOf(ids, size), Arrays.copyOf(names, size));
+        }
+    }
+
+    /**
+     * Receives the entries of an index.
+     */
+    @FunctionalInterface
+    interface EntryConsumer {
+
+        void accept(long id, String name);
+    }
+
+    /**
+     * An entry matching a prefix, with the rest of its key from the matching word, by which matches are ordered.
+     */
+    static final class Match implements Comparable<Match> {
+
+        private final long id;
+
+        private final String name;
+
+        private final String completion;
+
+        private final boolean first;
+
+        Match(long id, String name, String completion, boolean first) {
+            this.id = id;
+            this.name = name;
+            this.completion = completion;
+            this.first = first;
+        }
+
+        long getId() {
+            return id;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        @Override
+        public int compareTo(Match other) {
+            int diff = completion.compareTo(other.completion);
+            if (diff != 0) {
+                return diff;
+            }
+            diff = Boolean.compare(!first, !other.first);
+            return diff != 0 ? diff : Long.compare(id, other.id);
+        }
+    }
+}
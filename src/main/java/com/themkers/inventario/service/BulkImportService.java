@@ -0,0 +1,288 @@
+package com.themkers.inventario.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.themkers.inventario.config.ApplicationProperties;
+import com.themkers.inventario.domain.Producto;
+import com.themkers.inventario.domain.Stock;
+import com.themkers.inventario.repository.StockRepository;
+import com.themkers.inventario.service.dto.BulkImportResultDTO;
+import com.themkers.inventario.service.dto.ProductoChangeDTO;
+import com.themkers.inventario.service.dto.ProductoDTO;
+import com.themkers.inventario.service.dto.StockDTO;
+import com.themkers.inventario.service.mapper.ProductoMapper;
+import com.themkers.inventario.service.mapper.StockMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Service for importing large files of new {@link Producto} and {@link Stock} entities.
+ * <p>
+ * Files are read line by line from the given stream, and rows are written in chunks of
+ * {@code application.bulk-import.chunk-size}, each chunk in its own transaction, so that Hibernate can send them in
+ * JDBC batches and the memory used doesn't depend on the size of the file. When a chunk fails, its rows are
+ * written again one by one to find the failing ones. Imported entities are recorded in the outbox and imported stocks
+ * are added to the valuation of the stocks, in the transactions of their chunks, and imported productos are published
+ * to the {@link ProductoAutocompleteService} once their chunks are committed.
+ */
+@Service
+public class BulkImportService {
+
+    private final Logger log = LoggerFactory.getLogger(BulkImportService.class);
+
+    private final ApplicationProperties.BulkImport properties;
+
+    private final ObjectMapper objectMapper;
+
+    private final Validator validator;
+
+    private final EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ProductoMapper productoMapper;
+
+    private final StockMapper stockMapper;
+
+    private final StockValuationService stockValuationService;
+
+    private final StockRepository stockRepository;
+
+    private final OutboxService outboxService;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public BulkImportService(ApplicationProperties applicationProperties, ObjectMapper objectMapper, Validator validator,
+                             EntityManager entityManager, PlatformTransactionManager transactionManager,
+                             ProductoMapper productoMapper, StockMapper stockMapper, StockValuationService stockValuationService,
+                             StockRepository stockRepository, OutboxService outboxService,
+                             ApplicationEventPublisher eventPublisher) {
+        this.properties = applicationProperties.getBulkImport();
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.productoMapper = productoMapper;
+        this.stockMapper = stockMapper;
+        this.stockValuationService = stockValuationService;
+        this.stockRepository = stockRepository;
+        this.outboxService = outboxService;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Import new productos.
+     *
+     * @param in the stream to read the file from.
+     * @param format the format of the file.
+     * @return the import report.
+     * @throws IOException if the stream can't be read.
+     */
+    @CacheEvict(cacheNames = {ProductoQueryService.PRODUCTO_QUERIES_CACHE, ProductoService.PRODUCTOS_BY_ID_CACHE}, allEntries = true)
+    public BulkImportResultDTO importProductos(InputStream in, FileFormat format) throws IOException {
+        log.debug("Request to import Productos from {}", format);
+        return importRows(in, format, ProductoDTO.class, ProductoDTO::getId, productoMapper::toEntity, this::recordProductos);
+    }
+
+    private void recordProductos(List<Producto> productos) {
+        for (Producto producto : productos) {
+            outboxService.recordSaved(Producto.class, producto.getId(), productoMapper.toDto(producto));
+            eventPublisher.publishEvent(new ProductoChangeDTO(producto.getId(), producto.getNombre(), false));
+        }
+    }
+
+    /**
+     * Import new stocks.
+     *
+     * @param in the stream to read the file from.
+     * @param format the format of the file.
+     * @return the import report.
+     * @throws IOException if the stream can't be read.
+     */
+    @CacheEvict(cacheNames = StockQueryService.STOCK_QUERIES_CACHE, allEntries = true)
+    public BulkImportResultDTO importStocks(InputStream in, FileFormat format) throws IOException {
+        log.debug("Request to import Stocks from {}", format);
+        return importRows(in, format, StockDTO.class, StockDTO::getId, stockMapper::toEntity, this::recordStocks);
+    }
+
+    private void recordStocks(List<Stock> stocks) {
+        List<Long> ids = stocks.stream().map(Stock::getId).collect(Collectors.toList());
+        stockValuationService.recordNewStocks(ids);
+        // Read again, as the written stocks only reference their productos by id
+        for (Stock stock : stockRepository.findWithProductoByIdIn(ids)) {
+            outboxService.recordSaved(Stock.class, stock.getId(), stockMapper.toDto(stock));
+        }
+    }
+
+    private <D, E> BulkImportResultDTO importRows(InputStream in, FileFormat format, Class<D> dtoClass,
+                                                  Function<D, Long> getId, Function<D, E> toEntity,
+                                                  Consumer<List<E>> written) throws IOException {
+        BulkImportResultDTO result = new BulkImportResultDTO();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        List<Row<D>> chunk = new ArrayList<>(properties.getChunkSize());
+        List<String> header = null;
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            if (format == FileFormat.CSV && header == null) {
+                header = parseCsvLine(line).stream().map(String::trim).collect(Collectors.toList());
+                continue;
+            }
+            D dto;
+            try {
+                dto = format == FileFormat.CSV ? readCsvRow(header, line, dtoClass) : objectMapper.readValue(line, dtoClass);
+            } catch (IOException | IllegalArgumentException e) {
+                addError(result, lineNumber, "Malformed row: " + e.getMessage());
+                continue;
+            }
+            if (getId.apply(dto) != null) {
+                addError(result, lineNumber, "A new entity cannot already have an ID");
+                continue;
+            }
+            Set<ConstraintViolation<D>> violations = validator.validate(dto);
+            if (!violations.isEmpty()) {
+                addError(result, lineNumber, violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .collect(Collectors.joining(", ")));
+                continue;
+            }
+            chunk.add(new Row<>(lineNumber, dto));
+            if (chunk.size() >= properties.getChunkSize()) {
+                writeChunk(chunk, toEntity, written, result);
+                chunk.clear();
+            }
+        }
+        writeChunk(chunk, toEntity, written, result);
+        log.debug("Imported {} rows, {} failed", result.getImported(), result.getFailed());
+        return result;
+    }
+
+    private <D, E> void writeChunk(List<Row<D>> chunk, Function<D, E> toEntity, Consumer<List<E>> written,
+                                   BulkImportResultDTO result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            persist(chunk, toEntity, written);
+            result.setImported(result.getImported() + chunk.size());
+        } catch (RuntimeException e) {
+            log.debug("Chunk import failed, retrying its rows one by one: {}", e.getMessage());
+            for (Row<D> row : chunk) {
+                try {
+                    persist(Collections.singletonList(row), toEntity, written);
+                    result.setImported(result.getImported() + 1);
+                } catch (RuntimeException rowException) {
+                    addError(result, row.line, NestedExceptionUtils.getMostSpecificCause(rowException).getMessage());
+                }
+            }
+        }
+    }
+
+    private <D, E> void persist(List<Row<D>> rows, Function<D, E> toEntity, Consumer<List<E>> written) {
+        transactionTemplate.execute(status -> {
+            List<E> entities = new ArrayList<>(rows.size());
+            for (Row<D> row : rows) {
+                E entity = toEntity.apply(row.dto);
+                entityManager.persist(entity);
+                entities.add(entity);
+            }
+            entityManager.flush();
+            entityManager.clear();
+            written.accept(entities);
+            return null;
+        });
+    }
+
+    private void addError(BulkImportResultDTO result, long line, String message) {
+        result.setFailed(result.getFailed() + 1);
+        if (result.getErrors().size() < properties.getMaxReportedErrors()) {
+            result.getErrors().add(new BulkImportResultDTO.RowError(line, message));
+        } else {
+            result.setErrorsTruncated(true);
+        }
+    }
+
+    private <D> D readCsvRow(List<String> header, String line, Class<D> dtoClass) {
+        List<String> values = parseCsvLine(line);
+        if (values.size() != header.size()) {
+            throw new IllegalArgumentException("expected " + header.size() + " columns but found " + values.size());
+        }
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            String value = values.get(i).trim();
+            fields.put(header.get(i), value.isEmpty() ? null : value);
+        }
+        return objectMapper.convertValue(fields, dtoClass);
+    }
+
+    /**
+     * Split a CSV line into its values, handling double-quoted values with {@code ""} escapes.
+     */
+    private static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    private static final class Row<D> {
+
+        private final long line;
+
+        private final D dto;
+
+        private Row(long line, D dto) {
+            this.line = line;
+            this.dto = dto;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.themkers.inventario.service;
+
+import com.themkers.inventario.config.ApplicationProperties;
+import com.themkers.inventario.domain.AbstractAuditingEntity;
+import com.themkers.inventario.domain.Tombstone;
+import com.themkers.inventario.repository.TombstoneRepository;
+import com.themkers.inventario.service.dto.ChangesDTO;
+import com.themkers.inventario.service.dto.ChangesToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Service tracking the changes of entities for incremental synchronization: modifications are found from the
+ * last modified dates of the entities, and deletions from the {@link Tombstone}s recorded by their services.
+ * <p>
+ * Changes are only returned once older than {@code application.changes.settle-time-ms}, so that the changes of
+ * transactions committed after others, but dated before them, are not skipped by the tokens of their clients.
+ */
+@Service
+@Transactional
+public class ChangeTrackingService {
+
+    private final Logger log = LoggerFactory.getLogger(ChangeTrackingService.class);
+
+    private final TombstoneRepository tombstoneRepository;
+
+    private final ApplicationProperties.Changes properties;
+
+    public ChangeTrackingService(TombstoneRepository tombstoneRepository, ApplicationProperties applicationProperties) {
+        this.tombstoneRepository = tombstoneRepository;
+        this.properties = applicationProperties.getChanges();
+    }
+
+    /**
+     * Record the deletion of an entity, in the transaction deleting it.
+     *
+     * @param entityType the entity type.
+     * @param id the id of the deleted entity.
+     */
+    public void recordDeletion(Class<?> entityType, Long id) {
+        log.debug("Request to record the deletion of {} : {}", entityType.getSimpleName(), id);
+        tombstoneRepository.save(new Tombstone()
+            .entityType(entityType.getSimpleName())
+            .entityId(id)
+            .deletedDate(Instant.now()));
+    }
+
+    /**
+     * Get the changes of an entity type since a token.
+     * <p>
+     * Deletions are not returned past the last returned modification, so that they are always applied after the
+     * modifications of their entities.
+     *
+     * @param entityType the entity type.
+     * @param since the token of the previous changes, or {@code null} to get all the entities.
+     * @param limit the maximum number of modified entities, and of deleted ones, to return.
+     * @param finder the query of the modified entities.
+     * @param getId the id of an entity.
+     * @param toDto the mapping of an entity to its DTO.
+     * @param <E> the entity type.
+     * @param <D> the DTO type.
+     * @return the changes, with the token of the next ones.
+     * @throws ChangesTokenExpiredException if the tombstones following the token have been purged.
+     */
+    @Transactional(readOnly = true)
+    public <E extends AbstractAuditingEntity, D> ChangesDTO<D> findChanges(Class<E> entityType, ChangesToken since, int limit,
+                                                                          ModifiedEntityFinder<E> finder, Function<E, Long> getId,
+                                                                          Function<E, D> toDto) {
+        Instant now = Instant.now();
+        if (since != null && since.getDeletedDate().isBefore(now.minus(properties.getTombstoneRetentionDays(), ChronoUnit.DAYS))) {
+            throw new ChangesTokenExpiredException(since);
+        }
+        Instant until = now.minusMillis(properties.getSettleTimeMs());
+        // Without a token, all the entities are returned, and none of the older deletions
+        ChangesToken from = since != null ? since : new ChangesToken(Instant.EPOCH, 0, until, Long.MAX_VALUE);
+
+        List<E> modified = finder.findModifiedAfter(from.getModifiedDate(), from.getModifiedId(), until, PageRequest.of(0, limit + 1));
+        boolean moreModified = modified.size() > limit;
+        Instant deletedUntil = until;
+        if (moreModified) {
+            modified = modified.subList(0, limit);
+            deletedUntil = modified.get(limit - 1).getLastModifiedDate();
+        }
+        List<Tombstone> deleted = tombstoneRepository.findDeletedAfter(entityType.getSimpleName(), from.getDeletedDate(),
+            from.getDeletedId(), deletedUntil, PageRequest.of(0, limit + 1));
+        boolean moreDeleted = deleted.size() > limit;
+        if (moreDeleted) {
+            deleted = deleted.subList(0, limit);
+        }
+
+        // Exhausted positions move to the end of the returned range, so that the token never expires while in use
+        Instant modifiedDate = from.getModifiedDate();
+        long modifiedId = from.getModifiedId();
+        if (moreModified) {
+            E last = modified.get(limit - 1);
+            modifiedDate = last.getLastModifiedDate();
+            modifiedId = getId.apply(last);
+        } else if (until.isAfter(modifiedDate)) {
+            modifiedDate = until;
+            modifiedId = Long.MAX_VALUE;
+        }
+        Instant deletedDate = from.getDeletedDate();
+        long deletedId = from.getDeletedId();
+        if (moreDeleted) {
+            Tombstone last = deleted.get(limit - 1);
+            deletedDate = last.getDeletedDate();
+            deletedId = last.getId();
+        } else if (deletedUntil.isAfter(deletedDate)) {
+            deletedDate = deletedUntil;
+            deletedId = Long.MAX_VALUE;
+        }
+
+        ChangesDTO<D> changes = new ChangesDTO<>();
+        changes.setChanged(modified.stream().map(toDto).collect(Collectors.toList()));
+        changes.setDeleted(deleted.stream().map(Tombstone::getEntityId).collect(Collectors.toList()));
+        changes.setToken(new ChangesToken(modifiedDate, modifiedId, deletedDate, deletedId).encode());
+        changes.setMore(moreModified || moreDeleted);
+        return changes;
+    }
+
+    /**
+     * Purge the tombstones older than {@code application.changes.tombstone-retention-days}.
+     */
+    @Scheduled(fixedDelayString = "${application.changes.purge-interval-ms:3600000}")
+    public void purgeTombstones() {
+        int purged = tombstoneRepository.deleteByDeletedDateBefore(
+            Instant.now().minus(properties.getTombstoneRetentionDays(), ChronoUnit.DAYS));
+        if (purged > 0) {
+            log.info("Purged {} tombstones", purged);
+        }
+    }
+
+    /**
+     * The query of the entities modified after a keyset position, in (last modified date, id) order.
+     *
+     * @param <E> the entity type.
+     */
+    @FunctionalInterface
+    public interface ModifiedEntityFinder<E> {
+
+        List<E> findModifiedAfter(Instant date, Long id, Instant until, Pageable pageable);
+    }
+}
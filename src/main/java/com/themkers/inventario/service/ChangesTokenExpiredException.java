@@ -0,0 +1,22 @@
+package com.themkers.inventario.service;
+
+import com.themkers.inventario.service.dto.ChangesToken;
+
+/**
+ * Thrown when a changes token is older than the retained tombstones: its client must synchronize from scratch.
+ */
+public class ChangesTokenExpiredException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ChangesToken token;
+
+    public ChangesTokenExpiredException(ChangesToken token) {
+        super("Changes token expired, synchronize from scratch");
+        this.token = token;
+    }
+
+    public ChangesToken getToken() {
+        return token;
+    }
+}
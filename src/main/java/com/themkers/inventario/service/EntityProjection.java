@@ -0,0 +1,198 @@
+package com.themkers.inventario.service;
+
+import com.themkers.inventario.service.dto.SparseFieldset;
+
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * The columns of an entity, and of its associations, selected by a query to build its results directly,
+ * typically with a constructor expression building a DTO.
+ * <p>
+ * Projections can also be made of {@link Field}s, each selecting a single expression set on a new result, so that
+ * they can be narrowed down to a {@link SparseFieldset}: the expressions of the other fields, and their joins, are
+ * then left out of the query.
+ *
+ * @param <E> the entity type.
+ * @param <R> the result type.
+ */
+public final class EntityProjection<E, R> {
+
+    private final Class<E> entityType;
+
+    private final Class<R> resultType;
+
+    private final BiFunction<Root<E>, CriteriaBuilder, Selection<R>> selection;
+
+    private final Supplier<R> factory;
+
+    private final Map<String, Field<E, R, ?>> fields;
+
+    public EntityProjection(Class<E> entityType, Class<R> resultType, BiFunction<Root<E>, CriteriaBuilder, Selection<R>> selection) {
+        this.entityType = entityType;
+        this.resultType = resultType;
+        this.selection = selection;
+        this.factory = null;
+        this.fields = Collections.emptyMap();
+    }
+
+    private EntityProjection(Class<E> entityType, Class<R> resultType, Supplier<R> factory, List<Field<E, R, ?>> fields) {
+        this.entityType = entityType;
+        this.resultType = resultType;
+        this.selection = null;
+        this.factory = factory;
+        this.fields = Collections.unmodifiableMap(fields.stream()
+            .collect(Collectors.toMap(field -> field.name, field -> field, (a, b) -> a, LinkedHashMap::new)));
+    }
+
+    /**
+     * Create a projection made of fields.
+     *
+     * @param entityType the entity type.
+     * @param resultType the result type.
+     * @param factory the factory of empty results, on which the fields are set.
+     * @param fields the fields.
+     * @param <E> the entity type.
+     * @param <R> the result type.
+     * @return the projection.
+     */
+    @SafeVarargs
+    public static <E, R> EntityProjection<E, R> ofFields(Class<E> entityType, Class<R> resultType, Supplier<R> factory,
+                                                         Field<E, R, ?>... fields) {
+        List<Field<E, R, ?>> list = new ArrayList<>();
+        Collections.addAll(list, fields);
+        return new EntityProjection<>(entityType, resultType, factory, list);
+    }
+
+    public Class<E> getEntityType() {
+        return entityType;
+    }
+
+    public Class<R> getResultType() {
+        return resultType;
+    }
+
+    /**
+     * @return the type of the rows selected by the query: the result type, or {@link Tuple} for projections made
+     * of fields.
+     */
+    public Class<?> getQueryType() {
+        return selection != null ? resultType : Tuple.class;
+    }
+
+    /**
+     * @return the names of the fields of the projection, empty if it isn't made of fields.
+     */
+    public Set<String> getFieldNames() {
+        return fields.keySet();
+    }
+
+    /**
+     * Narrow the projection down to some of its fields.
+     *
+     * @param fieldset the fields to keep.
+     * @return the narrowed projection.
+     * @throws IllegalArgumentException if the projection isn't made of fields, or doesn't have one of them.
+     */
+    public EntityProjection<E, R> narrow(SparseFieldset fieldset) {
+        if (!fields.keySet().containsAll(fieldset.getNames())) {
+            throw new IllegalArgumentException("Unknown fields: " + fieldset);
+        }
+        return new EntityProjection<>(entityType, resultType, factory, fields.values().stream()
+            .filter(field -> fieldset.contains(field.name))
+            .collect(Collectors.toList()));
+    }
+
+    /**
+     * Build the selection of the projection, adding the joins it needs to the root.
+     * It is called after the restriction of the query is built, so the joins of the restriction can be reused.
+     *
+     * @param root the root of the query.
+     * @param cb the criteria builder.
+     * @return the selection, of the {@link #getQueryType() query type}.
+     */
+    public Selection<?> select(Root<E> root, CriteriaBuilder cb) {
+        if (selection != null) {
+            return selection.apply(root, cb);
+        }
+        return cb.tuple(fields.values().stream()
+            .map(field -> field.expression.apply(root, cb))
+            .toArray(Selection[]::new));
+    }
+
+    /**
+     * Convert a row selected by the query to a result.
+     *
+     * @param row the row, of the {@link #getQueryType() query type}.
+     * @return the result.
+     */
+    @SuppressWarnings("unchecked")
+    public R toResult(Object row) {
+        if (selection != null) {
+            return (R) row;
+        }
+        Tuple tuple = (Tuple) row;
+        R result = factory.get();
+        int i = 0;
+        for (Field<E, R, ?> field : fields.values()) {
+            field.set(result, tuple.get(i++));
+        }
+        return result;
+    }
+
+    /**
+     * Create a field of a projection.
+     *
+     * @param name the name of the field.
+     * @param expression the expression selecting the value of the field, adding the joins it needs to the root.
+     * @param setter the setter of the field on the result.
+     * @param <E> the entity type.
+     * @param <R> the result type.
+     * @param <V> the value type.
+     * @return the field.
+     */
+    public static <E, R, V> Field<E, R, V> field(String name, BiFunction<Root<E>, CriteriaBuilder, Expression<V>> expression,
+                                                 BiConsumer<R, V> setter) {
+        return new Field<>(name, expression, setter);
+    }
+
+    /**
+     * A field of a projection, selected by a single expression.
+     *
+     * @param <E> the entity type.
+     * @param <R> the result type.
+     * @param <V> the value type.
+     */
+    public static final class Field<E, R, V> {
+
+        private final String name;
+
+        private final BiFunction<Root<E>, CriteriaBuilder, Expression<V>> expression;
+
+        private final BiConsumer<R, V> setter;
+
+        private Field(String name, BiFunction<Root<E>, CriteriaBuilder, Expression<V>> expression, BiConsumer<R, V> setter) {
+            this.name = name;
+            this.expression = expression;
+            this.setter = setter;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void set(R result, Object value) {
+            setter.accept(result, (V) value);
+        }
+    }
+}
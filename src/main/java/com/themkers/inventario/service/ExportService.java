@@ -0,0 +1,151 @@
+package com.themkers.inventario.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.themkers.inventario.config.ApplicationProperties;
+import com.themkers.inventario.domain.Producto;
+import com.themkers.inventario.domain.Stock;
+import com.themkers.inventario.service.dto.ProductoCriteria;
+import com.themkers.inventario.service.dto.ProductoDTO;
+import com.themkers.inventario.service.dto.StockCriteria;
+import com.themkers.inventario.service.dto.StockDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Service for exporting all the {@link Producto} and {@link Stock} entities matching criteria.
+ * <p>
+ * Rows are read from a forward-only database cursor, {@code application.export.fetch-size} at a time, as DTO
+ * projections which are never attached to the persistence context, and each row is written as soon as it is read.
+ * The memory used doesn't depend on the number of rows, and the first rows are sent while the next ones are read.
+ * Files use the same columns as bulk imports.
+ */
+@Service
+@Transactional(readOnly = true)
+public class ExportService {
+
+    private static final TypeReference<Map<String, Object>> ROW_TYPE = new TypeReference<Map<String, Object>>() {
+    };
+
+    private final Logger log = LoggerFactory.getLogger(ExportService.class);
+
+    private final ApplicationProperties.Export properties;
+
+    private final ObjectMapper objectMapper;
+
+    private final StockQueryService stockQueryService;
+
+    private final ProductoQueryService productoQueryService;
+
+    public ExportService(ApplicationProperties applicationProperties, ObjectMapper objectMapper,
+                         StockQueryService stockQueryService, ProductoQueryService productoQueryService) {
+        this.properties = applicationProperties.getExport();
+        this.objectMapper = objectMapper;
+        this.stockQueryService = stockQueryService;
+        this.productoQueryService = productoQueryService;
+    }
+
+    /**
+     * Export the productos matching criteria, in id order.
+     *
+     * @param criteria the criteria which the productos should match.
+     * @param format the format of the file.
+     * @param out the stream to write the file to.
+     * @return the number of exported productos.
+     * @throws IOException if the stream can't be written.
+     */
+    public long exportProductos(ProductoCriteria criteria, FileFormat format, OutputStream out) throws IOException {
+        log.debug("Request to export Productos to {} : {}", format, criteria);
+        try (Stream<ProductoDTO> rows = productoQueryService.streamByCriteria(criteria, properties.getFetchSize())) {
+            return write(rows, ProductoDTO.class, format, out);
+        }
+    }
+
+    /**
+     * Export the stocks matching criteria, in id order.
+     *
+     * @param criteria the criteria which the stocks should match.
+     * @param format the format of the file.
+     * @param out the stream to write the file to.
+     * @return the number of exported stocks.
+     * @throws IOException if the stream can't be written.
+     */
+    public long exportStocks(StockCriteria criteria, FileFormat format, OutputStream out) throws IOException {
+        log.debug("Request to export Stocks to {} : {}", format, criteria);
+        try (Stream<StockDTO> rows = stockQueryService.streamByCriteria(criteria, properties.getFetchSize())) {
+            return write(rows, StockDTO.class, format, out);
+        }
+    }
+
+    private <D> long write(Stream<D> rows, Class<D> dtoClass, FileFormat format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        ObjectWriter jsonWriter = objectMapper.writerFor(dtoClass);
+        List<String> columns = objectMapper.getSerializationConfig()
+            .introspect(objectMapper.constructType(dtoClass))
+            .findProperties().stream()
+            .map(BeanPropertyDefinition::getName)
+            .collect(Collectors.toList());
+        if (format == FileFormat.CSV) {
+            writer.write(String.join(",", columns));
+            writer.write('\n');
+            writer.flush();
+        }
+        long count = 0;
+        for (D row : (Iterable<D>) rows::iterator) {
+            if (format == FileFormat.CSV) {
+                writeCsvRow(writer, columns, objectMapper.convertValue(row, ROW_TYPE));
+            } else {
+                writer.write(jsonWriter.writeValueAsString(row));
+                writer.write('\n');
+            }
+            count++;
+            // Send the first row at once, then one fetch at a time
+            if (count == 1 || count % properties.getFetchSize() == 0) {
+                writer.flush();
+            }
+        }
+        writer.flush();
+        log.debug("Exported {} rows", count);
+        return count;
+    }
+
+    private void writeCsvRow(Writer writer, List<String> columns, Map<String, Object> row) throws IOException {
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            Object value = row.get(columns.get(i));
+            if (value != null) {
+                writer.write(csvValue(value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString()));
+            }
+        }
+        writer.write('\n');
+    }
+
+    /**
+     * Quote a CSV value if needed, with {@code ""} escapes.
+     */
+    static String csvValue(String value) {
+        if (value.isEmpty() || value.chars().noneMatch(c -> c == ',' || c == '"' || c == '\n' || c == '\r')) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
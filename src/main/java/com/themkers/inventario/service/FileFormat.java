@@ -0,0 +1,25 @@
+package com.themkers.inventario.service;
+
+/**
+ * The file formats of bulk imports and exports.
+ */
+public enum FileFormat {
+    /**
+     * Comma separated values, with a header row naming the DTO fields.
+     */
+    CSV("text/csv"),
+    /**
+     * Newline delimited JSON, one DTO per line.
+     */
+    NDJSON("application/x-ndjson");
+
+    private final String mediaType;
+
+    FileFormat(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+}
@@ -0,0 +1,216 @@
+package com.themkers.inventario.service;
+
+import com.themkers.inventario.config.ApplicationProperties;
+import com.themkers.inventario.config.Constants;
+import com.themkers.inventario.domain.Stock;
+import com.themkers.inventario.repository.StockRepository;
+import com.themkers.inventario.service.dto.StockDTO;
+import com.themkers.inventario.service.mapper.StockMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service accumulating adjustments of "hot" stocks in memory, and writing their net deltas back to the database
+ * periodically.
+ * <p>
+ * Adjustments of the stocks listed in {@code application.hot-stock.stock-ids} go to an in-memory counter instead of
+ * the database, so the database write load depends on the flush interval instead of the request rate.
+ * Pending deltas are lost if the node crashes, so {@code application.hot-stock.flush-interval-ms} bounds the
+ * durability window. They are also flushed when the application shuts down. Each written delta is recorded in the
+ * outbox, in the transaction writing it.
+ * <p>
+ * A decrement is only accepted if the known quantity (last flushed quantity plus pending deltas) stays positive.
+ * The check and the decrement are a single compare-and-set of the pending delta, so concurrent decrements which fit
+ * together are all accepted. All the adjustments of a stock contend on that one counter: striping it would spread
+ * them, but the floor check would then need per-stripe reservations refilled from a shared pool, which fail spuriously
+ * when the pool is spread across stripes. A compare-and-set costs far less than the database write it replaces, so
+ * the single counter is kept.
+ * <p>
+ * The floor only holds on a single node: each node checks its own counter against the quantity it last flushed, so
+ * a cluster of N nodes can accept up to N times the stock. Deltas which can't be written back, because other
+ * writers made the stock go down in the meantime, stay pending until restocking makes them fit: the adjustments
+ * they come from were already accepted, and the failure is only logged.
+ */
+@Service
+public class HotStockCounterService {
+
+    private final Logger log = LoggerFactory.getLogger(HotStockCounterService.class);
+
+    private final ApplicationProperties.HotStock properties;
+
+    private final StockRepository stockRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final CacheManager cacheManager;
+
+    private final StockValuationService stockValuationService;
+
+    private final StockMapper stockMapper;
+
+    private final OutboxService outboxService;
+
+    private final ConcurrentMap<Long, HotCounter> counters = new ConcurrentHashMap<>();
+
+    public HotStockCounterService(ApplicationProperties applicationProperties, StockRepository stockRepository,
+                                  PlatformTransactionManager transactionManager, CacheManager cacheManager,
+                                  StockValuationService stockValuationService, StockMapper stockMapper,
+                                  OutboxService outboxService) {
+        this.properties = applicationProperties.getHotStock();
+        this.stockRepository = stockRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.cacheManager = cacheManager;
+        this.stockValuationService = stockValuationService;
+        this.stockMapper = stockMapper;
+        this.outboxService = outboxService;
+    }
+
+    /**
+     * Whether adjustments of the stock are accumulated in memory.
+     *
+     * @param id the id of the stock.
+     * @return {@code true} if the stock is a hot stock.
+     */
+    public boolean isHot(Long id) {
+        return properties.isEnabled() && properties.getStockIds().contains(id);
+    }
+
+    /**
+     * Add a signed delta to the in-memory counter of a hot stock.
+     *
+     * @param id the id of the stock.
+     * @param delta the signed amount to add to the quantity.
+     * @return the known quantity after the adjustment.
+     * @throws StockNotFoundException if the stock doesn't exist.
+     * @throws InsufficientStockException if the adjustment would make the known quantity negative.
+     */
+    public long adjust(Long id, long delta) {
+        HotCounter counter = counters.computeIfAbsent(id, this::loadCounter);
+        if (delta >= 0) {
+            return counter.base + counter.pending.addAndGet(delta);
+        }
+        long pending;
+        long available;
+        do {
+            pending = counter.pending.get();
+            available = counter.base + pending;
+            if (available + delta < 0) {
+                throw new InsufficientStockException(id, available, delta);
+            }
+        } while (!counter.pending.compareAndSet(pending, pending + delta));
+        return available + delta;
+    }
+
+    /**
+     * Unconditionally revert an adjustment previously accepted by {@link #adjust(Long, long)}.
+     *
+     * @param id the id of the stock.
+     * @param delta the delta of the adjustment to revert.
+     */
+    public void revert(Long id, long delta) {
+        HotCounter counter = counters.get(id);
+        if (counter != null) {
+            counter.pending.addAndGet(-delta);
+        }
+    }
+
+    /**
+     * Get the delta of a stock which is not written to the database yet.
+     *
+     * @param id the id of the stock.
+     * @return the pending delta, {@code 0} if there is none.
+     */
+    public long getPendingDelta(Long id) {
+        HotCounter counter = counters.get(id);
+        return counter == null ? 0 : counter.pending.get();
+    }
+
+    /**
+     * Write the pending deltas of all the hot stocks to the database, each one in its own transaction.
+     */
+    @Scheduled(fixedDelayString = "${application.hot-stock.flush-interval-ms:1000}")
+    public void flush() {
+        boolean written = false;
+        for (Map.Entry<Long, HotCounter> entry : counters.entrySet()) {
+            try {
+                written |= flush(entry.getKey(), entry.getValue());
+            } catch (RuntimeException e) {
+                log.error("Could not flush hot stock {}, will retry: {}", entry.getKey(), e.getMessage());
+            }
+        }
+        if (written) {
+            Optional.ofNullable(cacheManager.getCache(StockQueryService.STOCK_QUERIES_CACHE)).ifPresent(Cache::clear);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        log.info("Flushing hot stock counters");
+        flush();
+    }
+
+    private boolean flush(Long id, HotCounter counter) {
+        long delta = counter.pending.get();
+        if (delta == 0) {
+            return false;
+        }
+        Optional<Long> flushed = transactionTemplate.execute(status -> {
+            // Written on behalf of all the requests which made the delta
+            if (stockRepository.adjustCantidad(id, delta, Constants.SYSTEM_ACCOUNT) == 0) {
+                return Optional.<Long>empty();
+            }
+            stockValuationService.recordAdjustment(id, delta);
+            Optional<StockDTO> result = stockRepository.findById(id).map(stockMapper::toDto);
+            result.ifPresent(stockDTO -> outboxService.recordSaved(Stock.class, id, stockDTO));
+            return result.map(StockDTO::getCantidad);
+        });
+        if (flushed.isPresent()) {
+            // Update the two halves of the known quantity in the order which never over-estimates it in between
+            if (delta > 0) {
+                counter.pending.addAndGet(-delta);
+                counter.base = flushed.get();
+            } else {
+                counter.base = flushed.get();
+                counter.pending.addAndGet(-delta);
+            }
+            log.debug("Flushed hot stock {} by {}, quantity is now {}", id, delta, flushed.get());
+            return true;
+        }
+        Optional<Long> current = stockRepository.findCantidadById(id);
+        if (current.isPresent()) {
+            counter.base = current.get();
+            log.warn("Could not flush hot stock {} by {}, only {} available: keeping the delta pending", id, delta, current.get());
+        } else {
+            counters.remove(id, counter);
+            log.warn("Hot stock {} was deleted, dropping its pending delta {}", id, delta);
+        }
+        return false;
+    }
+
+    private HotCounter loadCounter(Long id) {
+        HotCounter counter = new HotCounter();
+        counter.base = stockRepository.findCantidadById(id).orElseThrow(() -> new StockNotFoundException(id));
+        return counter;
+    }
+
+    private static final class HotCounter {
+
+        private final AtomicLong pending = new AtomicLong();
+
+        private volatile long base;
+    }
+}
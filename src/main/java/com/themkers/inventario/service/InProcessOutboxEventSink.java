@@ -0,0 +1,24 @@
+package com.themkers.inventario.service;
+
+import com.themkers.inventario.service.dto.OutboxEventDTO;
+
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.List;
+
+/**
+ * Sink publishing the outbox events as application events, to the listeners of {@link OutboxEventDTO}s of this node.
+ */
+public class InProcessOutboxEventSink implements OutboxEventSink {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public InProcessOutboxEventSink(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public void publish(List<OutboxEventDTO> events) {
+        events.forEach(eventPublisher::publishEvent);
+    }
+}
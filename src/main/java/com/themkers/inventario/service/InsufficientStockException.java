@@ -0,0 +1,34 @@
+package com.themkers.inventario.service;
+
+/**
+ * Thrown when a stock adjustment would make the quantity of a stock negative.
+ */
+public class InsufficientStockException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long stockId;
+
+    private final long available;
+
+    private final long delta;
+
+    public InsufficientStockException(Long stockId, long available, long delta) {
+        super("Insufficient stock for stock " + stockId + ": available " + available + ", requested delta " + delta);
+        this.stockId = stockId;
+        this.available = available;
+        this.delta = delta;
+    }
+
+    public Long getStockId() {
+        return stockId;
+    }
+
+    public long getAvailable() {
+        return available;
+    }
+
+    public long getDelta() {
+        return delta;
+    }
+}
@@ -0,0 +1,21 @@
+package com.themkers.inventario.service;
+
+import com.themkers.inventario.service.dto.OutboxEventDTO;
+
+import java.util.List;
+
+/**
+ * The destination of the events relayed from the outbox, such as a message broker. Declaring a bean of this type
+ * replaces the default {@link InProcessOutboxEventSink}.
+ */
+public interface OutboxEventSink {
+
+    /**
+     * Publish a batch of events. The events are removed from the outbox once this method returns, so it must only
+     * return once the destination has accepted all of them.
+     *
+     * @param events the events, in outbox order.
+     * @throws RuntimeException if the events can't be published: the whole batch is published again later.
+     */
+    void publish(List<OutboxEventDTO> events);
+}
@@ -0,0 +1,119 @@
+package com.themkers.inventario.service;
+
+import com.themkers.inventario.config.ApplicationProperties;
+import com.themkers.inventario.domain.OutboxEvent;
+import com.themkers.inventario.repository.OutboxEventRepository;
+import com.themkers.inventario.service.dto.OutboxEventDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Service relaying the events of the outbox to the {@link OutboxEventSink}.
+ * <p>
+ * Each batch is locked, published and deleted in a single transaction, skipping the events locked by the relays
+ * of the other nodes, so that nodes drain the outbox concurrently without publishing the same events. A batch is
+ * only deleted once the sink has accepted it, so events are delivered at least once: a failure, or a crash, makes
+ * the whole batch be published again.
+ */
+@Service
+public class OutboxRelayService {
+
+    private final Logger log = LoggerFactory.getLogger(OutboxRelayService.class);
+
+    private final OutboxEventRepository outboxEventRepository;
+
+    private final OutboxEventSink sink;
+
+    private final ApplicationProperties.Outbox properties;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Counter relayedCounter;
+
+    private final Counter failureCounter;
+
+    private final Timer lagTimer;
+
+    public OutboxRelayService(OutboxEventRepository outboxEventRepository, ObjectProvider<OutboxEventSink> sinks,
+                              ApplicationEventPublisher eventPublisher, ApplicationProperties applicationProperties,
+                              PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.sink = sinks.getIfAvailable(() -> new InProcessOutboxEventSink(eventPublisher));
+        this.properties = applicationProperties.getOutbox();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.relayedCounter = Counter.builder("outbox.relayed")
+            .description("Outbox events published to the sink")
+            .register(meterRegistry);
+        this.failureCounter = Counter.builder("outbox.relay.failures")
+            .description("Outbox batches which could not be published, and will be retried")
+            .register(meterRegistry);
+        this.lagTimer = Timer.builder("outbox.relay.lag")
+            .description("Time between the recording of outbox events and their publication")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Relay the events of the outbox, batch by batch, until it is drained or
+     * {@code application.outbox.max-batches-per-run} batches are relayed.
+     *
+     * @return the number of relayed events.
+     */
+    @Scheduled(fixedDelayString = "${application.outbox.relay-interval-ms:1000}")
+    public int relay() {
+        int relayed = 0;
+        try {
+            for (int i = 0; i < properties.getMaxBatchesPerRun(); i++) {
+                List<OutboxEvent> events = transactionTemplate.execute(status -> relayBatch());
+                Instant now = Instant.now();
+                events.forEach(event -> lagTimer.record(Duration.between(event.getCreatedDate(), now)));
+                relayedCounter.increment(events.size());
+                relayed += events.size();
+                if (events.size() < properties.getBatchSize()) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            failureCounter.increment();
+            log.warn("Could not relay outbox events, will retry: {}", e.getMessage());
+        }
+        return relayed;
+    }
+
+    private List<OutboxEvent> relayBatch() {
+        List<OutboxEvent> events = outboxEventRepository.findNextForUpdate(PageRequest.of(0, properties.getBatchSize()));
+        if (events.isEmpty()) {
+            return Collections.emptyList();
+        }
+        sink.publish(events.stream().map(this::toDto).collect(Collectors.toList()));
+        outboxEventRepository.deleteInBatch(events);
+        return events;
+    }
+
+    private OutboxEventDTO toDto(OutboxEvent event) {
+        OutboxEventDTO dto = new OutboxEventDTO();
+        dto.setId(event.getId());
+        dto.setAggregateType(event.getAggregateType());
+        dto.setAggregateId(event.getAggregateId());
+        dto.setEventType(event.getEventType());
+        dto.setPayload(event.getPayload());
+        dto.setCreatedDate(event.getCreatedDate());
+        return dto;
+    }
+}
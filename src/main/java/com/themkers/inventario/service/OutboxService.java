@@ -0,0 +1,71 @@
+package com.themkers.inventario.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.themkers.inventario.domain.OutboxEvent;
+import com.themkers.inventario.domain.enumeration.OutboxEventType;
+import com.themkers.inventario.repository.OutboxEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+/**
+ * Service recording the change events of entities in the outbox, in the transactions of the changes: an event is
+ * published by the {@link OutboxRelayService} if and only if its change is committed.
+ */
+@Service
+@Transactional(propagation = Propagation.MANDATORY)
+public class OutboxService {
+
+    private final Logger log = LoggerFactory.getLogger(OutboxService.class);
+
+    private final OutboxEventRepository outboxEventRepository;
+
+    private final ObjectMapper objectMapper;
+
+    public OutboxService(OutboxEventRepository outboxEventRepository, ObjectMapper objectMapper) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Record the creation or update of an entity.
+     *
+     * @param entityType the entity type.
+     * @param id the id of the saved entity.
+     * @param dto the DTO of the saved entity, published as the payload of the event.
+     */
+    public void recordSaved(Class<?> entityType, Long id, Object dto) {
+        log.debug("Request to record the save of {} : {}", entityType.getSimpleName(), id);
+        try {
+            record(entityType, id, OutboxEventType.SAVED, objectMapper.writeValueAsString(dto));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize " + dto, e);
+        }
+    }
+
+    /**
+     * Record the deletion of an entity.
+     *
+     * @param entityType the entity type.
+     * @param id the id of the deleted entity.
+     */
+    public void recordDeleted(Class<?> entityType, Long id) {
+        log.debug("Request to record the deletion of {} : {}", entityType.getSimpleName(), id);
+        record(entityType, id, OutboxEventType.DELETED, null);
+    }
+
+    private void record(Class<?> entityType, Long id, OutboxEventType eventType, String payload) {
+        outboxEventRepository.save(new OutboxEvent()
+            .aggregateType(entityType.getSimpleName())
+            .aggregateId(id)
+            .eventType(eventType)
+            .payload(payload)
+            .createdDate(Instant.now()));
+    }
+}
@@ -0,0 +1,246 @@
+package com.themkers.inventario.service;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.ITopic;
+import com.hazelcast.core.Message;
+import com.themkers.inventario.config.ApplicationProperties;
+import com.themkers.inventario.repository.ProductoRepository;
+import com.themkers.inventario.service.dto.ProductoChangeDTO;
+import com.themkers.inventario.service.dto.ProductoSuggestionDTO;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Service answering the autocompletion of producto nombres from memory.
+ * <p>
+ * The nombres are held in an immutable {@link AutocompleteIndex}, built from the database once the application is
+ * ready. The committed changes of the productos published by the {@link ProductoService}, and the ones of the other
+ * members of the cluster received from a Hazelcast topic, are kept beside the index until
+ * {@code application.autocomplete.max-pending-changes} of them trigger a rebuild in the background, from the previous
+ * index and the changes.
+ */
+@Service
+public class ProductoAutocompleteService {
+
+    static final String CHANGES_TOPIC = "producto-autocomplete-changes";
+
+    private static final long RETRY_DELAY_SECONDS = 10;
+
+    private final Logger log = LoggerFactory.getLogger(ProductoAutocompleteService.class);
+
+    private final ProductoRepository productoRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.Autocomplete properties;
+
+    private final ITopic<ProductoChangeDTO> changesTopic;
+
+    private final ScheduledExecutorService executor;
+
+    private final Timer buildTimer;
+
+    private final AtomicBoolean buildScheduled = new AtomicBoolean();
+
+    // The changes missing from the index, by producto id
+    private final Map<Long, PendingChange> pending = new ConcurrentHashMap<>();
+
+    private volatile AutocompleteIndex index = AutocompleteIndex.EMPTY;
+
+    private volatile boolean ready;
+
+    public ProductoAutocompleteService(ProductoRepository productoRepository, PlatformTransactionManager transactionManager,
+                                       ApplicationProperties applicationProperties, HazelcastInstance hazelcastInstance,
+                                       MeterRegistry meterRegistry) {
+        this.productoRepository = productoRepository;
+        // Not read-only, so that the index is read from the primary database and not from a lagging replica
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = applicationProperties.getAutocomplete();
+        this.changesTopic = hazelcastInstance.getTopic(CHANGES_TOPIC);
+        this.changesTopic.addMessageListener(this::onRemoteChange);
+        this.executor = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("producto-autocomplete-"));
+        this.buildTimer = Timer.builder("producto.autocomplete.build")
+            .description("Builds of the producto autocompletion index")
+            .register(meterRegistry);
+        Gauge.builder("producto.autocomplete.memory", this, service -> service.index.memoryBytes())
+            .description("Estimated memory used by the producto autocompletion index")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        Gauge.builder("producto.autocomplete.entries", this, service -> service.index.size())
+            .description("Productos in the autocompletion index")
+            .register(meterRegistry);
+        Gauge.builder("producto.autocomplete.pending", pending, Map::size)
+            .description("Producto changes waiting for the next build of the autocompletion index")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Build the index, in the background, once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        scheduleBuild();
+    }
+
+    /**
+     * @return whether the index has been built, and answers queries.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Suggest the productos with a word of their nombre starting with a prefix, ignoring case and accents.
+     * <p>
+     * Shorter completions of the prefix come first, and nombres starting with the prefix before the ones with a later
+     * word starting with it.
+     *
+     * @param prefix the prefix.
+     * @param limit the maximum number of productos.
+     * @return the productos, empty if the prefix has no letter or digit.
+     */
+    public List<ProductoSuggestionDTO> suggest(String prefix, int limit) {
+        log.debug("Request to autocomplete Productos : {}", prefix);
+        String key = AutocompleteIndex.normalize(prefix.trim());
+        if (key.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // The pending changes are read before the index, so that a rebuild in between can't hide them
+        Map<Long, PendingChange> changes = new HashMap<>(pending);
+        List<AutocompleteIndex.Match> matches = new ArrayList<>();
+        index.search(key, limit, changes::containsKey, matches);
+        changes.forEach((id, change) -> {
+            int word = change.key != null ? AutocompleteIndex.matchWord(change.key, key) : -1;
+            if (word >= 0) {
+                matches.add(new AutocompleteIndex.Match(id, change.nombre, change.key.substring(word), word == 0));
+            }
+        });
+        return matches.stream()
+            .sorted()
+            .limit(limit)
+            .map(match -> new ProductoSuggestionDTO(match.getId(), match.getName()))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Receive a producto change, once its transaction is committed, and publish it to the other members.
+     *
+     * @param change the change.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductoChange(ProductoChangeDTO change) {
+        apply(change);
+        changesTopic.publish(change);
+    }
+
+    private void onRemoteChange(Message<ProductoChangeDTO> message) {
+        if (message.getPublishingMember() != null && message.getPublishingMember().localMember()) {
+            return;
+        }
+        apply(message.getMessageObject());
+    }
+
+    private void apply(ProductoChangeDTO change) {
+        pending.put(change.getProductoId(), new PendingChange(change.isDeleted() ? null : change.getNombre()));
+        if (ready && pending.size() > properties.getMaxPendingChanges()) {
+            scheduleBuild();
+        }
+    }
+
+    private void scheduleBuild() {
+        if (buildScheduled.compareAndSet(false, true)) {
+            executor.execute(this::build);
+        }
+    }
+
+    private void build() {
+        try {
+            // The changes received until now are in the new index: read from the database, or merged from the pending ones
+            Map<Long, PendingChange> merged = new HashMap<>(pending);
+            AutocompleteIndex built = buildTimer.record(() -> ready ? rebuild(index, merged) : load());
+            index = built;
+            ready = true;
+            merged.forEach(pending::remove);
+            log.debug("Built Producto autocompletion index of {} entries, {} bytes", built.size(), built.memoryBytes());
+        } catch (RuntimeException e) {
+            log.warn("Could not build Producto autocompletion index: {}", e.getMessage());
+        } finally {
+            buildScheduled.set(false);
+        }
+        if (!ready) {
+            executor.schedule(this::scheduleBuild, RETRY_DELAY_SECONDS, TimeUnit.SECONDS);
+        } else if (pending.size() > properties.getMaxPendingChanges()) {
+            scheduleBuild();
+        }
+    }
+
+    private AutocompleteIndex load() {
+        return transactionTemplate.execute(status -> {
+            AutocompleteIndex.Builder builder = new AutocompleteIndex.Builder();
+            try (Stream<Object[]> rows = productoRepository.streamIdAndNombre()) {
+                rows.filter(row -> row[1] != null).forEach(row -> builder.add((Long) row[0], (String) row[1]));
+            }
+            return builder.build();
+        });
+    }
+
+    private AutocompleteIndex rebuild(AutocompleteIndex previous, Map<Long, PendingChange> changes) {
+        AutocompleteIndex.Builder builder = new AutocompleteIndex.Builder();
+        previous.forEach((id, nombre) -> {
+            if (!changes.containsKey(id)) {
+                builder.add(id, nombre);
+            }
+        });
+        changes.forEach((id, change) -> {
+            if (change.nombre != null) {
+                builder.add(id, change.nombre);
+            }
+        });
+        return builder.build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A change missing from the index: the new nombre of a producto, or {@code null} if it was deleted or has none.
+     */
+    private static final class PendingChange {
+
+        private final String nombre;
+
+        private final String key;
+
+        private PendingChange(String nombre) {
+            this.nombre = nombre;
+            this.key = nombre != null ? AutocompleteIndex.normalize(nombre) : null;
+        }
+    }
+}
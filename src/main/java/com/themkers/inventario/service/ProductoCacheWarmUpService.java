@@ -0,0 +1,314 @@
+package com.themkers.inventario.service;
+
+import com.hazelcast.core.EntryView;
+import com.hazelcast.core.IMap;
+import com.themkers.inventario.config.ApplicationProperties;
+import com.themkers.inventario.repository.ProductoRepository;
+import com.themkers.inventario.service.dto.ProductoDTO;
+import com.themkers.inventario.service.mapper.ProductoMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Service loading the productos into the {@code productos-by-id} cache when the application starts, so that the
+ * first requests served by a new member don't all read the database.
+ * <p>
+ * In the {@code all} mode, the id space of the productos is split in ranges of {@code application.cache-warm-up.chunk-size}
+ * ids; in the {@code recent} mode, the {@code top-n} productos last read from the shared cache by the other members are
+ * split in lists of that size. The chunks are loaded in parallel on a dedicated executor, and stored in the cache
+ * unless already there. Until the warm-up is over, or {@code deadline-seconds} after the start of the member, the
+ * member reports itself out of service, see {@link com.themkers.inventario.config.CacheWarmUpHealthIndicator}.
+ */
+@Service
+public class ProductoCacheWarmUpService {
+
+    private final Logger log = LoggerFactory.getLogger(ProductoCacheWarmUpService.class);
+
+    private final ProductoRepository productoRepository;
+
+    private final ProductoMapper productoMapper;
+
+    private final CacheManager cacheManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.CacheWarmUp properties;
+
+    private final ExecutorService coordinator;
+
+    private final ExecutorService workers;
+
+    private final Timer durationTimer;
+
+    private final Instant deadline;
+
+    private final AtomicInteger totalChunks = new AtomicInteger();
+
+    private final AtomicInteger completedChunks = new AtomicInteger();
+
+    private final AtomicLong loadedProductos = new AtomicLong();
+
+    private volatile Status status = Status.PENDING;
+
+    private volatile Instant startedAt;
+
+    private volatile Instant finishedAt;
+
+    public ProductoCacheWarmUpService(ProductoRepository productoRepository, ProductoMapper productoMapper, CacheManager cacheManager,
+                                      PlatformTransactionManager transactionManager, ApplicationProperties applicationProperties,
+                                      MeterRegistry meterRegistry) {
+        this.productoRepository = productoRepository;
+        this.productoMapper = productoMapper;
+        this.cacheManager = cacheManager;
+        // Not read-only, so that the cached productos are read from the primary database and not from a lagging replica
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = applicationProperties.getCacheWarmUp();
+        this.deadline = Instant.now().plusSeconds(properties.getDeadlineSeconds());
+        this.coordinator = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("cache-warm-up-coordinator-"));
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(properties.getThreads(), properties.getThreads(),
+            60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new CustomizableThreadFactory("cache-warm-up-"));
+        workers.allowCoreThreadTimeOut(true);
+        this.workers = workers;
+        this.durationTimer = Timer.builder("producto.cache.warmup")
+            .description("Duration of the warm-up of the productos-by-id cache")
+            .register(meterRegistry);
+        Gauge.builder("producto.cache.warmup.progress", this, ProductoCacheWarmUpService::getProgress)
+            .description("Ratio of the chunks of the cache warm-up already loaded")
+            .register(meterRegistry);
+        Gauge.builder("producto.cache.warmup.productos", loadedProductos, AtomicLong::get)
+            .description("Productos loaded into the cache by the warm-up")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Start the warm-up in the background once the application is ready, if enabled.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (properties.isEnabled()) {
+            coordinator.execute(this::warmUp);
+        } else {
+            status = Status.SKIPPED;
+        }
+    }
+
+    /**
+     * Load the productos into the cache, and wait for the end of the loads.
+     */
+    public void warmUp() {
+        Cache cache = cacheManager.getCache(ProductoService.PRODUCTOS_BY_ID_CACHE);
+        startedAt = Instant.now();
+        finishedAt = null;
+        status = Status.RUNNING;
+        completedChunks.set(0);
+        loadedProductos.set(0);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            List<Runnable> chunks = properties.getMode() == ApplicationProperties.CacheWarmUp.Mode.RECENT ?
+                planRecentChunks(cache) : planRangeChunks(cache);
+            totalChunks.set(chunks.size());
+            log.info("Warming up the {} cache: {} chunks of {} productos", cache.getName(), chunks.size(), properties.getMode());
+            for (Runnable chunk : chunks) {
+                futures.add(workers.submit(chunk));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            status = Status.COMPLETED;
+            log.info("Warmed up the {} cache with {} productos in {} ms", cache.getName(), loadedProductos.get(),
+                Duration.between(startedAt, Instant.now()).toMillis());
+        } catch (ExecutionException | RuntimeException e) {
+            status = Status.FAILED;
+            log.warn("Could not warm up the {} cache: {}", cache.getName(), e.getMessage());
+        } catch (InterruptedException e) {
+            status = Status.FAILED;
+            Thread.currentThread().interrupt();
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+            finishedAt = Instant.now();
+            durationTimer.record(Duration.between(startedAt, finishedAt));
+        }
+    }
+
+    /**
+     * @return whether the member can report itself up: the warm-up is over, or its deadline has passed.
+     */
+    public boolean isReady() {
+        return status.isOver() || Instant.now().isAfter(deadline);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public int getTotalChunks() {
+        return totalChunks.get();
+    }
+
+    public int getCompletedChunks() {
+        return completedChunks.get();
+    }
+
+    public long getLoadedProductos() {
+        return loadedProductos.get();
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    /**
+     * @return the ratio of the chunks already loaded.
+     */
+    public double getProgress() {
+        if (totalChunks.get() == 0) {
+            return status.isOver() ? 1.0 : 0.0;
+        }
+        return (double) completedChunks.get() / totalChunks.get();
+    }
+
+    private List<Runnable> planRangeChunks(Cache cache) {
+        Long min = productoRepository.findMinId().orElse(null);
+        if (min == null) {
+            return Collections.emptyList();
+        }
+        long max = productoRepository.findMaxId().orElse(min);
+        List<Runnable> chunks = new ArrayList<>();
+        for (long from = min; from <= max; from += properties.getChunkSize()) {
+            long first = from;
+            long last = Math.min(max, from + properties.getChunkSize() - 1);
+            chunks.add(() -> {
+                store(cache, transactionTemplate.execute(status -> productoRepository.findByIdBetween(first, last).stream()
+                    .map(productoMapper::toDto)
+                    .collect(Collectors.toList())));
+                completeChunk();
+            });
+        }
+        return chunks;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Runnable> planRecentChunks(Cache cache) {
+        if (!(cache.getNativeCache() instanceof IMap)) {
+            log.warn("The {} cache is not a Hazelcast map, its recent entries are unknown", cache.getName());
+            return Collections.emptyList();
+        }
+        IMap<Object, Object> map = (IMap<Object, Object>) cache.getNativeCache();
+        List<Long> ids = map.keySet().stream()
+            .filter(Long.class::isInstance)
+            .map(Long.class::cast)
+            .collect(Collectors.toList());
+        if (ids.size() > properties.getTopN()) {
+            Map<Long, Long> lastAccessTimes = new HashMap<>();
+            for (Long id : ids) {
+                EntryView<Object, Object> entry = map.getEntryView(id);
+                // The first read of a producto stores its entry, which may not count as an access
+                lastAccessTimes.put(id, entry != null ? Math.max(entry.getLastAccessTime(), entry.getLastUpdateTime()) : 0L);
+            }
+            ids.sort(Comparator.comparing(lastAccessTimes::get, Comparator.reverseOrder()));
+            ids = ids.subList(0, properties.getTopN());
+        }
+        Collections.sort(ids);
+        List<Runnable> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += properties.getChunkSize()) {
+            List<Long> chunk = ids.subList(from, (int) Math.min(ids.size(), from + properties.getChunkSize()));
+            chunks.add(() -> {
+                // Entries still in the shared cache only need a local copy
+                List<Long> misses = new ArrayList<>();
+                for (Long id : chunk) {
+                    if (cache.get(id) != null) {
+                        loadedProductos.incrementAndGet();
+                    } else {
+                        misses.add(id);
+                    }
+                }
+                if (!misses.isEmpty()) {
+                    store(cache, transactionTemplate.execute(status -> productoRepository.findAllById(misses).stream()
+                        .map(productoMapper::toDto)
+                        .collect(Collectors.toList())));
+                }
+                completeChunk();
+            });
+        }
+        return chunks;
+    }
+
+    private void store(Cache cache, List<ProductoDTO> productos) {
+        for (ProductoDTO producto : productos) {
+            // Cached as by ProductoService.findOne, without overwriting the productos cached in the meantime
+            cache.putIfAbsent(producto.getId(), producto);
+        }
+        loadedProductos.addAndGet(productos.size());
+    }
+
+    private void completeChunk() {
+        int completed = completedChunks.incrementAndGet();
+        int total = totalChunks.get();
+        if (completed == total || completed % Math.max(1, total / 10) == 0) {
+            log.info("Cache warm-up progress: {}/{} chunks, {} productos", completed, total, loadedProductos.get());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        coordinator.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    /**
+     * The status of the warm-up.
+     */
+    public enum Status {
+        PENDING(false),
+        RUNNING(false),
+        COMPLETED(true),
+        FAILED(true),
+        SKIPPED(true);
+
+        private final boolean over;
+
+        Status(boolean over) {
+            this.over = over;
+        }
+
+        public boolean isOver() {
+            return over;
+        }
+    }
+}
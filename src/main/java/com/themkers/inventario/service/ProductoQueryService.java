@@ -1,45 +1,84 @@
 package com.themkers.inventario.service;
 
 import java.util.List;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.stream.Stream;
 
 import javax.persistence.criteria.JoinType;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import io.github.jhipster.service.QueryService;
+import io.github.jhipster.service.filter.StringFilter;
 
+import com.themkers.inventario.config.CriteriaQueryKeyGenerator;
 import com.themkers.inventario.domain.Producto;
 import com.themkers.inventario.domain.*; // for static metamodels
 import com.themkers.inventario.repository.ProductoRepository;
+import com.themkers.inventario.service.dto.CachedPage;
+import com.themkers.inventario.service.dto.KeysetCursor;
+import com.themkers.inventario.service.dto.SparseFieldset;
 import com.themkers.inventario.service.dto.ProductoCriteria;
 import com.themkers.inventario.service.dto.ProductoDTO;
-import com.themkers.inventario.service.mapper.ProductoMapper;
 
 /**
  * Service for executing complex queries for {@link Producto} entities in the database.
  * The main input is a {@link ProductoCriteria} which gets converted to {@link Specification},
  * in a way that all the filters must apply.
  * It returns a {@link List} of {@link ProductoDTO} or a {@link Page} of {@link ProductoDTO} which fulfills the criteria.
+ * Pages and counts are cached in {@link #PRODUCTO_QUERIES_CACHE}, which is cleared by the writes of productos.
  */
 @Service
 @Transactional(readOnly = true)
 public class ProductoQueryService extends QueryService<Producto> {
 
+    public static final String PRODUCTO_QUERIES_CACHE = "producto-queries";
+
+    /**
+     * Selects the columns of {@link ProductoDTO} straight from the query, without loading managed entities.
+     */
+    private static final EntityProjection<Producto, ProductoDTO> PROJECTION = new EntityProjection<>(Producto.class, ProductoDTO.class,
+        (root, cb) -> cb.construct(ProductoDTO.class, root.get(Producto_.id), root.get(Producto_.nombre), root.get(Producto_.precio)));
+
+    /**
+     * The same columns as {@link #PROJECTION}, as fields which can be left out of the query.
+     */
+    private static final EntityProjection<Producto, ProductoDTO> FIELDS_PROJECTION = EntityProjection.ofFields(Producto.class, ProductoDTO.class, ProductoDTO::new,
+        EntityProjection.field("id", (root, cb) -> root.get(Producto_.id), ProductoDTO::setId),
+        EntityProjection.field("nombre", (root, cb) -> root.get(Producto_.nombre), ProductoDTO::setNombre),
+        EntityProjection.field("precio", (root, cb) -> root.get(Producto_.precio), ProductoDTO::setPrecio));
+
+    /**
+     * The names of the fields of {@link ProductoDTO} which can be requested.
+     */
+    public static final Set<String> FIELD_NAMES = FIELDS_PROJECTION.getFieldNames();
+
     private final Logger log = LoggerFactory.getLogger(ProductoQueryService.class);
 
     private final ProductoRepository productoRepository;
 
-    private final ProductoMapper productoMapper;
+    private final ProjectionQueryService projectionQueryService;
+
+    private final TableStatisticsService tableStatisticsService;
+
+    private final ProductoSearchService productoSearchService;
 
-    public ProductoQueryService(ProductoRepository productoRepository, ProductoMapper productoMapper) {
+    public ProductoQueryService(ProductoRepository productoRepository, ProjectionQueryService projectionQueryService,
+                             TableStatisticsService tableStatisticsService, ProductoSearchService productoSearchService) {
         this.productoRepository = productoRepository;
-        this.productoMapper = productoMapper;
+        this.projectionQueryService = projectionQueryService;
+        this.tableStatisticsService = tableStatisticsService;
+        this.productoSearchService = productoSearchService;
     }
 
     /**
@@ -51,7 +90,21 @@ public class ProductoQueryService extends QueryService<Producto> {
     public List<ProductoDTO> findByCriteria(ProductoCriteria criteria) {
         log.debug("find by criteria : {}", criteria);
         final Specification<Producto> specification = createSpecification(criteria);
-        return productoMapper.toDto(productoRepository.findAll(specification));
+        return projectionQueryService.findAll(PROJECTION, specification);
+    }
+
+    /**
+     * Return a {@link Stream} of {@link ProductoDTO} which matches the criteria from the database, in id order.
+     * The stream reads the database as it is consumed: it must be consumed in the current transaction, and closed.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param fetchSize The number of rows fetched from the database at a time.
+     * @return the matching entities.
+     */
+    @Transactional(readOnly = true)
+    public Stream<ProductoDTO> streamByCriteria(ProductoCriteria criteria, int fetchSize) {
+        log.debug("stream by criteria : {}", criteria);
+        final Specification<Producto> specification = createSpecification(criteria);
+        return projectionQueryService.stream(PROJECTION, specification, Sort.by(Producto_.ID), fetchSize);
     }
 
     /**
@@ -61,11 +114,64 @@ public class ProductoQueryService extends QueryService<Producto> {
      * @return the matching entities.
      */
     @Transactional(readOnly = true)
+    @Cacheable(cacheNames = PRODUCTO_QUERIES_CACHE, keyGenerator = CriteriaQueryKeyGenerator.NAME)
     public Page<ProductoDTO> findByCriteria(ProductoCriteria criteria, Pageable page) {
         log.debug("find by criteria : {}, page: {}", criteria, page);
         final Specification<Producto> specification = createSpecification(criteria);
-        return productoRepository.findAll(specification, page)
-            .map(productoMapper::toDto);
+        return CachedPage.of(projectionQueryService.findPage(PROJECTION, specification, page,
+            () -> productoRepository.count(specification)));
+    }
+
+    /**
+     * Return a {@link Page} of {@link ProductoDTO} which matches the criteria from the database, with only some of their fields.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param page The page, which should be returned.
+     * @param fields The fields to read, or {@code null} for all of them.
+     * @return the matching entities.
+     */
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = PRODUCTO_QUERIES_CACHE, keyGenerator = CriteriaQueryKeyGenerator.NAME)
+    public Page<ProductoDTO> findByCriteria(ProductoCriteria criteria, Pageable page, SparseFieldset fields) {
+        log.debug("find by criteria : {}, page: {}, fields: {}", criteria, page, fields);
+        final Specification<Producto> specification = createSpecification(criteria);
+        return CachedPage.of(projectionQueryService.findPage(projection(fields), specification, page,
+            () -> productoRepository.count(specification)));
+    }
+
+    /**
+     * Return a {@link Slice} of {@link ProductoDTO} which matches the criteria from the database, without counting them.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param page The page, which should be returned.
+     * @param fields The fields to read, or {@code null} for all of them.
+     * @return the matching entities.
+     */
+    @Transactional(readOnly = true)
+    public Slice<ProductoDTO> findSliceByCriteria(ProductoCriteria criteria, Pageable page, SparseFieldset fields) {
+        log.debug("find slice by criteria : {}, page: {}, fields: {}", criteria, page, fields);
+        final Specification<Producto> specification = createSpecification(criteria);
+        return projectionQueryService.findSlice(projection(fields), specification, page);
+    }
+
+    /**
+     * Return a {@link Slice} of {@link ProductoDTO} which matches the criteria from the database, using keyset pagination.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param order The sort order, on the id or on a single attribute read by the projection.
+     * @param after The cursor of the last entity of the previous slice, or {@code null} for the first slice.
+     * @param size The size of the slice.
+     * @param fields The fields to read, or {@code null} for all of them. The id and the sort property are always read,
+     * for the cursor of the next slice.
+     * @return the matching entities.
+     */
+    @Transactional(readOnly = true)
+    public Slice<ProductoDTO> findByCriteriaAfter(ProductoCriteria criteria, Sort.Order order, KeysetCursor after, int size, SparseFieldset fields) {
+        log.debug("find by criteria : {}, order: {}, after: {}, fields: {}", criteria, order, after, fields);
+        final Specification<Producto> specification = createSpecification(criteria);
+        SparseFieldset readFields = fields == null ? null : fields.with(Producto_.ID);
+        if (readFields != null && FIELD_NAMES.contains(order.getProperty())) {
+            readFields = readFields.with(order.getProperty());
+        }
+        EntityProjection<Producto, ProductoDTO> projection = readFields == null ? FIELDS_PROJECTION : FIELDS_PROJECTION.narrow(readFields);
+        return projectionQueryService.findAfter(projection, specification, order, after, size);
     }
 
     /**
@@ -74,6 +180,7 @@ public class ProductoQueryService extends QueryService<Producto> {
      * @return the number of matching entities.
      */
     @Transactional(readOnly = true)
+    @Cacheable(cacheNames = PRODUCTO_QUERIES_CACHE, keyGenerator = CriteriaQueryKeyGenerator.NAME)
     public long countByCriteria(ProductoCriteria criteria) {
         log.debug("count by criteria : {}", criteria);
         final Specification<Producto> specification = createSpecification(criteria);
@@ -81,7 +188,27 @@ public class ProductoQueryService extends QueryService<Producto> {
     }
 
     /**
-     * Function to convert {@link ProductoCriteria} to a {@link Specification}
+     * Return a cheap estimate of the number of matching entities in the database.
+     * Estimates come from the database statistics, so they are only available when no filter is set.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @return the estimated number of matching entities, or nothing if there is no cheap estimate.
+     */
+    @Transactional(readOnly = true)
+    public OptionalLong estimateCountByCriteria(ProductoCriteria criteria) {
+        log.debug("estimate count by criteria : {}", criteria);
+        if (criteria != null && !new ProductoCriteria().equals(criteria)) {
+            return OptionalLong.empty();
+        }
+        return tableStatisticsService.estimateRowCount("producto");
+    }
+
+    private static EntityProjection<Producto, ProductoDTO> projection(SparseFieldset fields) {
+        return fields == null ? PROJECTION : FIELDS_PROJECTION.narrow(fields);
+    }
+
+    /**
+     * Function to convert {@link ProductoCriteria} to a {@link Specification}.
+     * When the names of the productos are indexed, {@code nombre.contains} filters match on the indexed expression.
      * @param criteria The object which holds all the filters, which the entities should match.
      * @return the matching {@link Specification} of the entity.
      */
@@ -92,7 +219,7 @@ public class ProductoQueryService extends QueryService<Producto> {
                 specification = specification.and(buildRangeSpecification(criteria.getId(), Producto_.id));
             }
             if (criteria.getNombre() != null) {
-                specification = specification.and(buildStringSpecification(criteria.getNombre(), Producto_.nombre));
+                specification = specification.and(buildNombreSpecification(criteria.getNombre()));
             }
             if (criteria.getPrecio() != null) {
                 specification = specification.and(buildRangeSpecification(criteria.getPrecio(), Producto_.precio));
@@ -100,4 +227,16 @@ public class ProductoQueryService extends QueryService<Producto> {
         }
         return specification;
     }
+
+    private Specification<Producto> buildNombreSpecification(StringFilter filter) {
+        // Equals and in filters take precedence over contains ones, as in buildStringSpecification
+        if (filter.getEquals() == null && filter.getIn() == null && filter.getContains() != null
+            && productoSearchService.isIndexAvailable()) {
+            // The other conditions of the filter still apply along the indexed one
+            StringFilter otherConditions = filter.copy().setContains(null);
+            return Specification.where(buildStringSpecification(otherConditions, Producto_.nombre))
+                .and(productoSearchService.nombreContains(filter.getContains()));
+        }
+        return buildStringSpecification(filter, Producto_.nombre);
+    }
 }
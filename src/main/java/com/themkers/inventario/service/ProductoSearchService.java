@@ -0,0 +1,115 @@
+package com.themkers.inventario.service;
+
+import com.themkers.inventario.domain.Producto;
+import com.themkers.inventario.domain.Producto_;
+import com.themkers.inventario.service.dto.ProductoDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Service searching the productos by name.
+ * <p>
+ * On PostgreSQL, the {@value #TRIGRAM_INDEX} trigram index of the lower-cased names serves both substring matches
+ * and similarity matches, which tolerate typos, and results are ranked by similarity. Without the index, results are
+ * substring matches ranked by exact, prefix, then other matches, and shorter names first.
+ */
+@Service
+@Transactional(readOnly = true)
+public class ProductoSearchService {
+
+    static final String TRIGRAM_INDEX = "idx_producto_nombre_trgm";
+
+    private final Logger log = LoggerFactory.getLogger(ProductoSearchService.class);
+
+    private final EntityManager entityManager;
+
+    private final TableStatisticsService tableStatisticsService;
+
+    private volatile Boolean indexAvailable;
+
+    public ProductoSearchService(EntityManager entityManager, TableStatisticsService tableStatisticsService) {
+        this.entityManager = entityManager;
+        this.tableStatisticsService = tableStatisticsService;
+    }
+
+    /**
+     * @return {@code true} if the names of the productos are indexed for substring and similarity searches.
+     */
+    public boolean isIndexAvailable() {
+        if (indexAvailable == null) {
+            indexAvailable = tableStatisticsService.isIndexPresent("producto", TRIGRAM_INDEX);
+            log.info("Producto name search index {}", indexAvailable ? "available" : "not available, searches scan the productos");
+        }
+        return indexAvailable;
+    }
+
+    /**
+     * Search the productos whose name contains, or on PostgreSQL resembles, a text.
+     *
+     * @param text the searched text.
+     * @param pageable the pagination information, whose sort is ignored.
+     * @return the productos, best matches first.
+     */
+    public Slice<ProductoDTO> search(String text, Pageable pageable) {
+        log.debug("Request to search Productos : {}", text);
+        String lowerText = text.toLowerCase(Locale.ROOT);
+        String pattern = "%" + escapeLike(lowerText) + "%";
+        List<ProductoDTO> content;
+        if (isIndexAvailable()) {
+            List<?> rows = entityManager.createNativeQuery("select p.id, p.nombre, p.precio from producto p" +
+                " where lower(p.nombre) like :pattern escape '\\' or lower(p.nombre) % :text" +
+                " order by similarity(lower(p.nombre), :text) desc, p.id")
+                .setParameter("pattern", pattern)
+                .setParameter("text", lowerText)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize() + 1)
+                .getResultList();
+            content = rows.stream()
+                .map(row -> (Object[]) row)
+                .map(row -> new ProductoDTO(((Number) row[0]).longValue(), (String) row[1], (BigDecimal) row[2]))
+                .collect(Collectors.toList());
+        } else {
+            content = entityManager.createQuery("select new com.themkers.inventario.service.dto.ProductoDTO(p.id, p.nombre, p.precio)" +
+                " from Producto p where lower(p.nombre) like :pattern escape '\\'" +
+                " order by case when lower(p.nombre) = :text then 0 when lower(p.nombre) like :prefix escape '\\' then 1 else 2 end," +
+                " length(p.nombre), p.id", ProductoDTO.class)
+                .setParameter("pattern", pattern)
+                .setParameter("text", lowerText)
+                .setParameter("prefix", escapeLike(lowerText) + "%")
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize() + 1)
+                .getResultList();
+        }
+        boolean hasNext = content.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? content.subList(0, pageable.getPageSize()) : content, pageable, hasNext);
+    }
+
+    /**
+     * Create the specification of the productos whose name contains a text, on the indexed expression.
+     * Like the {@code contains} filters of the criteria, the text is not escaped.
+     *
+     * @param text the text.
+     * @return the specification.
+     */
+    public Specification<Producto> nombreContains(String text) {
+        String pattern = "%" + text.toLowerCase(Locale.ROOT) + "%";
+        return (root, query, cb) -> cb.like(cb.lower(root.get(Producto_.nombre)), pattern);
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
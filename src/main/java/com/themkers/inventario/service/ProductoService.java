@@ -1,48 +1,158 @@
 package com.themkers.inventario.service;
 
+import com.themkers.inventario.config.TwoTierCacheManager;
 import com.themkers.inventario.domain.Producto;
 import com.themkers.inventario.repository.ProductoRepository;
+import com.themkers.inventario.repository.StockRepository;
+import com.themkers.inventario.service.dto.ChangesDTO;
+import com.themkers.inventario.service.dto.ChangesToken;
+import com.themkers.inventario.service.dto.ProductoChangeDTO;
 import com.themkers.inventario.service.dto.ProductoDTO;
 import com.themkers.inventario.service.mapper.ProductoMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 /**
  * Service Implementation for managing {@link Producto}.
+ * <p>
+ * Saves and deletions are recorded in the outbox, for the other services. Price changes revalue the stocks of
+ * the producto, see {@link StockValuationService}. Committed saves and deletions are published as
+ * {@link ProductoChangeDTO} events, for the {@link ProductoAutocompleteService}.
  */
 @Service
 @Transactional
 public class ProductoService {
 
+    public static final String PRODUCTOS_BY_ID_CACHE = "productos-by-id";
+
     private final Logger log = LoggerFactory.getLogger(ProductoService.class);
 
     private final ProductoRepository productoRepository;
 
     private final ProductoMapper productoMapper;
 
-    public ProductoService(ProductoRepository productoRepository, ProductoMapper productoMapper) {
+    private final StockRepository stockRepository;
+
+    private final CacheManager cacheManager;
+
+    private final ChangeTrackingService changeTrackingService;
+
+    private final OutboxService outboxService;
+
+    private final StockValuationService stockValuationService;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public ProductoService(ProductoRepository productoRepository, ProductoMapper productoMapper, StockRepository stockRepository,
+                           CacheManager cacheManager, ChangeTrackingService changeTrackingService, OutboxService outboxService,
+                           StockValuationService stockValuationService, ApplicationEventPublisher eventPublisher,
+                           PlatformTransactionManager transactionManager) {
         this.productoRepository = productoRepository;
         this.productoMapper = productoMapper;
+        this.stockRepository = stockRepository;
+        this.cacheManager = cacheManager;
+        // Not read-only, so that the cached productos are read from the primary database and not from a lagging replica
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        if (cacheManager instanceof TwoTierCacheManager) {
+            ((TwoTierCacheManager) cacheManager).registerRefreshLoader(PRODUCTOS_BY_ID_CACHE, id -> loadForCache((Long) id));
+        }
+        this.changeTrackingService = changeTrackingService;
+        this.outboxService = outboxService;
+        this.stockValuationService = stockValuationService;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
      * Save a producto.
+     * <p>
+     * An update is rejected if the producto has been updated since the version of the DTO, if any. Without a version,
+     * the update overwrites the current producto. Renaming a producto marks its stocks as modified, for their changes.
      *
      * @param productoDTO the entity to save.
-     * @return the persisted entity.
+     * @return the persisted entity, with its new version.
+     * @throws org.springframework.dao.OptimisticLockingFailureException if the version of the DTO is not the current one.
      */
+    @Caching(evict = {
+        @CacheEvict(cacheNames = PRODUCTOS_BY_ID_CACHE, key = "#result.id"),
+        @CacheEvict(cacheNames = {ProductoQueryService.PRODUCTO_QUERIES_CACHE, StockQueryService.STOCK_QUERIES_CACHE}, allEntries = true)
+    })
     public ProductoDTO save(ProductoDTO productoDTO) {
         log.debug("Request to save Producto : {}", productoDTO);
+        return doSave(productoDTO, null);
+    }
+
+    /**
+     * Update a producto, if it is still the expected one.
+     * <p>
+     * The expectation is checked against the producto read from the primary database once it is locked, so a
+     * concurrent update is either seen, or waits for this one. The version of the DTO is ignored.
+     *
+     * @param productoDTO the entity to update.
+     * @param expected the expectation on the current producto.
+     * @return the persisted entity, with its new version.
+     * @throws org.springframework.dao.OptimisticLockingFailureException if the producto doesn't exist, or is not the expected one.
+     */
+    @Caching(evict = {
+        @CacheEvict(cacheNames = PRODUCTOS_BY_ID_CACHE, key = "#result.id"),
+        @CacheEvict(cacheNames = {ProductoQueryService.PRODUCTO_QUERIES_CACHE, StockQueryService.STOCK_QUERIES_CACHE}, allEntries = true)
+    })
+    public ProductoDTO save(ProductoDTO productoDTO, Predicate<ProductoDTO> expected) {
+        log.debug("Request to update Producto : {}", productoDTO);
+        return doSave(productoDTO, Objects.requireNonNull(expected));
+    }
+
+    private ProductoDTO doSave(ProductoDTO productoDTO, Predicate<ProductoDTO> expected) {
         Producto producto = productoMapper.toEntity(productoDTO);
-        producto = productoRepository.save(producto);
-        return productoMapper.toDto(producto);
+        BigDecimal previousPrecio = productoDTO.getId() != null ? stockValuationService.lockPrecio(productoDTO.getId()) : null;
+        Optional<Producto> current = productoDTO.getId() != null ? productoRepository.findById(productoDTO.getId()) : Optional.empty();
+        String previousNombre = current.map(Producto::getNombre).orElse(null);
+        if (expected != null) {
+            producto.setVersion(current
+                .filter(found -> expected.test(productoMapper.toDto(found)))
+                .orElseThrow(() -> new ObjectOptimisticLockingFailureException(Producto.class, productoDTO.getId()))
+                .getVersion());
+        } else if (productoDTO.getVersion() == null) {
+            current.map(Producto::getVersion).ifPresent(producto::setVersion);
+        }
+        // Flushed so that the version of the result is the incremented one
+        producto = productoRepository.saveAndFlush(producto);
+        ProductoDTO result = productoMapper.toDto(producto);
+        if (productoDTO.getId() != null) {
+            stockValuationService.recordPriceChange(result.getId(), previousPrecio, result.getPrecio());
+            if (!Objects.equals(previousNombre, result.getNombre())) {
+                // The stocks carry the nombre of their producto
+                stockRepository.touchByProductoId(result.getId());
+            }
+        }
+        outboxService.recordSaved(Producto.class, result.getId(), result);
+        eventPublisher.publishEvent(new ProductoChangeDTO(result.getId(), result.getNombre(), false));
+        return result;
     }
 
     /**
@@ -60,15 +170,84 @@ public class ProductoService {
 
     /**
      * Get one producto by id.
+     * <p>
+     * Concurrent calls missing the {@code productos-by-id} cache wait for a single load of the producto, see
+     * {@link com.themkers.inventario.config.TwoTierCache}. Missing productos are cached too, until created.
      *
      * @param id the id of the entity.
      * @return the entity.
      */
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Optional<ProductoDTO> findOne(Long id) {
         log.debug("Request to get Producto : {}", id);
-        return productoRepository.findById(id)
-            .map(productoMapper::toDto);
+        return Optional.ofNullable(productosById().get(id, () -> loadForCache(id)));
+    }
+
+    /**
+     * Load a producto for the {@code productos-by-id} cache, when missing or refreshed ahead of its expiry.
+     * <p>
+     * The producto is read in a read-write transaction, so from the primary database, so that a lagging replica
+     * doesn't cache again the producto evicted by a save until its time to live.
+     *
+     * @param id the id of the entity.
+     * @return the entity, or {@code null} if it doesn't exist.
+     */
+    public ProductoDTO loadForCache(Long id) {
+        return transactionTemplate.execute(status -> productoRepository.findById(id).map(productoMapper::toDto).orElse(null));
+    }
+
+    /**
+     * Get the productos with the given ids.
+     * <p>
+     * The productos are first looked up in the {@code productos-by-id} cache, and the missing ones are read from the
+     * primary database with a single {@code IN} query and then cached.
+     *
+     * @param ids the ids of the entities.
+     * @return the entities, in the order of their first id in {@code ids}, without the ones which don't exist.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<ProductoDTO> findAllById(List<Long> ids) {
+        log.debug("Request to get Productos : {}", ids);
+        List<Long> distinctIds = ids.stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+        Cache cache = productosById();
+        Map<Long, ProductoDTO> found = new HashMap<>();
+        List<Long> misses = new ArrayList<>();
+        for (Long id : distinctIds) {
+            ProductoDTO cached = cache.get(id, ProductoDTO.class);
+            if (cached != null) {
+                found.put(id, cached);
+            } else {
+                misses.add(id);
+            }
+        }
+        if (!misses.isEmpty()) {
+            List<ProductoDTO> loaded = transactionTemplate.execute(status ->
+                productoMapper.toDto(productoRepository.findAllById(misses)));
+            for (ProductoDTO productoDTO : loaded) {
+                found.put(productoDTO.getId(), productoDTO);
+                cache.put(productoDTO.getId(), productoDTO);
+            }
+        }
+        return distinctIds.stream().map(found::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    private Cache productosById() {
+        return Objects.requireNonNull(cacheManager.getCache(PRODUCTOS_BY_ID_CACHE), PRODUCTOS_BY_ID_CACHE);
+    }
+
+    /**
+     * Get the changes of the productos since a token.
+     *
+     * @param since the token of the previous changes, or {@code null} to get all the productos.
+     * @param limit the maximum number of modified productos, and of deleted ones, to return.
+     * @return the changes, with the token of the next ones.
+     * @throws ChangesTokenExpiredException if the token is older than the retained deletions.
+     */
+    @Transactional(readOnly = true)
+    public ChangesDTO<ProductoDTO> findChanges(ChangesToken since, int limit) {
+        log.debug("Request to get Producto changes since : {}", since);
+        return changeTrackingService.findChanges(Producto.class, since, limit, productoRepository::findModifiedAfter, Producto::getId,
+            productoMapper::toDto);
     }
 
     /**
@@ -76,8 +255,15 @@ public class ProductoService {
      *
      * @param id the id of the entity.
      */
+    @Caching(evict = {
+        @CacheEvict(cacheNames = PRODUCTOS_BY_ID_CACHE),
+        @CacheEvict(cacheNames = {ProductoQueryService.PRODUCTO_QUERIES_CACHE, StockQueryService.STOCK_QUERIES_CACHE}, allEntries = true)
+    })
     public void delete(Long id) {
         log.debug("Request to delete Producto : {}", id);
         productoRepository.deleteById(id);
+        changeTrackingService.recordDeletion(Producto.class, id);
+        outboxService.recordDeleted(Producto.class, id);
+        eventPublisher.publishEvent(new ProductoChangeDTO(id, null, true));
     }
 }
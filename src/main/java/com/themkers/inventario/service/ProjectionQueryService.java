@@ -0,0 +1,261 @@
+package com.themkers.inventario.service;
+
+import com.themkers.inventario.service.dto.KeysetCursor;
+
+import org.hibernate.CacheMode;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.repository.support.PageableExecutionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.*;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.SingularAttribute;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Service for executing criteria queries which select {@link EntityProjection}s instead of managed entities.
+ * <p>
+ * Only the projected columns are read, and results are neither attached to the persistence context nor
+ * snapshotted for dirty checking.
+ * <p>
+ * Results can be paginated as a {@link Page}, or as a {@link Slice} without running a count query: whether there
+ * is a next slice is known by fetching one more row than the slice size. Slices can be found by offset, or by
+ * keyset (seek): instead of skipping {@code OFFSET} rows, a keyset slice starts right after the
+ * {@code (sort key, id)} of the last row of the previous slice, so its cost doesn't depend on its depth.
+ */
+@Service
+@Transactional(readOnly = true)
+public class ProjectionQueryService {
+
+    private static final String ID = "id";
+
+    private final EntityManager entityManager;
+
+    public ProjectionQueryService(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * Return all the projections of the entities matching a specification.
+     *
+     * @param projection the projection.
+     * @param specification the specification the entities should match.
+     * @param <E> the entity type.
+     * @param <R> the projection type.
+     * @return the projections.
+     */
+    public <E, R> List<R> findAll(EntityProjection<E, R> projection, Specification<E> specification) {
+        return toResults(projection, createQuery(projection, specification, Sort.unsorted()).getResultList());
+    }
+
+    /**
+     * Stream the projections of the entities matching a specification, from a forward-only database cursor.
+     * <p>
+     * Rows are fetched from the database {@code fetchSize} at a time while the stream is consumed, so the memory
+     * used doesn't depend on the number of rows. The stream must be consumed in the current transaction, and closed.
+     *
+     * @param projection the projection.
+     * @param specification the specification the entities should match.
+     * @param sort the sort order.
+     * @param fetchSize the number of rows fetched from the database at a time.
+     * @param <E> the entity type.
+     * @param <R> the projection type.
+     * @return the stream of projections.
+     */
+    @SuppressWarnings("unchecked")
+    public <E, R> Stream<R> stream(EntityProjection<E, R> projection, Specification<E> specification, Sort sort, int fetchSize) {
+        org.hibernate.query.Query<Object> query = createQuery(projection, specification, sort).unwrap(org.hibernate.query.Query.class);
+        return query
+            .setFetchSize(fetchSize)
+            .setReadOnly(true)
+            .setCacheMode(CacheMode.IGNORE)
+            .stream()
+            .map(projection::toResult);
+    }
+
+    /**
+     * Return a page of the projections of the entities matching a specification.
+     *
+     * @param projection the projection.
+     * @param specification the specification the entities should match.
+     * @param pageable the pagination information.
+     * @param count the supplier of the total number of matching entities, only called when it can't be deduced.
+     * @param <E> the entity type.
+     * @param <R> the projection type.
+     * @return the page of projections.
+     */
+    public <E, R> Page<R> findPage(EntityProjection<E, R> projection, Specification<E> specification, Pageable pageable,
+                                   LongSupplier count) {
+        TypedQuery<Object> query = createQuery(projection, specification, pageable.getSort());
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset()).setMaxResults(pageable.getPageSize());
+        }
+        return PageableExecutionUtils.getPage(toResults(projection, query.getResultList()), pageable, count);
+    }
+
+    /**
+     * Return a slice of the projections of the entities matching a specification, at the offset of a page.
+     *
+     * @param projection the projection.
+     * @param specification the specification the entities should match.
+     * @param pageable the pagination information.
+     * @param <E> the entity type.
+     * @param <R> the projection type.
+     * @return the slice of projections.
+     */
+    public <E, R> Slice<R> findSlice(EntityProjection<E, R> projection, Specification<E> specification, Pageable pageable) {
+        TypedQuery<Object> query = createQuery(projection, specification, pageable.getSort());
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset()).setMaxResults(pageable.getPageSize() + 1);
+        }
+        return toSlice(toResults(projection, query.getResultList()), pageable);
+    }
+
+    /**
+     * Return a slice of the projections of the entities matching a specification, after a keyset cursor.
+     * Rows with a {@code null} sort key always come last.
+     * <p>
+     * The rows with a sort key are a range of a {@code (sort key, id)} index, and the rows without one, read by a
+     * second query only when the slice reaches them, a range of its {@code null} entries: neither query needs to
+     * order the rows by anything else than the index.
+     *
+     * @param projection the projection, made of fields, among which the {@code id} and the sort property: the cursor of
+     * the next slice is read from them.
+     * @param specification the specification the entities should match.
+     * @param order the sort order, on the id or on a basic attribute of the entity.
+     * @param after the cursor of the last row of the previous slice, or {@code null} for the first slice.
+     * @param size the size of the slice.
+     * @param <E> the entity type.
+     * @param <R> the projection type.
+     * @return the slice of projections.
+     * @throws IllegalArgumentException if the order is not on a field of the projection which is a basic attribute of
+     * the entity, or doesn't match the cursor.
+     */
+    public <E, R> Slice<R> findAfter(EntityProjection<E, R> projection, Specification<E> specification, Sort.Order order,
+                                     KeysetCursor after, int size) {
+        if (after != null && (!after.getProperty().equals(order.getProperty()) || after.getDirection() != order.getDirection())) {
+            throw new IllegalArgumentException("The cursor was created for another sort order");
+        }
+        if (!projection.getFieldNames().contains(order.getProperty())) {
+            throw new IllegalArgumentException("Cannot paginate on " + order.getProperty());
+        }
+        SingularAttribute<? super E, ?> attribute = entityManager.getMetamodel().entity(projection.getEntityType())
+            .getSingularAttribute(order.getProperty());
+        if (attribute.getPersistentAttributeType() != Attribute.PersistentAttributeType.BASIC ||
+            !Comparable.class.isAssignableFrom(attribute.getJavaType())) {
+            throw new IllegalArgumentException("Cannot paginate on " + order.getProperty());
+        }
+        boolean byId = ID.equals(order.getProperty());
+        boolean nullable = !byId && attribute.isOptional();
+        boolean afterNullKey = !byId && after != null && after.getValue() == null;
+
+        List<R> content = new ArrayList<>();
+        if (!afterNullKey) {
+            Specification<E> seek = (root, query, cb) -> {
+                Path<Comparable<Object>> key = root.get(order.getProperty());
+                Predicate keyAfter = after == null ? null :
+                    seekPredicate(cb, key, root.get(ID), order, after, byId, attribute.getJavaType());
+                if (!nullable) {
+                    return keyAfter;
+                }
+                return keyAfter == null ? cb.isNotNull(key) : cb.and(cb.isNotNull(key), keyAfter);
+            };
+            content.addAll(findSeek(projection, specification, seek, order, !byId, size + 1));
+        }
+        if (nullable && content.size() <= size) {
+            Specification<E> nullTail = (root, query, cb) -> {
+                Predicate nullKey = cb.isNull(root.get(order.getProperty()));
+                return afterNullKey ? cb.and(nullKey, idAfter(cb, root.get(ID), order, after)) : nullKey;
+            };
+            content.addAll(findSeek(projection, specification, nullTail, order, false, size + 1 - content.size()));
+        }
+        return toSlice(content, PageRequest.of(0, size, Sort.by(order)));
+    }
+
+    private <E, R> TypedQuery<Object> createQuery(EntityProjection<E, R> projection, Specification<E> specification, Sort sort) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object> query = createCriteriaQuery(cb, projection);
+        Root<E> root = query.from(projection.getEntityType());
+        Predicate filter = specification == null ? null : specification.toPredicate(root, query, cb);
+        if (filter != null) {
+            query.where(filter);
+        }
+        query.select(selection(projection, root, cb)).orderBy(QueryUtils.toOrders(sort, root, cb));
+        return entityManager.createQuery(query);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CriteriaQuery<Object> createCriteriaQuery(CriteriaBuilder cb, EntityProjection<?, ?> projection) {
+        return (CriteriaQuery<Object>) cb.createQuery(projection.getQueryType());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> Selection<Object> selection(EntityProjection<E, ?> projection, Root<E> root, CriteriaBuilder cb) {
+        return (Selection<Object>) projection.select(root, cb);
+    }
+
+    private static <R> List<R> toResults(EntityProjection<?, R> projection, List<Object> rows) {
+        List<R> results = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            results.add(projection.toResult(row));
+        }
+        return results;
+    }
+
+    private <R> Slice<R> toSlice(List<R> content, Pageable pageable) {
+        boolean hasNext = pageable.isPaged() && content.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? content.subList(0, pageable.getPageSize()) : content, pageable, hasNext);
+    }
+
+    private <E, R> List<R> findSeek(EntityProjection<E, R> projection, Specification<E> specification, Specification<E> seek,
+                                    Sort.Order order, boolean byKey, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object> query = createCriteriaQuery(cb, projection);
+        Root<E> root = query.from(projection.getEntityType());
+        Predicate filter = Specification.where(specification).and(seek).toPredicate(root, query, cb);
+        if (filter != null) {
+            query.where(filter);
+        }
+        List<javax.persistence.criteria.Order> orders = new ArrayList<>();
+        if (byKey) {
+            Path<?> key = root.get(order.getProperty());
+            orders.add(order.isAscending() ? cb.asc(key) : cb.desc(key));
+        }
+        Path<Long> id = root.get(ID);
+        orders.add(order.isAscending() ? cb.asc(id) : cb.desc(id));
+        query.select(selection(projection, root, cb)).orderBy(orders);
+        return toResults(projection, entityManager.createQuery(query).setMaxResults(limit).getResultList());
+    }
+
+    private static Predicate idAfter(CriteriaBuilder cb, Path<Long> id, Sort.Order order, KeysetCursor after) {
+        return order.isAscending() ? cb.greaterThan(id, after.getId()) : cb.lessThan(id, after.getId());
+    }
+
+    private Predicate seekPredicate(CriteriaBuilder cb, Path<Comparable<Object>> key, Path<Long> id, Sort.Order order,
+                                    KeysetCursor after, boolean byId, Class<?> keyType) {
+        Predicate idAfter = idAfter(cb, id, order, after);
+        if (byId) {
+            return idAfter;
+        }
+        @SuppressWarnings("unchecked")
+        Comparable<Object> value = (Comparable<Object>) DefaultConversionService.getSharedInstance().convert(after.getValue(), keyType);
+        // key >= value bounds the index range, the rest skips the rows of the value up to the cursor
+        Predicate keyFrom = order.isAscending() ? cb.greaterThanOrEqualTo(key, value) : cb.lessThanOrEqualTo(key, value);
+        Predicate keyAfter = order.isAscending() ? cb.greaterThan(key, value) : cb.lessThan(key, value);
+        return cb.and(keyFrom, cb.or(keyAfter, idAfter));
+    }
+}
@@ -0,0 +1,20 @@
+package com.themkers.inventario.service;
+
+/**
+ * Thrown when a snapshot export is requested while another one is still running.
+ */
+public class SnapshotExportInProgressException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String jobId;
+
+    public SnapshotExportInProgressException(String jobId) {
+        super("Snapshot export " + jobId + " is still running");
+        this.jobId = jobId;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+}
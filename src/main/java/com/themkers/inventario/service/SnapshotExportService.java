@@ -0,0 +1,436 @@
+package com.themkers.inventario.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.themkers.inventario.config.ApplicationProperties;
+import com.themkers.inventario.service.dto.SnapshotExportJobDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Service exporting the producto and stock tables to local files, for backups and offline analysis.
+ * <p>
+ * The id space of each table is split in ranges of {@code application.snapshot-export.chunk-size} ids, which are read
+ * in parallel on a dedicated executor, so that a long export doesn't starve the {@code taskExecutor} used by
+ * {@code @Async} methods. Each range is written to its own gzipped CSV file through a {@link FileChannel}, next to a
+ * {@code .sha256} file in the {@code sha256sum} format, and a {@code manifest.json} listing the chunks is written once
+ * all of them are on disk.
+ * <p>
+ * On PostgreSQL, a coordinator transaction exports its snapshot with {@code pg_export_snapshot()} and every chunk is
+ * read in a transaction importing it, so the files are consistent with each other. Other databases have no way to
+ * share a snapshot between connections: each chunk is then read in its own repeatable-read transaction, and the job
+ * is reported as not consistent.
+ */
+@Service
+public class SnapshotExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotExportService.class);
+
+    private static final List<Table> TABLES = Arrays.asList(
+        new Table("producto", "id", "nombre", "precio"),
+        new Table("stock", "id", "cantidad", "producto_id"));
+
+    private static final Pattern SNAPSHOT_ID = Pattern.compile("[0-9A-Fa-f-]+");
+
+    private static final DateTimeFormatter JOB_ID_FORMAT =
+        DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmssSSS'Z'").withZone(ZoneOffset.UTC);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ApplicationProperties.SnapshotExport properties;
+
+    private final DataSource dataSource;
+
+    private final ObjectMapper objectMapper;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ExecutorService coordinator;
+
+    private final ExecutorService workers;
+
+    private final Map<String, Counter> rowCounters = new HashMap<>();
+
+    private final Map<String, Counter> byteCounters = new HashMap<>();
+
+    private volatile Job lastJob;
+
+    public SnapshotExportService(ApplicationProperties applicationProperties, DataSource dataSource,
+                                 ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.properties = applicationProperties.getSnapshotExport();
+        this.dataSource = dataSource;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.coordinator = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("snapshot-export-coordinator-"));
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(properties.getThreads(), properties.getThreads(),
+            60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new CustomizableThreadFactory("snapshot-export-"));
+        workers.allowCoreThreadTimeOut(true);
+        this.workers = workers;
+        for (Table table : TABLES) {
+            rowCounters.put(table.name, Counter.builder("snapshot.export.rows")
+                .description("Rows written to snapshot export files")
+                .tag("table", table.name)
+                .register(meterRegistry));
+            byteCounters.put(table.name, Counter.builder("snapshot.export.bytes")
+                .description("Compressed bytes written to snapshot export files")
+                .baseUnit("bytes")
+                .tag("table", table.name)
+                .register(meterRegistry));
+        }
+        Gauge.builder("snapshot.export.progress", this, service -> service.getLastJob()
+            .map(job -> job.getTotalChunks() == 0 ? 0 : (double) job.getCompletedChunks() / job.getTotalChunks())
+            .orElse(Double.NaN))
+            .description("Ratio of the chunks of the last snapshot export already written")
+            .register(meterRegistry);
+        Gauge.builder("snapshot.export.throughput", this, service -> service.getLastJob()
+            .map(SnapshotExportJobDTO::getRowsPerSecond)
+            .orElse(Double.NaN))
+            .description("Rows per second written by the last snapshot export")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Start a snapshot export in the background.
+     *
+     * @return a future completed with the final state of the job, whether it succeeded or failed.
+     * @throws SnapshotExportInProgressException if an export is already running.
+     */
+    public synchronized CompletableFuture<SnapshotExportJobDTO> start() {
+        Job running = lastJob;
+        if (running != null && running.isRunning()) {
+            throw new SnapshotExportInProgressException(running.id);
+        }
+        Instant now = Instant.now();
+        String id = JOB_ID_FORMAT.format(now);
+        Job job = new Job(id, Paths.get(properties.getDirectory()).resolve(id), now);
+        lastJob = job;
+        log.info("Starting snapshot export {} to {}", id, job.directory);
+        return CompletableFuture.supplyAsync(() -> run(job), coordinator);
+    }
+
+    /**
+     * @return the state of the running export, or else of the last one.
+     */
+    public Optional<SnapshotExportJobDTO> getLastJob() {
+        return Optional.ofNullable(lastJob).map(Job::toDTO);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        coordinator.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private SnapshotExportJobDTO run(Job job) {
+        try (Connection connection = dataSource.getConnection()) {
+            Files.createDirectories(job.directory.getParent());
+            Files.createDirectory(job.directory);
+            beginTransaction(connection);
+            String snapshotId = exportSnapshot(connection);
+            if (snapshotId == null) {
+                log.warn("The database can't share a snapshot between connections, the chunks of snapshot export {} " +
+                    "are each read in their own transaction", job.id);
+            }
+            List<SnapshotExportJobDTO.Chunk> chunks = planChunks(connection);
+            job.start(snapshotId != null, chunks.size());
+            List<Future<?>> futures = new ArrayList<>(chunks.size());
+            for (SnapshotExportJobDTO.Chunk chunk : chunks) {
+                futures.add(workers.submit(() -> {
+                    exportChunk(job, snapshotId, chunk);
+                    return null;
+                }));
+            }
+            try {
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (ExecutionException e) {
+                futures.forEach(future -> future.cancel(true));
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+            connection.commit();
+
+            SnapshotExportJobDTO result = job.toDTO(SnapshotExportJobDTO.Status.COMPLETED, Instant.now(), null);
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(job.directory.resolve("manifest.json").toFile(), result);
+            job.finish(result);
+            log.info("Snapshot export {} completed: {} rows in {} chunks", job.id, result.getRows(), result.getTotalChunks());
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            log.error("Snapshot export {} failed", job.id, e);
+            job.finish(job.toDTO(SnapshotExportJobDTO.Status.FAILED, Instant.now(), String.valueOf(e.getMessage())));
+        }
+        SnapshotExportJobDTO result = job.toDTO();
+        Timer.builder("snapshot.export.duration")
+            .description("Duration of snapshot exports")
+            .tag("status", result.getStatus().name())
+            .register(meterRegistry)
+            .record(Duration.between(result.getStartedAt(), result.getFinishedAt()));
+        return result;
+    }
+
+    private List<SnapshotExportJobDTO.Chunk> planChunks(Connection connection) throws SQLException {
+        List<SnapshotExportJobDTO.Chunk> chunks = new ArrayList<>();
+        for (Table table : TABLES) {
+            try (Statement statement = connection.createStatement();
+                 ResultSet range = statement.executeQuery("select min(id), max(id) from " + table.name)) {
+                range.next();
+                long min = range.getLong(1);
+                if (range.wasNull()) {
+                    continue;
+                }
+                long max = range.getLong(2);
+                int index = 0;
+                for (long from = min; from <= max; from += properties.getChunkSize()) {
+                    SnapshotExportJobDTO.Chunk chunk = new SnapshotExportJobDTO.Chunk();
+                    chunk.setTable(table.name);
+                    chunk.setFromId(from);
+                    chunk.setToId(Math.min(max, from + properties.getChunkSize() - 1));
+                    chunk.setFile(String.format("%s-%05d.csv.gz", table.name, ++index));
+                    chunks.add(chunk);
+                }
+            }
+        }
+        return chunks;
+    }
+
+    private void exportChunk(Job job, String snapshotId, SnapshotExportJobDTO.Chunk chunk)
+        throws SQLException, IOException, NoSuchAlgorithmException {
+        Table table = TABLES.stream().filter(t -> t.name.equals(chunk.getTable())).findFirst()
+            .orElseThrow(IllegalStateException::new);
+        try (Connection connection = dataSource.getConnection()) {
+            beginTransaction(connection);
+            if (snapshotId != null) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("set transaction snapshot '" + snapshotId + "'");
+                }
+            }
+            try (PreparedStatement statement = connection.prepareStatement("select " + String.join(", ", table.columns) +
+                " from " + table.name + " where id between ? and ? order by id")) {
+                statement.setFetchSize(properties.getFetchSize());
+                statement.setLong(1, chunk.getFromId());
+                statement.setLong(2, chunk.getToId());
+                try (ResultSet rows = statement.executeQuery()) {
+                    writeChunk(job, table, chunk, rows);
+                }
+            }
+            connection.commit();
+        }
+        byteCounters.get(table.name).increment(chunk.getBytes());
+        job.completeChunk(chunk);
+        log.debug("Snapshot export {} wrote {}: {} rows", job.id, chunk.getFile(), chunk.getRows());
+    }
+
+    private void writeChunk(Job job, Table table, SnapshotExportJobDTO.Chunk chunk, ResultSet rows)
+        throws SQLException, IOException, NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        Path file = job.directory.resolve(chunk.getFile());
+        Counter rowCounter = rowCounters.get(table.name);
+        long count = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+             GZIPOutputStream gzip = new GZIPOutputStream(new DigestOutputStream(Channels.newOutputStream(channel), digest), BUFFER_SIZE);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            writer.write(String.join(",", table.columns));
+            writer.write('\n');
+            while (rows.next()) {
+                for (int i = 1; i <= table.columns.length; i++) {
+                    if (i > 1) {
+                        writer.write(',');
+                    }
+                    Object value = rows.getObject(i);
+                    if (value != null) {
+                        writer.write(ExportService.csvValue(value instanceof BigDecimal ?
+                            ((BigDecimal) value).toPlainString() : value.toString()));
+                    }
+                }
+                writer.write('\n');
+                if (++count % properties.getFetchSize() == 0) {
+                    job.addRows(properties.getFetchSize());
+                    rowCounter.increment(properties.getFetchSize());
+                }
+            }
+            writer.flush();
+            gzip.finish();
+            channel.force(true);
+            chunk.setBytes(channel.size());
+        }
+        job.addRows(count % properties.getFetchSize());
+        rowCounter.increment(count % properties.getFetchSize());
+        chunk.setRows(count);
+        chunk.setSha256(toHex(digest.digest()));
+        Files.write(job.directory.resolve(chunk.getFile() + ".sha256"),
+            Collections.singletonList(chunk.getSha256() + "  " + chunk.getFile()), StandardCharsets.UTF_8);
+    }
+
+    private static void beginTransaction(Connection connection) throws SQLException {
+        connection.setAutoCommit(false);
+        connection.setReadOnly(true);
+        connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+    }
+
+    /**
+     * Export the snapshot of the current transaction so that other connections can import it.
+     *
+     * @return the id of the snapshot, or {@code null} if the database can't share snapshots.
+     */
+    private static String exportSnapshot(Connection connection) throws SQLException {
+        if (!"PostgreSQL".equals(connection.getMetaData().getDatabaseProductName())) {
+            return null;
+        }
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("select pg_export_snapshot()")) {
+            result.next();
+            String snapshotId = result.getString(1);
+            if (!SNAPSHOT_ID.matcher(snapshotId).matches()) {
+                throw new SQLException("Unexpected snapshot id: " + snapshotId);
+            }
+            return snapshotId;
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static final class Table {
+
+        private final String name;
+
+        private final String[] columns;
+
+        private Table(String name, String... columns) {
+            this.name = name;
+            this.columns = columns;
+        }
+    }
+
+    /**
+     * The mutable state of an export, updated by the coordinator and the workers.
+     */
+    private static final class Job {
+
+        private final String id;
+
+        private final Path directory;
+
+        private final Instant startedAt;
+
+        private boolean consistent;
+
+        private int totalChunks;
+
+        private final List<SnapshotExportJobDTO.Chunk> completedChunks = new ArrayList<>();
+
+        private long rows;
+
+        private long bytes;
+
+        private SnapshotExportJobDTO result;
+
+        private Job(String id, Path directory, Instant startedAt) {
+            this.id = id;
+            this.directory = directory;
+            this.startedAt = startedAt;
+        }
+
+        private synchronized void start(boolean consistent, int totalChunks) {
+            this.consistent = consistent;
+            this.totalChunks = totalChunks;
+        }
+
+        private synchronized void addRows(long rows) {
+            this.rows += rows;
+        }
+
+        private synchronized void completeChunk(SnapshotExportJobDTO.Chunk chunk) {
+            completedChunks.add(chunk);
+            bytes += chunk.getBytes();
+        }
+
+        private synchronized void finish(SnapshotExportJobDTO result) {
+            this.result = result;
+        }
+
+        private synchronized boolean isRunning() {
+            return result == null;
+        }
+
+        private synchronized SnapshotExportJobDTO toDTO() {
+            return result != null ? result : toDTO(SnapshotExportJobDTO.Status.RUNNING, null, null);
+        }
+
+        private synchronized SnapshotExportJobDTO toDTO(SnapshotExportJobDTO.Status status, Instant finishedAt, String error) {
+            SnapshotExportJobDTO dto = new SnapshotExportJobDTO();
+            dto.setId(id);
+            dto.setStatus(status);
+            dto.setDirectory(directory.toString());
+            dto.setConsistent(consistent);
+            dto.setStartedAt(startedAt);
+            dto.setFinishedAt(finishedAt);
+            dto.setTotalChunks(totalChunks);
+            dto.setCompletedChunks(completedChunks.size());
+            dto.setRows(rows);
+            dto.setBytes(bytes);
+            long elapsedMillis = Duration.between(startedAt, finishedAt != null ? finishedAt : Instant.now()).toMillis();
+            dto.setRowsPerSecond(elapsedMillis == 0 ? 0 : rows * 1000d / elapsedMillis);
+            List<SnapshotExportJobDTO.Chunk> chunks = new ArrayList<>(completedChunks);
+            chunks.sort((a, b) -> a.getFile().compareTo(b.getFile()));
+            dto.setChunks(chunks);
+            return dto;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.themkers.inventario.service;
+
+/**
+ * Thrown when an operation targets a stock which doesn't exist.
+ */
+public class StockNotFoundException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long stockId;
+
+    public StockNotFoundException(Long stockId) {
+        super("Stock " + stockId + " not found");
+        this.stockId = stockId;
+    }
+
+    public Long getStockId() {
+        return stockId;
+    }
+}
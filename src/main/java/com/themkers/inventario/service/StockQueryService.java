@@ -1,45 +1,90 @@
 package com.themkers.inventario.service;
 
 import java.util.List;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.stream.Stream;
 
+import javax.persistence.criteria.Join;
 import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Root;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import io.github.jhipster.service.QueryService;
 
+import com.themkers.inventario.config.CriteriaQueryKeyGenerator;
 import com.themkers.inventario.domain.Stock;
 import com.themkers.inventario.domain.*; // for static metamodels
 import com.themkers.inventario.repository.StockRepository;
+import com.themkers.inventario.service.dto.CachedPage;
+import com.themkers.inventario.service.dto.KeysetCursor;
+import com.themkers.inventario.service.dto.SparseFieldset;
 import com.themkers.inventario.service.dto.StockCriteria;
 import com.themkers.inventario.service.dto.StockDTO;
-import com.themkers.inventario.service.mapper.StockMapper;
 
 /**
  * Service for executing complex queries for {@link Stock} entities in the database.
  * The main input is a {@link StockCriteria} which gets converted to {@link Specification},
  * in a way that all the filters must apply.
  * It returns a {@link List} of {@link StockDTO} or a {@link Page} of {@link StockDTO} which fulfills the criteria.
+ * Pages and counts are cached in {@link #STOCK_QUERIES_CACHE}, which is cleared by the writes of stocks and productos.
  */
 @Service
 @Transactional(readOnly = true)
 public class StockQueryService extends QueryService<Stock> {
 
+    public static final String STOCK_QUERIES_CACHE = "stock-queries";
+
+    /**
+     * Selects the columns of {@link StockDTO} straight from the query, without loading managed entities.
+     * The producto is left joined, so that its nombre is read in the same query, reusing the join of the
+     * specification when it filters on the producto.
+     */
+    private static final EntityProjection<Stock, StockDTO> PROJECTION = new EntityProjection<>(Stock.class, StockDTO.class,
+        (root, cb) -> {
+            Join<Stock, Producto> producto = productoJoin(root);
+            return cb.construct(StockDTO.class, root.get(Stock_.id), root.get(Stock_.cantidad),
+                producto.get(Producto_.id), producto.get(Producto_.nombre));
+        });
+
+    /**
+     * The same columns as {@link #PROJECTION}, as fields which can be left out of the query. The id of the producto
+     * is read from the foreign key, so the producto is only joined when its nombre is requested.
+     */
+    private static final EntityProjection<Stock, StockDTO> FIELDS_PROJECTION = EntityProjection.ofFields(Stock.class, StockDTO.class, StockDTO::new,
+        EntityProjection.field("id", (root, cb) -> root.get(Stock_.id), StockDTO::setId),
+        EntityProjection.field("cantidad", (root, cb) -> root.get(Stock_.cantidad), StockDTO::setCantidad),
+        EntityProjection.field("productoId", (root, cb) -> root.get(Stock_.producto).get(Producto_.id), StockDTO::setProductoId),
+        EntityProjection.field("productoNombre", (root, cb) -> productoJoin(root).get(Producto_.nombre), StockDTO::setProductoNombre));
+
+    /**
+     * The names of the fields of {@link StockDTO} which can be requested.
+     */
+    public static final Set<String> FIELD_NAMES = FIELDS_PROJECTION.getFieldNames();
+
     private final Logger log = LoggerFactory.getLogger(StockQueryService.class);
 
     private final StockRepository stockRepository;
 
-    private final StockMapper stockMapper;
+    private final ProjectionQueryService projectionQueryService;
 
-    public StockQueryService(StockRepository stockRepository, StockMapper stockMapper) {
+    private final TableStatisticsService tableStatisticsService;
+
+    public StockQueryService(StockRepository stockRepository, ProjectionQueryService projectionQueryService,
+                             TableStatisticsService tableStatisticsService) {
         this.stockRepository = stockRepository;
-        this.stockMapper = stockMapper;
+        this.projectionQueryService = projectionQueryService;
+        this.tableStatisticsService = tableStatisticsService;
     }
 
     /**
@@ -51,7 +96,21 @@ public class StockQueryService extends QueryService<Stock> {
     public List<StockDTO> findByCriteria(StockCriteria criteria) {
         log.debug("find by criteria : {}", criteria);
         final Specification<Stock> specification = createSpecification(criteria);
-        return stockMapper.toDto(stockRepository.findAll(specification));
+        return projectionQueryService.findAll(PROJECTION, specification);
+    }
+
+    /**
+     * Return a {@link Stream} of {@link StockDTO} which matches the criteria from the database, in id order.
+     * The stream reads the database as it is consumed: it must be consumed in the current transaction, and closed.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param fetchSize The number of rows fetched from the database at a time.
+     * @return the matching entities.
+     */
+    @Transactional(readOnly = true)
+    public Stream<StockDTO> streamByCriteria(StockCriteria criteria, int fetchSize) {
+        log.debug("stream by criteria : {}", criteria);
+        final Specification<Stock> specification = createSpecification(criteria);
+        return projectionQueryService.stream(PROJECTION, specification, Sort.by(Stock_.ID), fetchSize);
     }
 
     /**
@@ -61,11 +120,64 @@ public class StockQueryService extends QueryService<Stock> {
      * @return the matching entities.
      */
     @Transactional(readOnly = true)
+    @Cacheable(cacheNames = STOCK_QUERIES_CACHE, keyGenerator = CriteriaQueryKeyGenerator.NAME)
     public Page<StockDTO> findByCriteria(StockCriteria criteria, Pageable page) {
         log.debug("find by criteria : {}, page: {}", criteria, page);
         final Specification<Stock> specification = createSpecification(criteria);
-        return stockRepository.findAll(specification, page)
-            .map(stockMapper::toDto);
+        return CachedPage.of(projectionQueryService.findPage(PROJECTION, specification, page,
+            () -> stockRepository.count(specification)));
+    }
+
+    /**
+     * Return a {@link Page} of {@link StockDTO} which matches the criteria from the database, with only some of their fields.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param page The page, which should be returned.
+     * @param fields The fields to read, or {@code null} for all of them.
+     * @return the matching entities.
+     */
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = STOCK_QUERIES_CACHE, keyGenerator = CriteriaQueryKeyGenerator.NAME)
+    public Page<StockDTO> findByCriteria(StockCriteria criteria, Pageable page, SparseFieldset fields) {
+        log.debug("find by criteria : {}, page: {}, fields: {}", criteria, page, fields);
+        final Specification<Stock> specification = createSpecification(criteria);
+        return CachedPage.of(projectionQueryService.findPage(projection(fields), specification, page,
+            () -> stockRepository.count(specification)));
+    }
+
+    /**
+     * Return a {@link Slice} of {@link StockDTO} which matches the criteria from the database, without counting them.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param page The page, which should be returned.
+     * @param fields The fields to read, or {@code null} for all of them.
+     * @return the matching entities.
+     */
+    @Transactional(readOnly = true)
+    public Slice<StockDTO> findSliceByCriteria(StockCriteria criteria, Pageable page, SparseFieldset fields) {
+        log.debug("find slice by criteria : {}, page: {}, fields: {}", criteria, page, fields);
+        final Specification<Stock> specification = createSpecification(criteria);
+        return projectionQueryService.findSlice(projection(fields), specification, page);
+    }
+
+    /**
+     * Return a {@link Slice} of {@link StockDTO} which matches the criteria from the database, using keyset pagination.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param order The sort order, on the id or on a single attribute read by the projection.
+     * @param after The cursor of the last entity of the previous slice, or {@code null} for the first slice.
+     * @param size The size of the slice.
+     * @param fields The fields to read, or {@code null} for all of them. The id and the sort property are always read,
+     * for the cursor of the next slice.
+     * @return the matching entities.
+     */
+    @Transactional(readOnly = true)
+    public Slice<StockDTO> findByCriteriaAfter(StockCriteria criteria, Sort.Order order, KeysetCursor after, int size, SparseFieldset fields) {
+        log.debug("find by criteria : {}, order: {}, after: {}, fields: {}", criteria, order, after, fields);
+        final Specification<Stock> specification = createSpecification(criteria);
+        SparseFieldset readFields = fields == null ? null : fields.with(Stock_.ID);
+        if (readFields != null && FIELD_NAMES.contains(order.getProperty())) {
+            readFields = readFields.with(order.getProperty());
+        }
+        EntityProjection<Stock, StockDTO> projection = readFields == null ? FIELDS_PROJECTION : FIELDS_PROJECTION.narrow(readFields);
+        return projectionQueryService.findAfter(projection, specification, order, after, size);
     }
 
     /**
@@ -74,12 +186,32 @@ public class StockQueryService extends QueryService<Stock> {
      * @return the number of matching entities.
      */
     @Transactional(readOnly = true)
+    @Cacheable(cacheNames = STOCK_QUERIES_CACHE, keyGenerator = CriteriaQueryKeyGenerator.NAME)
     public long countByCriteria(StockCriteria criteria) {
         log.debug("count by criteria : {}", criteria);
         final Specification<Stock> specification = createSpecification(criteria);
         return stockRepository.count(specification);
     }
 
+    /**
+     * Return a cheap estimate of the number of matching entities in the database.
+     * Estimates come from the database statistics, so they are only available when no filter is set.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @return the estimated number of matching entities, or nothing if there is no cheap estimate.
+     */
+    @Transactional(readOnly = true)
+    public OptionalLong estimateCountByCriteria(StockCriteria criteria) {
+        log.debug("estimate count by criteria : {}", criteria);
+        if (criteria != null && !new StockCriteria().equals(criteria)) {
+            return OptionalLong.empty();
+        }
+        return tableStatisticsService.estimateRowCount("stock");
+    }
+
+    private static EntityProjection<Stock, StockDTO> projection(SparseFieldset fields) {
+        return fields == null ? PROJECTION : FIELDS_PROJECTION.narrow(fields);
+    }
+
     /**
      * Function to convert {@link StockCriteria} to a {@link Specification}
      * @param criteria The object which holds all the filters, which the entities should match.
@@ -96,9 +228,23 @@ public class StockQueryService extends QueryService<Stock> {
             }
             if (criteria.getProductoId() != null) {
                 specification = specification.and(buildSpecification(criteria.getProductoId(),
-                    root -> root.join(Stock_.producto, JoinType.LEFT).get(Producto_.id)));
+                    root -> productoJoin(root).get(Producto_.id)));
             }
         }
         return specification;
     }
+
+    /**
+     * Return the left join of the producto of a stock, creating it only if the query doesn't have it yet.
+     * @param root the root of the query.
+     * @return the join of the producto.
+     */
+    @SuppressWarnings("unchecked")
+    private static Join<Stock, Producto> productoJoin(Root<Stock> root) {
+        return root.getJoins().stream()
+            .filter(join -> join.getAttribute().equals(Stock_.producto) && join.getJoinType() == JoinType.LEFT)
+            .map(join -> (Join<Stock, Producto>) join)
+            .findFirst()
+            .orElseGet(() -> root.join(Stock_.producto, JoinType.LEFT));
+    }
 }
@@ -2,20 +2,43 @@ package com.themkers.inventario.service;
 
 import com.themkers.inventario.domain.Stock;
 import com.themkers.inventario.repository.StockRepository;
+import com.themkers.inventario.service.dto.ChangesDTO;
+import com.themkers.inventario.service.dto.ChangesToken;
+import com.themkers.inventario.service.dto.StockAdjustmentDTO;
+import com.themkers.inventario.service.dto.StockChangeDTO;
 import com.themkers.inventario.service.dto.StockDTO;
 import com.themkers.inventario.service.mapper.StockMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 /**
  * Service Implementation for managing {@link Stock}.
+ * <p>
+ * Each change of a stock is published as a {@link StockChangeDTO} event, delivered to the listeners once its
+ * transaction is committed. Saves, adjustments written to the database and deletions are also recorded in the
+ * outbox, for the other services, and the changes of quantities in the {@link StockValuationService valuation} of
+ * the stocks.
  */
 @Service
 @Transactional
@@ -27,22 +50,151 @@ public class StockService {
 
     private final StockMapper stockMapper;
 
-    public StockService(StockRepository stockRepository, StockMapper stockMapper) {
+    private final HotStockCounterService hotStockCounterService;
+
+    private final EntityManager entityManager;
+
+    private final ChangeTrackingService changeTrackingService;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final OutboxService outboxService;
+
+    private final StockValuationService stockValuationService;
+
+    public StockService(StockRepository stockRepository, StockMapper stockMapper, HotStockCounterService hotStockCounterService,
+                        EntityManager entityManager, ChangeTrackingService changeTrackingService,
+                        ApplicationEventPublisher eventPublisher, OutboxService outboxService,
+                        StockValuationService stockValuationService) {
         this.stockRepository = stockRepository;
         this.stockMapper = stockMapper;
+        this.hotStockCounterService = hotStockCounterService;
+        this.entityManager = entityManager;
+        this.changeTrackingService = changeTrackingService;
+        this.eventPublisher = eventPublisher;
+        this.outboxService = outboxService;
+        this.stockValuationService = stockValuationService;
     }
 
     /**
      * Save a stock.
+     * <p>
+     * An update is rejected if the stock has been updated since the version of the DTO, if any. Without a version,
+     * the update overwrites the current stock.
      *
      * @param stockDTO the entity to save.
-     * @return the persisted entity.
+     * @return the persisted entity, with its new version.
+     * @throws org.springframework.dao.OptimisticLockingFailureException if the version of the DTO is not the current one.
      */
+    @CacheEvict(cacheNames = StockQueryService.STOCK_QUERIES_CACHE, allEntries = true)
     public StockDTO save(StockDTO stockDTO) {
         log.debug("Request to save Stock : {}", stockDTO);
+        return doSave(stockDTO, null);
+    }
+
+    /**
+     * Update a stock, if it is still the expected one.
+     * <p>
+     * The expectation is checked against the stock read from the primary database once it is locked, so a
+     * concurrent update is either seen, or waits for this one. The version of the DTO is ignored.
+     *
+     * @param stockDTO the entity to update.
+     * @param expected the expectation on the current stock, as returned by {@link #findOne(Long)}.
+     * @return the persisted entity, with its new version.
+     * @throws org.springframework.dao.OptimisticLockingFailureException if the stock doesn't exist, or is not the expected one.
+     */
+    @CacheEvict(cacheNames = StockQueryService.STOCK_QUERIES_CACHE, allEntries = true)
+    public StockDTO save(StockDTO stockDTO, Predicate<StockDTO> expected) {
+        log.debug("Request to update Stock : {}", stockDTO);
+        return doSave(stockDTO, Objects.requireNonNull(expected));
+    }
+
+    private StockDTO doSave(StockDTO stockDTO, Predicate<StockDTO> expected) {
         Stock stock = stockMapper.toEntity(stockDTO);
-        stock = stockRepository.save(stock);
-        return stockMapper.toDto(stock);
+        BigDecimal previousValue = stockValuationService.lockStockValue(stockDTO.getId(), stockDTO.getProductoId());
+        if (expected != null) {
+            Stock current = stockRepository.findById(stock.getId())
+                .filter(found -> expected.test(withPendingDelta(stockMapper.toDto(found))))
+                .orElseThrow(() -> new ObjectOptimisticLockingFailureException(Stock.class, stockDTO.getId()));
+            stock.setVersion(current.getVersion());
+        } else if (stockDTO.getId() != null && stockDTO.getVersion() == null) {
+            stockRepository.findById(stock.getId()).map(Stock::getVersion).ifPresent(stock::setVersion);
+        }
+        // Flushed so that the version of the result is the incremented one
+        stock = stockRepository.saveAndFlush(stock);
+        StockDTO result = stockMapper.toDto(stock);
+        stockValuationService.recordStockValue(result.getId(), previousValue);
+        outboxService.recordSaved(Stock.class, result.getId(), result);
+        eventPublisher.publishEvent(new StockChangeDTO(result.getId(), result.getProductoId(), result.getCantidad(), false));
+        return result;
+    }
+
+    /**
+     * Atomically add a signed delta to the quantity of a stock.
+     * <p>
+     * The change is applied with a single conditional {@code UPDATE}, so concurrent adjustments of the same
+     * stock never lose updates and the quantity can never become negative. Adjustments of hot stocks are
+     * accumulated in memory by the {@link HotStockCounterService} instead.
+     *
+     * @param id the id of the stock.
+     * @param delta the signed amount to add to the quantity.
+     * @return the quantity after the adjustment.
+     * @throws StockNotFoundException if the stock doesn't exist.
+     * @throws InsufficientStockException if the adjustment would make the quantity negative.
+     */
+    @CacheEvict(cacheNames = StockQueryService.STOCK_QUERIES_CACHE, allEntries = true,
+        condition = "!@hotStockCounterService.isHot(#id)")
+    public long adjust(Long id, long delta) {
+        log.debug("Request to adjust Stock : {} by {}", id, delta);
+        long cantidad;
+        if (hotStockCounterService.isHot(id)) {
+            cantidad = hotStockCounterService.adjust(id, delta);
+        } else {
+            if (stockRepository.adjustCantidad(id, delta) == 0) {
+                Long available = stockRepository.findCantidadById(id)
+                    .orElseThrow(() -> new StockNotFoundException(id));
+                throw new InsufficientStockException(id, available, delta);
+            }
+            stockValuationService.recordAdjustment(id, delta);
+            StockDTO result = stockRepository.findById(id).map(stockMapper::toDto)
+                .orElseThrow(() -> new StockNotFoundException(id));
+            outboxService.recordSaved(Stock.class, id, result);
+            cantidad = result.getCantidad();
+        }
+        eventPublisher.publishEvent(new StockChangeDTO(id, null, cantidad, false));
+        return cantidad;
+    }
+
+    /**
+     * Atomically apply a batch of stock adjustments: either all of them are applied, or none is.
+     * <p>
+     * Adjustments are applied in stock id order, so that concurrent batches lock rows in the same order.
+     *
+     * @param adjustments the adjustments to apply.
+     * @return the applied adjustments, with the resulting quantities, in stock id order.
+     * @throws StockNotFoundException if one of the stocks doesn't exist.
+     * @throws InsufficientStockException if one of the adjustments would make a quantity negative.
+     */
+    @CacheEvict(cacheNames = StockQueryService.STOCK_QUERIES_CACHE, allEntries = true)
+    public List<StockAdjustmentDTO> adjust(List<StockAdjustmentDTO> adjustments) {
+        log.debug("Request to adjust {} Stocks", adjustments.size());
+        List<StockAdjustmentDTO> sorted = new ArrayList<>(adjustments);
+        sorted.sort(Comparator.comparing(StockAdjustmentDTO::getStockId));
+        List<StockAdjustmentDTO> result = new ArrayList<>(sorted.size());
+        try {
+            for (StockAdjustmentDTO adjustment : sorted) {
+                StockAdjustmentDTO applied = new StockAdjustmentDTO(adjustment.getStockId(), adjustment.getDelta());
+                applied.setCantidad(adjust(adjustment.getStockId(), adjustment.getDelta()));
+                result.add(applied);
+            }
+        } catch (RuntimeException e) {
+            // The transaction rollback only reverts the database, hot stock counters must be reverted by hand
+            result.stream()
+                .filter(applied -> hotStockCounterService.isHot(applied.getStockId()))
+                .forEach(applied -> hotStockCounterService.revert(applied.getStockId(), applied.getDelta()));
+            throw e;
+        }
+        return result;
     }
 
     /**
@@ -68,7 +220,65 @@ public class StockService {
     public Optional<StockDTO> findOne(Long id) {
         log.debug("Request to get Stock : {}", id);
         return stockRepository.findById(id)
-            .map(stockMapper::toDto);
+            .map(stockMapper::toDto)
+            .map(this::withPendingDelta);
+    }
+
+    /**
+     * Get the stocks with the given ids.
+     * <p>
+     * The stocks held by the second-level cache are read from it, and the missing ones with a single {@code IN}
+     * query fetching their productos.
+     *
+     * @param ids the ids of the entities.
+     * @return the entities, in the order of their first id in {@code ids}, without the ones which don't exist.
+     */
+    @Transactional(readOnly = true)
+    public List<StockDTO> findAllById(List<Long> ids) {
+        log.debug("Request to get Stocks : {}", ids);
+        List<Long> distinctIds = ids.stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+        Cache secondLevelCache = entityManager.getEntityManagerFactory().getCache();
+        Map<Long, Stock> found = new HashMap<>();
+        List<Long> misses = new ArrayList<>();
+        for (Long id : distinctIds) {
+            if (secondLevelCache.contains(Stock.class, id)) {
+                stockRepository.findById(id).ifPresent(stock -> found.put(id, stock));
+            } else {
+                misses.add(id);
+            }
+        }
+        if (!misses.isEmpty()) {
+            stockRepository.findByIdIn(misses).forEach(stock -> found.put(stock.getId(), stock));
+        }
+        return distinctIds.stream()
+            .map(found::get)
+            .filter(Objects::nonNull)
+            .map(stockMapper::toDto)
+            .map(this::withPendingDelta)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Get the changes of the stocks since a token.
+     *
+     * @param since the token of the previous changes, or {@code null} to get all the stocks.
+     * @param limit the maximum number of modified stocks, and of deleted ones, to return.
+     * @return the changes, with the token of the next ones.
+     * @throws ChangesTokenExpiredException if the token is older than the retained deletions.
+     */
+    @Transactional(readOnly = true)
+    public ChangesDTO<StockDTO> findChanges(ChangesToken since, int limit) {
+        log.debug("Request to get Stock changes since : {}", since);
+        return changeTrackingService.findChanges(Stock.class, since, limit, stockRepository::findModifiedAfter, Stock::getId,
+            stock -> withPendingDelta(stockMapper.toDto(stock)));
+    }
+
+    private StockDTO withPendingDelta(StockDTO stockDTO) {
+        long pendingDelta = hotStockCounterService.getPendingDelta(stockDTO.getId());
+        if (pendingDelta != 0) {
+            stockDTO.setCantidad(stockDTO.getCantidad() + pendingDelta);
+        }
+        return stockDTO;
     }
 
     /**
@@ -76,8 +286,14 @@ public class StockService {
      *
      * @param id the id of the entity.
      */
+    @CacheEvict(cacheNames = StockQueryService.STOCK_QUERIES_CACHE, allEntries = true)
     public void delete(Long id) {
         log.debug("Request to delete Stock : {}", id);
+        BigDecimal value = stockValuationService.lockStockValue(id, null);
         stockRepository.deleteById(id);
+        stockValuationService.recordStockValue(id, value);
+        changeTrackingService.recordDeletion(Stock.class, id);
+        outboxService.recordDeleted(Stock.class, id);
+        eventPublisher.publishEvent(new StockChangeDTO(id, null, null, true));
     }
 }
@@ -0,0 +1,266 @@
+package com.themkers.inventario.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.themkers.inventario.config.ApplicationProperties;
+import com.themkers.inventario.repository.StockRepository;
+import com.themkers.inventario.service.dto.StockChangeDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Service streaming the committed stock changes to subscribers.
+ * <p>
+ * The changes published by the {@link StockService} are received after the commit of their transaction, and
+ * coalesced per stock over {@code application.stock-stream.coalesce-window-ms}: only the last state of a stock is
+ * dispatched at the end of each window. Each subscriber has its own bounded buffer, whose oldest changes are dropped
+ * when the subscriber can't keep up, and its changes are delivered by a small pool of threads, one subscriber at a
+ * time, so that subscribers never hold request threads.
+ */
+@Service
+public class StockStreamService {
+
+    private static final int PRODUCTO_IDS_CACHE_SIZE = 100000;
+
+    private final Logger log = LoggerFactory.getLogger(StockStreamService.class);
+
+    private final StockRepository stockRepository;
+
+    private final ApplicationProperties.StockStream properties;
+
+    private final Map<Long, StockChangeDTO> pending = new ConcurrentHashMap<>();
+
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+
+    // The productos of the stocks, as the changes of adjustments don't carry them
+    private final Cache<Long, Optional<Long>> productoIds = Caffeine.newBuilder().maximumSize(PRODUCTO_IDS_CACHE_SIZE).build();
+
+    private final ScheduledExecutorService scheduler;
+
+    private final ExecutorService deliveryExecutor;
+
+    private final Counter deliveredCounter;
+
+    private final Counter droppedCounter;
+
+    public StockStreamService(StockRepository stockRepository, ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this.stockRepository = stockRepository;
+        this.properties = applicationProperties.getStockStream();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("stock-stream-"));
+        this.deliveryExecutor = Executors.newFixedThreadPool(properties.getDeliveryThreads(),
+            new CustomizableThreadFactory("stock-stream-delivery-"));
+        this.deliveredCounter = Counter.builder("stock.stream.delivered")
+            .description("Stock changes delivered to stream subscribers")
+            .register(meterRegistry);
+        this.droppedCounter = Counter.builder("stock.stream.dropped")
+            .description("Stock changes dropped from the buffers of slow stream subscribers")
+            .register(meterRegistry);
+        Gauge.builder("stock.stream.subscribers", subscriptions, Set::size)
+            .description("Subscribers of the stock change stream")
+            .register(meterRegistry);
+        scheduler.scheduleWithFixedDelay(this::dispatch, properties.getCoalesceWindowMs(), properties.getCoalesceWindowMs(),
+            TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::keepAlive, properties.getKeepAliveIntervalMs(), properties.getKeepAliveIntervalMs(),
+            TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the duration after which streams are closed, for their clients to reconnect.
+     */
+    public long getTimeoutMs() {
+        return properties.getTimeoutMs();
+    }
+
+    /**
+     * Subscribe to the stock changes.
+     *
+     * @param productoId the producto of the stocks whose changes are delivered, or {@code null} for all the stocks.
+     * @param listener the listener the changes are delivered to.
+     * @return the subscription, to cancel when the listener can't receive changes anymore.
+     */
+    public Subscription subscribe(Long productoId, StockChangeListener listener) {
+        log.debug("Request to subscribe to Stock changes of Producto : {}", productoId);
+        Subscription subscription = new Subscription(productoId, listener);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * Receive a stock change, once its transaction is committed.
+     *
+     * @param change the change.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockChange(StockChangeDTO change) {
+        if (!change.isDeleted() && change.getProductoId() != null) {
+            productoIds.put(change.getStockId(), Optional.of(change.getProductoId()));
+        }
+        if (!subscriptions.isEmpty()) {
+            pending.merge(change.getStockId(), change, (previous, next) -> next);
+        }
+    }
+
+    private void dispatch() {
+        try {
+            List<StockChangeDTO> changes = new ArrayList<>(pending.size());
+            for (Long stockId : pending.keySet()) {
+                StockChangeDTO change = pending.remove(stockId);
+                if (change != null) {
+                    changes.add(change);
+                }
+            }
+            for (StockChangeDTO change : changes) {
+                if (change.getProductoId() == null) {
+                    Optional<Long> productoId = change.isDeleted() ? productoIds.getIfPresent(change.getStockId()) :
+                        productoIds.get(change.getStockId(), stockRepository::findProductoIdById);
+                    change.setProductoId(productoId != null ? productoId.orElse(null) : null);
+                }
+                if (change.isDeleted()) {
+                    productoIds.invalidate(change.getStockId());
+                }
+                for (Subscription subscription : subscriptions) {
+                    if (subscription.productoId == null || subscription.productoId.equals(change.getProductoId())) {
+                        subscription.offer(change);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not dispatch Stock changes: {}", e.getMessage());
+        }
+    }
+
+    private void keepAlive() {
+        subscriptions.forEach(subscription -> subscription.schedule(true));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        deliveryExecutor.shutdownNow();
+    }
+
+    /**
+     * A listener of stock changes, such as the stream of a client. Its methods are called by one thread at a time.
+     */
+    public interface StockChangeListener {
+
+        /**
+         * Deliver changes.
+         *
+         * @param changes the changes, in dispatch order.
+         * @throws IOException if the changes can't be delivered: the subscription is then cancelled.
+         */
+        void onChanges(List<StockChangeDTO> changes) throws IOException;
+
+        /**
+         * Keep an idle listener alive.
+         *
+         * @throws IOException if the listener is gone: the subscription is then cancelled.
+         */
+        void onKeepAlive() throws IOException;
+    }
+
+    /**
+     * A subscription to the stock changes, with its buffer of changes waiting for delivery.
+     */
+    public final class Subscription {
+
+        private final Long productoId;
+
+        private final StockChangeListener listener;
+
+        private final Deque<StockChangeDTO> buffer = new ArrayDeque<>();
+
+        private final AtomicBoolean delivering = new AtomicBoolean();
+
+        private volatile boolean cancelled;
+
+        private Subscription(Long productoId, StockChangeListener listener) {
+            this.productoId = productoId;
+            this.listener = listener;
+        }
+
+        private void offer(StockChangeDTO change) {
+            synchronized (buffer) {
+                if (buffer.size() >= properties.getBufferSize()) {
+                    buffer.pollFirst();
+                    droppedCounter.increment();
+                }
+                buffer.addLast(change);
+            }
+            schedule(false);
+        }
+
+        private void schedule(boolean keepAlive) {
+            if (!cancelled && delivering.compareAndSet(false, true)) {
+                deliveryExecutor.execute(() -> deliver(keepAlive));
+            }
+        }
+
+        private void deliver(boolean keepAlive) {
+            try {
+                boolean delivered = false;
+                while (!cancelled) {
+                    List<StockChangeDTO> changes;
+                    synchronized (buffer) {
+                        if (buffer.isEmpty()) {
+                            break;
+                        }
+                        changes = new ArrayList<>(buffer);
+                        buffer.clear();
+                    }
+                    listener.onChanges(changes);
+                    deliveredCounter.increment(changes.size());
+                    delivered = true;
+                }
+                if (keepAlive && !delivered && !cancelled) {
+                    listener.onKeepAlive();
+                }
+            } catch (IOException | RuntimeException e) {
+                log.debug("Stock change subscriber gone: {}", e.getMessage());
+                cancel();
+            } finally {
+                delivering.set(false);
+            }
+            // Changes offered after the buffer was found empty, but before the end of the delivery
+            boolean remaining;
+            synchronized (buffer) {
+                remaining = !buffer.isEmpty();
+            }
+            if (remaining) {
+                schedule(false);
+            }
+        }
+
+        /**
+         * Cancel the subscription: no more changes are delivered to its listener.
+         */
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+    }
+}
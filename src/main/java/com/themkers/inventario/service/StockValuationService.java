@@ -0,0 +1,289 @@
+package com.themkers.inventario.service;
+
+import com.themkers.inventario.config.ApplicationProperties;
+import com.themkers.inventario.domain.Producto;
+import com.themkers.inventario.domain.Producto_;
+import com.themkers.inventario.domain.Stock;
+import com.themkers.inventario.domain.StockValuation;
+import com.themkers.inventario.domain.StockValuationDelta;
+import com.themkers.inventario.domain.Stock_;
+import com.themkers.inventario.repository.ProductoRepository;
+import com.themkers.inventario.repository.StockRepository;
+import com.themkers.inventario.repository.StockValuationDeltaRepository;
+import com.themkers.inventario.repository.StockValuationRepository;
+import com.themkers.inventario.service.dto.ProductoCriteria;
+import com.themkers.inventario.service.dto.StockValuationDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.repository.support.PageableExecutionUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Service computing the valuation of stocks: the sum of their quantities times the prices of their productos.
+ * <p>
+ * The valuation of all the stocks is maintained incrementally, so that it is read in constant time: the transactions
+ * writing stocks and prices append the change of value as a {@link StockValuationDelta}, and the deltas are
+ * periodically folded into the {@link StockValuation} total. Writers only insert rows, so they never wait for each
+ * other on a shared row. Filtered and grouped valuations are computed by the database from the stocks.
+ * <p>
+ * Each change of value is added exactly once thanks to the locks of the writers, always taken in the same order:
+ * the productos first, then the stocks in id order. Price changes lock their producto, then all its stocks. Stock
+ * writers lock the producto the stock is moved to, if any, then the stock. Stocks without producto or price are not
+ * valued, and the pending deltas of hot stocks are valued once written to the database.
+ */
+@Service
+@Transactional(propagation = Propagation.MANDATORY)
+public class StockValuationService {
+
+    private final Logger log = LoggerFactory.getLogger(StockValuationService.class);
+
+    private final StockValuationRepository stockValuationRepository;
+
+    private final StockValuationDeltaRepository stockValuationDeltaRepository;
+
+    private final StockRepository stockRepository;
+
+    private final ProductoRepository productoRepository;
+
+    private final ProductoQueryService productoQueryService;
+
+    private final EntityManager entityManager;
+
+    private final ApplicationProperties.StockValuation properties;
+
+    public StockValuationService(StockValuationRepository stockValuationRepository,
+                                 StockValuationDeltaRepository stockValuationDeltaRepository, StockRepository stockRepository,
+                                 ProductoRepository productoRepository, ProductoQueryService productoQueryService,
+                                 EntityManager entityManager, ApplicationProperties applicationProperties) {
+        this.stockValuationRepository = stockValuationRepository;
+        this.stockValuationDeltaRepository = stockValuationDeltaRepository;
+        this.stockRepository = stockRepository;
+        this.productoRepository = productoRepository;
+        this.productoQueryService = productoQueryService;
+        this.entityManager = entityManager;
+        this.properties = applicationProperties.getStockValuation();
+    }
+
+    /**
+     * Get the valuation of the stocks of the productos matching the criteria.
+     * Without filter, it is read from the maintained valuation instead of being computed from the stocks.
+     *
+     * @param criteria the filters of the productos.
+     * @return the valuation.
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal getValuation(ProductoCriteria criteria) {
+        log.debug("Request to get the Stock valuation by criteria : {}", criteria);
+        if (criteria == null || new ProductoCriteria().equals(criteria)) {
+            return stockValuationRepository.sumTotal();
+        }
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Number> query = cb.createQuery(Number.class);
+        Root<Stock> stock = query.from(Stock.class);
+        Root<Producto> producto = query.from(Producto.class);
+        query.select(cb.sum(value(stock, producto, cb)))
+            .where(restriction(criteria, stock, producto, query, cb));
+        return toBigDecimal(entityManager.createQuery(query).getSingleResult());
+    }
+
+    /**
+     * Get the valuations of the stocks of each producto matching the criteria, in producto id order.
+     * Productos without stocks are left out.
+     *
+     * @param criteria the filters of the productos.
+     * @param pageable the page of productos, whose sort is ignored.
+     * @return the valuations, by producto.
+     */
+    @Transactional(readOnly = true)
+    public Page<StockValuationDTO> getValuationByProducto(ProductoCriteria criteria, Pageable pageable) {
+        log.debug("Request to get the Stock valuation by Producto by criteria : {}", criteria);
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Stock> stock = query.from(Stock.class);
+        Root<Producto> producto = query.from(Producto.class);
+        query.multiselect(producto.get(Producto_.id), producto.get(Producto_.nombre), cb.sum(value(stock, producto, cb)))
+            .where(restriction(criteria, stock, producto, query, cb))
+            .groupBy(producto.get(Producto_.id), producto.get(Producto_.nombre))
+            .orderBy(cb.asc(producto.get(Producto_.id)));
+        List<StockValuationDTO> content = entityManager.createQuery(query)
+            .setFirstResult((int) pageable.getOffset())
+            .setMaxResults(pageable.getPageSize())
+            .getResultList().stream()
+            .map(tuple -> new StockValuationDTO(tuple.get(0, Long.class), tuple.get(1, String.class), toBigDecimal((Number) tuple.get(2))))
+            .collect(Collectors.toList());
+        return PageableExecutionUtils.getPage(content, pageable, () -> countProductos(criteria));
+    }
+
+    private long countProductos(ProductoCriteria criteria) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Stock> stock = query.from(Stock.class);
+        Root<Producto> producto = query.from(Producto.class);
+        query.select(cb.countDistinct(producto.get(Producto_.id)))
+            .where(restriction(criteria, stock, producto, query, cb));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    private static Expression<Number> value(Root<Stock> stock, Root<Producto> producto, CriteriaBuilder cb) {
+        return cb.prod(stock.get(Stock_.cantidad), producto.get(Producto_.precio));
+    }
+
+    private Predicate[] restriction(ProductoCriteria criteria, Root<Stock> stock, Root<Producto> producto,
+                                    CriteriaQuery<?> query, CriteriaBuilder cb) {
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(cb.equal(stock.get(Stock_.producto), producto));
+        Predicate filter = productoQueryService.createSpecification(criteria).toPredicate(producto, query, cb);
+        if (filter != null) {
+            predicates.add(filter);
+        }
+        return predicates.toArray(new Predicate[0]);
+    }
+
+    /**
+     * Lock a stock, before changing its value or deleting it.
+     * <p>
+     * The producto the stock will belong to is locked first, so that a concurrent change of its price either is
+     * committed before the new value of the stock is read, or waits for the stock to be committed to revalue it.
+     *
+     * @param stockId the id of the stock, {@code null} for a new stock.
+     * @param productoId the id of the producto of the stock after the change, {@code null} for a deletion.
+     * @return the value of the stock, zero if it doesn't exist or isn't valued.
+     */
+    public BigDecimal lockStockValue(Long stockId, Long productoId) {
+        if (productoId != null) {
+            productoRepository.findByIdForShare(productoId);
+        }
+        if (stockId == null) {
+            return BigDecimal.ZERO;
+        }
+        stockRepository.findByIdForUpdate(stockId);
+        return stockRepository.findValueById(stockId).orElse(BigDecimal.ZERO);
+    }
+
+    /**
+     * Record the change of value of a stock, saved or deleted since it was {@link #lockStockValue(Long, Long) locked}.
+     *
+     * @param stockId the id of the stock.
+     * @param previousValue the value of the stock before the change, zero for a new stock.
+     */
+    public void recordStockValue(Long stockId, BigDecimal previousValue) {
+        BigDecimal value = stockRepository.findValueById(stockId).orElse(BigDecimal.ZERO);
+        add(value.subtract(previousValue));
+    }
+
+    /**
+     * Record an adjustment of the quantity of a stock, already written to the database.
+     * <p>
+     * The stock is locked by the adjustment, so a concurrent change of the price of its producto either is committed
+     * before the price is read, or waits for the adjustment to be committed to revalue the stock.
+     *
+     * @param stockId the id of the stock.
+     * @param delta the signed amount added to the quantity.
+     */
+    public void recordAdjustment(Long stockId, long delta) {
+        stockRepository.findPrecioById(stockId)
+            .ifPresent(precio -> add(precio.multiply(BigDecimal.valueOf(delta))));
+    }
+
+    /**
+     * Record new stocks, already written to the database.
+     *
+     * @param stockIds the ids of the stocks.
+     */
+    public void recordNewStocks(Collection<Long> stockIds) {
+        if (!stockIds.isEmpty()) {
+            // Concurrent price changes don't see the new stocks, their productos must keep their prices until the commit
+            List<Long> productoIds = stockRepository.findProductoIdsByIdIn(stockIds);
+            if (!productoIds.isEmpty()) {
+                productoRepository.findByIdInForShare(productoIds);
+            }
+            add(stockRepository.sumValueByIdIn(stockIds));
+        }
+    }
+
+    /**
+     * Lock a producto, before changing its price.
+     *
+     * @param productoId the id of the producto.
+     * @return the price of the producto, {@code null} if it doesn't exist or has no price.
+     */
+    public BigDecimal lockPrecio(Long productoId) {
+        return productoRepository.findByIdForUpdate(productoId).map(Producto::getPrecio).orElse(null);
+    }
+
+    /**
+     * Record the change of price of a {@link #lockPrecio(Long) locked} producto, revaluing its stocks.
+     *
+     * @param productoId the id of the producto.
+     * @param previousPrecio the price before the change.
+     * @param precio the new price.
+     */
+    public void recordPriceChange(Long productoId, BigDecimal previousPrecio, BigDecimal precio) {
+        BigDecimal difference = orZero(precio).subtract(orZero(previousPrecio));
+        if (difference.signum() == 0) {
+            return;
+        }
+        // Adjustments of the stocks wait for the commit of the new price, or the price change waits for theirs
+        stockRepository.findByProductoIdForUpdate(productoId);
+        add(difference.multiply(BigDecimal.valueOf(stockRepository.sumCantidadByProductoId(productoId))));
+    }
+
+    /**
+     * Fold the oldest deltas into the total, {@code application.stock-valuation.fold-batch-size} at a time.
+     * <p>
+     * The total is locked first, so that the foldings of the other instances wait for this one, and then read the
+     * remaining deltas.
+     *
+     * @return the number of folded deltas.
+     */
+    @Scheduled(fixedDelayString = "${application.stock-valuation.fold-interval-ms:10000}")
+    @Transactional
+    public int foldDeltas() {
+        StockValuation total = stockValuationRepository.findBySlotForUpdate(StockValuation.TOTAL_SLOT)
+            .orElseThrow(() -> new IllegalStateException("Missing stock valuation total"));
+        List<StockValuationDelta> deltas = stockValuationDeltaRepository.findOldest(PageRequest.of(0, properties.getFoldBatchSize()));
+        if (!deltas.isEmpty()) {
+            total.setTotal(deltas.stream().map(StockValuationDelta::getAmount).reduce(total.getTotal(), BigDecimal::add));
+            stockValuationDeltaRepository.deleteInBatch(deltas);
+            log.debug("Folded {} stock valuation deltas", deltas.size());
+        }
+        return deltas.size();
+    }
+
+    private void add(BigDecimal amount) {
+        if (amount.signum() != 0) {
+            stockValuationDeltaRepository.save(new StockValuationDelta().amount(amount));
+        }
+    }
+
+    private static BigDecimal orZero(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+
+    private static BigDecimal toBigDecimal(Number number) {
+        if (number == null) {
+            return BigDecimal.ZERO;
+        }
+        return number instanceof BigDecimal ? (BigDecimal) number : new BigDecimal(number.toString());
+    }
+}
@@ -0,0 +1,89 @@
+package com.themkers.inventario.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.OptionalLong;
+
+/**
+ * Service reading the row count estimates the database maintains for its query planner, and the indexes of the
+ * tables.
+ * <p>
+ * Estimates are read from {@code pg_class.reltuples} on PostgreSQL and from
+ * {@code INFORMATION_SCHEMA.TABLES.ROW_COUNT_ESTIMATE} on H2: they cost a catalog lookup instead of a table scan,
+ * but they are only as fresh as the last {@code ANALYZE}.
+ */
+@Service
+public class TableStatisticsService {
+
+    private final Logger log = LoggerFactory.getLogger(TableStatisticsService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile String databaseProductName;
+
+    public TableStatisticsService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Get the estimated number of rows of a table.
+     *
+     * @param table the name of the table.
+     * @return the estimate, or nothing if the database has no estimate.
+     */
+    public OptionalLong estimateRowCount(String table) {
+        List<Long> estimates;
+        String product = getDatabaseProductName();
+        if (product.startsWith("PostgreSQL")) {
+            estimates = jdbcTemplate.queryForList(
+                "select cast(reltuples as bigint) from pg_class where oid = to_regclass(?)", Long.class, table);
+        } else if (product.startsWith("H2")) {
+            estimates = jdbcTemplate.queryForList(
+                "select row_count_estimate from information_schema.tables where table_schema = schema() and table_name = ?",
+                Long.class, table.toUpperCase(Locale.ROOT));
+        } else {
+            log.debug("No row count estimates on {}", product);
+            return OptionalLong.empty();
+        }
+        if (estimates.isEmpty() || estimates.get(0) == null || estimates.get(0) < 0) {
+            return OptionalLong.empty();
+        }
+        return OptionalLong.of(estimates.get(0));
+    }
+
+    /**
+     * Whether an index exists, typically one created only on some databases.
+     *
+     * @param table the name of the table.
+     * @param index the name of the index.
+     * @return {@code true} if the table has the index.
+     */
+    public boolean isIndexPresent(String table, String index) {
+        String product = getDatabaseProductName();
+        if (product.startsWith("PostgreSQL")) {
+            return jdbcTemplate.queryForObject(
+                "select count(*) from pg_indexes where tablename = ? and indexname = ?", Long.class, table, index) > 0;
+        } else if (product.startsWith("H2")) {
+            return jdbcTemplate.queryForObject(
+                "select count(*) from information_schema.indexes where table_schema = schema() and table_name = ? and index_name = ?",
+                Long.class, table.toUpperCase(Locale.ROOT), index.toUpperCase(Locale.ROOT)) > 0;
+        }
+        log.debug("No index lookup on {}", product);
+        return false;
+    }
+
+    private String getDatabaseProductName() {
+        if (databaseProductName == null) {
+            databaseProductName = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        }
+        return databaseProductName;
+    }
+}
@@ -0,0 +1,33 @@
+package com.themkers.inventario.service.dto;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+/**
+ * A {@link Page} stored in the query caches: its content, total and pagination information are all it holds, so that
+ * it can be written field by field by its Hazelcast serializer, instead of with Java serialization.
+ *
+ * @param <T> the type of the content.
+ */
+public class CachedPage<T> extends PageImpl<T> {
+
+    private static final long serialVersionUID = 1L;
+
+    public CachedPage(List<T> content, Pageable pageable, long total) {
+        super(content, pageable, total);
+    }
+
+    /**
+     * Copy a page to be cached.
+     *
+     * @param page the page.
+     * @param <T> the type of the content.
+     * @return the page to cache.
+     */
+    public static <T> CachedPage<T> of(Page<T> page) {
+        return new CachedPage<>(page.getContent(), page.getPageable(), page.getTotalElements());
+    }
+}
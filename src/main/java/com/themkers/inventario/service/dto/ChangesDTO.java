@@ -0,0 +1,72 @@
+package com.themkers.inventario.service.dto;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The changes of an entity type since a {@link ChangesToken}: the entities created or updated, then the ids of the
+ * deleted ones, to be applied in this order.
+ *
+ * @param <D> the DTO type of the entity.
+ */
+public class ChangesDTO<D> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private List<D> changed = new ArrayList<>();
+
+    private List<Long> deleted = new ArrayList<>();
+
+    private String token;
+
+    private boolean more;
+
+    public List<D> getChanged() {
+        return changed;
+    }
+
+    public void setChanged(List<D> changed) {
+        this.changed = changed;
+    }
+
+    public List<Long> getDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(List<Long> deleted) {
+        this.deleted = deleted;
+    }
+
+    /**
+     * @return the encoded token to request the next changes with.
+     */
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    /**
+     * @return whether more changes are already available after the token.
+     */
+    public boolean isMore() {
+        return more;
+    }
+
+    public void setMore(boolean more) {
+        this.more = more;
+    }
+
+    @Override
+    public String toString() {
+        return "ChangesDTO{" +
+            "changed=" + getChanged().size() +
+            ", deleted=" + getDeleted().size() +
+            ", token='" + getToken() + "'" +
+            ", more=" + isMore() +
+            "}";
+    }
+}
@@ -0,0 +1,112 @@
+package com.themkers.inventario.service.dto;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * The position of a client in the changes of an entity type: the keyset positions, as (date, id), of the last
+ * modification and of the last deletion it received.
+ * <p>
+ * Tokens are exchanged with clients as opaque, URL-safe strings, see {@link #encode()} and {@link #decode(String)}.
+ */
+public class ChangesToken implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String SEPARATOR = ".";
+
+    private final Instant modifiedDate;
+
+    private final long modifiedId;
+
+    private final Instant deletedDate;
+
+    private final long deletedId;
+
+    public ChangesToken(Instant modifiedDate, long modifiedId, Instant deletedDate, long deletedId) {
+        this.modifiedDate = Objects.requireNonNull(modifiedDate);
+        this.modifiedId = modifiedId;
+        this.deletedDate = Objects.requireNonNull(deletedDate);
+        this.deletedId = deletedId;
+    }
+
+    /**
+     * Decode a token encoded by {@link #encode()}.
+     *
+     * @param encoded the encoded token.
+     * @return the token.
+     * @throws IllegalArgumentException if the token is malformed.
+     */
+    public static ChangesToken decode(String encoded) {
+        String[] parts = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8).split("\\.", -1);
+        if (parts.length != 6) {
+            throw new IllegalArgumentException("Malformed token: " + encoded);
+        }
+        try {
+            return new ChangesToken(Instant.ofEpochSecond(Long.parseLong(parts[0]), Long.parseLong(parts[1])), Long.parseLong(parts[2]),
+                Instant.ofEpochSecond(Long.parseLong(parts[3]), Long.parseLong(parts[4])), Long.parseLong(parts[5]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed token: " + encoded, e);
+        }
+    }
+
+    /**
+     * Encode the token as an opaque, URL-safe string.
+     *
+     * @return the encoded token.
+     */
+    public String encode() {
+        String token = modifiedDate.getEpochSecond() + SEPARATOR + modifiedDate.getNano() + SEPARATOR + modifiedId + SEPARATOR +
+            deletedDate.getEpochSecond() + SEPARATOR + deletedDate.getNano() + SEPARATOR + deletedId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Instant getModifiedDate() {
+        return modifiedDate;
+    }
+
+    public long getModifiedId() {
+        return modifiedId;
+    }
+
+    public Instant getDeletedDate() {
+        return deletedDate;
+    }
+
+    public long getDeletedId() {
+        return deletedId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ChangesToken that = (ChangesToken) o;
+        return modifiedDate.equals(that.modifiedDate) &&
+            modifiedId == that.modifiedId &&
+            deletedDate.equals(that.deletedDate) &&
+            deletedId == that.deletedId;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(modifiedDate, modifiedId, deletedDate, deletedId);
+    }
+
+    @Override
+    public String toString() {
+        return "ChangesToken{" +
+            "modifiedDate='" + getModifiedDate() + "'" +
+            ", modifiedId=" + getModifiedId() +
+            ", deletedDate='" + getDeletedDate() + "'" +
+            ", deletedId=" + getDeletedId() +
+            "}";
+    }
+}
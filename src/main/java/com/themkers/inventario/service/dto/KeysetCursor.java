@@ -0,0 +1,134 @@
+package com.themkers.inventario.service.dto;
+
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.data.domain.Sort;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * The position of a row in a keyset (seek) pagination: the sort property and direction, and the sort key and id of
+ * the last row of the previous page.
+ * <p>
+ * Cursors are exchanged with clients as opaque, URL-safe strings, see {@link #encode()} and {@link #decode(String)}.
+ */
+public class KeysetCursor implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String SEPARATOR = ".";
+
+    private static final String NULL_VALUE = "~";
+
+    private final String property;
+
+    private final Sort.Direction direction;
+
+    private final String value;
+
+    private final Long id;
+
+    public KeysetCursor(String property, Sort.Direction direction, String value, Long id) {
+        this.property = Objects.requireNonNull(property);
+        this.direction = Objects.requireNonNull(direction);
+        this.value = value;
+        this.id = Objects.requireNonNull(id);
+    }
+
+    /**
+     * Create the cursor pointing after a row.
+     *
+     * @param order the sort order of the pagination.
+     * @param row the row, an entity or a DTO with {@code id} and sort properties.
+     * @return the cursor.
+     */
+    public static KeysetCursor after(Sort.Order order, Object row) {
+        BeanWrapper wrapper = PropertyAccessorFactory.forBeanPropertyAccess(row);
+        Object value = wrapper.getPropertyValue(order.getProperty());
+        return new KeysetCursor(order.getProperty(), order.getDirection(), value == null ? null : value.toString(),
+            (Long) wrapper.getPropertyValue("id"));
+    }
+
+    /**
+     * Decode a cursor encoded by {@link #encode()}.
+     *
+     * @param encoded the encoded cursor.
+     * @return the cursor.
+     * @throws IllegalArgumentException if the cursor is malformed.
+     */
+    public static KeysetCursor decode(String encoded) {
+        String[] parts = encoded.split("\\.", -1);
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("Malformed cursor: " + encoded);
+        }
+        return new KeysetCursor(decodePart(parts[0]), Sort.Direction.fromString(decodePart(parts[1])),
+            NULL_VALUE.equals(parts[2]) ? null : decodePart(parts[2]), Long.valueOf(decodePart(parts[3])));
+    }
+
+    /**
+     * Encode the cursor as an opaque, URL-safe string.
+     *
+     * @return the encoded cursor.
+     */
+    public String encode() {
+        return encodePart(property) + SEPARATOR + encodePart(direction.name()) + SEPARATOR +
+            (value == null ? NULL_VALUE : encodePart(value)) + SEPARATOR + encodePart(id.toString());
+    }
+
+    private static String encodePart(String part) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(part.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodePart(String part) {
+        return new String(Base64.getUrlDecoder().decode(part), StandardCharsets.UTF_8);
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public Sort.Direction getDirection() {
+        return direction;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        KeysetCursor that = (KeysetCursor) o;
+        return property.equals(that.property) &&
+            direction == that.direction &&
+            Objects.equals(value, that.value) &&
+            id.equals(that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(property, direction, value, id);
+    }
+
+    @Override
+    public String toString() {
+        return "KeysetCursor{" +
+            "property='" + getProperty() + "'" +
+            ", direction=" + getDirection() +
+            ", value='" + getValue() + "'" +
+            ", id=" + getId() +
+            "}";
+    }
+}
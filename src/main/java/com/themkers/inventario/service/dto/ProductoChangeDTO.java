@@ -0,0 +1,79 @@
+package com.themkers.inventario.service.dto;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * A DTO for a committed change of a {@link com.themkers.inventario.domain.Producto}: its new nombre, or its deletion.
+ */
+public class ProductoChangeDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long productoId;
+
+    private String nombre;
+
+    private boolean deleted;
+
+    public ProductoChangeDTO() {
+    }
+
+    public ProductoChangeDTO(Long productoId, String nombre, boolean deleted) {
+        this.productoId = productoId;
+        this.nombre = nombre;
+        this.deleted = deleted;
+    }
+
+    public Long getProductoId() {
+        return productoId;
+    }
+
+    public void setProductoId(Long productoId) {
+        this.productoId = productoId;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public void setNombre(String nombre) {
+        this.nombre = nombre;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(boolean deleted) {
+        this.deleted = deleted;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ProductoChangeDTO that = (ProductoChangeDTO) o;
+        return deleted == that.deleted &&
+            Objects.equals(productoId, that.productoId) &&
+            Objects.equals(nombre, that.nombre);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(productoId, nombre, deleted);
+    }
+
+    @Override
+    public String toString() {
+        return "ProductoChangeDTO{" +
+            "productoId=" + getProductoId() +
+            ", nombre='" + getNombre() + "'" +
+            ", deleted=" + isDeleted() +
+            "}";
+    }
+}
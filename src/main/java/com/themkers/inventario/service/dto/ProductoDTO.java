@@ -1,5 +1,7 @@
 package com.themkers.inventario.service.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.util.Objects;
@@ -15,7 +17,24 @@ public class ProductoDTO implements Serializable {
 
     private BigDecimal precio;
 
-    
+    /**
+     * The version of the entity, exchanged in {@code ETag} and {@code If-Match} headers rather than in the body.
+     */
+    @JsonIgnore
+    private Long version;
+
+    public ProductoDTO() {
+    }
+
+    /**
+     * Constructor used by projection queries.
+     */
+    public ProductoDTO(Long id, String nombre, BigDecimal precio) {
+        this.id = id;
+        this.nombre = nombre;
+        this.precio = precio;
+    }
+
     public Long getId() {
         return id;
     }
@@ -40,6 +59,14 @@ public class ProductoDTO implements Serializable {
         this.precio = precio;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -0,0 +1,66 @@
+package com.themkers.inventario.service.dto;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * A DTO for a {@link com.themkers.inventario.domain.Producto} suggested by the autocompletion of its nombre.
+ */
+public class ProductoSuggestionDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long id;
+
+    private String nombre;
+
+    public ProductoSuggestionDTO() {
+    }
+
+    public ProductoSuggestionDTO(Long id, String nombre) {
+        this.id = id;
+        this.nombre = nombre;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public void setNombre(String nombre) {
+        this.nombre = nombre;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ProductoSuggestionDTO that = (ProductoSuggestionDTO) o;
+        return Objects.equals(id, that.id) &&
+            Objects.equals(nombre, that.nombre);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, nombre);
+    }
+
+    @Override
+    public String toString() {
+        return "ProductoSuggestionDTO{" +
+            "id=" + getId() +
+            ", nombre='" + getNombre() + "'" +
+            "}";
+    }
+}
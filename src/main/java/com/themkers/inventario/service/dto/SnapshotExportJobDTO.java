@@ -0,0 +1,241 @@
+package com.themkers.inventario.service.dto;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A DTO describing a snapshot export job: its progress, and the chunk files it has written.
+ */
+public class SnapshotExportJobDTO implements Serializable {
+
+    public enum Status {
+        RUNNING, COMPLETED, FAILED
+    }
+
+    private String id;
+
+    private Status status;
+
+    private String directory;
+
+    private boolean consistent;
+
+    private Instant startedAt;
+
+    private Instant finishedAt;
+
+    private int totalChunks;
+
+    private int completedChunks;
+
+    private long rows;
+
+    private long bytes;
+
+    private double rowsPerSecond;
+
+    private String error;
+
+    private List<Chunk> chunks = new ArrayList<>();
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return {@code true} if all the chunks were read from the same database snapshot.
+     */
+    public boolean isConsistent() {
+        return consistent;
+    }
+
+    public void setConsistent(boolean consistent) {
+        this.consistent = consistent;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(Instant startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(Instant finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public int getTotalChunks() {
+        return totalChunks;
+    }
+
+    public void setTotalChunks(int totalChunks) {
+        this.totalChunks = totalChunks;
+    }
+
+    public int getCompletedChunks() {
+        return completedChunks;
+    }
+
+    public void setCompletedChunks(int completedChunks) {
+        this.completedChunks = completedChunks;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public void setRows(long rows) {
+        this.rows = rows;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    public double getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    public void setRowsPerSecond(double rowsPerSecond) {
+        this.rowsPerSecond = rowsPerSecond;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public List<Chunk> getChunks() {
+        return chunks;
+    }
+
+    public void setChunks(List<Chunk> chunks) {
+        this.chunks = chunks;
+    }
+
+    @Override
+    public String toString() {
+        return "SnapshotExportJobDTO{" +
+            "id='" + getId() + "'" +
+            ", status=" + getStatus() +
+            ", consistent=" + isConsistent() +
+            ", completedChunks=" + getCompletedChunks() +
+            ", totalChunks=" + getTotalChunks() +
+            ", rows=" + getRows() +
+            ", bytes=" + getBytes() +
+            "}";
+    }
+
+    /**
+     * A gzipped CSV file holding the rows of a table in a range of ids.
+     */
+    public static class Chunk implements Serializable {
+
+        private String table;
+
+        private long fromId;
+
+        private long toId;
+
+        private String file;
+
+        private long rows;
+
+        private long bytes;
+
+        private String sha256;
+
+        public String getTable() {
+            return table;
+        }
+
+        public void setTable(String table) {
+            this.table = table;
+        }
+
+        public long getFromId() {
+            return fromId;
+        }
+
+        public void setFromId(long fromId) {
+            this.fromId = fromId;
+        }
+
+        /**
+         * @return the last id of the range, inclusive.
+         */
+        public long getToId() {
+            return toId;
+        }
+
+        public void setToId(long toId) {
+            this.toId = toId;
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        public void setFile(String file) {
+            this.file = file;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public void setRows(long rows) {
+            this.rows = rows;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public void setBytes(long bytes) {
+            this.bytes = bytes;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        public void setSha256(String sha256) {
+            this.sha256 = sha256;
+        }
+    }
+}
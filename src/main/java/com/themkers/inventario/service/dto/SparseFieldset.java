@@ -0,0 +1,92 @@
+package com.themkers.inventario.service.dto;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * The names of the fields of a DTO requested by a client, the other ones being neither read nor returned.
+ */
+public final class SparseFieldset implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final SortedSet<String> names;
+
+    private SparseFieldset(Collection<String> names) {
+        this.names = Collections.unmodifiableSortedSet(new TreeSet<>(names));
+    }
+
+    /**
+     * Parse a comma-separated list of field names.
+     *
+     * @param fields the comma-separated field names.
+     * @param available the names of the fields of the DTO.
+     * @return the fieldset.
+     * @throws IllegalArgumentException if no field is named, or if a field is not available.
+     */
+    public static SparseFieldset parse(String fields, Collection<String> available) {
+        Set<String> names = new TreeSet<>();
+        for (String name : fields.split(",")) {
+            name = name.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!available.contains(name)) {
+                throw new IllegalArgumentException("Unknown field: " + name);
+            }
+            names.add(name);
+        }
+        if (names.isEmpty()) {
+            throw new IllegalArgumentException("No field requested");
+        }
+        return new SparseFieldset(names);
+    }
+
+    public static SparseFieldset of(String... names) {
+        return new SparseFieldset(Arrays.asList(names));
+    }
+
+    /**
+     * @param names the names of the fields to add.
+     * @return a fieldset with these fields too.
+     */
+    public SparseFieldset with(String... names) {
+        Set<String> union = new TreeSet<>(this.names);
+        union.addAll(Arrays.asList(names));
+        return new SparseFieldset(union);
+    }
+
+    public boolean contains(String name) {
+        return names.contains(name);
+    }
+
+    public Set<String> getNames() {
+        return names;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return names.equals(((SparseFieldset) o).names);
+    }
+
+    @Override
+    public int hashCode() {
+        return names.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "SparseFieldset" + names;
+    }
+}
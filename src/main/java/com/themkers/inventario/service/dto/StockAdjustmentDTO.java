@@ -0,0 +1,79 @@
+package com.themkers.inventario.service.dto;
+
+import javax.validation.constraints.*;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * A DTO for a signed, atomic adjustment of the quantity of a {@link com.themkers.inventario.domain.Stock}.
+ * The {@code cantidad} field is only filled in responses, with the quantity after the adjustment.
+ */
+public class StockAdjustmentDTO implements Serializable {
+
+    private Long stockId;
+
+    @NotNull
+    private Long delta;
+
+    private Long cantidad;
+
+    public StockAdjustmentDTO() {
+    }
+
+    public StockAdjustmentDTO(Long stockId, Long delta) {
+        this.stockId = stockId;
+        this.delta = delta;
+    }
+
+    public Long getStockId() {
+        return stockId;
+    }
+
+    public void setStockId(Long stockId) {
+        this.stockId = stockId;
+    }
+
+    public Long getDelta() {
+        return delta;
+    }
+
+    public void setDelta(Long delta) {
+        this.delta = delta;
+    }
+
+    public Long getCantidad() {
+        return cantidad;
+    }
+
+    public void setCantidad(Long cantidad) {
+        this.cantidad = cantidad;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        StockAdjustmentDTO that = (StockAdjustmentDTO) o;
+        return Objects.equals(stockId, that.stockId) &&
+            Objects.equals(delta, that.delta) &&
+            Objects.equals(cantidad, that.cantidad);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(stockId, delta, cantidad);
+    }
+
+    @Override
+    public String toString() {
+        return "StockAdjustmentDTO{" +
+            "stockId=" + getStockId() +
+            ", delta=" + getDelta() +
+            ", cantidad=" + getCantidad() +
+            "}";
+    }
+}
@@ -0,0 +1,92 @@
+package com.themkers.inventario.service.dto;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * A DTO for a committed change of a {@link com.themkers.inventario.domain.Stock}: its new quantity, or its deletion.
+ */
+public class StockChangeDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long stockId;
+
+    private Long productoId;
+
+    private Long cantidad;
+
+    private boolean deleted;
+
+    public StockChangeDTO() {
+    }
+
+    public StockChangeDTO(Long stockId, Long productoId, Long cantidad, boolean deleted) {
+        this.stockId = stockId;
+        this.productoId = productoId;
+        this.cantidad = cantidad;
+        this.deleted = deleted;
+    }
+
+    public Long getStockId() {
+        return stockId;
+    }
+
+    public void setStockId(Long stockId) {
+        this.stockId = stockId;
+    }
+
+    public Long getProductoId() {
+        return productoId;
+    }
+
+    public void setProductoId(Long productoId) {
+        this.productoId = productoId;
+    }
+
+    public Long getCantidad() {
+        return cantidad;
+    }
+
+    public void setCantidad(Long cantidad) {
+        this.cantidad = cantidad;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(boolean deleted) {
+        this.deleted = deleted;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        StockChangeDTO that = (StockChangeDTO) o;
+        return deleted == that.deleted &&
+            Objects.equals(stockId, that.stockId) &&
+            Objects.equals(productoId, that.productoId) &&
+            Objects.equals(cantidad, that.cantidad);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(stockId, productoId, cantidad, deleted);
+    }
+
+    @Override
+    public String toString() {
+        return "StockChangeDTO{" +
+            "stockId=" + getStockId() +
+            ", productoId=" + getProductoId() +
+            ", cantidad=" + getCantidad() +
+            ", deleted=" + isDeleted() +
+            "}";
+    }
+}
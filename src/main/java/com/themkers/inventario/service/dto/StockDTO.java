@@ -1,5 +1,7 @@
 package com.themkers.inventario.service.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import javax.validation.constraints.*;
 import java.io.Serializable;
 import java.util.Objects;
@@ -19,7 +21,26 @@ public class StockDTO implements Serializable {
     private Long productoId;
 
     private String productoNombre;
-    
+
+    /**
+     * The version of the entity, exchanged in {@code ETag} and {@code If-Match} headers rather than in the body.
+     */
+    @JsonIgnore
+    private Long version;
+
+    public StockDTO() {
+    }
+
+    /**
+     * Constructor used by projection queries.
+     */
+    public StockDTO(Long id, Long cantidad, Long productoId, String productoNombre) {
+        this.id = id;
+        this.cantidad = cantidad;
+        this.productoId = productoId;
+        this.productoNombre = productoNombre;
+    }
+
     public Long getId() {
         return id;
     }
@@ -52,6 +73,14 @@ public class StockDTO implements Serializable {
         this.productoNombre = productoNombre;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
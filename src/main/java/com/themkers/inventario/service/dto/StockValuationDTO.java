@@ -0,0 +1,84 @@
+package com.themkers.inventario.service.dto;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * A DTO for the valuation of stocks: the sum of their quantities times the prices of their productos, for a
+ * producto or in total.
+ */
+public class StockValuationDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long productoId;
+
+    private String productoNombre;
+
+    private BigDecimal valuation;
+
+    public StockValuationDTO() {
+    }
+
+    public StockValuationDTO(Long productoId, String productoNombre, BigDecimal valuation) {
+        this.productoId = productoId;
+        this.productoNombre = productoNombre;
+        this.valuation = valuation;
+    }
+
+    /**
+     * @return the producto of the valued stocks, {@code null} for a total.
+     */
+    public Long getProductoId() {
+        return productoId;
+    }
+
+    public void setProductoId(Long productoId) {
+        this.productoId = productoId;
+    }
+
+    public String getProductoNombre() {
+        return productoNombre;
+    }
+
+    public void setProductoNombre(String productoNombre) {
+        this.productoNombre = productoNombre;
+    }
+
+    public BigDecimal getValuation() {
+        return valuation;
+    }
+
+    public void setValuation(BigDecimal valuation) {
+        this.valuation = valuation;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        StockValuationDTO that = (StockValuationDTO) o;
+        return Objects.equals(productoId, that.productoId) &&
+            Objects.equals(productoNombre, that.productoNombre) &&
+            Objects.equals(valuation, that.valuation);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(productoId, productoNombre, valuation);
+    }
+
+    @Override
+    public String toString() {
+        return "StockValuationDTO{" +
+            "productoId=" + getProductoId() +
+            ", productoNombre='" + getProductoNombre() + "'" +
+            ", valuation=" + getValuation() +
+            "}";
+    }
+}
@@ -12,7 +12,11 @@ import org.mapstruct.*;
 @Mapper(componentModel = "spring", uses = {})
 public interface ProductoMapper extends EntityMapper<ProductoDTO, Producto> {
 
-
+    @Mapping(target = "createdBy", ignore = true)
+    @Mapping(target = "createdDate", ignore = true)
+    @Mapping(target = "lastModifiedBy", ignore = true)
+    @Mapping(target = "lastModifiedDate", ignore = true)
+    Producto toEntity(ProductoDTO productoDTO);
 
     default Producto fromId(Long id) {
         if (id == null) {
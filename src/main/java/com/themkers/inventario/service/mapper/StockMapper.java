@@ -17,6 +17,10 @@ public interface StockMapper extends EntityMapper<StockDTO, Stock> {
     StockDTO toDto(Stock stock);
 
     @Mapping(source = "productoId", target = "producto")
+    @Mapping(target = "createdBy", ignore = true)
+    @Mapping(target = "createdDate", ignore = true)
+    @Mapping(target = "lastModifiedBy", ignore = true)
+    @Mapping(target = "lastModifiedDate", ignore = true)
     Stock toEntity(StockDTO stockDTO);
 
     default Stock fromId(Long id) {
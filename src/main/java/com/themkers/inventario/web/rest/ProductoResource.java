@@ -1,11 +1,27 @@
 package com.themkers.inventario.web.rest;
 
+import com.themkers.inventario.service.BulkImportService;
+import com.themkers.inventario.service.ProductoAutocompleteService;
+import com.themkers.inventario.service.ExportService;
+import com.themkers.inventario.service.FileFormat;
+import com.themkers.inventario.service.ProductoSearchService;
 import com.themkers.inventario.service.ProductoService;
 import com.themkers.inventario.web.rest.errors.BadRequestAlertException;
+import com.themkers.inventario.web.rest.errors.PreconditionFailedAlertException;
+import com.themkers.inventario.web.rest.util.ETagUtil;
+import com.themkers.inventario.web.rest.util.SlicePaginationUtil;
+import com.themkers.inventario.web.rest.util.SparseFieldsetUtil;
+import com.themkers.inventario.service.dto.BulkImportResultDTO;
 import com.themkers.inventario.service.dto.ProductoDTO;
+import com.themkers.inventario.service.dto.ProductoSuggestionDTO;
+import com.themkers.inventario.service.dto.ChangesDTO;
+import com.themkers.inventario.service.dto.ChangesToken;
 import com.themkers.inventario.service.dto.ProductoCriteria;
+import com.themkers.inventario.service.dto.KeysetCursor;
+import com.themkers.inventario.service.dto.SparseFieldset;
 import com.themkers.inventario.service.ProductoQueryService;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.jhipster.web.util.HeaderUtil;
 import io.github.jhipster.web.util.PaginationUtil;
 import io.github.jhipster.web.util.ResponseUtil;
@@ -14,16 +30,29 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.zip.GZIPInputStream;
 
 /**
  * REST controller for managing {@link com.themkers.inventario.domain.Producto}.
@@ -36,6 +65,18 @@ public class ProductoResource {
 
     private static final String ENTITY_NAME = "inventariomicroservicioProducto";
 
+    private static final int MAX_IDS = 1000;
+
+    private static final int MAX_CHANGES = 1000;
+
+    private static final int MAX_SUGGESTIONS = 50;
+
+    private static final String COUNT_EXACT = "exact";
+
+    private static final String COUNT_ESTIMATE = "estimate";
+
+    private static final String COUNT_NONE = "none";
+
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
 
@@ -43,9 +84,26 @@ public class ProductoResource {
 
     private final ProductoQueryService productoQueryService;
 
-    public ProductoResource(ProductoService productoService, ProductoQueryService productoQueryService) {
+    private final BulkImportService bulkImportService;
+
+    private final ExportService exportService;
+
+    private final ObjectMapper objectMapper;
+
+    private final ProductoSearchService productoSearchService;
+
+    private final ProductoAutocompleteService productoAutocompleteService;
+
+    public ProductoResource(ProductoService productoService, ProductoQueryService productoQueryService, BulkImportService bulkImportService,
+                            ExportService exportService, ObjectMapper objectMapper, ProductoSearchService productoSearchService,
+                            ProductoAutocompleteService productoAutocompleteService) {
         this.productoService = productoService;
         this.productoQueryService = productoQueryService;
+        this.bulkImportService = bulkImportService;
+        this.exportService = exportService;
+        this.objectMapper = objectMapper;
+        this.productoSearchService = productoSearchService;
+        this.productoAutocompleteService = productoAutocompleteService;
     }
 
     /**
@@ -64,45 +122,183 @@ public class ProductoResource {
         ProductoDTO result = productoService.save(productoDTO);
         return ResponseEntity.created(new URI("/api/productos/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert(applicationName, true, ENTITY_NAME, result.getId().toString()))
+            .eTag(eTag(result))
             .body(result);
     }
 
     /**
      * {@code PUT  /productos} : Updates an existing producto.
+     * <p>
+     * With an {@code If-Match} header, the update is only applied if the producto is still the one of the given entity
+     * tag, as returned by {@link #getProducto(Long)}: concurrent updates are rejected instead of being overwritten.
      *
      * @param productoDTO the productoDTO to update.
+     * @param ifMatch the entity tags of the producto which can be updated, if any.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated productoDTO,
      * or with status {@code 400 (Bad Request)} if the productoDTO is not valid,
+     * or with status {@code 412 (Precondition Failed)} if the producto has been changed since the {@code If-Match} entity tag,
      * or with status {@code 500 (Internal Server Error)} if the productoDTO couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PutMapping("/productos")
-    public ResponseEntity<ProductoDTO> updateProducto(@RequestBody ProductoDTO productoDTO) throws URISyntaxException {
+    public ResponseEntity<ProductoDTO> updateProducto(@RequestBody ProductoDTO productoDTO,
+                                                      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) throws URISyntaxException {
         log.debug("REST request to update Producto : {}", productoDTO);
         if (productoDTO.getId() == null) {
             throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
         }
-        ProductoDTO result = productoService.save(productoDTO);
+        ProductoDTO result;
+        if (ifMatch != null) {
+            try {
+                result = productoService.save(productoDTO, current -> ETagUtil.matches(ifMatch, eTag(current)));
+            } catch (OptimisticLockingFailureException e) {
+                throw new PreconditionFailedAlertException("The producto has been changed", ENTITY_NAME, "preconditionfailed");
+            }
+        } else {
+            result = productoService.save(productoDTO);
+        }
         return ResponseEntity.ok()
             .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, productoDTO.getId().toString()))
+            .eTag(eTag(result))
             .body(result);
     }
 
+    /**
+     * {@code POST  /productos/bulk} : Imports new productos from a CSV or NDJSON file, optionally gzip-encoded.
+     * <p>
+     * The file is streamed from the request body: CSV files must start with a header row naming the fields.
+     *
+     * @param request the request holding the file.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the import report,
+     * or with status {@code 415 (Unsupported Media Type)} if the file format is not supported.
+     * @throws IOException if the request body can't be read.
+     */
+    @PostMapping(value = "/productos/bulk", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<BulkImportResultDTO> importProductos(HttpServletRequest request) throws IOException {
+        log.debug("REST request to import Productos from {}", request.getContentType());
+        FileFormat format = request.getContentType().startsWith(FileFormat.CSV.getMediaType()) ?
+            FileFormat.CSV : FileFormat.NDJSON;
+        InputStream in = request.getInputStream();
+        if ("gzip".equalsIgnoreCase(request.getHeader(HttpHeaders.CONTENT_ENCODING))) {
+            in = new GZIPInputStream(in);
+        }
+        return ResponseEntity.ok().body(bulkImportService.importProductos(in, format));
+    }
+
     /**
      * {@code GET  /productos} : get all the productos.
      *
      * @param pageable the pagination information.
      * @param criteria the criteria which the requested entities should match.
+     * @param after the keyset pagination cursor: if present, empty for the first page, the entities are paginated
+     * after the cursor instead of by page number, and without total count.
+     * @param count the total count mode: {@code exact} (the default) for an {@code X-Total-Count} header,
+     * {@code estimate} for an {@code X-Total-Count-Estimate} header when a cheap estimate is available, or {@code none}.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of productos in body.
      */
     @GetMapping("/productos")
-    public ResponseEntity<List<ProductoDTO>> getAllProductos(ProductoCriteria criteria, Pageable pageable) {
+    public ResponseEntity<List<ProductoDTO>> getAllProductos(ProductoCriteria criteria, Pageable pageable,
+                                                     @RequestParam(required = false) String after,
+                                                     @RequestParam(defaultValue = COUNT_EXACT) String count) {
         log.debug("REST request to get Productos by criteria: {}", criteria);
-        Page<ProductoDTO> page = productoQueryService.findByCriteria(criteria, pageable);
+        return getAllProductos(criteria, pageable, after, count, null);
+    }
+
+    /**
+     * {@code GET  /productos?fields=} : get all the productos, with only some of their fields.
+     * <p>
+     * Only the requested fields are read from the database and written to the response.
+     *
+     * @param pageable the pagination information.
+     * @param criteria the criteria which the requested entities should match.
+     * @param after the keyset pagination cursor, as in {@link #getAllProductos(ProductoCriteria, Pageable, String, String)}.
+     * @param count the total count mode, as in {@link #getAllProductos(ProductoCriteria, Pageable, String, String)}.
+     * @param fields the comma-separated names of the requested fields.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of productos in body,
+     * or with status {@code 400 (Bad Request)} if a field doesn't exist.
+     */
+    @GetMapping(value = "/productos", params = {"fields", "!ids"})
+    public ResponseEntity<List<Map<String, Object>>> getAllProductosFields(ProductoCriteria criteria, Pageable pageable,
+                                                     @RequestParam(required = false) String after,
+                                                     @RequestParam(defaultValue = COUNT_EXACT) String count,
+                                                     @RequestParam String fields) {
+        log.debug("REST request to get Productos by criteria: {}, fields: {}", criteria, fields);
+        SparseFieldset fieldset = SparseFieldsetUtil.parseFields(fields, ProductoQueryService.FIELD_NAMES, ENTITY_NAME);
+        ResponseEntity<List<ProductoDTO>> response = getAllProductos(criteria, pageable, after, count, fieldset);
+        return ResponseEntity.ok().headers(response.getHeaders())
+            .body(SparseFieldsetUtil.narrow(objectMapper, response.getBody(), fieldset));
+    }
+
+    private ResponseEntity<List<ProductoDTO>> getAllProductos(ProductoCriteria criteria, Pageable pageable, String after, String count,
+                                                  SparseFieldset fields) {
+        if (!COUNT_EXACT.equals(count) && !COUNT_ESTIMATE.equals(count) && !COUNT_NONE.equals(count)) {
+            throw new BadRequestAlertException("Invalid count mode", ENTITY_NAME, "countinvalid");
+        }
+        if (after != null || !COUNT_EXACT.equals(count)) {
+            return getAllProductosWithoutCount(criteria, pageable, after, COUNT_ESTIMATE.equals(count), fields);
+        }
+        Page<ProductoDTO> page = fields == null ? productoQueryService.findByCriteria(criteria, pageable) :
+            productoQueryService.findByCriteria(criteria, pageable, fields);
         HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
         return ResponseEntity.ok().headers(headers).body(page.getContent());
     }
 
+    private ResponseEntity<List<ProductoDTO>> getAllProductosWithoutCount(ProductoCriteria criteria, Pageable pageable, String after, boolean estimate,
+                                                                SparseFieldset fields) {
+        Slice<ProductoDTO> slice;
+        HttpHeaders headers;
+        if (after != null) {
+            KeysetCursor cursor = SlicePaginationUtil.decodeCursor(after, ENTITY_NAME);
+            Sort.Order order = SlicePaginationUtil.keysetOrder(pageable, cursor, ENTITY_NAME);
+            try {
+                slice = productoQueryService.findByCriteriaAfter(criteria, order, cursor, pageable.getPageSize(), fields);
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "sortinvalid");
+            }
+            headers = SlicePaginationUtil.generateKeysetPaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), slice, order);
+        } else {
+            slice = productoQueryService.findSliceByCriteria(criteria, pageable, fields);
+            headers = SlicePaginationUtil.generateSliceHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), slice);
+        }
+        if (estimate) {
+            productoQueryService.estimateCountByCriteria(criteria)
+                .ifPresent(total -> headers.add(SlicePaginationUtil.HEADER_X_TOTAL_COUNT_ESTIMATE, Long.toString(total)));
+        }
+        return ResponseEntity.ok().headers(headers).body(slice.getContent());
+    }
+
+    /**
+     * {@code GET  /productos?ids=} : get the productos with the given ids.
+     * <p>
+     * Cached productos are served from the cache, and the others are read with a single query.
+     *
+     * @param ids the ids of the productos to retrieve, at most {@value #MAX_IDS}.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of productos in body, in the order of
+     * the ids and without the ones which don't exist, or with status {@code 400 (Bad Request)} if there are too many ids.
+     */
+    @GetMapping(value = "/productos", params = "ids")
+    public ResponseEntity<List<ProductoDTO>> getProductosByIds(@RequestParam List<Long> ids) {
+        log.debug("REST request to get Productos : {}", ids);
+        if (ids.size() > MAX_IDS) {
+            throw new BadRequestAlertException("Too many ids", ENTITY_NAME, "idstoomany");
+        }
+        return ResponseEntity.ok().body(productoService.findAllById(ids));
+    }
+
+    /**
+     * {@code GET  /productos?ids=&fields=} : get the productos with the given ids, with only some of their fields.
+     *
+     * @param ids the ids of the productos to retrieve, at most {@value #MAX_IDS}.
+     * @param fields the comma-separated names of the requested fields.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of productos in body, in the order of
+     * the ids, or with status {@code 400 (Bad Request)} if there are too many ids or if a field doesn't exist.
+     */
+    @GetMapping(value = "/productos", params = {"ids", "fields"})
+    public ResponseEntity<List<Map<String, Object>>> getProductosByIdsFields(@RequestParam List<Long> ids, @RequestParam String fields) {
+        SparseFieldset fieldset = SparseFieldsetUtil.parseFields(fields, ProductoQueryService.FIELD_NAMES, ENTITY_NAME);
+        return ResponseEntity.ok().body(SparseFieldsetUtil.narrow(objectMapper, getProductosByIds(ids).getBody(), fieldset));
+    }
+
     /**
      * {@code GET  /productos/count} : count all the productos.
      *
@@ -115,8 +311,108 @@ public class ProductoResource {
         return ResponseEntity.ok().body(productoQueryService.countByCriteria(criteria));
     }
 
+    /**
+     * {@code GET  /productos/search?q=} : search the productos by name, best matches first.
+     *
+     * @param q the searched text.
+     * @param pageable the pagination information, whose sort is ignored.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of productos in body,
+     * or with status {@code 400 (Bad Request)} if the text is blank.
+     */
+    @GetMapping("/productos/search")
+    public ResponseEntity<List<ProductoDTO>> searchProductos(@RequestParam String q, Pageable pageable) {
+        log.debug("REST request to search Productos : {}", q);
+        if (q.trim().isEmpty()) {
+            throw new BadRequestAlertException("Blank search text", ENTITY_NAME, "queryinvalid");
+        }
+        Slice<ProductoDTO> slice = productoSearchService.search(q.trim(), pageable);
+        HttpHeaders headers = SlicePaginationUtil.generateSliceHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), slice);
+        return ResponseEntity.ok().headers(headers).body(slice.getContent());
+    }
+
+    /**
+     * {@code GET  /productos/autocomplete?prefix=} : suggest the productos with a word of their nombre starting with a prefix,
+     * ignoring case and accents, from an in-memory index.
+     *
+     * @param prefix the typed prefix.
+     * @param limit the maximum number of productos, at most {@value #MAX_SUGGESTIONS}.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of suggested productos in body,
+     * or with status {@code 400 (Bad Request)} if the prefix is blank or the limit is not valid,
+     * or with status {@code 503 (Service Unavailable)} if the index is still being built.
+     */
+    @GetMapping("/productos/autocomplete")
+    public ResponseEntity<List<ProductoSuggestionDTO>> autocompleteProductos(@RequestParam String prefix,
+                                                                             @RequestParam(defaultValue = "10") int limit) {
+        log.debug("REST request to autocomplete Productos : {}", prefix);
+        if (prefix.trim().isEmpty()) {
+            throw new BadRequestAlertException("Blank prefix", ENTITY_NAME, "prefixinvalid");
+        }
+        if (limit < 1 || limit > MAX_SUGGESTIONS) {
+            throw new BadRequestAlertException("Invalid limit", ENTITY_NAME, "limitinvalid");
+        }
+        if (!productoAutocompleteService.isReady()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Autocompletion index not built yet");
+        }
+        return ResponseEntity.ok().body(productoAutocompleteService.suggest(prefix, limit));
+    }
+
+    /**
+     * {@code GET  /productos/changes} : get the changes of the productos since a token, for incremental synchronization.
+     * <p>
+     * Without token, all the productos are returned. Clients apply the changed productos, then remove the deleted ids, and
+     * request the next changes with the returned token: right away if {@code more} is set, later otherwise.
+     *
+     * @param since the token returned by the previous request, if any.
+     * @param limit the maximum number of changed productos, and of deleted ones, at most {@value #MAX_CHANGES}.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the changes in body,
+     * or with status {@code 400 (Bad Request)} if the token or the limit is not valid,
+     * or with status {@code 410 (Gone)} if the token has expired, and the productos must be synchronized from scratch.
+     */
+    @GetMapping("/productos/changes")
+    public ResponseEntity<ChangesDTO<ProductoDTO>> getProductoChanges(@RequestParam(required = false) String since,
+                                                               @RequestParam(defaultValue = "" + MAX_CHANGES) int limit) {
+        log.debug("REST request to get Producto changes since : {}", since);
+        if (limit < 1 || limit > MAX_CHANGES) {
+            throw new BadRequestAlertException("Invalid limit", ENTITY_NAME, "limitinvalid");
+        }
+        ChangesToken token;
+        try {
+            token = since != null ? ChangesToken.decode(since) : null;
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException("Invalid token", ENTITY_NAME, "tokeninvalid");
+        }
+        return ResponseEntity.ok().body(productoService.findChanges(token, limit));
+    }
+
+    /**
+     * {@code GET  /productos/export} : export all the productos matching the criteria, in id order.
+     * <p>
+     * The file is written to the response while the productos are read from the database.
+     *
+     * @param criteria the criteria which the requested entities should match.
+     * @param format the file format: {@code ndjson} (the default) or {@code csv}.
+     * @param response the response to write the file to.
+     * @throws IOException if the response can't be written.
+     */
+    @GetMapping("/productos/export")
+    public void exportProductos(ProductoCriteria criteria, @RequestParam(defaultValue = "ndjson") String format,
+                                HttpServletResponse response) throws IOException {
+        log.debug("REST request to export Productos to {} by criteria: {}", format, criteria);
+        FileFormat fileFormat = Arrays.stream(FileFormat.values())
+            .filter(value -> value.name().equalsIgnoreCase(format))
+            .findFirst()
+            .orElseThrow(() -> new BadRequestAlertException("Invalid format", ENTITY_NAME, "formatinvalid"));
+        response.setContentType(fileFormat.getMediaType() + ";charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.builder("attachment")
+            .filename("productos." + fileFormat.name().toLowerCase(Locale.ROOT)).build().toString());
+        exportService.exportProductos(criteria, fileFormat, response.getOutputStream());
+    }
+
     /**
      * {@code GET  /productos/:id} : get the "id" producto.
+     * <p>
+     * The response carries the entity tag of the producto in an {@code ETag} header: requests whose {@code If-None-Match}
+     * header holds it are answered with status {@code 304 (Not Modified)} and no body.
      *
      * @param id the id of the productoDTO to retrieve.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the productoDTO, or with status {@code 404 (Not Found)}.
@@ -125,7 +421,24 @@ public class ProductoResource {
     public ResponseEntity<ProductoDTO> getProducto(@PathVariable Long id) {
         log.debug("REST request to get Producto : {}", id);
         Optional<ProductoDTO> productoDTO = productoService.findOne(id);
-        return ResponseUtil.wrapOrNotFound(productoDTO);
+        return productoDTO.map(found -> ResponseEntity.ok().eTag(eTag(found)).body(found))
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    }
+
+    /**
+     * {@code GET  /productos/:id?fields=} : get the "id" producto, with only some of its fields.
+     *
+     * @param id the id of the productoDTO to retrieve.
+     * @param fields the comma-separated names of the requested fields.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the requested fields of the productoDTO,
+     * or with status {@code 404 (Not Found)}, or with status {@code 400 (Bad Request)} if a field doesn't exist.
+     */
+    @GetMapping(value = "/productos/{id}", params = "fields")
+    public ResponseEntity<Map<String, Object>> getProductoFields(@PathVariable Long id, @RequestParam String fields) {
+        log.debug("REST request to get Producto : {}, fields: {}", id, fields);
+        SparseFieldset fieldset = SparseFieldsetUtil.parseFields(fields, ProductoQueryService.FIELD_NAMES, ENTITY_NAME);
+        return ResponseUtil.wrapOrNotFound(productoService.findOne(id)
+            .map(productoDTO -> SparseFieldsetUtil.narrow(objectMapper, productoDTO, fieldset)));
     }
 
     /**
@@ -140,4 +453,12 @@ public class ProductoResource {
         productoService.delete(id);
         return ResponseEntity.noContent().headers(HeaderUtil.createEntityDeletionAlert(applicationName, true, ENTITY_NAME, id.toString())).build();
     }
+
+    /**
+     * @param productoDTO the producto.
+     * @return the entity tag of the producto: the version of the producto.
+     */
+    private static String eTag(ProductoDTO productoDTO) {
+        return ETagUtil.eTag(productoDTO.getVersion());
+    }
 }
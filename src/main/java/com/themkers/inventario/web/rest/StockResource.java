@@ -1,11 +1,30 @@
 package com.themkers.inventario.web.rest;
 
+import com.themkers.inventario.service.BulkImportService;
+import com.themkers.inventario.service.ExportService;
+import com.themkers.inventario.service.FileFormat;
 import com.themkers.inventario.service.StockService;
+import com.themkers.inventario.service.StockStreamService;
+import com.themkers.inventario.service.StockValuationService;
 import com.themkers.inventario.web.rest.errors.BadRequestAlertException;
+import com.themkers.inventario.web.rest.errors.PreconditionFailedAlertException;
+import com.themkers.inventario.web.rest.util.ETagUtil;
+import com.themkers.inventario.web.rest.util.SlicePaginationUtil;
+import com.themkers.inventario.web.rest.util.SparseFieldsetUtil;
+import com.themkers.inventario.service.dto.StockAdjustmentDTO;
+import com.themkers.inventario.service.dto.StockChangeDTO;
+import com.themkers.inventario.service.dto.BulkImportResultDTO;
 import com.themkers.inventario.service.dto.StockDTO;
+import com.themkers.inventario.service.dto.ChangesDTO;
+import com.themkers.inventario.service.dto.ChangesToken;
 import com.themkers.inventario.service.dto.StockCriteria;
+import com.themkers.inventario.service.dto.ProductoCriteria;
+import com.themkers.inventario.service.dto.StockValuationDTO;
+import com.themkers.inventario.service.dto.KeysetCursor;
+import com.themkers.inventario.service.dto.SparseFieldset;
 import com.themkers.inventario.service.StockQueryService;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.jhipster.web.util.HeaderUtil;
 import io.github.jhipster.web.util.PaginationUtil;
 import io.github.jhipster.web.util.ResponseUtil;
@@ -14,17 +33,32 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.validation.Valid;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.zip.GZIPInputStream;
 
 /**
  * REST controller for managing {@link com.themkers.inventario.domain.Stock}.
@@ -37,6 +71,16 @@ public class StockResource {
 
     private static final String ENTITY_NAME = "inventariomicroservicioStock";
 
+    private static final int MAX_IDS = 1000;
+
+    private static final int MAX_CHANGES = 1000;
+
+    private static final String COUNT_EXACT = "exact";
+
+    private static final String COUNT_ESTIMATE = "estimate";
+
+    private static final String COUNT_NONE = "none";
+
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
 
@@ -44,9 +88,26 @@ public class StockResource {
 
     private final StockQueryService stockQueryService;
 
-    public StockResource(StockService stockService, StockQueryService stockQueryService) {
+    private final BulkImportService bulkImportService;
+
+    private final ExportService exportService;
+
+    private final ObjectMapper objectMapper;
+
+    private final StockStreamService stockStreamService;
+
+    private final StockValuationService stockValuationService;
+
+    public StockResource(StockService stockService, StockQueryService stockQueryService, BulkImportService bulkImportService,
+                         ExportService exportService, ObjectMapper objectMapper, StockStreamService stockStreamService,
+                         StockValuationService stockValuationService) {
         this.stockService = stockService;
         this.stockQueryService = stockQueryService;
+        this.bulkImportService = bulkImportService;
+        this.exportService = exportService;
+        this.objectMapper = objectMapper;
+        this.stockStreamService = stockStreamService;
+        this.stockValuationService = stockValuationService;
     }
 
     /**
@@ -65,45 +126,229 @@ public class StockResource {
         StockDTO result = stockService.save(stockDTO);
         return ResponseEntity.created(new URI("/api/stocks/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert(applicationName, true, ENTITY_NAME, result.getId().toString()))
+            .eTag(eTag(result))
             .body(result);
     }
 
     /**
      * {@code PUT  /stocks} : Updates an existing stock.
+     * <p>
+     * With an {@code If-Match} header, the update is only applied if the stock is still the one of the given entity
+     * tag, as returned by {@link #getStock(Long)}: concurrent updates are rejected instead of being overwritten.
      *
      * @param stockDTO the stockDTO to update.
+     * @param ifMatch the entity tags of the stock which can be updated, if any.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated stockDTO,
      * or with status {@code 400 (Bad Request)} if the stockDTO is not valid,
+     * or with status {@code 412 (Precondition Failed)} if the stock has been changed since the {@code If-Match} entity tag,
      * or with status {@code 500 (Internal Server Error)} if the stockDTO couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PutMapping("/stocks")
-    public ResponseEntity<StockDTO> updateStock(@Valid @RequestBody StockDTO stockDTO) throws URISyntaxException {
+    public ResponseEntity<StockDTO> updateStock(@Valid @RequestBody StockDTO stockDTO,
+                                                @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) throws URISyntaxException {
         log.debug("REST request to update Stock : {}", stockDTO);
         if (stockDTO.getId() == null) {
             throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
         }
-        StockDTO result = stockService.save(stockDTO);
+        StockDTO result;
+        if (ifMatch != null) {
+            try {
+                result = stockService.save(stockDTO, current -> ETagUtil.matches(ifMatch, eTag(current)));
+            } catch (OptimisticLockingFailureException e) {
+                throw new PreconditionFailedAlertException("The stock has been changed", ENTITY_NAME, "preconditionfailed");
+            }
+        } else {
+            result = stockService.save(stockDTO);
+        }
         return ResponseEntity.ok()
             .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, stockDTO.getId().toString()))
+            .eTag(eTag(result))
             .body(result);
     }
 
+    /**
+     * {@code POST  /stocks/:id/adjust} : Atomically adds a signed delta to the quantity of the "id" stock.
+     *
+     * @param id the id of the stock to adjust.
+     * @param adjustment the adjustment to apply.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the adjustment and the resulting quantity,
+     * or with status {@code 400 (Bad Request)} if the adjustment is not valid,
+     * or with status {@code 404 (Not Found)} if the stock doesn't exist,
+     * or with status {@code 409 (Conflict)} if the quantity would become negative.
+     */
+    @PostMapping("/stocks/{id}/adjust")
+    public ResponseEntity<StockAdjustmentDTO> adjustStock(@PathVariable Long id, @Valid @RequestBody StockAdjustmentDTO adjustment) {
+        log.debug("REST request to adjust Stock : {} by {}", id, adjustment);
+        if (adjustment.getStockId() != null && !adjustment.getStockId().equals(id)) {
+            throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idinvalid");
+        }
+        StockAdjustmentDTO result = new StockAdjustmentDTO(id, adjustment.getDelta());
+        result.setCantidad(stockService.adjust(id, adjustment.getDelta()));
+        return ResponseEntity.ok()
+            .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, id.toString()))
+            .body(result);
+    }
+
+    /**
+     * {@code POST  /stocks/adjust} : Atomically applies a batch of stock adjustments, all or nothing.
+     *
+     * @param adjustments the adjustments to apply.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the adjustments and the resulting quantities,
+     * or with status {@code 400 (Bad Request)} if an adjustment is not valid,
+     * or with status {@code 404 (Not Found)} if a stock doesn't exist,
+     * or with status {@code 409 (Conflict)} if a quantity would become negative.
+     */
+    @PostMapping("/stocks/adjust")
+    public ResponseEntity<List<StockAdjustmentDTO>> adjustStocks(@RequestBody List<StockAdjustmentDTO> adjustments) {
+        log.debug("REST request to adjust {} Stocks", adjustments.size());
+        for (StockAdjustmentDTO adjustment : adjustments) {
+            if (adjustment.getStockId() == null) {
+                throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
+            }
+            if (adjustment.getDelta() == null) {
+                throw new BadRequestAlertException("Invalid delta", ENTITY_NAME, "deltanull");
+            }
+        }
+        return ResponseEntity.ok().body(stockService.adjust(adjustments));
+    }
+
+    /**
+     * {@code POST  /stocks/bulk} : Imports new stocks from a CSV or NDJSON file, optionally gzip-encoded.
+     * <p>
+     * The file is streamed from the request body: CSV files must start with a header row naming the fields.
+     *
+     * @param request the request holding the file.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the import report,
+     * or with status {@code 415 (Unsupported Media Type)} if the file format is not supported.
+     * @throws IOException if the request body can't be read.
+     */
+    @PostMapping(value = "/stocks/bulk", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<BulkImportResultDTO> importStocks(HttpServletRequest request) throws IOException {
+        log.debug("REST request to import Stocks from {}", request.getContentType());
+        FileFormat format = request.getContentType().startsWith(FileFormat.CSV.getMediaType()) ?
+            FileFormat.CSV : FileFormat.NDJSON;
+        InputStream in = request.getInputStream();
+        if ("gzip".equalsIgnoreCase(request.getHeader(HttpHeaders.CONTENT_ENCODING))) {
+            in = new GZIPInputStream(in);
+        }
+        return ResponseEntity.ok().body(bulkImportService.importStocks(in, format));
+    }
+
     /**
      * {@code GET  /stocks} : get all the stocks.
      *
      * @param pageable the pagination information.
      * @param criteria the criteria which the requested entities should match.
+     * @param after the keyset pagination cursor: if present, empty for the first page, the entities are paginated
+     * after the cursor instead of by page number, and without total count.
+     * @param count the total count mode: {@code exact} (the default) for an {@code X-Total-Count} header,
+     * {@code estimate} for an {@code X-Total-Count-Estimate} header when a cheap estimate is available, or {@code none}.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of stocks in body.
      */
     @GetMapping("/stocks")
-    public ResponseEntity<List<StockDTO>> getAllStocks(StockCriteria criteria, Pageable pageable) {
+    public ResponseEntity<List<StockDTO>> getAllStocks(StockCriteria criteria, Pageable pageable,
+                                                     @RequestParam(required = false) String after,
+                                                     @RequestParam(defaultValue = COUNT_EXACT) String count) {
         log.debug("REST request to get Stocks by criteria: {}", criteria);
-        Page<StockDTO> page = stockQueryService.findByCriteria(criteria, pageable);
+        return getAllStocks(criteria, pageable, after, count, null);
+    }
+
+    /**
+     * {@code GET  /stocks?fields=} : get all the stocks, with only some of their fields.
+     * <p>
+     * Only the requested fields are read from the database and written to the response.
+     *
+     * @param pageable the pagination information.
+     * @param criteria the criteria which the requested entities should match.
+     * @param after the keyset pagination cursor, as in {@link #getAllStocks(StockCriteria, Pageable, String, String)}.
+     * @param count the total count mode, as in {@link #getAllStocks(StockCriteria, Pageable, String, String)}.
+     * @param fields the comma-separated names of the requested fields.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of stocks in body,
+     * or with status {@code 400 (Bad Request)} if a field doesn't exist.
+     */
+    @GetMapping(value = "/stocks", params = {"fields", "!ids"})
+    public ResponseEntity<List<Map<String, Object>>> getAllStocksFields(StockCriteria criteria, Pageable pageable,
+                                                     @RequestParam(required = false) String after,
+                                                     @RequestParam(defaultValue = COUNT_EXACT) String count,
+                                                     @RequestParam String fields) {
+        log.debug("REST request to get Stocks by criteria: {}, fields: {}", criteria, fields);
+        SparseFieldset fieldset = SparseFieldsetUtil.parseFields(fields, StockQueryService.FIELD_NAMES, ENTITY_NAME);
+        ResponseEntity<List<StockDTO>> response = getAllStocks(criteria, pageable, after, count, fieldset);
+        return ResponseEntity.ok().headers(response.getHeaders())
+            .body(SparseFieldsetUtil.narrow(objectMapper, response.getBody(), fieldset));
+    }
+
+    private ResponseEntity<List<StockDTO>> getAllStocks(StockCriteria criteria, Pageable pageable, String after, String count,
+                                                  SparseFieldset fields) {
+        if (!COUNT_EXACT.equals(count) && !COUNT_ESTIMATE.equals(count) && !COUNT_NONE.equals(count)) {
+            throw new BadRequestAlertException("Invalid count mode", ENTITY_NAME, "countinvalid");
+        }
+        if (after != null || !COUNT_EXACT.equals(count)) {
+            return getAllStocksWithoutCount(criteria, pageable, after, COUNT_ESTIMATE.equals(count), fields);
+        }
+        Page<StockDTO> page = fields == null ? stockQueryService.findByCriteria(criteria, pageable) :
+            stockQueryService.findByCriteria(criteria, pageable, fields);
         HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
         return ResponseEntity.ok().headers(headers).body(page.getContent());
     }
 
+    private ResponseEntity<List<StockDTO>> getAllStocksWithoutCount(StockCriteria criteria, Pageable pageable, String after, boolean estimate,
+                                                                SparseFieldset fields) {
+        Slice<StockDTO> slice;
+        HttpHeaders headers;
+        if (after != null) {
+            KeysetCursor cursor = SlicePaginationUtil.decodeCursor(after, ENTITY_NAME);
+            Sort.Order order = SlicePaginationUtil.keysetOrder(pageable, cursor, ENTITY_NAME);
+            try {
+                slice = stockQueryService.findByCriteriaAfter(criteria, order, cursor, pageable.getPageSize(), fields);
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "sortinvalid");
+            }
+            headers = SlicePaginationUtil.generateKeysetPaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), slice, order);
+        } else {
+            slice = stockQueryService.findSliceByCriteria(criteria, pageable, fields);
+            headers = SlicePaginationUtil.generateSliceHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), slice);
+        }
+        if (estimate) {
+            stockQueryService.estimateCountByCriteria(criteria)
+                .ifPresent(total -> headers.add(SlicePaginationUtil.HEADER_X_TOTAL_COUNT_ESTIMATE, Long.toString(total)));
+        }
+        return ResponseEntity.ok().headers(headers).body(slice.getContent());
+    }
+
+    /**
+     * {@code GET  /stocks?ids=} : get the stocks with the given ids.
+     * <p>
+     * Cached stocks are served from the cache, and the others are read with a single query.
+     *
+     * @param ids the ids of the stocks to retrieve, at most {@value #MAX_IDS}.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of stocks in body, in the order of
+     * the ids and without the ones which don't exist, or with status {@code 400 (Bad Request)} if there are too many ids.
+     */
+    @GetMapping(value = "/stocks", params = "ids")
+    public ResponseEntity<List<StockDTO>> getStocksByIds(@RequestParam List<Long> ids) {
+        log.debug("REST request to get Stocks : {}", ids);
+        if (ids.size() > MAX_IDS) {
+            throw new BadRequestAlertException("Too many ids", ENTITY_NAME, "idstoomany");
+        }
+        return ResponseEntity.ok().body(stockService.findAllById(ids));
+    }
+
+    /**
+     * {@code GET  /stocks?ids=&fields=} : get the stocks with the given ids, with only some of their fields.
+     *
+     * @param ids the ids of the stocks to retrieve, at most {@value #MAX_IDS}.
+     * @param fields the comma-separated names of the requested fields.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of stocks in body, in the order of
+     * the ids, or with status {@code 400 (Bad Request)} if there are too many ids or if a field doesn't exist.
+     */
+    @GetMapping(value = "/stocks", params = {"ids", "fields"})
+    public ResponseEntity<List<Map<String, Object>>> getStocksByIdsFields(@RequestParam List<Long> ids, @RequestParam String fields) {
+        SparseFieldset fieldset = SparseFieldsetUtil.parseFields(fields, StockQueryService.FIELD_NAMES, ENTITY_NAME);
+        return ResponseEntity.ok().body(SparseFieldsetUtil.narrow(objectMapper, getStocksByIds(ids).getBody(), fieldset));
+    }
+
     /**
      * {@code GET  /stocks/count} : count all the stocks.
      *
@@ -116,8 +361,126 @@ public class StockResource {
         return ResponseEntity.ok().body(stockQueryService.countByCriteria(criteria));
     }
 
+    /**
+     * {@code GET  /stocks/valuation} : get the valuation of the stocks, sum of their quantities times the prices of their productos.
+     * Without filter, the valuation of all the stocks is read from its maintained total.
+     *
+     * @param criteria the criteria which the productos of the valued stocks should match.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the valuation in body.
+     */
+    @GetMapping(value = "/stocks/valuation", params = "!groupBy")
+    public ResponseEntity<StockValuationDTO> getStockValuation(ProductoCriteria criteria) {
+        log.debug("REST request to get the Stock valuation by criteria: {}", criteria);
+        return ResponseEntity.ok().body(new StockValuationDTO(null, null, stockValuationService.getValuation(criteria)));
+    }
+
+    /**
+     * {@code GET  /stocks/valuation?groupBy=producto} : get the valuations of the stocks of each producto, in producto id order.
+     *
+     * @param criteria the criteria which the productos should match.
+     * @param pageable the pagination information, whose sort is ignored.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the valuations by producto in body.
+     */
+    @GetMapping(value = "/stocks/valuation", params = "groupBy=producto")
+    public ResponseEntity<List<StockValuationDTO>> getStockValuationByProducto(ProductoCriteria criteria, Pageable pageable) {
+        log.debug("REST request to get the Stock valuation by Producto by criteria: {}", criteria);
+        Page<StockValuationDTO> page = stockValuationService.getValuationByProducto(criteria, pageable);
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+        return ResponseEntity.ok().headers(headers).body(page.getContent());
+    }
+
+    /**
+     * {@code GET  /stocks/changes} : get the changes of the stocks since a token, for incremental synchronization.
+     * <p>
+     * Without token, all the stocks are returned. Clients apply the changed stocks, then remove the deleted ids, and
+     * request the next changes with the returned token: right away if {@code more} is set, later otherwise.
+     *
+     * @param since the token returned by the previous request, if any.
+     * @param limit the maximum number of changed stocks, and of deleted ones, at most {@value #MAX_CHANGES}.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the changes in body,
+     * or with status {@code 400 (Bad Request)} if the token or the limit is not valid,
+     * or with status {@code 410 (Gone)} if the token has expired, and the stocks must be synchronized from scratch.
+     */
+    @GetMapping("/stocks/changes")
+    public ResponseEntity<ChangesDTO<StockDTO>> getStockChanges(@RequestParam(required = false) String since,
+                                                               @RequestParam(defaultValue = "" + MAX_CHANGES) int limit) {
+        log.debug("REST request to get Stock changes since : {}", since);
+        if (limit < 1 || limit > MAX_CHANGES) {
+            throw new BadRequestAlertException("Invalid limit", ENTITY_NAME, "limitinvalid");
+        }
+        ChangesToken token;
+        try {
+            token = since != null ? ChangesToken.decode(since) : null;
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException("Invalid token", ENTITY_NAME, "tokeninvalid");
+        }
+        return ResponseEntity.ok().body(stockService.findChanges(token, limit));
+    }
+
+    /**
+     * {@code GET  /stocks/stream} : stream the committed changes of the stocks, as server-sent events.
+     * <p>
+     * Each event, named {@code stock}, holds a {@link StockChangeDTO}: the changes of a same stock are coalesced over
+     * a short window, and the oldest changes are dropped for clients which can't keep up. The request is processed
+     * asynchronously, so open streams don't hold request threads.
+     *
+     * @param productoId the producto of the stocks to stream the changes of, all the stocks if absent.
+     * @return the stream.
+     */
+    @GetMapping(value = "/stocks/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamStocks(@RequestParam(required = false) Long productoId) {
+        log.debug("REST request to stream Stock changes of Producto : {}", productoId);
+        SseEmitter emitter = new SseEmitter(stockStreamService.getTimeoutMs());
+        StockStreamService.Subscription subscription = stockStreamService.subscribe(productoId,
+            new StockStreamService.StockChangeListener() {
+
+                @Override
+                public void onChanges(List<StockChangeDTO> changes) throws IOException {
+                    for (StockChangeDTO change : changes) {
+                        emitter.send(SseEmitter.event().name("stock").data(change, MediaType.APPLICATION_JSON));
+                    }
+                }
+
+                @Override
+                public void onKeepAlive() throws IOException {
+                    emitter.send(SseEmitter.event().comment("keep-alive"));
+                }
+            });
+        emitter.onCompletion(subscription::cancel);
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> subscription.cancel());
+        return emitter;
+    }
+
+    /**
+     * {@code GET  /stocks/export} : export all the stocks matching the criteria, in id order.
+     * <p>
+     * The file is written to the response while the stocks are read from the database.
+     *
+     * @param criteria the criteria which the requested entities should match.
+     * @param format the file format: {@code ndjson} (the default) or {@code csv}.
+     * @param response the response to write the file to.
+     * @throws IOException if the response can't be written.
+     */
+    @GetMapping("/stocks/export")
+    public void exportStocks(StockCriteria criteria, @RequestParam(defaultValue = "ndjson") String format,
+                             HttpServletResponse response) throws IOException {
+        log.debug("REST request to export Stocks to {} by criteria: {}", format, criteria);
+        FileFormat fileFormat = Arrays.stream(FileFormat.values())
+            .filter(value -> value.name().equalsIgnoreCase(format))
+            .findFirst()
+            .orElseThrow(() -> new BadRequestAlertException("Invalid format", ENTITY_NAME, "formatinvalid"));
+        response.setContentType(fileFormat.getMediaType() + ";charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.builder("attachment")
+            .filename("stocks." + fileFormat.name().toLowerCase(Locale.ROOT)).build().toString());
+        exportService.exportStocks(criteria, fileFormat, response.getOutputStream());
+    }
+
     /**
      * {@code GET  /stocks/:id} : get the "id" stock.
+     * <p>
+     * The response carries the entity tag of the stock in an {@code ETag} header: requests whose {@code If-None-Match}
+     * header holds it are answered with status {@code 304 (Not Modified)} and no body.
      *
      * @param id the id of the stockDTO to retrieve.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the stockDTO, or with status {@code 404 (Not Found)}.
@@ -126,7 +489,24 @@ public class StockResource {
     public ResponseEntity<StockDTO> getStock(@PathVariable Long id) {
         log.debug("REST request to get Stock : {}", id);
         Optional<StockDTO> stockDTO = stockService.findOne(id);
-        return ResponseUtil.wrapOrNotFound(stockDTO);
+        return stockDTO.map(found -> ResponseEntity.ok().eTag(eTag(found)).body(found))
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    }
+
+    /**
+     * {@code GET  /stocks/:id?fields=} : get the "id" stock, with only some of its fields.
+     *
+     * @param id the id of the stockDTO to retrieve.
+     * @param fields the comma-separated names of the requested fields.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the requested fields of the stockDTO,
+     * or with status {@code 404 (Not Found)}, or with status {@code 400 (Bad Request)} if a field doesn't exist.
+     */
+    @GetMapping(value = "/stocks/{id}", params = "fields")
+    public ResponseEntity<Map<String, Object>> getStockFields(@PathVariable Long id, @RequestParam String fields) {
+        log.debug("REST request to get Stock : {}, fields: {}", id, fields);
+        SparseFieldset fieldset = SparseFieldsetUtil.parseFields(fields, StockQueryService.FIELD_NAMES, ENTITY_NAME);
+        return ResponseUtil.wrapOrNotFound(stockService.findOne(id)
+            .map(stockDTO -> SparseFieldsetUtil.narrow(objectMapper, stockDTO, fieldset)));
     }
 
     /**
@@ -141,4 +521,13 @@ public class StockResource {
         stockService.delete(id);
         return ResponseEntity.noContent().headers(HeaderUtil.createEntityDeletionAlert(applicationName, true, ENTITY_NAME, id.toString())).build();
     }
+
+    /**
+     * @param stockDTO the stock.
+     * @return the entity tag of the stock: its version, and its quantity which the pending adjustments of hot stocks
+     * change without a new version.
+     */
+    private static String eTag(StockDTO stockDTO) {
+        return ETagUtil.eTag(stockDTO.getVersion(), stockDTO.getCantidad());
+    }
 }
@@ -6,9 +6,12 @@ public final class ErrorConstants {
 
     public static final String ERR_CONCURRENCY_FAILURE = "error.concurrencyFailure";
     public static final String ERR_VALIDATION = "error.validation";
+    public static final String ERR_INSUFFICIENT_STOCK = "error.insufficientStock";
+    public static final String ERR_CHANGES_TOKEN_EXPIRED = "error.changesTokenExpired";
     public static final String PROBLEM_BASE_URL = "https://www.jhipster.tech/problem";
     public static final URI DEFAULT_TYPE = URI.create(PROBLEM_BASE_URL + "/problem-with-message");
     public static final URI CONSTRAINT_VIOLATION_TYPE = URI.create(PROBLEM_BASE_URL + "/constraint-violation");
+    public static final URI INSUFFICIENT_STOCK_TYPE = URI.create(PROBLEM_BASE_URL + "/insufficient-stock");
 
     private ErrorConstants() {
     }
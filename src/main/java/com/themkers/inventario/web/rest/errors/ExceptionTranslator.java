@@ -1,5 +1,9 @@
 package com.themkers.inventario.web.rest.errors;
 
+import com.themkers.inventario.service.ChangesTokenExpiredException;
+import com.themkers.inventario.service.InsufficientStockException;
+import com.themkers.inventario.service.StockNotFoundException;
+
 import io.github.jhipster.web.util.HeaderUtil;
 
 import org.springframework.beans.factory.annotation.Value;
@@ -96,6 +100,11 @@ public class ExceptionTranslator implements ProblemHandling, SecurityAdviceTrait
         return create(ex, request, HeaderUtil.createFailureAlert(applicationName, true, ex.getEntityName(), ex.getErrorKey(), ex.getMessage()));
     }
 
+    @ExceptionHandler
+    public ResponseEntity<Problem> handlePreconditionFailedAlertException(PreconditionFailedAlertException ex, NativeWebRequest request) {
+        return create(ex, request, HeaderUtil.createFailureAlert(applicationName, true, ex.getEntityName(), ex.getErrorKey(), ex.getMessage()));
+    }
+
     @ExceptionHandler
     public ResponseEntity<Problem> handleConcurrencyFailure(ConcurrencyFailureException ex, NativeWebRequest request) {
         Problem problem = Problem.builder()
@@ -104,4 +113,38 @@ public class ExceptionTranslator implements ProblemHandling, SecurityAdviceTrait
             .build();
         return create(ex, problem, request);
     }
+
+    @ExceptionHandler
+    public ResponseEntity<Problem> handleInsufficientStock(InsufficientStockException ex, NativeWebRequest request) {
+        Problem problem = Problem.builder()
+            .withType(ErrorConstants.INSUFFICIENT_STOCK_TYPE)
+            .withTitle("Insufficient stock")
+            .withStatus(Status.CONFLICT)
+            .withDetail(ex.getMessage())
+            .with(MESSAGE_KEY, ErrorConstants.ERR_INSUFFICIENT_STOCK)
+            .with("stockId", ex.getStockId())
+            .with("available", ex.getAvailable())
+            .with("delta", ex.getDelta())
+            .build();
+        return create(ex, problem, request);
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<Problem> handleStockNotFound(StockNotFoundException ex, NativeWebRequest request) {
+        Problem problem = Problem.builder()
+            .withStatus(Status.NOT_FOUND)
+            .withDetail(ex.getMessage())
+            .build();
+        return create(ex, problem, request);
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<Problem> handleChangesTokenExpired(ChangesTokenExpiredException ex, NativeWebRequest request) {
+        Problem problem = Problem.builder()
+            .withStatus(Status.GONE)
+            .withDetail(ex.getMessage())
+            .with(MESSAGE_KEY, ErrorConstants.ERR_CHANGES_TOKEN_EXPIRED)
+            .build();
+        return create(ex, problem, request);
+    }
 }
@@ -0,0 +1,42 @@
+package com.themkers.inventario.web.rest.util;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Utility class for handling entity tags: the {@code ETag} of a single entity response, and the {@code If-Match}
+ * preconditions of its updates.
+ * <p>
+ * The {@code If-None-Match} preconditions of {@code GET} requests are answered by Spring MVC itself, with a
+ * {@code 304 (Not Modified)} status and no body, for responses carrying an {@code ETag}.
+ */
+public final class ETagUtil {
+
+    private ETagUtil() {
+    }
+
+    /**
+     * Build a strong entity tag from the version of an entity, and of any other part of its representation which
+     * can change without a new version.
+     *
+     * @param parts the version, then the other parts.
+     * @return the quoted entity tag.
+     */
+    public static String eTag(Object... parts) {
+        return Arrays.stream(parts).map(String::valueOf).collect(Collectors.joining("-", "\"", "\""));
+    }
+
+    /**
+     * Evaluate an {@code If-Match} precondition, with the strong comparison: weak entity tags never match.
+     *
+     * @param ifMatch the {@code If-Match} header.
+     * @param eTag the current entity tag of the entity.
+     * @return whether the precondition holds.
+     */
+    public static boolean matches(String ifMatch, String eTag) {
+        return Arrays.stream(ifMatch.split(","))
+            .map(String::trim)
+            .anyMatch(tag -> "*".equals(tag) || Objects.equals(tag, eTag));
+    }
+}
@@ -0,0 +1,128 @@
+package com.themkers.inventario.web.rest.util;
+
+import com.themkers.inventario.service.dto.KeysetCursor;
+import com.themkers.inventario.web.rest.errors.BadRequestAlertException;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Utility class for handling pagination without total count.
+ * <p>
+ * Requests are either paginated by page number, or by keyset (seek): a keyset paginated request carries an
+ * {@code after} parameter, empty for the first page, or the opaque cursor found in the {@code next} link of the
+ * previous page. Instead of the total count, responses can carry an estimate in the
+ * {@value #HEADER_X_TOTAL_COUNT_ESTIMATE} header.
+ */
+public final class SlicePaginationUtil {
+
+    public static final String HEADER_X_TOTAL_COUNT_ESTIMATE = "X-Total-Count-Estimate";
+
+    private static final String ID = "id";
+
+    private SlicePaginationUtil() {
+    }
+
+    /**
+     * Decode the {@code after} request parameter.
+     *
+     * @param after the request parameter, empty for the first page.
+     * @param entityName the name of the paginated entity, for error reporting.
+     * @return the cursor, or {@code null} for the first page.
+     * @throws BadRequestAlertException if the cursor is malformed.
+     */
+    public static KeysetCursor decodeCursor(String after, String entityName) {
+        if (after.isEmpty()) {
+            return null;
+        }
+        try {
+            return KeysetCursor.decode(after);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException("Invalid cursor", entityName, "cursorinvalid");
+        }
+    }
+
+    /**
+     * Get the sort order of a keyset paginated request: the one of the cursor, or else the requested one,
+     * which can sort on a single property besides the id.
+     *
+     * @param pageable the pagination information.
+     * @param cursor the cursor, {@code null} for the first page.
+     * @param entityName the name of the paginated entity, for error reporting.
+     * @return the sort order.
+     * @throws BadRequestAlertException if the request sorts on several properties.
+     */
+    public static Sort.Order keysetOrder(Pageable pageable, KeysetCursor cursor, String entityName) {
+        if (cursor != null) {
+            return new Sort.Order(cursor.getDirection(), cursor.getProperty());
+        }
+        List<Sort.Order> orders = pageable.getSort().stream().collect(Collectors.toList());
+        List<Sort.Order> keyOrders = orders.stream()
+            .filter(order -> !ID.equals(order.getProperty()))
+            .collect(Collectors.toList());
+        if (keyOrders.size() > 1) {
+            throw new BadRequestAlertException("Keyset pagination can only sort on one property", entityName, "sortinvalid");
+        }
+        if (keyOrders.size() == 1) {
+            return keyOrders.get(0);
+        }
+        return orders.isEmpty() ? Sort.Order.asc(ID) : orders.get(0);
+    }
+
+    /**
+     * Generate the pagination headers of a keyset paginated response: a {@code next} link, if there is a next page.
+     *
+     * @param uriBuilder the builder of the current request URI.
+     * @param slice the slice.
+     * @param order the sort order.
+     * @return the {@link HttpHeaders}.
+     */
+    public static HttpHeaders generateKeysetPaginationHttpHeaders(UriComponentsBuilder uriBuilder, Slice<?> slice, Sort.Order order) {
+        HttpHeaders headers = new HttpHeaders();
+        if (slice.hasNext()) {
+            Object last = slice.getContent().get(slice.getNumberOfElements() - 1);
+            String next = uriBuilder
+                .replaceQueryParam("page")
+                .replaceQueryParam("after", KeysetCursor.after(order, last).encode())
+                .replaceQueryParam("size", slice.getSize())
+                .replaceQueryParam("sort", order.getProperty() + "," + order.getDirection().name().toLowerCase())
+                .toUriString();
+            headers.add(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return headers;
+    }
+
+    /**
+     * Generate the pagination headers of a slice paginated by page number: {@code next}, {@code prev} and
+     * {@code first} links, as available without knowing the total count.
+     *
+     * @param uriBuilder the builder of the current request URI.
+     * @param slice the slice.
+     * @return the {@link HttpHeaders}.
+     */
+    public static HttpHeaders generateSliceHttpHeaders(UriComponentsBuilder uriBuilder, Slice<?> slice) {
+        HttpHeaders headers = new HttpHeaders();
+        List<String> links = new ArrayList<>();
+        if (slice.hasNext()) {
+            links.add(pageLink(uriBuilder, slice.getNumber() + 1, slice.getSize(), "next"));
+        }
+        if (slice.hasPrevious()) {
+            links.add(pageLink(uriBuilder, slice.getNumber() - 1, slice.getSize(), "prev"));
+        }
+        links.add(pageLink(uriBuilder, 0, slice.getSize(), "first"));
+        headers.add(HttpHeaders.LINK, String.join(",", links));
+        return headers;
+    }
+
+    private static String pageLink(UriComponentsBuilder uriBuilder, int page, int size, String relType) {
+        return "<" + uriBuilder.replaceQueryParam("page", page).replaceQueryParam("size", size).toUriString() +
+            ">; rel=\"" + relType + "\"";
+    }
+}
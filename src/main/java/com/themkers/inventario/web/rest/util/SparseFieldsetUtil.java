@@ -0,0 +1,67 @@
+package com.themkers.inventario.web.rest.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.themkers.inventario.service.dto.SparseFieldset;
+import com.themkers.inventario.web.rest.errors.BadRequestAlertException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Utility class for handling sparse fieldsets: a {@code fields} request parameter listing, comma-separated, the
+ * only fields of the DTOs the client needs. The other fields are left out of the response body.
+ */
+public final class SparseFieldsetUtil {
+
+    private static final TypeReference<Map<String, Object>> FIELDS_TYPE = new TypeReference<Map<String, Object>>() {
+    };
+
+    private SparseFieldsetUtil() {
+    }
+
+    /**
+     * Parse the {@code fields} request parameter.
+     *
+     * @param fields the request parameter.
+     * @param available the names of the fields of the DTO.
+     * @param entityName the name of the entity, for error reporting.
+     * @return the fieldset.
+     * @throws BadRequestAlertException if no field is requested, or if a field doesn't exist.
+     */
+    public static SparseFieldset parseFields(String fields, Collection<String> available, String entityName) {
+        try {
+            return SparseFieldset.parse(fields, available);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException(e.getMessage(), entityName, "fieldsinvalid");
+        }
+    }
+
+    /**
+     * Convert a DTO to the JSON object of its requested fields.
+     *
+     * @param objectMapper the mapper serializing the DTO.
+     * @param dto the DTO.
+     * @param fieldset the requested fields.
+     * @return the requested fields, by name.
+     */
+    public static Map<String, Object> narrow(ObjectMapper objectMapper, Object dto, SparseFieldset fieldset) {
+        Map<String, Object> fields = objectMapper.convertValue(dto, FIELDS_TYPE);
+        fields.keySet().retainAll(fieldset.getNames());
+        return fields;
+    }
+
+    /**
+     * Convert DTOs to the JSON objects of their requested fields.
+     *
+     * @param objectMapper the mapper serializing the DTOs.
+     * @param dtos the DTOs.
+     * @param fieldset the requested fields.
+     * @return the requested fields of each DTO, by name.
+     */
+    public static List<Map<String, Object>> narrow(ObjectMapper objectMapper, List<?> dtos, SparseFieldset fieldset) {
+        return dtos.stream().map(dto -> narrow(objectMapper, dto, fieldset)).collect(Collectors.toList());
+    }
+}
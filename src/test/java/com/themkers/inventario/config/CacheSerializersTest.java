@@ -0,0 +1,119 @@
+package com.themkers.inventario.config;
+
+import com.hazelcast.config.SerializationConfig;
+import com.hazelcast.internal.serialization.InternalSerializationService;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+import com.hazelcast.nio.serialization.Data;
+
+import com.themkers.inventario.service.dto.CachedPage;
+import com.themkers.inventario.service.dto.ProductoChangeDTO;
+import com.themkers.inventario.service.dto.ProductoDTO;
+import com.themkers.inventario.service.dto.StockDTO;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for the {@link CacheSerializers} class.
+ */
+public class CacheSerializersTest {
+
+    private InternalSerializationService serializationService;
+
+    private InternalSerializationService javaSerializationService;
+
+    @BeforeEach
+    public void setup() {
+        SerializationConfig config = new SerializationConfig();
+        CacheSerializers.register(config);
+        serializationService = new DefaultSerializationServiceBuilder().setConfig(config).build();
+        javaSerializationService = new DefaultSerializationServiceBuilder().build();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        serializationService.dispose();
+        javaSerializationService.dispose();
+    }
+
+    @Test
+    public void testProductoDTO() {
+        ProductoDTO producto = new ProductoDTO(1L, "Tornillo hexagonal", new BigDecimal("-12345678901234567890.125"));
+        producto.setVersion(3L);
+
+        ProductoDTO read = roundTrip(producto);
+
+        assertThat(read).isEqualToComparingFieldByField(producto);
+        assertThat(roundTrip(new ProductoDTO())).isEqualToComparingFieldByField(new ProductoDTO());
+        assertThat(serializationService.toData(producto).totalSize())
+            .isLessThan(javaSerializationService.toData(producto).totalSize() / 4);
+    }
+
+    @Test
+    public void testStockDTO() {
+        StockDTO stock = new StockDTO(2L, 10L, 1L, "Tornillo hexagonal");
+        stock.setVersion(0L);
+
+        assertThat(roundTrip(stock)).isEqualToComparingFieldByField(stock);
+        assertThat(roundTrip(new StockDTO())).isEqualToComparingFieldByField(new StockDTO());
+    }
+
+    @Test
+    public void testProductoChangeDTO() {
+        assertThat(roundTrip(new ProductoChangeDTO(1L, "Tuerca", false))).isEqualTo(new ProductoChangeDTO(1L, "Tuerca", false));
+        assertThat(roundTrip(new ProductoChangeDTO(1L, null, true))).isEqualTo(new ProductoChangeDTO(1L, null, true));
+    }
+
+    @Test
+    public void testInvalidation() {
+        TwoTierCacheManager.Invalidation invalidation = roundTrip(new TwoTierCacheManager.Invalidation("productos-by-id", 1L));
+        assertThat(invalidation.getCacheName()).isEqualTo("productos-by-id");
+        assertThat(invalidation.getKey()).isEqualTo(1L);
+        assertThat(roundTrip(new TwoTierCacheManager.Invalidation("producto-queries", null)).getKey()).isNull();
+    }
+
+    @Test
+    public void testGeneration() {
+        TwoTierCacheManager.Generation generation = roundTrip(new TwoTierCacheManager.Generation("stock-queries", 42L));
+        assertThat(generation.getCacheName()).isEqualTo("stock-queries");
+        assertThat(generation.getGeneration()).isEqualTo(42L);
+    }
+
+    @Test
+    public void testCachedPage() {
+        StockDTO stock = new StockDTO(2L, 10L, 1L, "Tornillo hexagonal");
+        stock.setVersion(0L);
+        Sort sort = Sort.by(Sort.Order.desc("cantidad").ignoreCase().nullsLast(), Sort.Order.asc("id"));
+        CachedPage<StockDTO> page = new CachedPage<>(Arrays.asList(stock, new StockDTO()), PageRequest.of(3, 2, sort), 20);
+
+        CachedPage<StockDTO> read = roundTrip(page);
+
+        assertThat(read.getContent()).hasSize(2);
+        assertThat(read.getContent().get(0)).isEqualToComparingFieldByField(stock);
+        assertThat(read.getContent().get(1)).isEqualToComparingFieldByField(new StockDTO());
+        assertThat(read.getTotalElements()).isEqualTo(20);
+        assertThat(read.getPageable()).isEqualTo(PageRequest.of(3, 2, sort));
+        assertThat(serializationService.toData(page).totalSize())
+            .isLessThan(javaSerializationService.toData(page).totalSize() / 4);
+
+        CachedPage<ProductoDTO> unpaged = roundTrip(new CachedPage<>(Collections.emptyList(), Pageable.unpaged(), 0));
+        assertThat(unpaged.getContent()).isEmpty();
+        assertThat(unpaged.getPageable().isUnpaged()).isTrue();
+    }
+
+    private <T> T roundTrip(T value) {
+        Data data = serializationService.toData(value);
+        return serializationService.toObject(data);
+    }
+}
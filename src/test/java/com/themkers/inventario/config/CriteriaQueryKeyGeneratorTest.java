@@ -0,0 +1,68 @@
+package com.themkers.inventario.config;
+
+import com.themkers.inventario.service.dto.ProductoCriteria;
+import com.themkers.inventario.service.dto.StockCriteria;
+
+import io.github.jhipster.service.filter.BigDecimalFilter;
+import io.github.jhipster.service.filter.LongFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for the {@link CriteriaQueryKeyGenerator} class.
+ */
+public class CriteriaQueryKeyGeneratorTest {
+
+    private CriteriaQueryKeyGenerator keyGenerator;
+
+    private Method method;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        keyGenerator = new CriteriaQueryKeyGenerator();
+        method = Object.class.getMethod("toString");
+    }
+
+    @Test
+    public void testEquivalentCriteriaHaveTheSameKey() {
+        StockCriteria criteria = new StockCriteria();
+        criteria.setId((LongFilter) new LongFilter().setIn(Arrays.asList(3L, 1L, 2L, 1L)));
+        StockCriteria equivalent = new StockCriteria();
+        equivalent.setId((LongFilter) new LongFilter().setIn(Arrays.asList(1L, 2L, 3L)));
+        equivalent.setCantidad(new LongFilter());
+
+        assertThat(keyGenerator.generate(this, method, criteria, PageRequest.of(1, 20, Sort.by("id"))))
+            .isEqualTo(keyGenerator.generate(this, method, equivalent, PageRequest.of(1, 20, Sort.by("id"))));
+    }
+
+    @Test
+    public void testDecimalsAreComparedByValue() {
+        ProductoCriteria criteria = new ProductoCriteria();
+        criteria.setPrecio((BigDecimalFilter) new BigDecimalFilter().setLessThan(new BigDecimal("10.50")));
+        ProductoCriteria equivalent = new ProductoCriteria();
+        equivalent.setPrecio((BigDecimalFilter) new BigDecimalFilter().setLessThan(new BigDecimal("10.5")));
+
+        assertThat(keyGenerator.generate(this, method, criteria)).isEqualTo(keyGenerator.generate(this, method, equivalent));
+    }
+
+    @Test
+    public void testDifferentQueriesHaveDifferentKeys() {
+        StockCriteria criteria = new StockCriteria();
+        criteria.setCantidad((LongFilter) new LongFilter().setLessThan(10L));
+        StockCriteria other = new StockCriteria();
+        other.setCantidad((LongFilter) new LongFilter().setGreaterThan(10L));
+
+        assertThat(keyGenerator.generate(this, method, criteria, PageRequest.of(0, 20)))
+            .isNotEqualTo(keyGenerator.generate(this, method, other, PageRequest.of(0, 20)))
+            .isNotEqualTo(keyGenerator.generate(this, method, criteria, PageRequest.of(1, 20)))
+            .isNotEqualTo(keyGenerator.generate(this, method, criteria, PageRequest.of(0, 20, Sort.by("cantidad"))));
+    }
+}
@@ -0,0 +1,68 @@
+package com.themkers.inventario.config;
+
+import com.hazelcast.core.IMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the {@link GenerationalCache} class.
+ */
+public class GenerationalCacheTest {
+
+    private GenerationalCache cache;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        IMap<String, Long> generations = mock(IMap.class);
+        AtomicLong stored = new AtomicLong();
+        when(generations.executeOnKey(eq("test"), any())).thenAnswer(invocation -> stored.incrementAndGet());
+        cache = new GenerationalCache(new ConcurrentMapCache("test"), generations, (name, generation) -> { });
+    }
+
+    @Test
+    public void testValueLoadedAfterMissIsStored() {
+        assertThat(cache.get("key")).isNull();
+        cache.put("key", "value");
+
+        assertThat(cache.get("key").get()).isEqualTo("value");
+    }
+
+    @Test
+    public void testValueLoadedBeforeClearIsNotStored() {
+        assertThat(cache.get("key")).isNull();
+        cache.clear();
+        cache.put("key", "stale");
+
+        assertThat(cache.getGeneration()).isEqualTo(1);
+        assertThat(cache.get("key")).isNull();
+        cache.put("key", "fresh");
+        assertThat(cache.get("key").get()).isEqualTo("fresh");
+    }
+
+    @Test
+    public void testValueLoadedBeforeRemoteClearIsNotStored() {
+        assertThat(cache.get("key", String.class)).isNull();
+        cache.advanceTo(1);
+
+        assertThat(cache.putIfAbsent("key", "stale")).isNull();
+        assertThat(cache.get("key", String.class)).isNull();
+    }
+
+    @Test
+    public void testClearHidesPreviousGeneration() {
+        cache.put("key", "value");
+        cache.clear();
+
+        assertThat(cache.get("key")).isNull();
+    }
+}
@@ -0,0 +1,135 @@
+package com.themkers.inventario.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link ReplicaRoutingDataSource}, over two H2 databases.
+ */
+public class ReplicaRoutingDataSourceTest {
+
+    private static final long CHECK_INTERVAL_MS = 60000;
+
+    private static final long CHECK_TIMEOUT_MS = 200;
+
+    private JdbcTemplate primaryJdbc;
+
+    private JdbcTemplate replicaJdbc;
+
+    private MeterRegistry meterRegistry;
+
+    private ReplicaRoutingDataSource routingDataSource;
+
+    private JdbcTemplate jdbc;
+
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    public void setup() {
+        DriverManagerDataSource primary = new DriverManagerDataSource("jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1");
+        DriverManagerDataSource replica = new DriverManagerDataSource("jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1");
+        primaryJdbc = new JdbcTemplate(primary);
+        replicaJdbc = new JdbcTemplate(replica);
+        primaryJdbc.execute("create table origin (name varchar(10))");
+        primaryJdbc.update("insert into origin values ('primary')");
+        replicaJdbc.execute("create table origin (name varchar(10))");
+        replicaJdbc.update("insert into origin values ('replica')");
+        replicaJdbc.execute("create table replica_lag (seconds double)");
+        replicaJdbc.update("insert into replica_lag values (0)");
+
+        meterRegistry = new SimpleMeterRegistry();
+        routingDataSource = new ReplicaRoutingDataSource(primary, Collections.singletonList(
+            new ReplicaRoutingDataSource.Replica("replica", replica, "select seconds from replica_lag")), 10, CHECK_INTERVAL_MS,
+            CHECK_TIMEOUT_MS, meterRegistry);
+        routingDataSource.afterPropertiesSet();
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+        jdbc = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        routingDataSource.close();
+        primaryJdbc.execute("drop all objects");
+        replicaJdbc.execute("drop all objects");
+    }
+
+    @Test
+    public void routesReadOnlyTransactionsToReplicas() {
+        assertThat(routingDataSource.getAvailableReplicas()).containsExactly("replica");
+        assertThat(readOrigin(true)).isEqualTo("replica");
+        assertThat(readOrigin(false)).isEqualTo("primary");
+        assertThat(jdbc.queryForObject("select name from origin", String.class)).isEqualTo("primary");
+
+        assertThat(meterRegistry.get("datasource.routing.connections").tag("pool", "replica").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("datasource.replica.lag").tag("pool", "replica").gauge().value()).isEqualTo(0);
+    }
+
+    @Test
+    public void fallsBackToPrimaryWhenReplicaLags() {
+        replicaJdbc.update("update replica_lag set seconds = 30");
+        routingDataSource.checkReplicas();
+
+        assertThat(routingDataSource.getAvailableReplicas()).isEmpty();
+        assertThat(readOrigin(true)).isEqualTo("primary");
+        assertThat(meterRegistry.get("datasource.routing.fallbacks").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("datasource.replica.available").tag("pool", "replica").gauge().value()).isEqualTo(0);
+
+        replicaJdbc.update("update replica_lag set seconds = 1");
+        routingDataSource.checkReplicas();
+
+        assertThat(readOrigin(true)).isEqualTo("replica");
+    }
+
+    @Test
+    public void skipsReplicaNotAnsweringInTime() throws IOException {
+        CountDownLatch unreachable = new CountDownLatch(1);
+        DataSource hanging = new DelegatingDataSource(new DriverManagerDataSource("jdbc:h2:mem:routing-replica")) {
+            @Override
+            public Connection getConnection() {
+                try {
+                    unreachable.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException("Unreachable replica");
+            }
+        };
+        ReplicaRoutingDataSource hangingRoutingDataSource = new ReplicaRoutingDataSource(primaryJdbc.getDataSource(),
+            Collections.singletonList(new ReplicaRoutingDataSource.Replica("hanging", hanging, null)), 10, CHECK_INTERVAL_MS,
+            CHECK_TIMEOUT_MS, new SimpleMeterRegistry());
+        try {
+            long start = System.currentTimeMillis();
+            hangingRoutingDataSource.afterPropertiesSet();
+            hangingRoutingDataSource.checkReplicas();
+
+            assertThat(System.currentTimeMillis() - start).isLessThan(CHECK_TIMEOUT_MS * 5);
+            assertThat(hangingRoutingDataSource.getAvailableReplicas()).isEmpty();
+        } finally {
+            unreachable.countDown();
+            hangingRoutingDataSource.close();
+        }
+    }
+
+    private String readOrigin(boolean readOnly) {
+        transactionTemplate.setReadOnly(readOnly);
+        return transactionTemplate.execute(status -> jdbc.queryForObject("select name from origin", String.class));
+    }
+}
@@ -0,0 +1,126 @@
+package com.themkers.inventario.config;
+
+import com.hazelcast.core.EntryView;
+import com.hazelcast.core.IMap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the {@link TwoTierCache} class.
+ */
+public class TwoTierCacheTest {
+
+    private static final int CALLERS = 8;
+
+    private TwoTierCache cache;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setup() {
+        cache = new TwoTierCache(new ConcurrentMapCache("test"), 100, Duration.ofMinutes(1), (name, key) -> { });
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentMissesLoadOnce() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        List<Future<String>> results = getConcurrently(() -> {
+            loads.incrementAndGet();
+            started.countDown();
+            Thread.sleep(200);
+            return "value";
+        }, started);
+
+        for (Future<String> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("value");
+        }
+        assertThat(loads).hasValue(1);
+        assertThat(cache.getCoalescedLoadCount()).isEqualTo(CALLERS - 1);
+        assertThat(cache.get("key", () -> "other")).isEqualTo("value");
+    }
+
+    @Test
+    public void testFailedLoadIsSharedAndNotCached() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        List<Future<String>> results = getConcurrently(() -> {
+            started.countDown();
+            Thread.sleep(200);
+            throw new IllegalStateException("failed");
+        }, started);
+
+        for (Future<String> result : results) {
+            assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(Cache.ValueRetrievalException.class)
+                .hasStackTraceContaining("failed");
+        }
+        assertThat(cache.get("key", () -> "value")).isEqualTo("value");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEntryNearExpiryIsRefreshedByItsLoader() {
+        IMap<Object, Object> map = mock(IMap.class);
+        EntryView<Object, Object> entry = mock(EntryView.class);
+        when(entry.getValue()).thenReturn("value");
+        when(entry.getExpirationTime()).thenReturn(System.currentTimeMillis() + 1000);
+        when(map.getEntryView("key")).thenReturn(entry);
+        when(map.replace("key", "value", "refreshed")).thenReturn(true);
+        Cache sharedCache = mock(Cache.class);
+        when(sharedCache.getNativeCache()).thenReturn(map);
+        when(sharedCache.get("key")).thenReturn(new SimpleValueWrapper("value"));
+        TwoTierCache refreshedCache = new TwoTierCache(sharedCache, 100, Duration.ofMinutes(1), (name, key) -> { },
+            Duration.ofMinutes(1), Runnable::run);
+
+        // Without loader, the entry expires
+        assertThat(refreshedCache.get("key", () -> "ignored")).isEqualTo("value");
+        verify(map, never()).replace(any(), any(), any());
+
+        refreshedCache.evictLocal("key");
+        refreshedCache.setRefreshLoader(key -> "refreshed");
+        assertThat(refreshedCache.get("key", () -> "ignored")).isEqualTo("value");
+        verify(map).replace("key", "value", "refreshed");
+        assertThat(refreshedCache.getRefreshCount()).isEqualTo(1);
+    }
+
+    // Starts one caller, then the other ones once its load has started
+    private List<Future<String>> getConcurrently(Callable<String> loader, CountDownLatch started)
+        throws InterruptedException {
+        List<Future<String>> results = new ArrayList<>();
+        results.add(executor.submit(() -> cache.get("key", loader)));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 1; i < CALLERS; i++) {
+            results.add(executor.submit(() -> cache.get("key", loader)));
+        }
+        return results;
+    }
+}
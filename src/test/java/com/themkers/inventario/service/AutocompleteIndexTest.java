@@ -0,0 +1,70 @@
+package com.themkers.inventario.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for the {@link AutocompleteIndex} class.
+ */
+public class AutocompleteIndexTest {
+
+    private AutocompleteIndex index;
+
+    @BeforeEach
+    public void setup() {
+        index = new AutocompleteIndex.Builder()
+            .add(1L, "Tornillo hexagonal")
+            .add(2L, "Tuerca hexagonal")
+            .add(3L, "Hexágono")
+            .add(4L, "Tornillo Allen hexagonal hex")
+            .add(5L, "Arandela")
+            .build();
+    }
+
+    @Test
+    public void testPrefixMatchesAnyWord() {
+        assertThat(search("HEX", 10)).containsExactly(4L, 1L, 2L, 3L);
+        assertThat(search("tor", 10)).containsExactly(4L, 1L);
+        assertThat(search("hexagonal t", 10)).isEmpty();
+        assertThat(search("z", 10)).isEmpty();
+    }
+
+    @Test
+    public void testAccentsAreIgnored() {
+        assertThat(search("HEXÁ", 10)).containsExactly(1L, 2L, 4L, 3L);
+        assertThat(search("hexágon", 10)).containsExactly(1L, 2L, 4L, 3L);
+        assertThat(search("hexagono", 10)).containsExactly(3L);
+    }
+
+    @Test
+    public void testLimitAndExclusions() {
+        assertThat(search("hex", 2)).containsExactly(4L, 1L);
+        List<AutocompleteIndex.Match> matches = new ArrayList<>();
+        index.search("hex", 2, id -> id == 4L, matches);
+        assertThat(matches).extracting(AutocompleteIndex.Match::getId).containsExactly(1L, 2L);
+        assertThat(matches).extracting(AutocompleteIndex.Match::getName).containsExactly("Tornillo hexagonal", "Tuerca hexagonal");
+    }
+
+    @Test
+    public void testSizeAndMemory() {
+        assertThat(index.size()).isEqualTo(5);
+        assertThat(index.memoryBytes()).isGreaterThan(0);
+        assertThat(AutocompleteIndex.EMPTY.size()).isZero();
+        List<AutocompleteIndex.Match> matches = new ArrayList<>();
+        AutocompleteIndex.EMPTY.search("a", 10, id -> false, matches);
+        assertThat(matches).isEmpty();
+    }
+
+    private List<Long> search(String prefix, int limit) {
+        List<AutocompleteIndex.Match> matches = new ArrayList<>();
+        index.search(AutocompleteIndex.normalize(prefix), limit, id -> false, matches);
+        List<Long> ids = new ArrayList<>();
+        matches.forEach(match -> ids.add(match.getId()));
+        return ids;
+    }
+}
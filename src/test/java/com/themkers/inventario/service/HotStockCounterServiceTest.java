@@ -0,0 +1,92 @@
+package com.themkers.inventario.service;
+
+import com.themkers.inventario.config.ApplicationProperties;
+import com.themkers.inventario.repository.StockRepository;
+import com.themkers.inventario.service.mapper.StockMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the {@link HotStockCounterService} class.
+ */
+public class HotStockCounterServiceTest {
+
+    private static final Long STOCK_ID = 1L;
+
+    private static final int CALLERS = 8;
+
+    private HotStockCounterService hotStockCounterService;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setup() {
+        StockRepository stockRepository = mock(StockRepository.class);
+        when(stockRepository.findCantidadById(STOCK_ID)).thenReturn(Optional.of(1000L));
+        hotStockCounterService = new HotStockCounterService(new ApplicationProperties(), stockRepository,
+            mock(PlatformTransactionManager.class), mock(CacheManager.class), mock(StockValuationService.class),
+            mock(StockMapper.class), mock(OutboxService.class));
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testRejectsDecrementBelowZero() {
+        assertThat(hotStockCounterService.adjust(STOCK_ID, -400)).isEqualTo(600);
+        assertThatThrownBy(() -> hotStockCounterService.adjust(STOCK_ID, -601))
+            .isInstanceOf(InsufficientStockException.class)
+            .hasFieldOrPropertyWithValue("available", 600L);
+        assertThat(hotStockCounterService.adjust(STOCK_ID, 1)).isEqualTo(601);
+        assertThat(hotStockCounterService.getPendingDelta(STOCK_ID)).isEqualTo(-399);
+    }
+
+    @Test
+    public void testConcurrentDecrementsWhichFitAreAllAccepted() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                int accepted = 0;
+                for (int j = 0; j < 250; j++) {
+                    try {
+                        hotStockCounterService.adjust(STOCK_ID, -1);
+                        accepted++;
+                    } catch (InsufficientStockException e) {
+                        // Expected once the 1000 units are gone
+                    }
+                }
+                return accepted;
+            }));
+        }
+        start.countDown();
+
+        int accepted = 0;
+        for (Future<Integer> result : results) {
+            accepted += result.get(10, TimeUnit.SECONDS);
+        }
+        assertThat(accepted).isEqualTo(1000);
+        assertThat(hotStockCounterService.getPendingDelta(STOCK_ID)).isEqualTo(-1000);
+    }
+}
@@ -0,0 +1,132 @@
+package com.themkers.inventario.service;
+
+import com.themkers.inventario.InventariomicroservicioApp;
+import com.themkers.inventario.domain.enumeration.OutboxEventType;
+import com.themkers.inventario.repository.OutboxEventRepository;
+import com.themkers.inventario.service.dto.OutboxEventDTO;
+import com.themkers.inventario.service.dto.ProductoDTO;
+import com.themkers.inventario.service.dto.StockDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.PayloadApplicationEvent;
+import org.springframework.context.event.ApplicationEventMulticaster;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Integration tests for {@link OutboxRelayService}.
+ */
+@SpringBootTest(classes = InventariomicroservicioApp.class)
+public class OutboxRelayServiceIT {
+
+    @Autowired
+    private OutboxRelayService outboxRelayService;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private ApplicationEventMulticaster applicationEventMulticaster;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final List<OutboxEventDTO> published = new CopyOnWriteArrayList<>();
+
+    private final ApplicationListener<ApplicationEvent> listener = event -> {
+        if (event instanceof PayloadApplicationEvent && ((PayloadApplicationEvent<?>) event).getPayload() instanceof OutboxEventDTO) {
+            published.add((OutboxEventDTO) ((PayloadApplicationEvent<?>) event).getPayload());
+        }
+    };
+
+    @Test
+    public void relayCommittedChanges() {
+        ProductoDTO producto = productoService.save(newProducto("outbox"));
+        StockDTO stock = stockService.save(newStock(producto.getId()));
+        stockService.adjust(stock.getId(), 2);
+        stockService.delete(stock.getId());
+        // Changes rolled back are not published
+        new TransactionTemplate(transactionManager).execute(status -> {
+            status.setRollbackOnly();
+            return productoService.save(newProducto("outbox, rolled back"));
+        });
+
+        applicationEventMulticaster.addApplicationListener(listener);
+        try {
+            outboxRelayService.relay();
+
+            List<OutboxEventDTO> events = published.stream()
+                .filter(event -> event.getAggregateId().equals(producto.getId()) || event.getAggregateId().equals(stock.getId()))
+                .collect(Collectors.toList());
+            assertThat(events).extracting(OutboxEventDTO::getAggregateType, OutboxEventDTO::getAggregateId, OutboxEventDTO::getEventType)
+                .containsExactly(
+                    tuple("Producto", producto.getId(), OutboxEventType.SAVED),
+                    tuple("Stock", stock.getId(), OutboxEventType.SAVED),
+                    tuple("Stock", stock.getId(), OutboxEventType.SAVED),
+                    tuple("Stock", stock.getId(), OutboxEventType.DELETED));
+            assertThat(events.get(0).getPayload()).contains("\"nombre\":\"outbox\"");
+            assertThat(events.get(2).getPayload()).contains("\"cantidad\":5");
+            assertThat(events.get(3).getPayload()).isNull();
+            assertThat(published).extracting(OutboxEventDTO::getPayload).noneMatch(payload -> payload != null && payload.contains("rolled back"));
+            assertThat(outboxEventRepository.findAllById(events.stream().map(OutboxEventDTO::getId).collect(Collectors.toList()))).isEmpty();
+        } finally {
+            applicationEventMulticaster.removeApplicationListener(listener);
+            productoService.delete(producto.getId());
+        }
+    }
+
+    @Test
+    public void relayFailedBatchAgain() {
+        ProductoDTO producto = productoService.save(newProducto("outbox, retried"));
+        ApplicationListener<ApplicationEvent> failingListener = event -> {
+            if (event instanceof PayloadApplicationEvent && ((PayloadApplicationEvent<?>) event).getPayload() instanceof OutboxEventDTO) {
+                throw new IllegalStateException("Sink unavailable");
+            }
+        };
+
+        try {
+            applicationEventMulticaster.addApplicationListener(failingListener);
+            assertThat(outboxRelayService.relay()).isZero();
+            applicationEventMulticaster.removeApplicationListener(failingListener);
+
+            applicationEventMulticaster.addApplicationListener(listener);
+            assertThat(outboxRelayService.relay()).isPositive();
+            assertThat(published).extracting(OutboxEventDTO::getAggregateId).contains(producto.getId());
+        } finally {
+            applicationEventMulticaster.removeApplicationListener(failingListener);
+            applicationEventMulticaster.removeApplicationListener(listener);
+            productoService.delete(producto.getId());
+        }
+    }
+
+    private static ProductoDTO newProducto(String nombre) {
+        ProductoDTO producto = new ProductoDTO();
+        producto.setNombre(nombre);
+        producto.setPrecio(new BigDecimal("2.50"));
+        return producto;
+    }
+
+    private static StockDTO newStock(Long productoId) {
+        StockDTO stock = new StockDTO();
+        stock.setCantidad(3L);
+        stock.setProductoId(productoId);
+        return stock;
+    }
+}
@@ -0,0 +1,124 @@
+package com.themkers.inventario.service;
+
+import com.themkers.inventario.InventariomicroservicioApp;
+import com.themkers.inventario.config.ApplicationProperties;
+import com.themkers.inventario.config.CacheWarmUpHealthIndicator;
+import com.themkers.inventario.config.TwoTierCache;
+import com.themkers.inventario.config.TwoTierCacheManager;
+import com.themkers.inventario.domain.Producto;
+import com.themkers.inventario.repository.ProductoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for {@link ProductoCacheWarmUpService}.
+ */
+@SpringBootTest(classes = InventariomicroservicioApp.class)
+public class ProductoCacheWarmUpServiceIT {
+
+    @Autowired
+    private ProductoCacheWarmUpService warmUpService;
+
+    @Autowired
+    private CacheWarmUpHealthIndicator healthIndicator;
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    private TwoTierCache cache;
+
+    private final List<Producto> productos = new ArrayList<>();
+
+    @BeforeEach
+    public void setup() {
+        cache = ((TwoTierCacheManager) cacheManager).getTwoTierCache(ProductoService.PRODUCTOS_BY_ID_CACHE);
+        for (int i = 0; i < 3; i++) {
+            productos.add(productoRepository.saveAndFlush(new Producto().nombre("Producto " + i).precio(BigDecimal.ONE)));
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ApplicationProperties.CacheWarmUp properties = applicationProperties.getCacheWarmUp();
+        properties.setMode(ApplicationProperties.CacheWarmUp.Mode.ALL);
+        properties.setTopN(10000);
+        properties.setChunkSize(1000);
+        for (Producto producto : productos) {
+            productoRepository.deleteById(producto.getId());
+            cache.evict(producto.getId());
+        }
+    }
+
+    @Test
+    public void warmUpAllProductos() {
+        applicationProperties.getCacheWarmUp().setChunkSize(2);
+
+        warmUpService.warmUp();
+
+        assertThat(warmUpService.getStatus()).isEqualTo(ProductoCacheWarmUpService.Status.COMPLETED);
+        assertThat(warmUpService.getCompletedChunks()).isEqualTo(warmUpService.getTotalChunks()).isGreaterThanOrEqualTo(2);
+        assertThat(warmUpService.getLoadedProductos()).isGreaterThanOrEqualTo(productos.size());
+        assertThat(warmUpService.getProgress()).isEqualTo(1.0);
+        // The productos are read from the local copies
+        long localHits = cache.getLocalStats().hitCount();
+        for (Producto producto : productos) {
+            assertThat(productoService.findOne(producto.getId())).isPresent();
+        }
+        assertThat(cache.getLocalStats().hitCount()).isEqualTo(localHits + productos.size());
+
+        Health health = healthIndicator.health();
+        assertThat(health.getStatus()).isEqualTo(Status.UP);
+        assertThat(health.getDetails()).containsEntry("status", ProductoCacheWarmUpService.Status.COMPLETED)
+            .containsEntry("completedChunks", warmUpService.getTotalChunks());
+    }
+
+    @Test
+    public void warmUpRecentProductos() throws Exception {
+        ApplicationProperties.CacheWarmUp properties = applicationProperties.getCacheWarmUp();
+        properties.setMode(ApplicationProperties.CacheWarmUp.Mode.RECENT);
+        properties.setTopN(2);
+        // Read by another member: in the shared cache only, the last two read again later
+        for (Producto producto : productos) {
+            productoService.findOne(producto.getId());
+            cache.evictLocal(producto.getId());
+        }
+        // The access times of the Hazelcast entries are in seconds
+        Thread.sleep(1100);
+        for (Producto producto : productos.subList(1, 3)) {
+            productoService.findOne(producto.getId());
+            cache.evictLocal(producto.getId());
+        }
+
+        warmUpService.warmUp();
+
+        assertThat(warmUpService.getStatus()).isEqualTo(ProductoCacheWarmUpService.Status.COMPLETED);
+        assertThat(warmUpService.getLoadedProductos()).isEqualTo(2);
+        long localHits = cache.getLocalStats().hitCount();
+        productoService.findOne(productos.get(1).getId());
+        productoService.findOne(productos.get(2).getId());
+        assertThat(cache.getLocalStats().hitCount()).isEqualTo(localHits + 2);
+        productoService.findOne(productos.get(0).getId());
+        assertThat(cache.getLocalStats().hitCount()).isEqualTo(localHits + 2);
+    }
+}
@@ -0,0 +1,112 @@
+package com.themkers.inventario.service;
+
+import com.themkers.inventario.InventariomicroservicioApp;
+import com.themkers.inventario.config.ApplicationProperties;
+import com.themkers.inventario.domain.Producto;
+import com.themkers.inventario.domain.Stock;
+import com.themkers.inventario.repository.ProductoRepository;
+import com.themkers.inventario.repository.StockRepository;
+import com.themkers.inventario.service.dto.SnapshotExportJobDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for {@link SnapshotExportService}.
+ */
+@SpringBootTest(classes = InventariomicroservicioApp.class)
+public class SnapshotExportServiceIT {
+
+    @Autowired
+    private SnapshotExportService snapshotExportService;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Test
+    public void exportSnapshot() throws Exception {
+        List<Producto> productos = new ArrayList<>();
+        List<Stock> stocks = new ArrayList<>();
+        long chunkSize = applicationProperties.getSnapshotExport().getChunkSize();
+        applicationProperties.getSnapshotExport().setChunkSize(2);
+        try {
+            for (int i = 0; i < 5; i++) {
+                Producto producto = productoRepository.saveAndFlush(new Producto().nombre("snapshot, " + i).precio(new BigDecimal("1.50")));
+                productos.add(producto);
+                stocks.add(stockRepository.saveAndFlush(new Stock().cantidad((long) i).producto(producto)));
+            }
+
+            SnapshotExportJobDTO job = snapshotExportService.start().get(30, TimeUnit.SECONDS);
+
+            assertThat(job.getStatus()).isEqualTo(SnapshotExportJobDTO.Status.COMPLETED);
+            assertThat(job.getCompletedChunks()).isEqualTo(job.getTotalChunks()).isGreaterThanOrEqualTo(6);
+            assertThat(snapshotExportService.getLastJob()).hasValueSatisfying(last ->
+                assertThat(last.getStatus()).isEqualTo(SnapshotExportJobDTO.Status.COMPLETED));
+            Path directory = Paths.get(job.getDirectory());
+            assertThat(directory.resolve("manifest.json")).exists();
+
+            long rows = 0;
+            List<String> lines = new ArrayList<>();
+            for (SnapshotExportJobDTO.Chunk chunk : job.getChunks()) {
+                Path file = directory.resolve(chunk.getFile());
+                assertThat(Files.size(file)).isEqualTo(chunk.getBytes());
+                assertThat(toHex(MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(file)))).isEqualTo(chunk.getSha256());
+                assertThat(directory.resolve(chunk.getFile() + ".sha256")).hasContent(chunk.getSha256() + "  " + chunk.getFile());
+                List<String> chunkLines = readGzip(file);
+                assertThat(chunkLines.get(0)).isEqualTo(chunk.getTable().equals("producto") ? "id,nombre,precio" : "id,cantidad,producto_id");
+                assertThat(chunkLines).hasSize((int) chunk.getRows() + 1);
+                rows += chunk.getRows();
+                lines.addAll(chunkLines.subList(1, chunkLines.size()));
+            }
+            assertThat(job.getRows()).isEqualTo(rows);
+            for (Producto producto : productos) {
+                assertThat(lines).contains(producto.getId() + ",\"" + producto.getNombre() + "\",1.50");
+            }
+            for (Stock stock : stocks) {
+                assertThat(lines).contains(stock.getId() + "," + stock.getCantidad() + "," + stock.getProducto().getId());
+            }
+        } finally {
+            applicationProperties.getSnapshotExport().setChunkSize(chunkSize);
+            stockRepository.deleteAll(stocks);
+            productoRepository.deleteAll(productos);
+        }
+    }
+
+    private static List<String> readGzip(Path file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+            new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            return reader.lines().collect(Collectors.toList());
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
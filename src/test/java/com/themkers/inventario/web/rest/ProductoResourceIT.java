@@ -1,28 +1,46 @@
 package com.themkers.inventario.web.rest;
 
 import com.themkers.inventario.InventariomicroservicioApp;
+import com.themkers.inventario.config.TwoTierCache;
+import com.themkers.inventario.config.TwoTierCacheManager;
 import com.themkers.inventario.domain.Producto;
 import com.themkers.inventario.repository.ProductoRepository;
+import com.themkers.inventario.service.ProductoAutocompleteService;
 import com.themkers.inventario.service.ProductoService;
 import com.themkers.inventario.service.dto.ProductoDTO;
 import com.themkers.inventario.service.mapper.ProductoMapper;
 import com.themkers.inventario.service.dto.ProductoCriteria;
 import com.themkers.inventario.service.ProductoQueryService;
 
+import com.jayway.jsonpath.JsonPath;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
+import javax.persistence.Cache;
 import javax.persistence.EntityManager;
 import java.math.BigDecimal;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
+import static com.themkers.inventario.web.rest.TestUtil.sameNumber;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -55,6 +73,12 @@ public class ProductoResourceIT {
     @Autowired
     private ProductoQueryService productoQueryService;
 
+    @Autowired
+    private ProductoAutocompleteService productoAutocompleteService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
     @Autowired
     private EntityManager em;
 
@@ -146,9 +170,122 @@ public class ProductoResourceIT {
             .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
             .andExpect(jsonPath("$.[*].id").value(hasItem(producto.getId().intValue())))
             .andExpect(jsonPath("$.[*].nombre").value(hasItem(DEFAULT_NOMBRE)))
-            .andExpect(jsonPath("$.[*].precio").value(hasItem(DEFAULT_PRECIO.intValue())));
+            .andExpect(jsonPath("$.[*].precio").value(hasItem(sameNumber(DEFAULT_PRECIO))));
     }
     
+    @Test
+    @Transactional
+    public void getAllProductosWithKeysetPagination() throws Exception {
+        // Initialize the database
+        Producto unnamed = productoRepository.saveAndFlush(createEntity(em).nombre(null));
+        Producto second = productoRepository.saveAndFlush(createEntity(em).nombre(UPDATED_NOMBRE));
+        Producto first = productoRepository.saveAndFlush(createEntity(em).nombre(DEFAULT_NOMBRE));
+        Producto otherUnnamed = productoRepository.saveAndFlush(createEntity(em).nombre(null));
+        String filter = "id.in=" + unnamed.getId() + "," + second.getId() + "," + first.getId() + "," + otherUnnamed.getId();
+
+        // Productos without nombre come last, in both directions, whether or not a page spans both kinds
+        for (int size = 1; size <= 3; size++) {
+            assertThat(getAllProductosByKeyset("sort=nombre,asc&size=" + size + "&" + filter)).containsExactly(
+                first.getId().intValue(), second.getId().intValue(), unnamed.getId().intValue(), otherUnnamed.getId().intValue());
+            assertThat(getAllProductosByKeyset("sort=nombre,desc&size=" + size + "&" + filter)).containsExactly(
+                second.getId().intValue(), first.getId().intValue(), otherUnnamed.getId().intValue(), unnamed.getId().intValue());
+        }
+    }
+
+    @Test
+    @Transactional
+    public void getAllProductosByKeysetSortedOnAnUnreadProperty() throws Exception {
+        // Initialize the database with a next page
+        productoRepository.saveAndFlush(producto);
+        productoRepository.saveAndFlush(createEntity(em));
+
+        // The audit fields are not read, so no cursor could be built from them
+        restProductoMockMvc.perform(get("/api/productos?after=&size=1&sort=createdBy,asc"))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("error.sortinvalid"));
+    }
+
+    private List<Integer> getAllProductosByKeyset(String parameters) throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        String next = "/api/productos?after=&" + parameters;
+        while (next != null) {
+            MockHttpServletResponse response = restProductoMockMvc.perform(get(URI.create(next)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isArray())
+                .andReturn().getResponse();
+            ids.addAll(JsonPath.read(response.getContentAsString(), "$.[*].id"));
+            String link = response.getHeader(HttpHeaders.LINK);
+            next = link == null ? null : link.substring(link.indexOf('<') + 1, link.indexOf('>'));
+        }
+        return ids;
+    }
+
+    @Test
+    @Transactional
+    public void exportProductos() throws Exception {
+        // Initialize the database
+        productoRepository.saveAndFlush(producto);
+
+        restProductoMockMvc.perform(get("/api/productos/export?format=csv&id.equals=" + producto.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith("text/csv"))
+            .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, containsString("productos.csv")))
+            .andExpect(content().string("id,nombre,precio\n" + producto.getId() + "," + DEFAULT_NOMBRE + ",1.00\n"));
+
+        restProductoMockMvc.perform(get("/api/productos/export?format=ndjson&id.equals=" + producto.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+            .andExpect(content().string("{\"id\":" + producto.getId() + ",\"nombre\":\"" + DEFAULT_NOMBRE + "\",\"precio\":1.00}\n"));
+    }
+
+    @Test
+    @Transactional
+    public void getProductosByIds() throws Exception {
+        // Initialize the database
+        productoRepository.saveAndFlush(producto);
+        Producto other = productoRepository.saveAndFlush(createEntity(em).nombre(UPDATED_NOMBRE));
+
+        // Get the productos, in the order of the ids
+        restProductoMockMvc.perform(get("/api/productos?ids=" + other.getId() + "," + Long.MAX_VALUE + "," + producto.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$.[0].id").value(other.getId().intValue()))
+            .andExpect(jsonPath("$.[0].nombre").value(UPDATED_NOMBRE))
+            .andExpect(jsonPath("$.[1].id").value(producto.getId().intValue()))
+            .andExpect(jsonPath("$.[1].nombre").value(DEFAULT_NOMBRE));
+    }
+
+    @Test
+    public void getProductosByTooManyIds() throws Exception {
+        String ids = LongStream.rangeClosed(1, 1001).mapToObj(Long::toString).collect(Collectors.joining(","));
+
+        restProductoMockMvc.perform(get("/api/productos?ids=" + ids))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    public void getAllProductosWithSparseFieldset() throws Exception {
+        // Initialize the database
+        productoRepository.saveAndFlush(producto);
+
+        // Get only the requested fields of the productos
+        restProductoMockMvc.perform(get("/api/productos?fields=id,nombre&sort=id,desc"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].id").value(hasItem(producto.getId().intValue())))
+            .andExpect(jsonPath("$.[*].nombre").value(hasItem(DEFAULT_NOMBRE)))
+            .andExpect(jsonPath("$.[*].precio").doesNotExist());
+
+        restProductoMockMvc.perform(get("/api/productos/{id}?fields=precio", producto.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.precio").value(sameNumber(DEFAULT_PRECIO)))
+            .andExpect(jsonPath("$.nombre").doesNotExist());
+
+        restProductoMockMvc.perform(get("/api/productos/{id}?fields=", producto.getId()))
+            .andExpect(status().isBadRequest());
+    }
+
     @Test
     @Transactional
     public void getProducto() throws Exception {
@@ -165,6 +302,68 @@ public class ProductoResourceIT {
     }
 
 
+    @Test
+    public void getProductoFromSecondLevelCache() throws Exception {
+        // Initialize the database, committing the producto: entities inserted by the current transaction are not cached
+        productoRepository.saveAndFlush(producto);
+
+        Cache cache = em.getEntityManagerFactory().getCache();
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        boolean statisticsEnabled = statistics.isStatisticsEnabled();
+        try {
+            // The first read loads the producto into the cache
+            restProductoMockMvc.perform(get("/api/productos/{id}", producto.getId()))
+                .andExpect(status().isOk());
+            assertThat(cache.contains(Producto.class, producto.getId())).isTrue();
+            cacheManager.getCache(ProductoService.PRODUCTOS_BY_ID_CACHE).evict(producto.getId());
+
+            // The next reads don't query the database
+            statistics.setStatisticsEnabled(true);
+            statistics.clear();
+            restProductoMockMvc.perform(get("/api/productos/{id}", producto.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nombre").value(DEFAULT_NOMBRE));
+            assertThat(statistics.getPrepareStatementCount()).isZero();
+            assertThat(statistics.getSecondLevelCacheHitCount()).isEqualTo(1);
+        } finally {
+            statistics.setStatisticsEnabled(statisticsEnabled);
+            productoRepository.deleteById(producto.getId());
+        }
+        assertThat(cache.contains(Producto.class, producto.getId())).isFalse();
+    }
+
+    @Test
+    public void getProductoFromNearCache() throws Exception {
+        // Initialize the database
+        productoRepository.saveAndFlush(producto);
+        TwoTierCache cache = ((TwoTierCacheManager) cacheManager).getTwoTierCache(ProductoService.PRODUCTOS_BY_ID_CACHE);
+
+        try {
+            // The first read populates the cache, the next one is served by the local copy
+            restProductoMockMvc.perform(get("/api/productos/{id}", producto.getId()))
+                .andExpect(status().isOk());
+            long localHits = cache.getLocalStats().hitCount();
+            restProductoMockMvc.perform(get("/api/productos/{id}", producto.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nombre").value(DEFAULT_NOMBRE));
+            assertThat(cache.getLocalStats().hitCount()).isEqualTo(localHits + 1);
+
+            // Updates evict the cached producto
+            ProductoDTO productoDTO = productoMapper.toDto(producto);
+            productoDTO.setNombre(UPDATED_NOMBRE);
+            restProductoMockMvc.perform(put("/api/productos")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtil.convertObjectToJsonBytes(productoDTO)))
+                .andExpect(status().isOk());
+            restProductoMockMvc.perform(get("/api/productos/{id}", producto.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nombre").value(UPDATED_NOMBRE));
+        } finally {
+            productoRepository.deleteById(producto.getId());
+            cache.evict(producto.getId());
+        }
+    }
+
     @Test
     @Transactional
     public void getProductosByIdFiltering() throws Exception {
@@ -248,6 +447,77 @@ public class ProductoResourceIT {
         defaultProductoShouldNotBeFound("nombre.contains=" + UPDATED_NOMBRE);
     }
 
+    @Test
+    @Transactional
+    public void searchProductos() throws Exception {
+        // Initialize the database
+        for (String nombre : Arrays.asList("Gran zorzal", "zorzal grande", "Zorzal", "zorzalito", "tornillo")) {
+            productoRepository.save(createEntity(em).nombre(nombre));
+        }
+        productoRepository.flush();
+
+        // Exact match first, then prefix matches, shorter names first, then the other matches
+        restProductoMockMvc.perform(get("/api/productos/search?q=zorZal"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].nombre").value(contains("Zorzal", "zorzalito", "zorzal grande", "Gran zorzal")));
+
+        restProductoMockMvc.perform(get("/api/productos/search?q=zorzal&size=2"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.LINK, containsString("rel=\"next\"")))
+            .andExpect(jsonPath("$.[*].nombre").value(contains("Zorzal", "zorzalito")));
+
+        // Wildcards are searched literally
+        restProductoMockMvc.perform(get("/api/productos/search?q=zor_al"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$").isEmpty());
+
+        restProductoMockMvc.perform(get("/api/productos/search?q= "))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void autocompleteProductos() throws Exception {
+        // Initialize the database, committing the productos: the index receives the committed changes
+        List<ProductoDTO> productos = new ArrayList<>();
+        for (String nombre : Arrays.asList("Qzxa hexagonal", "Tuerca QZXÁ", "qzxb", "tornillo")) {
+            productos.add(productoService.save(productoMapper.toDto(createEntity(em).nombre(nombre))));
+        }
+        for (int i = 0; i < 100 && !productoAutocompleteService.isReady(); i++) {
+            Thread.sleep(50);
+        }
+
+        try {
+            // Any word matches, ignoring case and accents, shorter completions first
+            restProductoMockMvc.perform(get("/api/productos/autocomplete?prefix=qzxa"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[*].nombre").value(contains("Tuerca QZXÁ", "Qzxa hexagonal")));
+
+            restProductoMockMvc.perform(get("/api/productos/autocomplete?prefix=QZX&limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[*].id").value(contains(productos.get(1).getId().intValue(), productos.get(0).getId().intValue())));
+
+            // Updates and deletions are applied
+            ProductoDTO renamed = productos.get(2);
+            renamed.setNombre("Arandela");
+            productos.set(2, productoService.save(renamed));
+            productoService.delete(productos.get(1).getId());
+            restProductoMockMvc.perform(get("/api/productos/autocomplete?prefix=qzx"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[*].nombre").value(contains("Qzxa hexagonal")));
+
+            restProductoMockMvc.perform(get("/api/productos/autocomplete?prefix= "))
+                .andExpect(status().isBadRequest());
+            restProductoMockMvc.perform(get("/api/productos/autocomplete?prefix=qzx&limit=0"))
+                .andExpect(status().isBadRequest());
+        } finally {
+            for (ProductoDTO productoDTO : productos) {
+                if (productoRepository.existsById(productoDTO.getId())) {
+                    productoService.delete(productoDTO.getId());
+                }
+            }
+        }
+    }
+
     @Test
     @Transactional
     public void getAllProductosByNombreNotContainsSomething() throws Exception {
@@ -375,7 +645,7 @@ public class ProductoResourceIT {
             .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
             .andExpect(jsonPath("$.[*].id").value(hasItem(producto.getId().intValue())))
             .andExpect(jsonPath("$.[*].nombre").value(hasItem(DEFAULT_NOMBRE)))
-            .andExpect(jsonPath("$.[*].precio").value(hasItem(DEFAULT_PRECIO.intValue())));
+            .andExpect(jsonPath("$.[*].precio").value(hasItem(sameNumber(DEFAULT_PRECIO))));
 
         // Check, that the count call also returns 1
         restProductoMockMvc.perform(get("/api/productos/count?sort=id,desc&" + filter))
@@ -440,6 +710,64 @@ public class ProductoResourceIT {
         assertThat(testProducto.getPrecio()).isEqualTo(UPDATED_PRECIO);
     }
 
+    @Test
+    @Transactional
+    public void getProductoChanges() throws Exception {
+        // Initialize the database
+        productoRepository.saveAndFlush(producto);
+
+        String response = restProductoMockMvc.perform(get("/api/productos/changes"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.changed.[*].id").value(hasItem(producto.getId().intValue())))
+            .andReturn().getResponse().getContentAsString();
+        String token = JsonPath.read(response, "$.token");
+
+        restProductoMockMvc.perform(delete("/api/productos/{id}", producto.getId()))
+            .andExpect(status().isNoContent());
+
+        restProductoMockMvc.perform(get("/api/productos/changes?since={token}", token))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.changed").isEmpty())
+            .andExpect(jsonPath("$.deleted.[*]").value(hasItem(producto.getId().intValue())))
+            .andExpect(jsonPath("$.more").value(false));
+    }
+
+    @Test
+    @Transactional
+    public void updateProductoIfMatch() throws Exception {
+        // Initialize the database
+        productoRepository.saveAndFlush(producto);
+
+        restProductoMockMvc.perform(get("/api/productos/{id}", producto.getId()))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"0\""));
+        restProductoMockMvc.perform(get("/api/productos/{id}", producto.getId()).header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+            .andExpect(status().isNotModified())
+            .andExpect(content().string(""));
+
+        ProductoDTO productoDTO = productoMapper.toDto(producto);
+        productoDTO.setNombre(UPDATED_NOMBRE);
+        restProductoMockMvc.perform(put("/api/productos")
+            .header(HttpHeaders.IF_MATCH, "\"0\"")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtil.convertObjectToJsonBytes(productoDTO)))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"1\""));
+
+        // The second update with the same entity tag is stale
+        productoDTO.setNombre(DEFAULT_NOMBRE);
+        restProductoMockMvc.perform(put("/api/productos")
+            .header(HttpHeaders.IF_MATCH, "\"0\"")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtil.convertObjectToJsonBytes(productoDTO)))
+            .andExpect(status().isPreconditionFailed());
+
+        restProductoMockMvc.perform(get("/api/productos/{id}", producto.getId()).header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+            .andExpect(jsonPath("$.nombre").value(UPDATED_NOMBRE));
+    }
+
     @Test
     @Transactional
     public void updateNonExistingProducto() throws Exception {
@@ -459,6 +787,26 @@ public class ProductoResourceIT {
         assertThat(productoList).hasSize(databaseSizeBeforeUpdate);
     }
 
+    @Test
+    @Transactional
+    public void importProductos() throws Exception {
+        int databaseSizeBeforeImport = productoRepository.findAll().size();
+
+        String ndjson = "{\"nombre\":\"" + DEFAULT_NOMBRE + "\",\"precio\":" + DEFAULT_PRECIO + "}\n" +
+            "\n" +
+            "{\"nombre\":\"" + UPDATED_NOMBRE + "\",\"precio\":" + UPDATED_PRECIO + "}\n";
+        restProductoMockMvc.perform(post("/api/productos/bulk")
+            .contentType("application/x-ndjson")
+            .content(ndjson))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.imported").value(2))
+            .andExpect(jsonPath("$.failed").value(0));
+
+        List<Producto> productoList = productoRepository.findAll();
+        assertThat(productoList).hasSize(databaseSizeBeforeImport + 2);
+        assertThat(productoList).extracting(Producto::getNombre).contains(DEFAULT_NOMBRE, UPDATED_NOMBRE);
+    }
+
     @Test
     @Transactional
     public void deleteProducto() throws Exception {
@@ -1,29 +1,67 @@
 package com.themkers.inventario.web.rest;
 
+import com.hazelcast.core.IMap;
 import com.themkers.inventario.InventariomicroservicioApp;
+import com.themkers.inventario.config.ApplicationProperties;
+import com.themkers.inventario.config.TwoTierCache;
+import com.themkers.inventario.config.TwoTierCacheManager;
 import com.themkers.inventario.domain.Stock;
 import com.themkers.inventario.domain.Producto;
+import com.themkers.inventario.repository.ProductoRepository;
 import com.themkers.inventario.repository.StockRepository;
+import com.themkers.inventario.security.AuthoritiesConstants;
+import com.themkers.inventario.service.HotStockCounterService;
+import com.themkers.inventario.service.ProductoService;
 import com.themkers.inventario.service.StockService;
+import com.themkers.inventario.service.StockValuationService;
+import com.themkers.inventario.service.dto.ChangesToken;
+import com.themkers.inventario.service.dto.ProductoDTO;
+import com.themkers.inventario.service.dto.StockAdjustmentDTO;
 import com.themkers.inventario.service.dto.StockDTO;
 import com.themkers.inventario.service.mapper.StockMapper;
 import com.themkers.inventario.service.dto.StockCriteria;
 import com.themkers.inventario.service.StockQueryService;
 
+import com.jayway.jsonpath.JsonPath;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.transaction.annotation.Transactional;
 import javax.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
+import static com.themkers.inventario.web.rest.TestUtil.sameNumber;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -43,15 +81,33 @@ public class StockResourceIT {
     @Autowired
     private StockRepository stockRepository;
 
+    @Autowired
+    private ProductoRepository productoRepository;
+
     @Autowired
     private StockMapper stockMapper;
 
     @Autowired
     private StockService stockService;
 
+    @Autowired
+    private ProductoService productoService;
+
     @Autowired
     private StockQueryService stockQueryService;
 
+    @Autowired
+    private StockValuationService stockValuationService;
+
+    @Autowired
+    private HotStockCounterService hotStockCounterService;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private CacheManager cacheManager;
+
     @Autowired
     private EntityManager em;
 
@@ -161,6 +217,236 @@ public class StockResourceIT {
             .andExpect(jsonPath("$.[*].cantidad").value(hasItem(DEFAULT_CANTIDAD.intValue())));
     }
     
+    @Test
+    @Transactional
+    public void getAllStocksWithKeysetPagination() throws Exception {
+        // Initialize the database
+        Stock first = stockRepository.saveAndFlush(createEntity(em).cantidad(2L));
+        Stock second = stockRepository.saveAndFlush(createEntity(em).cantidad(1L));
+        Stock third = stockRepository.saveAndFlush(createEntity(em).cantidad(2L));
+        String filter = "id.in=" + first.getId() + "," + second.getId() + "," + third.getId();
+
+        // Get the first page, sorted by cantidad then id
+        String link = restStockMockMvc.perform(get("/api/stocks?after=&size=2&sort=cantidad,asc&" + filter))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist("X-Total-Count"))
+            .andExpect(jsonPath("$.[*].id").value(contains(second.getId().intValue(), first.getId().intValue())))
+            .andReturn().getResponse().getHeader(HttpHeaders.LINK);
+        assertThat(link).endsWith("; rel=\"next\"");
+
+        // Follow the next link
+        String next = link.substring(link.indexOf('<') + 1, link.indexOf('>'));
+        restStockMockMvc.perform(get(URI.create(next)))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(HttpHeaders.LINK))
+            .andExpect(jsonPath("$.[*].id").value(contains(third.getId().intValue())));
+    }
+
+    @Test
+    @Transactional
+    public void getAllStocksWithoutCount() throws Exception {
+        // Initialize the database
+        Stock first = stockRepository.saveAndFlush(createEntity(em));
+        Stock second = stockRepository.saveAndFlush(createEntity(em));
+        String filter = "id.in=" + first.getId() + "," + second.getId();
+
+        restStockMockMvc.perform(get("/api/stocks?count=none&page=0&size=1&sort=id,asc&" + filter))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist("X-Total-Count"))
+            .andExpect(header().string(HttpHeaders.LINK, containsString("rel=\"next\"")))
+            .andExpect(jsonPath("$.[*].id").value(contains(first.getId().intValue())));
+
+        restStockMockMvc.perform(get("/api/stocks?count=none&page=1&size=1&sort=id,asc&" + filter))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.LINK, not(containsString("rel=\"next\""))))
+            .andExpect(jsonPath("$.[*].id").value(contains(second.getId().intValue())));
+
+        // Estimates are only available without filters
+        restStockMockMvc.perform(get("/api/stocks?count=estimate&size=1"))
+            .andExpect(status().isOk())
+            .andExpect(header().exists("X-Total-Count-Estimate"));
+        restStockMockMvc.perform(get("/api/stocks?count=estimate&size=1&" + filter))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist("X-Total-Count-Estimate"));
+
+        restStockMockMvc.perform(get("/api/stocks?count=invalid"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    public void getAllStocksWithInvalidKeysetCursor() throws Exception {
+        restStockMockMvc.perform(get("/api/stocks?after=invalid"))
+            .andExpect(status().isBadRequest());
+
+        restStockMockMvc.perform(get("/api/stocks?after=&sort=producto,asc"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    public void getAllStocksByKeysetSortedOnAnUnreadProperty() throws Exception {
+        // Initialize the database with a next page
+        stockRepository.saveAndFlush(stock);
+        stockRepository.saveAndFlush(createEntity(em));
+
+        // The audit fields are not read, so no cursor could be built from them
+        restStockMockMvc.perform(get("/api/stocks?after=&size=1&sort=lastModifiedDate,asc"))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("error.sortinvalid"));
+    }
+
+    @Test
+    @Transactional
+    public void getAllStocksWithBoundedStatements() throws Exception {
+        // Initialize the database with stocks of distinct productos
+        StringBuilder filter = new StringBuilder("id.in=");
+        Producto producto = null;
+        for (int i = 0; i < 5; i++) {
+            producto = ProductoResourceIT.createEntity(em);
+            em.persist(producto);
+            Stock stock = createEntity(em);
+            stock.setProducto(producto);
+            em.persist(stock);
+            filter.append(i == 0 ? "" : ",").append(stock.getId());
+        }
+        em.flush();
+        em.clear();
+
+        // A page costs a select and a count, whatever the number of productos
+        performWithStatementLimit("/api/stocks?page=0&size=3&sort=id,asc&" + filter, 2)
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].productoNombre").value(hasItem(producto.getNombre())));
+        performWithStatementLimit("/api/stocks?page=0&size=3&sort=id,asc&productoId.specified=true&" + filter, 2)
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(3));
+        performWithStatementLimit("/api/stocks?count=none&size=3&sort=id,asc&" + filter, 1)
+            .andExpect(status().isOk());
+        performWithStatementLimit("/api/stocks?after=&size=3&sort=cantidad,asc&" + filter, 1)
+            .andExpect(status().isOk());
+    }
+
+    @Test
+    @Transactional
+    public void getStocksByIds() throws Exception {
+        // Initialize the database with stocks of distinct productos
+        List<Long> ids = new ArrayList<>();
+        Producto producto = null;
+        for (int i = 0; i < 3; i++) {
+            producto = ProductoResourceIT.createEntity(em);
+            em.persist(producto);
+            Stock stock = createEntity(em);
+            stock.setProducto(producto);
+            em.persist(stock);
+            ids.add(stock.getId());
+        }
+        em.flush();
+        em.clear();
+
+        // The stocks are read with a single query, and returned in the order of the ids
+        performWithStatementLimit("/api/stocks?ids=" + ids.get(2) + "," + ids.get(0) + "," + Long.MAX_VALUE + "," + ids.get(1) + "," + ids.get(0), 1)
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(3))
+            .andExpect(jsonPath("$.[0].id").value(ids.get(2).intValue()))
+            .andExpect(jsonPath("$.[1].id").value(ids.get(0).intValue()))
+            .andExpect(jsonPath("$.[2].id").value(ids.get(1).intValue()))
+            .andExpect(jsonPath("$.[0].productoNombre").value(producto.getNombre()));
+    }
+
+    @Test
+    @Transactional
+    public void getAllStocksWithSparseFieldset() throws Exception {
+        // Initialize the database
+        Producto producto = ProductoResourceIT.createEntity(em);
+        em.persist(producto);
+        stock.setProducto(producto);
+        stockRepository.saveAndFlush(stock);
+        em.clear();
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+
+        // Only the requested fields are selected, without joining the producto
+        performWithStatementLimit("/api/stocks?fields=cantidad,productoId&id.equals=" + stock.getId(), 2)
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", "1"))
+            .andExpect(jsonPath("$.[0].cantidad").value(DEFAULT_CANTIDAD.intValue()))
+            .andExpect(jsonPath("$.[0].productoId").value(producto.getId().intValue()))
+            .andExpect(jsonPath("$.[0].id").doesNotExist())
+            .andExpect(jsonPath("$.[0].productoNombre").doesNotExist());
+        assertThat(statistics.getQueries()).isNotEmpty().noneMatch(query -> query.contains(" join "));
+
+        performWithStatementLimit("/api/stocks?fields=productoNombre&count=none&id.equals=" + stock.getId(), 1)
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[0].productoNombre").value(producto.getNombre()))
+            .andExpect(jsonPath("$.[0].cantidad").doesNotExist());
+
+        // Keyset pagination still gets the id and sort key of the last row
+        restStockMockMvc.perform(get("/api/stocks?fields=productoId&after=&size=1&sort=cantidad,asc&productoId.equals=" + producto.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[0].productoId").value(producto.getId().intValue()))
+            .andExpect(jsonPath("$.[0].cantidad").doesNotExist());
+
+        restStockMockMvc.perform(get("/api/stocks?ids={id}&fields=cantidad", stock.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[0].cantidad").value(DEFAULT_CANTIDAD.intValue()))
+            .andExpect(jsonPath("$.[0].id").doesNotExist());
+
+        restStockMockMvc.perform(get("/api/stocks/{id}?fields=id,cantidad", stock.getId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.id").value(stock.getId().intValue()))
+            .andExpect(jsonPath("$.cantidad").value(DEFAULT_CANTIDAD.intValue()))
+            .andExpect(jsonPath("$.productoId").doesNotExist());
+
+        restStockMockMvc.perform(get("/api/stocks?fields=cantidad,unknown"))
+            .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Executes the request, and checks that it didn't issue more than the given number of SQL statements.
+     */
+    private ResultActions performWithStatementLimit(String url, long maxStatements) throws Exception {
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        boolean statisticsEnabled = statistics.isStatisticsEnabled();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        try {
+            ResultActions result = restStockMockMvc.perform(get(url));
+            assertThat(statistics.getPrepareStatementCount()).as("SQL statements of %s", url).isLessThanOrEqualTo(maxStatements);
+            return result;
+        } finally {
+            statistics.setStatisticsEnabled(statisticsEnabled);
+        }
+    }
+
+    @Test
+    @Transactional
+    public void exportStocks() throws Exception {
+        // Initialize the database
+        Producto producto = ProductoResourceIT.createEntity(em);
+        producto.setNombre("Tornillo, 3\"");
+        em.persist(producto);
+        Stock first = stockRepository.saveAndFlush(createEntity(em).cantidad(3L).producto(producto));
+        Stock second = stockRepository.saveAndFlush(createEntity(em).cantidad(1L));
+        String filter = "id.in=" + second.getId() + "," + first.getId();
+
+        restStockMockMvc.perform(get("/api/stocks/export?format=csv&" + filter))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith("text/csv"))
+            .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, containsString("stocks.csv")))
+            .andExpect(content().string("id,cantidad,productoId,productoNombre\n" +
+                first.getId() + ",3," + producto.getId() + ",\"Tornillo, 3\"\"\"\n" +
+                second.getId() + ",1,,\n"));
+
+        restStockMockMvc.perform(get("/api/stocks/export?" + filter))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+            .andExpect(content().string(
+                "{\"id\":" + first.getId() + ",\"cantidad\":3,\"productoId\":" + producto.getId() + ",\"productoNombre\":\"Tornillo, 3\\\"\"}\n" +
+                "{\"id\":" + second.getId() + ",\"cantidad\":1,\"productoId\":null,\"productoNombre\":null}\n"));
+
+        restStockMockMvc.perform(get("/api/stocks/export?format=xml"))
+            .andExpect(status().isBadRequest());
+    }
+
     @Test
     @Transactional
     public void getStock() throws Exception {
@@ -354,6 +640,30 @@ public class StockResourceIT {
     }
 
 
+    @Test
+    @Transactional
+    public void getStockNotModified() throws Exception {
+        // Initialize the database
+        stockRepository.saveAndFlush(stock);
+        String eTag = "\"0-" + DEFAULT_CANTIDAD + "\"";
+
+        restStockMockMvc.perform(get("/api/stocks/{id}", stock.getId()))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, eTag));
+
+        restStockMockMvc.perform(get("/api/stocks/{id}", stock.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified())
+            .andExpect(content().string(""));
+
+        // Adjustments increment the version
+        stockService.adjust(stock.getId(), 1);
+
+        restStockMockMvc.perform(get("/api/stocks/{id}", stock.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"1-" + (DEFAULT_CANTIDAD + 1) + "\""))
+            .andExpect(jsonPath("$.cantidad").value(DEFAULT_CANTIDAD.intValue() + 1));
+    }
+
     @Test
     @Transactional
     public void getNonExistingStock() throws Exception {
@@ -390,6 +700,36 @@ public class StockResourceIT {
         assertThat(testStock.getCantidad()).isEqualTo(UPDATED_CANTIDAD);
     }
 
+    @Test
+    @Transactional
+    public void updateStockIfMatch() throws Exception {
+        // Initialize the database
+        stockRepository.saveAndFlush(stock);
+        String eTag = "\"0-" + DEFAULT_CANTIDAD + "\"";
+
+        StockDTO stockDTO = stockMapper.toDto(stock);
+        stockDTO.setCantidad(UPDATED_CANTIDAD);
+        restStockMockMvc.perform(put("/api/stocks")
+            .header(HttpHeaders.IF_MATCH, eTag)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtil.convertObjectToJsonBytes(stockDTO)))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"1-" + UPDATED_CANTIDAD + "\""));
+
+        // The second update with the same entity tag is stale
+        stockDTO.setCantidad(DEFAULT_CANTIDAD);
+        restStockMockMvc.perform(put("/api/stocks")
+            .header(HttpHeaders.IF_MATCH, eTag)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtil.convertObjectToJsonBytes(stockDTO)))
+            .andExpect(status().isPreconditionFailed())
+            .andExpect(jsonPath("$.message").value("error.preconditionfailed"));
+
+        Stock testStock = stockRepository.findById(stock.getId()).get();
+        assertThat(testStock.getCantidad()).isEqualTo(UPDATED_CANTIDAD);
+        assertThat(testStock.getVersion()).isEqualTo(1L);
+    }
+
     @Test
     @Transactional
     public void updateNonExistingStock() throws Exception {
@@ -409,6 +749,424 @@ public class StockResourceIT {
         assertThat(stockList).hasSize(databaseSizeBeforeUpdate);
     }
 
+    @Test
+    @Transactional
+    public void adjustStock() throws Exception {
+        // Initialize the database
+        stockRepository.saveAndFlush(stock);
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("adjuster", "adjuster",
+            AuthorityUtils.createAuthorityList(AuthoritiesConstants.USER)));
+
+        restStockMockMvc.perform(post("/api/stocks/{id}/adjust", stock.getId())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtil.convertObjectToJsonBytes(new StockAdjustmentDTO(null, 5L))))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.stockId").value(stock.getId().intValue()))
+            .andExpect(jsonPath("$.cantidad").value(DEFAULT_CANTIDAD.intValue() + 5));
+
+        restStockMockMvc.perform(post("/api/stocks/{id}/adjust", stock.getId())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtil.convertObjectToJsonBytes(new StockAdjustmentDTO(null, -2L))))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.cantidad").value(DEFAULT_CANTIDAD.intValue() + 3));
+
+        Stock testStock = stockRepository.findById(stock.getId()).get();
+        assertThat(testStock.getCantidad()).isEqualTo(DEFAULT_CANTIDAD + 3);
+        assertThat(testStock.getLastModifiedBy()).isEqualTo("adjuster");
+    }
+
+    @Test
+    public void adjustStockEvictsOnlyItFromSecondLevelCache() throws Exception {
+        // Initialize the database
+        Stock adjusted = stockRepository.saveAndFlush(createEntity(em));
+        Stock other = stockRepository.saveAndFlush(createEntity(em));
+        javax.persistence.Cache secondLevelCache = em.getEntityManagerFactory().getCache();
+
+        try {
+            stockService.findOne(adjusted.getId());
+            stockService.findOne(other.getId());
+            assertThat(secondLevelCache.contains(Stock.class, adjusted.getId())).isTrue();
+            assertThat(secondLevelCache.contains(Stock.class, other.getId())).isTrue();
+
+            stockService.adjust(adjusted.getId(), 5L);
+
+            assertThat(secondLevelCache.contains(Stock.class, adjusted.getId())).isFalse();
+            assertThat(secondLevelCache.contains(Stock.class, other.getId())).isTrue();
+            assertThat(stockService.findOne(adjusted.getId())).hasValueSatisfying(stockDTO ->
+                assertThat(stockDTO.getCantidad()).isEqualTo(DEFAULT_CANTIDAD + 5));
+        } finally {
+            stockRepository.deleteAll(stockRepository.findAllById(Arrays.asList(adjusted.getId(), other.getId())));
+        }
+    }
+
+    @Test
+    public void getAllStocksFromQueryCache() throws Exception {
+        // Initialize the database
+        Stock first = stockRepository.saveAndFlush(createEntity(em));
+        Stock second = stockRepository.saveAndFlush(createEntity(em));
+        TwoTierCache cache = ((TwoTierCacheManager) cacheManager).getTwoTierCache(StockQueryService.STOCK_QUERIES_CACHE);
+
+        try {
+            restStockMockMvc.perform(get("/api/stocks/count?id.in=" + first.getId() + "," + second.getId()))
+                .andExpect(status().isOk())
+                .andExpect(content().string("2"));
+
+            // Equivalent criteria are served from the cache
+            long localHits = cache.getLocalStats().hitCount();
+            restStockMockMvc.perform(get("/api/stocks/count?id.in=" + second.getId() + "," + first.getId()))
+                .andExpect(status().isOk())
+                .andExpect(content().string("2"));
+            assertThat(cache.getLocalStats().hitCount()).isEqualTo(localHits + 1);
+
+            restStockMockMvc.perform(get("/api/stocks?sort=id,asc&id.equals=" + first.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[*].cantidad").value(contains(DEFAULT_CANTIDAD.intValue())));
+
+            // Writes of stocks clear the cache, by moving it to a new generation of keys
+            int entries = ((IMap<?, ?>) cache.getNativeCache()).size();
+            restStockMockMvc.perform(post("/api/stocks/{id}/adjust", first.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtil.convertObjectToJsonBytes(new StockAdjustmentDTO(null, 5L))))
+                .andExpect(status().isOk());
+            assertThat(((IMap<?, ?>) cache.getNativeCache()).size()).isEqualTo(entries);
+            restStockMockMvc.perform(get("/api/stocks?sort=id,asc&id.equals=" + first.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[*].cantidad").value(contains(DEFAULT_CANTIDAD.intValue() + 5)));
+
+            restStockMockMvc.perform(delete("/api/stocks/{id}", second.getId()))
+                .andExpect(status().isNoContent());
+            restStockMockMvc.perform(get("/api/stocks/count?id.in=" + first.getId() + "," + second.getId()))
+                .andExpect(status().isOk())
+                .andExpect(content().string("1"));
+        } finally {
+            stockRepository.deleteAll(stockRepository.findAllById(Arrays.asList(first.getId(), second.getId())));
+            cache.clear();
+        }
+    }
+
+    @Test
+    public void streamStockChanges() throws Exception {
+        // Initialize the database
+        Producto producto = productoRepository.saveAndFlush(ProductoResourceIT.createEntity(em));
+        Stock first = stockRepository.saveAndFlush(createEntity(em).producto(producto));
+        Stock other = stockRepository.saveAndFlush(createEntity(em));
+        MvcResult result = null;
+        try {
+            result = restStockMockMvc.perform(get("/api/stocks/stream?productoId={id}", producto.getId()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+            // The changes of a same transaction are coalesced, and the stocks of other productos are filtered out
+            stockService.adjust(Arrays.asList(new StockAdjustmentDTO(first.getId(), 1L),
+                new StockAdjustmentDTO(other.getId(), 1L), new StockAdjustmentDTO(first.getId(), 2L)));
+
+            MockHttpServletResponse response = result.getResponse();
+            long deadline = System.currentTimeMillis() + 5000;
+            String expected = "\"cantidad\":" + (DEFAULT_CANTIDAD + 3);
+            // The event is written in several parts
+            while (!(response.getContentAsString().contains(expected) && response.getContentAsString().endsWith("\n\n"))
+                && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            String content = response.getContentAsString();
+            assertThat(content.split("event:stock", -1)).hasSize(2);
+            assertThat(content)
+                .contains("\"stockId\":" + first.getId())
+                .contains(expected)
+                .doesNotContain("\"stockId\":" + other.getId());
+        } finally {
+            if (result != null) {
+                result.getRequest().getAsyncContext().complete();
+            }
+            stockRepository.deleteAll(stockRepository.findAllById(Arrays.asList(first.getId(), other.getId())));
+            productoRepository.deleteById(producto.getId());
+        }
+    }
+
+    @Test
+    @Transactional
+    public void adjustStockBelowZero() throws Exception {
+        // Initialize the database
+        stockRepository.saveAndFlush(stock);
+
+        // The quantity cannot become negative, so this API call must fail
+        restStockMockMvc.perform(post("/api/stocks/{id}/adjust", stock.getId())
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtil.convertObjectToJsonBytes(new StockAdjustmentDTO(null, -1L))))
+            .andExpect(status().isConflict())
+            .andExpect(jsonPath("$.message").value("error.insufficientStock"))
+            .andExpect(jsonPath("$.available").value(DEFAULT_CANTIDAD.intValue()));
+
+        Stock testStock = stockRepository.findById(stock.getId()).get();
+        assertThat(testStock.getCantidad()).isEqualTo(DEFAULT_CANTIDAD);
+    }
+
+    @Test
+    @Transactional
+    public void adjustNonExistingStock() throws Exception {
+        restStockMockMvc.perform(post("/api/stocks/{id}/adjust", Long.MAX_VALUE)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtil.convertObjectToJsonBytes(new StockAdjustmentDTO(null, 1L))))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @Transactional
+    public void adjustStocks() throws Exception {
+        // Initialize the database
+        stockRepository.saveAndFlush(stock);
+        Stock otherStock = createEntity(em).cantidad(10L);
+        stockRepository.saveAndFlush(otherStock);
+
+        List<StockAdjustmentDTO> adjustments = Arrays.asList(
+            new StockAdjustmentDTO(otherStock.getId(), -4L),
+            new StockAdjustmentDTO(stock.getId(), 2L));
+
+        restStockMockMvc.perform(post("/api/stocks/adjust")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtil.convertObjectToJsonBytes(adjustments)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[0].stockId").value(stock.getId().intValue()))
+            .andExpect(jsonPath("$.[0].cantidad").value(DEFAULT_CANTIDAD.intValue() + 2))
+            .andExpect(jsonPath("$.[1].stockId").value(otherStock.getId().intValue()))
+            .andExpect(jsonPath("$.[1].cantidad").value(6));
+    }
+
+    @Test
+    @Transactional
+    public void adjustHotStock() throws Exception {
+        // Initialize the database
+        stockRepository.saveAndFlush(stock.cantidad(10L));
+        ApplicationProperties.HotStock hotStock = applicationProperties.getHotStock();
+        hotStock.setEnabled(true);
+        hotStock.getStockIds().add(stock.getId());
+        try {
+            restStockMockMvc.perform(post("/api/stocks/{id}/adjust", stock.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtil.convertObjectToJsonBytes(new StockAdjustmentDTO(null, -4L))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cantidad").value(6));
+
+            // The quantity cannot become negative, even before the counter is flushed
+            restStockMockMvc.perform(post("/api/stocks/{id}/adjust", stock.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(TestUtil.convertObjectToJsonBytes(new StockAdjustmentDTO(null, -7L))))
+                .andExpect(status().isConflict());
+
+            // The adjustment is not written yet, but it is visible to readers
+            assertThat(stockRepository.findCantidadById(stock.getId())).contains(10L);
+            restStockMockMvc.perform(get("/api/stocks/{id}", stock.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cantidad").value(6));
+
+            hotStockCounterService.flush();
+            assertThat(stockRepository.findCantidadById(stock.getId())).contains(6L);
+            assertThat(hotStockCounterService.getPendingDelta(stock.getId())).isZero();
+        } finally {
+            hotStock.setEnabled(false);
+            hotStock.getStockIds().remove(stock.getId());
+        }
+    }
+
+    @Test
+    @Transactional
+    public void adjustStocksWithoutStockId() throws Exception {
+        restStockMockMvc.perform(post("/api/stocks/adjust")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtil.convertObjectToJsonBytes(Arrays.asList(new StockAdjustmentDTO(null, 1L)))))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    public void getStockValuation() throws Exception {
+        String total = restStockMockMvc.perform(get("/api/stocks/valuation"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+        BigDecimal before = new BigDecimal(JsonPath.read(total, "$.valuation").toString());
+
+        ProductoDTO first = productoService.save(newProducto("valuation, first", "2.50"));
+        ProductoDTO second = productoService.save(newProducto("valuation, second", "4.00"));
+        StockDTO adjusted = stockService.save(newStock(10L, first.getId()));
+        StockDTO deleted = stockService.save(newStock(2L, first.getId()));
+        stockService.save(newStock(3L, second.getId()));
+        stockService.adjust(adjusted.getId(), 4L);
+        stockService.delete(deleted.getId());
+        second.setPrecio(new BigDecimal("5.00"));
+        productoService.save(second);
+
+        // The total is maintained by the writes: 14 * 2.50 + 3 * 5.00
+        restStockMockMvc.perform(get("/api/stocks/valuation"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.valuation").value(sameNumber(before.add(new BigDecimal("50.00")))));
+
+        // Folding the changes into the total doesn't change it
+        assertThat(stockValuationService.foldDeltas()).isPositive();
+        assertThat(stockValuationService.foldDeltas()).isZero();
+        restStockMockMvc.perform(get("/api/stocks/valuation"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.valuation").value(sameNumber(before.add(new BigDecimal("50.00")))));
+
+        String ids = "id.in=" + first.getId() + "," + second.getId();
+        restStockMockMvc.perform(get("/api/stocks/valuation?" + ids))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.productoId").isEmpty())
+            .andExpect(jsonPath("$.valuation").value(sameNumber(new BigDecimal("50.00"))));
+
+        restStockMockMvc.perform(get("/api/stocks/valuation?groupBy=producto&" + ids))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", "2"))
+            .andExpect(jsonPath("$.[*].productoId").value(contains(first.getId().intValue(), second.getId().intValue())))
+            .andExpect(jsonPath("$.[0].productoNombre").value("valuation, first"))
+            .andExpect(jsonPath("$.[0].valuation").value(sameNumber(new BigDecimal("35.00"))))
+            .andExpect(jsonPath("$.[1].valuation").value(sameNumber(new BigDecimal("15.00"))));
+
+        restStockMockMvc.perform(get("/api/stocks/valuation?groupBy=nothing"))
+            .andExpect(status().isBadRequest());
+    }
+
+    private static ProductoDTO newProducto(String nombre, String precio) {
+        ProductoDTO producto = new ProductoDTO();
+        producto.setNombre(nombre);
+        producto.setPrecio(new BigDecimal(precio));
+        return producto;
+    }
+
+    private static StockDTO newStock(Long cantidad, Long productoId) {
+        StockDTO stock = new StockDTO();
+        stock.setCantidad(cantidad);
+        stock.setProductoId(productoId);
+        return stock;
+    }
+
+    @Test
+    @Transactional
+    public void getStockChanges() throws Exception {
+        // Initialize the database
+        stockRepository.saveAndFlush(stock);
+
+        // Without token, all the stocks are returned
+        String token = readToken(restStockMockMvc.perform(get("/api/stocks/changes"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.changed.[*].id").value(hasItem(stock.getId().intValue())))
+            .andExpect(jsonPath("$.more").value(false)));
+
+        token = readToken(restStockMockMvc.perform(get("/api/stocks/changes?since={token}", token))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.changed").value(empty()))
+            .andExpect(jsonPath("$.deleted").value(empty())));
+
+        // Updates, in pages
+        stockService.adjust(stock.getId(), 1);
+        Stock other = stockRepository.saveAndFlush(createUpdatedEntity(em));
+        token = readToken(restStockMockMvc.perform(get("/api/stocks/changes?since={token}&limit=1", token))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.changed.[*].id").value(contains(stock.getId().intValue())))
+            .andExpect(jsonPath("$.changed.[0].cantidad").value(DEFAULT_CANTIDAD.intValue() + 1))
+            .andExpect(jsonPath("$.more").value(true)));
+        token = readToken(restStockMockMvc.perform(get("/api/stocks/changes?since={token}&limit=1", token))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.changed.[*].id").value(contains(other.getId().intValue())))
+            .andExpect(jsonPath("$.more").value(false)));
+
+        // Deletions
+        restStockMockMvc.perform(delete("/api/stocks/{id}", stock.getId()))
+            .andExpect(status().isNoContent());
+        restStockMockMvc.perform(get("/api/stocks/changes?since={token}", token))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.changed").value(empty()))
+            .andExpect(jsonPath("$.deleted").value(contains(stock.getId().intValue())));
+    }
+
+    @Test
+    @Transactional
+    public void getStockChangesAfterProductoRename() throws Exception {
+        ProductoDTO producto = productoService.save(newProducto("changes, before", "1.00"));
+        StockDTO stockDTO = stockService.save(newStock(5L, producto.getId()));
+        String token = readToken(restStockMockMvc.perform(get("/api/stocks/changes"))
+            .andExpect(status().isOk()));
+
+        // A price change doesn't change the stocks, a rename does
+        producto.setPrecio(new BigDecimal("2.00"));
+        producto = productoService.save(producto);
+        token = readToken(restStockMockMvc.perform(get("/api/stocks/changes?since={token}", token))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.changed").value(empty())));
+
+        producto.setNombre("changes, after");
+        productoService.save(producto);
+        restStockMockMvc.perform(get("/api/stocks/changes?since={token}", token))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.changed.[*].id").value(contains(stockDTO.getId().intValue())))
+            .andExpect(jsonPath("$.changed.[0].productoNombre").value("changes, after"));
+    }
+
+    @Test
+    @Transactional
+    public void getStockChangesWithInvalidToken() throws Exception {
+        restStockMockMvc.perform(get("/api/stocks/changes?since=invalid"))
+            .andExpect(status().isBadRequest());
+        restStockMockMvc.perform(get("/api/stocks/changes?limit=0"))
+            .andExpect(status().isBadRequest());
+
+        // Tokens older than the retained tombstones have expired
+        Instant expired = Instant.now().minus(31, ChronoUnit.DAYS);
+        restStockMockMvc.perform(get("/api/stocks/changes?since={token}", new ChangesToken(expired, 0, expired, 0).encode()))
+            .andExpect(status().isGone());
+    }
+
+    private static String readToken(ResultActions result) throws Exception {
+        return JsonPath.read(result.andReturn().getResponse().getContentAsString(), "$.token");
+    }
+
+    @Test
+    @Transactional
+    public void importStocksFromCsv() throws Exception {
+        Producto producto = ProductoResourceIT.createEntity(em);
+        em.persist(producto);
+        em.flush();
+        int databaseSizeBeforeImport = stockRepository.findAll().size();
+
+        String csv = "cantidad,productoId\n" +
+            "5," + producto.getId() + "\n" +
+            "-1,\n" +
+            "\"7\",\n";
+        restStockMockMvc.perform(post("/api/stocks/bulk")
+            .contentType("text/csv")
+            .content(csv))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.imported").value(2))
+            .andExpect(jsonPath("$.failed").value(1))
+            .andExpect(jsonPath("$.errors.[0].line").value(3));
+
+        List<Stock> stockList = stockRepository.findAll();
+        assertThat(stockList).hasSize(databaseSizeBeforeImport + 2);
+        assertThat(stockList).extracting(Stock::getCantidad).contains(5L, 7L);
+    }
+
+    @Test
+    @Transactional
+    public void importStocksFromGzipNdjson() throws Exception {
+        int databaseSizeBeforeImport = stockRepository.findAll().size();
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(body)) {
+            gzip.write(("{\"cantidad\":3}\n" +
+                "{\"id\":1,\"cantidad\":3}\n" +
+                "not json\n" +
+                "{\"cantidad\":4}\n").getBytes(StandardCharsets.UTF_8));
+        }
+        restStockMockMvc.perform(post("/api/stocks/bulk")
+            .contentType("application/x-ndjson")
+            .header("Content-Encoding", "gzip")
+            .content(body.toByteArray()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.imported").value(2))
+            .andExpect(jsonPath("$.failed").value(2));
+
+        assertThat(stockRepository.findAll()).hasSize(databaseSizeBeforeImport + 2);
+    }
+
     @Test
     @Transactional
     public void deleteStock() throws Exception {
@@ -11,6 +11,7 @@ import org.springframework.format.support.DefaultFormattingConversionService;
 import org.springframework.format.support.FormattingConversionService;
 
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeParseException;
 import java.util.List;
@@ -106,6 +107,41 @@ public final class TestUtil {
         return new ZonedDateTimeMatcher(date);
     }
 
+    /**
+     * A matcher that tests that the examined number has the same value as the reference number, whatever its scale.
+     */
+    public static class NumberMatcher extends TypeSafeDiagnosingMatcher<Number> {
+
+        private final BigDecimal value;
+
+        public NumberMatcher(BigDecimal value) {
+            this.value = value;
+        }
+
+        @Override
+        protected boolean matchesSafely(Number item, Description mismatchDescription) {
+            if (value.compareTo(new BigDecimal(item.toString())) != 0) {
+                mismatchDescription.appendText("was ").appendValue(item);
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void describeTo(Description description) {
+            description.appendText("a number with the same value as ").appendValue(value);
+        }
+    }
+
+    /**
+     * Creates a matcher that matches when the examined number has the same value as the reference number.
+     *
+     * @param number the reference number against which the examined number is checked.
+     */
+    public static NumberMatcher sameNumber(BigDecimal number) {
+        return new NumberMatcher(number);
+    }
+
     /**
      * Verifies the equals/hashcode contract on the domain object.
      */